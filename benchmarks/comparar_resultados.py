@@ -0,0 +1,87 @@
+#!/usr/bin/env python3
+"""
+Compara dos ejecuciones JMH exportadas en JSON (-rf json) y marca regresiones.
+
+Uso:
+    python3 comparar_resultados.py base.json nuevo.json [--umbral 10]
+
+Sale con código 1 si algún benchmark empeoró más que el umbral (en %),
+para poder usarlo como compuerta en integración continua.
+"""
+import argparse
+import json
+import math
+import sys
+
+
+def error_numerico(valor):
+    """JMH escribe "NaN" cuando hay una sola iteración de medición."""
+    try:
+        error = float(valor)
+    except (TypeError, ValueError):
+        return 0.0
+    return 0.0 if math.isnan(error) else error
+
+
+def cargar(ruta):
+    with open(ruta, encoding="utf-8") as archivo:
+        resultados = {}
+        for entrada in json.load(archivo):
+            parametros = entrada.get("params") or {}
+            clave = entrada["benchmark"]
+            if parametros:
+                clave += "(" + ", ".join(f"{k}={v}" for k, v in sorted(parametros.items())) + ")"
+            clave += f" [{entrada['mode']}]"
+            metrica = entrada["primaryMetric"]
+            resultados[clave] = (entrada["mode"], float(metrica["score"]), error_numerico(metrica.get("scoreError")), metrica["scoreUnit"])
+        return resultados
+
+
+def cambio_porcentual(modo, base, nuevo):
+    """Positivo = mejora, negativo = regresión, sin importar el modo de JMH."""
+    if base == 0:
+        return 0.0
+    if modo in ("thrpt",):
+        return (nuevo - base) / base * 100.0
+    # avgt, sample, ss: menor es mejor
+    return (base - nuevo) / base * 100.0
+
+
+def main():
+    parser = argparse.ArgumentParser(description="Compara dos resultados JMH y marca regresiones.")
+    parser.add_argument("base")
+    parser.add_argument("nuevo")
+    parser.add_argument("--umbral", type=float, default=10.0, help="Porcentaje de empeoramiento tolerado (por defecto 10)")
+    args = parser.parse_args()
+
+    base = cargar(args.base)
+    nuevo = cargar(args.nuevo)
+
+    regresiones = 0
+    print(f"{'Benchmark':<90} {'Base':>14} {'Nuevo':>14} {'Cambio':>9}")
+    for clave in sorted(set(base) | set(nuevo)):
+        if clave not in base or clave not in nuevo:
+            print(f"{clave:<90} {'(solo en ' + ('base' if clave in base else 'nuevo') + ')':>39}")
+            continue
+        modo, puntaje_base, error_base, unidad = base[clave]
+        _, puntaje_nuevo, error_nuevo, _ = nuevo[clave]
+        cambio = cambio_porcentual(modo, puntaje_base, puntaje_nuevo)
+
+        # Solo es regresión si supera el umbral y los intervalos de error no se solapan
+        solapan = abs(puntaje_nuevo - puntaje_base) <= (error_base + error_nuevo)
+        marca = ""
+        if cambio < -args.umbral and not solapan:
+            marca = "  << REGRESIÓN"
+            regresiones += 1
+        elif cambio > args.umbral and not solapan:
+            marca = "  mejora"
+        print(f"{clave:<90} {puntaje_base:>10.3f} {unidad:<3} {puntaje_nuevo:>10.3f} {cambio:>+8.1f}%{marca}")
+
+    if regresiones:
+        print(f"\n✖ {regresiones} regresión(es) por encima del {args.umbral:.0f}%.")
+        sys.exit(1)
+    print("\n✔ Sin regresiones.")
+
+
+if __name__ == "__main__":
+    main()
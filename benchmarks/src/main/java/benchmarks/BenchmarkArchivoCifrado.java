@@ -0,0 +1,62 @@
+package benchmarks;
+
+import modelos.ArchivoCifrado;
+import modelos.Progreso;
+import modelos.UtilidadesCifrado;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.SecretKey;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Rendimiento de ArchivoCifrado.cifrar sobre un archivo de muchos segmentos, según los hilos
+ * de la tubería (1 = en secuencia, sin solapar lectura, cifrado y escritura).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BenchmarkArchivoCifrado {
+
+    // 64 MiB: 1024 segmentos de 64 KiB
+    private static final int TAMANO = 64 * 1024 * 1024;
+
+    @Param({"1", "2", "4", "8"})
+    public int hilos;
+
+    private SecretKey clave;
+    private Path directorio;
+    private Path origen;
+    private Path destino;
+
+    @Setup
+    public void preparar() throws Exception {
+        clave = UtilidadesCifrado.obtenerClaveDesdeContrasena("Benchmark#2025");
+        directorio = Files.createTempDirectory("benchmark-archivo");
+        origen = directorio.resolve("datos.bin");
+        destino = directorio.resolve("datos.bin.locked");
+        Files.write(origen, DatosSinteticos.bytesAleatorios(TAMANO));
+    }
+
+    @TearDown
+    public void limpiar() throws Exception {
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            for (Path archivo : (Iterable<Path>) archivos::iterator) {
+                Files.delete(archivo);
+            }
+        }
+        Files.delete(directorio);
+    }
+
+    @Benchmark
+    public long cifrar() throws Exception {
+        Files.deleteIfExists(destino);
+        ArchivoCifrado.cifrar(origen, destino, clave, false, null, Progreso.NINGUNO, hilos);
+        return Files.size(destino);
+    }
+}
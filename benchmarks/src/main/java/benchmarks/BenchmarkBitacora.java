@@ -0,0 +1,36 @@
+package benchmarks;
+
+import modelos.RegistroBitacora;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendimiento de RegistroBitacora con uno y varios hilos escribiendo a la vez.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BenchmarkBitacora {
+
+    @Benchmark
+    @Threads(1)
+    public void registrarUnHilo() {
+        RegistroBitacora.info("Benchmark: evento de auditoría.");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void registrarCuatroHilos() {
+        RegistroBitacora.info("Benchmark: evento de auditoría.");
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void registrarDieciseisHilos() {
+        RegistroBitacora.info("Benchmark: evento de auditoría.");
+    }
+}
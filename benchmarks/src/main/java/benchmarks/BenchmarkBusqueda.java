@@ -0,0 +1,41 @@
+package benchmarks;
+
+import modelos.Boveda;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Búsqueda inteligente con errores tipográficos y con subcadenas.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class BenchmarkBusqueda {
+
+    @Param({"1000", "100000"})
+    public int entradas;
+
+    /**
+     * "gmial" y "githb" son errores tipográficos (Levenshtein);
+     * "cuenta-0001" y "aws" son coincidencias por subcadena.
+     */
+    @Param({"gmial", "githb", "cuenta-0001", "aws"})
+    public String patron;
+
+    private Boveda boveda;
+
+    @Setup
+    public void preparar() throws Exception {
+        boveda = DatosSinteticos.crearBoveda(entradas);
+    }
+
+    @Benchmark
+    public List<String> buscarSecretosInteligente() {
+        return boveda.buscarSecretosInteligente(patron, 10);
+    }
+}
@@ -0,0 +1,43 @@
+package benchmarks;
+
+import modelos.UtilidadesCifrado;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.SecretKey;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendimiento de las primitivas de UtilidadesCifrado según el tamaño del contenido.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BenchmarkCifrado {
+
+    @Param({"64", "4096", "1048576", "16777216"})
+    public int tamano;
+
+    private SecretKey clave;
+    private byte[] datosPlanos;
+    private byte[] datosCifrados;
+
+    @Setup
+    public void preparar() throws Exception {
+        clave = UtilidadesCifrado.obtenerClaveDesdeContrasena("Benchmark#2025");
+        datosPlanos = DatosSinteticos.bytesAleatorios(tamano);
+        datosCifrados = UtilidadesCifrado.cifrar(datosPlanos, clave);
+    }
+
+    @Benchmark
+    public byte[] cifrar() throws Exception {
+        return UtilidadesCifrado.cifrar(datosPlanos, clave);
+    }
+
+    @Benchmark
+    public byte[] descifrar() throws Exception {
+        return UtilidadesCifrado.descifrar(datosCifrados, clave);
+    }
+}
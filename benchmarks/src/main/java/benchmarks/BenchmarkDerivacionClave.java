@@ -0,0 +1,27 @@
+package benchmarks;
+
+import modelos.UtilidadesCifrado;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.SecretKey;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo de derivar la llave AES a partir de la contraseña maestra.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BenchmarkDerivacionClave {
+
+    @Param({"Benchmark#2025", "Una-Contrasena-Maestra-Muy-Larga#1234567890"})
+    public String contrasena;
+
+    @Benchmark
+    public SecretKey obtenerClaveDesdeContrasena() throws Exception {
+        return UtilidadesCifrado.obtenerClaveDesdeContrasena(contrasena);
+    }
+}
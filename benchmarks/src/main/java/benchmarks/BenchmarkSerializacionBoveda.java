@@ -0,0 +1,40 @@
+package benchmarks;
+
+import modelos.Boveda;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversión de la bóveda a bytes y de regreso, con 1k, 100k y 1M de entradas.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class BenchmarkSerializacionBoveda {
+
+    @Param({"1000", "100000", "1000000"})
+    public int entradas;
+
+    private Boveda boveda;
+    private byte[] bytesBoveda;
+
+    @Setup
+    public void preparar() throws Exception {
+        boveda = DatosSinteticos.crearBoveda(entradas);
+        bytesBoveda = boveda.convertirABytes();
+    }
+
+    @Benchmark
+    public byte[] convertirABytes() throws Exception {
+        return boveda.convertirABytes();
+    }
+
+    @Benchmark
+    public Boveda crearDesdeBytes() throws Exception {
+        return Boveda.crearDesdeBytes(bytesBoveda);
+    }
+}
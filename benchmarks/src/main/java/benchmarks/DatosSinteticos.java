@@ -0,0 +1,75 @@
+package benchmarks;
+
+import modelos.Boveda;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generador determinista de datos para los benchmarks.
+ * Usa una semilla fija para que dos ejecuciones midan exactamente la misma carga.
+ */
+public final class DatosSinteticos {
+
+    private static final String[] SERVICIOS = {
+            "gmail", "github", "aws", "azure", "banco", "netflix", "slack", "jira", "vpn", "postgres"
+    };
+
+    private DatosSinteticos() {
+    }
+
+    /**
+     * Genera un arreglo de bytes aleatorio (reproducible) del tamaño indicado.
+     */
+    public static byte[] bytesAleatorios(int tamano) {
+        byte[] datos = new byte[tamano];
+        new Random(42).nextBytes(datos);
+        return datos;
+    }
+
+    /**
+     * Nombre de secreto sintético con forma "servicio/cuenta-000123".
+     */
+    public static String nombreSecreto(int indice) {
+        return SERVICIOS[indice % SERVICIOS.length] + "/cuenta-" + String.format("%06d", indice);
+    }
+
+    /**
+     * Construye una bóveda con la cantidad de entradas indicada.
+     * No usa agregarSecreto() para no medir la consola ni la bitácora durante el setup.
+     */
+    public static Boveda crearBoveda(int entradas) throws Exception {
+        Random random = new Random(7);
+        Map<String, String> secretos = new HashMap<>(entradas * 2);
+        for (int i = 0; i < entradas; i++) {
+            secretos.put(nombreSecreto(i), valorAleatorio(random, 24));
+        }
+        return crearBoveda(secretos);
+    }
+
+    /**
+     * Construye una bóveda a partir de un mapa nombre → valor ya generado.
+     */
+    public static Boveda crearBoveda(Map<String, String> secretos) throws Exception {
+        // Se serializa en el formato heredado; crearDesdeBytes siempre lo acepta
+        ByteArrayOutputStream flujoBytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream flujoObjetos = new ObjectOutputStream(flujoBytes)) {
+            flujoObjetos.writeObject(secretos);
+        }
+        return Boveda.crearDesdeBytes(flujoBytes.toByteArray());
+    }
+
+    /**
+     * Texto ASCII imprimible aleatorio de la longitud indicada.
+     */
+    public static String valorAleatorio(Random random, int longitud) {
+        StringBuilder sb = new StringBuilder(longitud);
+        for (int i = 0; i < longitud; i++) {
+            sb.append((char) ('!' + random.nextInt(94)));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,135 @@
+package benchmarks.arranque;
+
+import modelos.AlmacenamientoBoveda;
+import modelos.Boveda;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Mide el arranque en frío lanzando JVMs nuevas con "main.Main obtener NOMBRE --contrasena-stdin":
+ *   - tiempo hasta la solicitud de contraseña (time-to-prompt)
+ *   - tiempo hasta imprimir el secreto (time-to-unlock / primer secreto)
+ * Compara la ejecución normal con la que usa el archivo CDS generado por la compilación.
+ *
+ * Uso:
+ *   java -cp benchmarks/target/benchmarks.jar benchmarks.arranque.BenchmarkArranque \
+ *        [--jar app/target/suite-de-seguridad-1.0-SNAPSHOT.jar] [--cds app/target/suite.jsa] [--repeticiones 20]
+ */
+public final class BenchmarkArranque {
+
+    private static final String CONTRASENA = "Arranque#Medido2025";
+    private static final String SECRETO = "arranque/secreto";
+
+    private BenchmarkArranque() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path jar = Path.of("app/target/suite-de-seguridad-1.0-SNAPSHOT.jar");
+        Path cds = Path.of("app/target/suite.jsa");
+        int repeticiones = 20;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--jar": jar = Path.of(args[i + 1]); break;
+                case "--cds": cds = Path.of(args[i + 1]); break;
+                case "--repeticiones": repeticiones = Integer.parseInt(args[i + 1]); break;
+                default: throw new IllegalArgumentException("Opción desconocida: " + args[i]);
+            }
+        }
+        jar = jar.toAbsolutePath();
+        cds = cds.toAbsolutePath();
+
+        Path temporal = Files.createTempDirectory("suite-arranque");
+        Path archivoBoveda = temporal.resolve("boveda.dat");
+        crearBoveda(archivoBoveda);
+
+        System.out.printf("%-10s %18s %18s %18s%n", "Modo", "prompt p50 (ms)", "secreto p50 (ms)", "secreto mín (ms)");
+        medir("normal", jar, null, archivoBoveda, repeticiones);
+        if (Files.exists(cds)) {
+            medir("cds", jar, cds, archivoBoveda, repeticiones);
+        } else {
+            System.out.println("(sin archivo CDS en " + cds + "; ejecute 'mvn package')");
+        }
+    }
+
+    private static void crearBoveda(Path archivoBoveda) throws Exception {
+        PrintStream salidaOriginal = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            Boveda boveda = new Boveda();
+            boveda.agregarSecreto(SECRETO, "valor-de-prueba");
+            new AlmacenamientoBoveda(archivoBoveda.toString()).guardarBoveda(boveda, CONTRASENA);
+        } finally {
+            System.setOut(salidaOriginal);
+        }
+    }
+
+    private static void medir(String modo, Path jar, Path cds, Path archivoBoveda, int repeticiones)
+            throws Exception {
+        long[] prompt = new long[repeticiones];
+        long[] secreto = new long[repeticiones];
+
+        for (int i = 0; i < repeticiones; i++) {
+            List<String> comando = new ArrayList<>();
+            comando.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+            if (cds != null) {
+                comando.add("-XX:SharedArchiveFile=" + cds);
+            }
+            comando.addAll(List.of("-cp", jar.toString(), "main.Main",
+                    "obtener", SECRETO, "--contrasena-stdin", "--boveda", archivoBoveda.toString()));
+
+            long inicio = System.nanoTime();
+            Process proceso = new ProcessBuilder(comando).start();
+
+            // 1. Esperar la solicitud de contraseña (termina en ": ") en stderr
+            esperarSufijo(proceso.getErrorStream(), ": ");
+            prompt[i] = System.nanoTime() - inicio;
+
+            // 2. Enviar la contraseña y esperar la primera línea de stdout (el secreto)
+            try (OutputStream entrada = proceso.getOutputStream()) {
+                entrada.write((CONTRASENA + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            String linea = leerLinea(proceso.getInputStream());
+            secreto[i] = System.nanoTime() - inicio;
+
+            if (proceso.waitFor() != 0 || linea.isEmpty()) {
+                throw new IllegalStateException("La ejecución " + i + " falló (código " + proceso.exitValue() + ").");
+            }
+        }
+
+        Arrays.sort(prompt);
+        Arrays.sort(secreto);
+        System.out.printf("%-10s %18.1f %18.1f %18.1f%n", modo,
+                prompt[repeticiones / 2] / 1e6, secreto[repeticiones / 2] / 1e6, secreto[0] / 1e6);
+    }
+
+    private static void esperarSufijo(InputStream flujo, String sufijo) throws Exception {
+        StringBuilder leido = new StringBuilder();
+        int c;
+        while ((c = flujo.read()) != -1) {
+            leido.append((char) c);
+            if (leido.length() >= sufijo.length()
+                    && leido.substring(leido.length() - sufijo.length()).equals(sufijo)) {
+                return;
+            }
+        }
+        throw new IllegalStateException("El proceso terminó sin pedir la contraseña: " + leido);
+    }
+
+    private static String leerLinea(InputStream flujo) throws Exception {
+        ByteArrayOutputStream linea = new ByteArrayOutputStream();
+        int c;
+        while ((c = flujo.read()) != -1 && c != '\n') {
+            linea.write(c);
+        }
+        return linea.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,223 @@
+package benchmarks.carga;
+
+import modelos.AlmacenamientoBoveda;
+import modelos.Boveda;
+import modulos.ModuloArchivos;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Macro benchmark de extremo a extremo.
+ *
+ * Genera una bóveda y un corpus de archivos sintéticos y reproduce una mezcla de operaciones
+ * (desbloquear / buscar / obtener / actualizar / guardar / cifrar directorio) a través de
+ * AlmacenamientoBoveda, Boveda y ModuloArchivos, igual que lo haría una sesión real.
+ *
+ * Uso:
+ *   java -cp benchmarks/target/benchmarks.jar benchmarks.carga.ConductorCarga [opciones]
+ *
+ * Opciones (todas opcionales):
+ *   --directorio RUTA          Directorio de trabajo (por defecto, uno temporal)
+ *   --secretos N               Secretos en la bóveda (100000)
+ *   --nombres DIST             Longitud de nombres (uniforme:8-40)
+ *   --valores DIST             Longitud de valores (lognormal:32:0.8)
+ *   --archivos-pequenos N      Archivos pequeños del corpus (2000)
+ *   --tamano-pequenos DIST     Tamaño de archivos pequeños (lognormal:8192:1.0)
+ *   --archivos-grandes N       Archivos grandes del corpus (2)
+ *   --tamano-grande BYTES      Tamaño de cada archivo grande (268435456)
+ *   --operaciones N            Operaciones a reproducir (2000)
+ *   --mezcla OP=PESO,...       Pesos de la mezcla (ver MEZCLA_POR_DEFECTO)
+ *   --semilla N                Semilla de los generadores (2025)
+ *   --json RUTA                Escribe además el informe en JSON
+ */
+public final class ConductorCarga {
+
+    private static final String CONTRASENA = "Carga#Sintetica2025";
+    private static final String MEZCLA_POR_DEFECTO =
+            "desbloquear=2,buscar=40,obtener=40,actualizar=10,guardar=6,cifrar-directorio=2";
+
+    private ConductorCarga() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = parsearOpciones(args);
+
+        Path directorio = opciones.containsKey("directorio")
+                ? Path.of(opciones.get("directorio"))
+                : Files.createTempDirectory("suite-carga");
+        Files.createDirectories(directorio);
+        long semilla = Long.parseLong(opciones.getOrDefault("semilla", "2025"));
+
+        // 1. Datos sintéticos
+        Path archivoBoveda = directorio.resolve("boveda.dat");
+        Path corpus = directorio.resolve("corpus");
+        Files.createDirectories(corpus);
+
+        System.out.println("Generando bóveda sintética en " + archivoBoveda + " ...");
+        List<String> nombres = new GeneradorBoveda(
+                Integer.parseInt(opciones.getOrDefault("secretos", "100000")),
+                DistribucionTamano.parsear(opciones.getOrDefault("nombres", "uniforme:8-40")),
+                DistribucionTamano.parsear(opciones.getOrDefault("valores", "lognormal:32:0.8")),
+                semilla).generar(archivoBoveda, CONTRASENA);
+
+        System.out.println("Generando corpus de archivos en " + corpus + " ...");
+        long bytesCorpus = new GeneradorCorpus(
+                Integer.parseInt(opciones.getOrDefault("archivos-pequenos", "2000")),
+                DistribucionTamano.parsear(opciones.getOrDefault("tamano-pequenos", "lognormal:8192:1.0")),
+                Integer.parseInt(opciones.getOrDefault("archivos-grandes", "2")),
+                Long.parseLong(opciones.getOrDefault("tamano-grande", String.valueOf(256L << 20))),
+                semilla).generar(corpus);
+        System.out.printf("Bóveda: %d secretos. Corpus: %.1f MB.%n", nombres.size(), bytesCorpus / 1e6);
+
+        // 2. Reproducción de la mezcla
+        Map<String, Integer> mezcla = parsearMezcla(opciones.getOrDefault("mezcla", MEZCLA_POR_DEFECTO));
+        int operaciones = Integer.parseInt(opciones.getOrDefault("operaciones", "2000"));
+        InformeCarga informe = reproducir(archivoBoveda, corpus, nombres, mezcla, operaciones, new Random(semilla));
+
+        // 3. Informe
+        System.out.println();
+        System.out.println("Mezcla: " + mezcla);
+        System.out.print(informe.comoTexto());
+        if (opciones.containsKey("json")) {
+            Files.writeString(Path.of(opciones.get("json")), informe.comoJson());
+            System.out.println("Informe JSON: " + opciones.get("json"));
+        }
+    }
+
+    private static InformeCarga reproducir(Path archivoBoveda, Path corpus, List<String> nombres,
+                                           Map<String, Integer> mezcla, int operaciones, Random random)
+            throws Exception {
+        AlmacenamientoBoveda almacenamiento = new AlmacenamientoBoveda(archivoBoveda.toString());
+        ModuloArchivos archivos = new ModuloArchivos(CONTRASENA, null);
+        InformeCarga informe = new InformeCarga();
+
+        // Boveda imprime un mensaje por cada mutación: se silencia para no medir la terminal
+        PrintStream salidaOriginal = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            // El primer desbloqueo siempre ocurre (una sesión arranca así)
+            long t0 = System.nanoTime();
+            Boveda boveda = almacenamiento.cargarBoveda(CONTRASENA);
+            informe.registrar("desbloquear", System.nanoTime() - t0);
+
+            String[] tipos = mezcla.keySet().toArray(new String[0]);
+            int[] acumulados = new int[tipos.length];
+            int suma = 0;
+            for (int i = 0; i < tipos.length; i++) {
+                suma += mezcla.get(tipos[i]);
+                acumulados[i] = suma;
+            }
+
+            long asignadosInicio = InformeCarga.bytesAsignadosHiloActual();
+            informe.iniciar();
+            for (int n = 0; n < operaciones; n++) {
+                int sorteo = random.nextInt(suma);
+                int indice = 0;
+                while (acumulados[indice] <= sorteo) {
+                    indice++;
+                }
+                String tipo = tipos[indice];
+                String nombre = nombres.get(random.nextInt(nombres.size()));
+
+                long inicio = System.nanoTime();
+                switch (tipo) {
+                    case "desbloquear":
+                        boveda = almacenamiento.cargarBoveda(CONTRASENA);
+                        break;
+                    case "buscar":
+                        boveda.buscarSecretosInteligente(patronDeBusqueda(nombre, random), 10);
+                        break;
+                    case "obtener":
+                        boveda.obtenerSecreto(nombre);
+                        break;
+                    case "actualizar":
+                        boveda.actualizarSecreto(nombre, "rotado-" + random.nextLong());
+                        break;
+                    case "guardar":
+                        almacenamiento.guardarBoveda(boveda, CONTRASENA);
+                        break;
+                    case "cifrar-directorio":
+                        archivos.cifrarDirectorio(corpus);
+                        informe.registrar(tipo, System.nanoTime() - inicio);
+                        // Se restaura el corpus para la siguiente ronda (medido aparte)
+                        tipo = "descifrar-directorio";
+                        inicio = System.nanoTime();
+                        descifrarDirectorio(archivos, corpus);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Operación desconocida en la mezcla: " + tipo);
+                }
+                informe.registrar(tipo, System.nanoTime() - inicio);
+            }
+            long asignadosFin = InformeCarga.bytesAsignadosHiloActual();
+            informe.finalizar(asignadosInicio < 0 ? -1 : asignadosFin - asignadosInicio);
+        } finally {
+            System.setOut(salidaOriginal);
+        }
+        return informe;
+    }
+
+    /**
+     * La mitad de las búsquedas usan una subcadena y la otra mitad un error tipográfico.
+     */
+    private static String patronDeBusqueda(String nombre, Random random) {
+        String base = nombre.substring(nombre.indexOf('/') + 1);
+        if (base.length() < 4 || random.nextBoolean()) {
+            int inicio = random.nextInt(Math.max(1, base.length() - 3));
+            return base.substring(inicio, Math.min(base.length(), inicio + 4));
+        }
+        // Intercambia dos caracteres vecinos (error tipográfico típico)
+        char[] caracteres = base.toCharArray();
+        int i = random.nextInt(caracteres.length - 1);
+        char temporal = caracteres[i];
+        caracteres[i] = caracteres[i + 1];
+        caracteres[i + 1] = temporal;
+        return new String(caracteres);
+    }
+
+    private static void descifrarDirectorio(ModuloArchivos archivos, Path directorio) throws Exception {
+        List<Path> cifrados;
+        try (Stream<Path> recorrido = Files.walk(directorio)) {
+            cifrados = recorrido.filter(ruta -> ruta.toString().endsWith(".locked")).collect(Collectors.toList());
+        }
+        for (Path archivo : cifrados) {
+            archivos.descifrarArchivo(archivo);
+        }
+    }
+
+    private static Map<String, String> parsearOpciones(String[] args) {
+        Map<String, String> opciones = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Opción inválida: " + args[i]);
+            }
+            opciones.put(args[i].substring(2), args[++i]);
+        }
+        return opciones;
+    }
+
+    private static Map<String, Integer> parsearMezcla(String texto) {
+        Map<String, Integer> mezcla = new LinkedHashMap<>();
+        for (String par : texto.split(",")) {
+            String[] partes = par.split("=");
+            int peso = Integer.parseInt(partes[1].trim());
+            if (peso > 0) {
+                mezcla.put(partes[0].trim(), peso);
+            }
+        }
+        if (mezcla.isEmpty()) {
+            throw new IllegalArgumentException("La mezcla no tiene operaciones.");
+        }
+        return mezcla;
+    }
+}
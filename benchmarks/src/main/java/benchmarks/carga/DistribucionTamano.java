@@ -0,0 +1,67 @@
+package benchmarks.carga;
+
+import java.util.Random;
+
+/**
+ * Distribución de tamaños (longitudes de nombres, valores o archivos) para los generadores.
+ *
+ * Formatos aceptados:
+ *   fija:N             siempre N
+ *   uniforme:MIN-MAX   uniforme entre MIN y MAX (inclusive)
+ *   lognormal:MED:S    log-normal con mediana MED y desviación S (en escala logarítmica)
+ */
+public final class DistribucionTamano {
+
+    private final String descripcion;
+    private final char tipo;
+    private final long a;
+    private final long b;
+    private final double sigma;
+
+    private DistribucionTamano(String descripcion, char tipo, long a, long b, double sigma) {
+        this.descripcion = descripcion;
+        this.tipo = tipo;
+        this.a = a;
+        this.b = b;
+        this.sigma = sigma;
+    }
+
+    public static DistribucionTamano parsear(String texto) {
+        String[] partes = texto.split(":");
+        switch (partes[0]) {
+            case "fija":
+                long n = Long.parseLong(partes[1]);
+                return new DistribucionTamano(texto, 'f', n, n, 0);
+            case "uniforme":
+                String[] rango = partes[1].split("-");
+                return new DistribucionTamano(texto, 'u', Long.parseLong(rango[0]), Long.parseLong(rango[1]), 0);
+            case "lognormal":
+                return new DistribucionTamano(texto, 'l', Long.parseLong(partes[1]), 0, Double.parseDouble(partes[2]));
+            default:
+                throw new IllegalArgumentException("Distribución desconocida: " + texto);
+        }
+    }
+
+    /**
+     * Obtiene un tamaño de la distribución (siempre al menos 1).
+     */
+    public long muestrear(Random random) {
+        long valor;
+        switch (tipo) {
+            case 'u':
+                valor = a + (long) (random.nextDouble() * (b - a + 1));
+                break;
+            case 'l':
+                valor = Math.round(a * Math.exp(sigma * random.nextGaussian()));
+                break;
+            default:
+                valor = a;
+        }
+        return Math.max(1, valor);
+    }
+
+    @Override
+    public String toString() {
+        return descripcion;
+    }
+}
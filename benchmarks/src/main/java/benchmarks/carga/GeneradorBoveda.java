@@ -0,0 +1,69 @@
+package benchmarks.carga;
+
+import benchmarks.DatosSinteticos;
+import modelos.AlmacenamientoBoveda;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Genera un boveda.dat sintético con la cantidad y los tamaños de nombres/valores indicados.
+ */
+public final class GeneradorBoveda {
+
+    private static final String[] PREFIJOS = {
+            "prod/", "dev/", "staging/", "personal/", "aws/", "gcp/", "db/", "api/"
+    };
+
+    private final int cantidad;
+    private final DistribucionTamano longitudNombres;
+    private final DistribucionTamano longitudValores;
+    private final long semilla;
+
+    public GeneradorBoveda(int cantidad, DistribucionTamano longitudNombres,
+                           DistribucionTamano longitudValores, long semilla) {
+        this.cantidad = cantidad;
+        this.longitudNombres = longitudNombres;
+        this.longitudValores = longitudValores;
+        this.semilla = semilla;
+    }
+
+    /**
+     * Escribe la bóveda cifrada en el archivo indicado.
+     *
+     * @return Nombres generados (para que el conductor elija objetivos reales)
+     */
+    public List<String> generar(Path archivo, String contrasena) throws Exception {
+        Random random = new Random(semilla);
+        Map<String, String> secretos = new HashMap<>(cantidad * 2);
+        List<String> nombres = new ArrayList<>(cantidad);
+
+        while (secretos.size() < cantidad) {
+            String prefijo = PREFIJOS[random.nextInt(PREFIJOS.length)];
+            int longitud = (int) Math.max(1, longitudNombres.muestrear(random) - prefijo.length());
+            String nombre = prefijo + nombreLegible(random, longitud);
+            String valor = DatosSinteticos.valorAleatorio(random, (int) longitudValores.muestrear(random));
+            if (secretos.putIfAbsent(nombre, valor) == null) {
+                nombres.add(nombre);
+            }
+        }
+
+        new AlmacenamientoBoveda(archivo.toString())
+                .guardarBoveda(DatosSinteticos.crearBoveda(secretos), contrasena);
+        return nombres;
+    }
+
+    // Letras minúsculas, dígitos y guiones: se parece a nombres de secretos reales
+    private static String nombreLegible(Random random, int longitud) {
+        final String alfabeto = "abcdefghijklmnopqrstuvwxyz0123456789-";
+        StringBuilder sb = new StringBuilder(longitud);
+        for (int i = 0; i < longitud; i++) {
+            sb.append(alfabeto.charAt(random.nextInt(alfabeto.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,86 @@
+package benchmarks.carga;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Genera un corpus de archivos para el cifrado de directorios:
+ * muchos archivos pequeños repartidos en subdirectorios y unos pocos archivos enormes.
+ */
+public final class GeneradorCorpus {
+
+    private static final int ARCHIVOS_POR_SUBDIRECTORIO = 1000;
+    private static final int TAMANO_BLOQUE = 1 << 20;
+
+    private final int archivosPequenos;
+    private final DistribucionTamano tamanoPequenos;
+    private final int archivosGrandes;
+    private final long tamanoGrande;
+    private final long semilla;
+
+    public GeneradorCorpus(int archivosPequenos, DistribucionTamano tamanoPequenos,
+                           int archivosGrandes, long tamanoGrande, long semilla) {
+        this.archivosPequenos = archivosPequenos;
+        this.tamanoPequenos = tamanoPequenos;
+        this.archivosGrandes = archivosGrandes;
+        this.tamanoGrande = tamanoGrande;
+        this.semilla = semilla;
+    }
+
+    /**
+     * Crea el corpus dentro del directorio indicado.
+     *
+     * @return Total de bytes escritos
+     */
+    public long generar(Path directorio) throws IOException {
+        Random random = new Random(semilla);
+        byte[] bloque = new byte[TAMANO_BLOQUE];
+        long total = 0;
+
+        for (int i = 0; i < archivosPequenos; i++) {
+            Path sub = directorio.resolve("pequenos-" + (i / ARCHIVOS_POR_SUBDIRECTORIO));
+            Files.createDirectories(sub);
+            total += escribir(sub.resolve("archivo-" + i + ".txt"), tamanoPequenos.muestrear(random), random, bloque, true);
+        }
+
+        Path grandes = directorio.resolve("grandes");
+        Files.createDirectories(grandes);
+        for (int i = 0; i < archivosGrandes; i++) {
+            total += escribir(grandes.resolve("grande-" + i + ".bin"), tamanoGrande, random, bloque, false);
+        }
+        return total;
+    }
+
+    // Los archivos pequeños imitan texto/logs; los grandes son binarios sin estructura
+    private static long escribir(Path archivo, long tamano, Random random, byte[] bloque, boolean texto)
+            throws IOException {
+        try (OutputStream salida = Files.newOutputStream(archivo)) {
+            long restante = tamano;
+            while (restante > 0) {
+                int n = (int) Math.min(restante, bloque.length);
+                if (texto) {
+                    llenarConTexto(bloque, n, random);
+                } else {
+                    random.nextBytes(bloque);
+                }
+                salida.write(bloque, 0, n);
+                restante -= n;
+            }
+        }
+        return tamano;
+    }
+
+    private static void llenarConTexto(byte[] bloque, int n, Random random) {
+        final String[] palabras = {"INFO", "WARN", "usuario", "sesion", "archivo", "guardado", "error", "ok", "\n"};
+        int i = 0;
+        while (i < n) {
+            byte[] palabra = (palabras[random.nextInt(palabras.length)] + " ").getBytes();
+            for (int j = 0; j < palabra.length && i < n; j++) {
+                bloque[i++] = palabra[j];
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package benchmarks.carga;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Acumula latencias por operación y produce el informe final:
+ * p50/p99 por operación, throughput, tasa de asignación y RSS pico.
+ */
+public final class InformeCarga {
+
+    /**
+     * Latencias (en nanosegundos) de un tipo de operación, en un arreglo que crece.
+     */
+    private static final class Muestras {
+        private long[] valores = new long[1024];
+        private int cantidad;
+        private long totalNanos;
+
+        void agregar(long nanos) {
+            if (cantidad == valores.length) {
+                valores = Arrays.copyOf(valores, cantidad * 2);
+            }
+            valores[cantidad++] = nanos;
+            totalNanos += nanos;
+        }
+
+        long percentil(long[] ordenados, double p) {
+            if (ordenados.length == 0) {
+                return 0;
+            }
+            int indice = (int) Math.ceil(p / 100.0 * ordenados.length) - 1;
+            return ordenados[Math.max(0, Math.min(indice, ordenados.length - 1))];
+        }
+    }
+
+    private final Map<String, Muestras> porOperacion = new LinkedHashMap<>();
+    private long inicioNanos;
+    private long finNanos;
+    private long bytesAsignados;
+
+    public void iniciar() {
+        inicioNanos = System.nanoTime();
+    }
+
+    public void finalizar(long bytesAsignados) {
+        this.finNanos = System.nanoTime();
+        this.bytesAsignados = bytesAsignados;
+    }
+
+    public void registrar(String operacion, long nanos) {
+        porOperacion.computeIfAbsent(operacion, k -> new Muestras()).agregar(nanos);
+    }
+
+    /**
+     * RSS pico del proceso (VmHWM en Linux), o -1 si el sistema no lo expone.
+     */
+    public static long rssPicoBytes() {
+        Path estado = Path.of("/proc/self/status");
+        if (!Files.isReadable(estado)) {
+            return -1;
+        }
+        try {
+            List<String> lineas = Files.readAllLines(estado);
+            for (String linea : lineas) {
+                if (linea.startsWith("VmHWM:")) {
+                    String kb = linea.substring(6).trim().split("\\s+")[0];
+                    return Long.parseLong(kb) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Sin información de RSS
+        }
+        return -1;
+    }
+
+    /**
+     * Bytes asignados en el heap por el hilo actual (HotSpot), o -1 si no está disponible.
+     */
+    public static long bytesAsignadosHiloActual() {
+        java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        if (mx instanceof com.sun.management.ThreadMXBean hotspot && hotspot.isThreadAllocatedMemorySupported()) {
+            return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    public String comoTexto() {
+        double segundos = (finNanos - inicioNanos) / 1e9;
+        long totalOperaciones = porOperacion.values().stream().mapToLong(m -> m.cantidad).sum();
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-22s %9s %12s %12s %12s %12s%n", "Operación", "Cantidad", "p50 (ms)", "p99 (ms)", "máx (ms)", "ops/s"));
+        for (Map.Entry<String, Muestras> entrada : porOperacion.entrySet()) {
+            Muestras m = entrada.getValue();
+            long[] ordenados = Arrays.copyOf(m.valores, m.cantidad);
+            Arrays.sort(ordenados);
+            sb.append(String.format("%-22s %9d %12.3f %12.3f %12.3f %12.1f%n",
+                    entrada.getKey(), m.cantidad,
+                    m.percentil(ordenados, 50) / 1e6,
+                    m.percentil(ordenados, 99) / 1e6,
+                    ordenados.length == 0 ? 0 : ordenados[ordenados.length - 1] / 1e6,
+                    m.totalNanos == 0 ? 0 : m.cantidad / (m.totalNanos / 1e9)));
+        }
+        sb.append(String.format("%nDuración total:      %.2f s%n", segundos));
+        sb.append(String.format("Throughput global:   %.1f ops/s%n", totalOperaciones / segundos));
+        sb.append(bytesAsignados < 0
+                ? "Tasa de asignación:  n/d\n"
+                : String.format("Tasa de asignación:  %.1f MB/s (%.1f MB en total)%n",
+                        bytesAsignados / 1e6 / segundos, bytesAsignados / 1e6));
+        long rss = rssPicoBytes();
+        sb.append(rss < 0 ? "RSS pico:            n/d\n" : String.format("RSS pico:            %.1f MB%n", rss / 1e6));
+        return sb.toString();
+    }
+
+    public String comoJson() {
+        double segundos = (finNanos - inicioNanos) / 1e9;
+        StringBuilder sb = new StringBuilder("{\n  \"duracionSegundos\": ").append(segundos)
+                .append(",\n  \"bytesAsignados\": ").append(bytesAsignados)
+                .append(",\n  \"rssPicoBytes\": ").append(rssPicoBytes())
+                .append(",\n  \"operaciones\": {");
+        boolean primera = true;
+        for (Map.Entry<String, Muestras> entrada : porOperacion.entrySet()) {
+            Muestras m = entrada.getValue();
+            long[] ordenados = Arrays.copyOf(m.valores, m.cantidad);
+            Arrays.sort(ordenados);
+            sb.append(primera ? "\n" : ",\n");
+            sb.append("    \"").append(entrada.getKey()).append("\": {")
+                    .append("\"cantidad\": ").append(m.cantidad)
+                    .append(", \"p50Nanos\": ").append(m.percentil(ordenados, 50))
+                    .append(", \"p99Nanos\": ").append(m.percentil(ordenados, 99))
+                    .append(", \"totalNanos\": ").append(m.totalNanos)
+                    .append('}');
+            primera = false;
+        }
+        return sb.append("\n  }\n}\n").toString();
+    }
+}
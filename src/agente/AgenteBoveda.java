@@ -0,0 +1,314 @@
+package agente;
+
+import modelos.Boveda;
+import modelos.SesionBusqueda;
+import modelos.UtilidadesHilos;
+import jdk.net.ExtendedSocketOptions;
+import jdk.net.UnixDomainPrincipal;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static modelos.RegistroBitacora.*;
+
+/**
+ * Agente de la bóveda (similar a ssh-agent).
+ *
+ * Se desbloquea una sola vez, mantiene la Boveda en memoria y atiende consultas por un
+ * socket de dominio Unix. Cada cliente se atiende en su propio hilo (virtual si la JVM lo permite).
+ *
+ * Protocolo (cada argumento y cada campo de la respuesta con su longitud delante, ver Trama):
+ *   OBTENER nombre     → OK 1 / valor
+ *   BUSCAR patron      → OK n / n nombres ordenados por relevancia
+ *   LISTAR [prefijo]   → OK n / n nombres en orden alfabético (solo los del prefijo, si se indica)
+ *   BLOQUEAR           → OK 0 (descarta la bóveda de la memoria)
+ *   DESBLOQUEAR clave  → OK 0 o ERROR
+ *   PING               → OK 0
+ * Las respuestas de error llevan un solo campo: ERROR 1 / mensaje
+ * Los valores no pasan por String: se codifican desde el char[] de la bóveda a un búfer que se
+ * borra apenas se envía.
+ */
+public class AgenteBoveda {
+
+    /**
+     * Variable de entorno para cambiar la ubicación del socket.
+     */
+    public static final String VARIABLE_SOCKET = "SUITE_AGENTE_SOCK";
+
+    private static final int MAX_RESULTADOS_BUSQUEDA = 10;
+    private static final long SEGUNDOS_REVISION_INACTIVIDAD = 5;
+
+    /**
+     * Recarga la bóveda desde disco a partir de la contraseña (para DESBLOQUEAR).
+     */
+    public interface Desbloqueador {
+        Boveda desbloquear(String contrasena) throws Exception;
+    }
+
+    private final Path rutaSocket;
+    private final long milisInactividad;
+    private final Desbloqueador desbloqueador;
+    private final String usuarioPropietario = System.getProperty("user.name");
+
+    // null cuando el agente está bloqueado; las peticiones toman una instantánea de la referencia
+    private volatile Boveda boveda;
+    // Lectura: peticiones que usan la bóveda; escritura: bloquear() mientras la destruye
+    private final ReentrantReadWriteLock enUso = new ReentrantReadWriteLock();
+    private volatile long ultimaActividad = System.currentTimeMillis();
+
+    /**
+     * @param boveda           Bóveda ya desbloqueada
+     * @param rutaSocket       Ruta del socket de dominio Unix
+     * @param minutosInactividad Minutos sin peticiones antes de bloquear automáticamente
+     * @param desbloqueador    Cómo recargar la bóveda tras un bloqueo
+     */
+    public AgenteBoveda(Boveda boveda, Path rutaSocket, long minutosInactividad, Desbloqueador desbloqueador) {
+        this.boveda = boveda;
+        this.rutaSocket = rutaSocket;
+        this.milisInactividad = TimeUnit.MINUTES.toMillis(minutosInactividad);
+        this.desbloqueador = desbloqueador;
+    }
+
+    /**
+     * Ruta del socket: $SUITE_AGENTE_SOCK o ~/.suite-seguridad/agente.sock
+     */
+    public static Path rutaSocketPorDefecto() {
+        String variable = System.getenv(VARIABLE_SOCKET);
+        if (variable != null && !variable.isBlank()) {
+            return Paths.get(variable);
+        }
+        return Paths.get(System.getProperty("user.home"), ".suite-seguridad", "agente.sock");
+    }
+
+    /**
+     * Atiende clientes hasta que el proceso termine. Bloquea el hilo que lo llama.
+     */
+    public void servir() throws IOException {
+        prepararDirectorio();
+        Files.deleteIfExists(rutaSocket); // Socket huérfano de una ejecución anterior
+
+        ExecutorService clientes = UtilidadesHilos.crearEjecutorPorTarea("agente-cliente");
+        ScheduledExecutorService vigilante =
+                Executors.newSingleThreadScheduledExecutor(UtilidadesHilos.fabricaDaemon("agente-inactividad"));
+
+        try (ServerSocketChannel servidor = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            servidor.bind(UnixDomainSocketAddress.of(rutaSocket));
+            restringirPermisos(rutaSocket, "rw-------");
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    Files.deleteIfExists(rutaSocket);
+                } catch (IOException e) {
+                    // Nada que hacer al salir
+                }
+            }));
+
+            vigilante.scheduleWithFixedDelay(this::revisarInactividad,
+                    SEGUNDOS_REVISION_INACTIVIDAD, SEGUNDOS_REVISION_INACTIVIDAD, TimeUnit.SECONDS);
+
+            info("Agente de bóveda iniciado en " + rutaSocket);
+            System.out.println("✔ Agente escuchando en: " + rutaSocket);
+            System.out.println("  export " + VARIABLE_SOCKET + "=" + rutaSocket);
+
+            while (servidor.isOpen()) {
+                SocketChannel canal = servidor.accept();
+                clientes.submit(() -> atenderCliente(canal));
+            }
+        } finally {
+            vigilante.shutdownNow();
+            clientes.shutdownNow();
+        }
+    }
+
+    private void atenderCliente(SocketChannel canal) {
+        try (canal) {
+            if (!esMismoUsuario(canal)) {
+                return;
+            }
+
+            InputStream entrada = new BufferedInputStream(Channels.newInputStream(canal));
+            Conexion conexion = new Conexion();
+            String cabecera;
+            while ((cabecera = Trama.leerCabecera(entrada)) != null) {
+                ultimaActividad = System.currentTimeMillis();
+                int espacio = cabecera.indexOf(' ');
+                String comando = (espacio < 0 ? cabecera : cabecera.substring(0, espacio)).toUpperCase();
+                int longitud = espacio < 0 ? 0 : Trama.leerNumero(cabecera.substring(espacio + 1), Trama.MAX_ARGUMENTO);
+                String argumento = new String(Trama.leerBytes(entrada, longitud), StandardCharsets.UTF_8);
+
+                ByteBuffer[] respuesta;
+                try {
+                    respuesta = procesar(comando, argumento, conexion);
+                } catch (RuntimeException e) {
+                    // Un fallo inesperado no debe cortar la conexión sin respuesta
+                    error("Agente: error al atender la petición: " + e);
+                    respuesta = Trama.error("No se pudo atender la petición.");
+                }
+                Trama.escribir(canal, respuesta);
+            }
+        } catch (IOException e) {
+            // El cliente cerró la conexión o envió una trama no válida (ya no se puede seguir leyéndolo)
+        }
+    }
+
+    /**
+     * Verifica con SO_PEERCRED que el proceso cliente pertenezca al mismo usuario que el agente.
+     */
+    private boolean esMismoUsuario(SocketChannel canal) throws IOException {
+        UnixDomainPrincipal credenciales;
+        try {
+            credenciales = canal.getOption(ExtendedSocketOptions.SO_PEERCRED);
+        } catch (UnsupportedOperationException e) {
+            // Sin SO_PEERCRED (p. ej. Windows): dependemos de los permisos del socket
+            return true;
+        }
+        String usuario = credenciales.user().getName();
+        if (!usuario.equals(usuarioPropietario)) {
+            warn("Agente: conexión rechazada del usuario '" + usuario + "'.");
+            return false;
+        }
+        return true;
+    }
+
+    // Estado de una conexión: la sesión de búsqueda se conserva entre consultas, así un cliente que
+    // autocompleta (un BUSCAR por tecla) solo filtra los candidatos de la consulta anterior
+    private static final class Conexion {
+        Boveda boveda;
+        SesionBusqueda busqueda;
+
+        SesionBusqueda busqueda(Boveda actual) {
+            if (boveda != actual) {
+                boveda = actual;
+                busqueda = actual.iniciarBusqueda();
+            }
+            return busqueda;
+        }
+    }
+
+    private ByteBuffer[] procesar(String comando, String argumento, Conexion conexion) {
+        if (comando.equals("PING")) {
+            return Trama.ok(List.of());
+        }
+        if (comando.equals("DESBLOQUEAR")) {
+            return desbloquear(argumento);
+        }
+        if (comando.equals("BLOQUEAR")) {
+            bloquear("solicitud del cliente");
+            return Trama.ok(List.of());
+        }
+
+        // Con el candado de lectura, bloquear() espera a que termine la petición antes de borrar la bóveda
+        enUso.readLock().lock();
+        try {
+            Boveda actual = boveda;
+            if (actual == null) {
+                return Trama.error("La bóveda está bloqueada.");
+            }
+
+            switch (comando) {
+                case "OBTENER":
+                    return respuestaValor(actual, argumento);
+                case "BUSCAR":
+                    return Trama.ok(conexion.busqueda(actual).buscar(argumento, MAX_RESULTADOS_BUSQUEDA));
+                case "LISTAR":
+                    return Trama.ok(List.copyOf(actual.listarPrefijo(argumento)));
+                default:
+                    return Trama.error("Comando desconocido: " + comando);
+            }
+        } finally {
+            enUso.readLock().unlock();
+        }
+    }
+
+    private static ByteBuffer[] respuestaValor(Boveda actual, String nombre) {
+        char[] valor = actual.existeSecreto(nombre) ? actual.obtenerValor(nombre) : null;
+        if (valor == null) {
+            warn("Agente: secreto '" + nombre + "' no encontrado.");
+            return Trama.error("Secreto no encontrado.");
+        }
+        try {
+            return Trama.valor(valor);
+        } finally {
+            Arrays.fill(valor, '\0');
+        }
+    }
+
+    private synchronized ByteBuffer[] desbloquear(String contrasena) {
+        if (boveda != null) {
+            return Trama.ok(List.of());
+        }
+        try {
+            boveda = desbloqueador.desbloquear(contrasena);
+            info("Agente desbloqueado.");
+            return Trama.ok(List.of());
+        } catch (Exception e) {
+            warn("Agente: intento de desbloqueo fallido.");
+            return Trama.error(String.valueOf(e.getMessage()));
+        }
+    }
+
+    private synchronized void bloquear(String motivo) {
+        if (boveda != null) {
+            Boveda anterior = boveda;
+            // Espera a las peticiones en curso: destruir() vacía estructuras que ellas recorren
+            enUso.writeLock().lock();
+            try {
+                boveda = null;
+                // Los valores se sobrescriben con ceros en vez de esperar al GC
+                anterior.destruir();
+            } finally {
+                enUso.writeLock().unlock();
+            }
+            info("Agente bloqueado (" + motivo + ").");
+        }
+    }
+
+    private void revisarInactividad() {
+        if (boveda != null && System.currentTimeMillis() - ultimaActividad > milisInactividad) {
+            bloquear("inactividad");
+        }
+        // Mientras siga desbloqueado, los secretos que vencen quedan en la bitácora al momento
+        enUso.readLock().lock();
+        try {
+            Boveda actual = boveda;
+            if (actual != null) {
+                actual.revisarVencimientos();
+            }
+        } finally {
+            enUso.readLock().unlock();
+        }
+    }
+
+    private void prepararDirectorio() throws IOException {
+        Path directorio = rutaSocket.toAbsolutePath().getParent();
+        if (directorio != null && !Files.isDirectory(directorio)) {
+            Files.createDirectories(directorio);
+            restringirPermisos(directorio, "rwx------");
+        }
+    }
+
+    private static void restringirPermisos(Path ruta, String permisos) throws IOException {
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.setPosixFilePermissions(ruta, PosixFilePermissions.fromString(permisos));
+        }
+    }
+}
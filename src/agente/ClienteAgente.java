@@ -0,0 +1,146 @@
+package agente;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Console;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cliente mínimo del agente de la bóveda.
+ * Mantiene la conexión abierta, así que varias consultas seguidas no pagan la conexión de nuevo.
+ *
+ * Uso desde la terminal:
+ *   java -cp out agente.ClienteAgente obtener NOMBRE
+ *   java -cp out agente.ClienteAgente buscar PATRON
+ *   java -cp out agente.ClienteAgente listar [PREFIJO]
+ *   java -cp out agente.ClienteAgente bloquear | desbloquear
+ */
+public class ClienteAgente implements AutoCloseable {
+
+    private final SocketChannel canal;
+    private final InputStream entrada;
+    private final OutputStream salida;
+
+    public ClienteAgente(Path rutaSocket) throws IOException {
+        this.canal = SocketChannel.open(StandardProtocolFamily.UNIX);
+        canal.connect(UnixDomainSocketAddress.of(rutaSocket));
+        this.entrada = new BufferedInputStream(Channels.newInputStream(canal));
+        this.salida = new BufferedOutputStream(Channels.newOutputStream(canal));
+    }
+
+    /**
+     * Obtiene el valor de un secreto por su nombre exacto.
+     */
+    public String obtener(String nombre) throws IOException {
+        List<String> respuesta = enviar("OBTENER", nombre);
+        if (respuesta.size() != 1) {
+            throw new IOException("Respuesta del agente no válida.");
+        }
+        return respuesta.get(0);
+    }
+
+    /**
+     * Búsqueda inteligente (tolerante a errores tipográficos).
+     */
+    public List<String> buscar(String patron) throws IOException {
+        return enviar("BUSCAR", patron);
+    }
+
+    public List<String> listar() throws IOException {
+        return enviar("LISTAR", "");
+    }
+
+    /**
+     * Nombres que empiezan con el prefijo, en orden alfabético.
+     */
+    public List<String> listar(String prefijo) throws IOException {
+        return enviar("LISTAR", prefijo);
+    }
+
+    public void bloquear() throws IOException {
+        enviar("BLOQUEAR", "");
+    }
+
+    public void desbloquear(String contrasena) throws IOException {
+        enviar("DESBLOQUEAR", contrasena);
+    }
+
+    // Envía una petición y devuelve los campos de la respuesta (ver Trama)
+    private synchronized List<String> enviar(String comando, String argumento) throws IOException {
+        Trama.escribirPeticion(salida, comando, argumento);
+
+        String cabecera = Trama.leerCabecera(entrada);
+        if (cabecera == null) {
+            throw new IOException("El agente cerró la conexión.");
+        }
+        boolean esError = cabecera.startsWith("ERROR ");
+        if (!esError && !cabecera.startsWith("OK ")) {
+            throw new IOException("Respuesta del agente no válida: '" + cabecera + "'.");
+        }
+        int campos = Trama.leerNumero(cabecera.substring(cabecera.indexOf(' ') + 1), Integer.MAX_VALUE);
+        List<String> respuesta = new ArrayList<>(Math.min(campos, 1024));
+        for (int i = 0; i < campos; i++) {
+            respuesta.add(Trama.leerCampo(entrada));
+        }
+        if (esError) {
+            throw new IOException(respuesta.isEmpty() ? "El agente respondió con un error." : respuesta.get(0));
+        }
+        return respuesta;
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Uso: ClienteAgente obtener NOMBRE | buscar PATRON | listar [PREFIJO] | bloquear | desbloquear");
+            System.exit(2);
+        }
+
+        String argumento = args.length > 1 ? String.join(" ", List.of(args).subList(1, args.length)) : "";
+        try (ClienteAgente cliente = new ClienteAgente(AgenteBoveda.rutaSocketPorDefecto())) {
+            switch (args[0]) {
+                case "obtener":
+                    System.out.println(cliente.obtener(argumento));
+                    break;
+                case "buscar":
+                    cliente.buscar(argumento).forEach(System.out::println);
+                    break;
+                case "listar":
+                    List<String> nombres = cliente.listar(argumento);
+                    // Una sola escritura en vez de un println por nombre
+                    System.out.print(nombres.isEmpty() ? "" : String.join("\n", nombres) + "\n");
+                    break;
+                case "bloquear":
+                    cliente.bloquear();
+                    break;
+                case "desbloquear":
+                    Console console = System.console();
+                    if (console == null) {
+                        throw new IOException("Se necesita una terminal para leer la contraseña.");
+                    }
+                    char[] contrasena = console.readPassword("Contraseña maestra: ");
+                    cliente.desbloquear(new String(contrasena));
+                    java.util.Arrays.fill(contrasena, '\0');
+                    break;
+                default:
+                    System.err.println("Comando desconocido: " + args[0]);
+                    System.exit(2);
+            }
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
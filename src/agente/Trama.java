@@ -0,0 +1,159 @@
+package agente;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Formato de los mensajes entre el agente y sus clientes. Cada texto va precedido de su longitud
+ * en bytes, así un nombre o un valor con saltos de línea no desarma la conversación:
+ *   petición:  "COMANDO n\n" + n bytes UTF-8 del argumento
+ *   respuesta: "OK k\n" o "ERROR 1\n", seguida de k campos "n\n" + n bytes UTF-8
+ * Las cabeceras son líneas ASCII cortas y las longitudes se validan antes de reservar memoria.
+ */
+final class Trama {
+
+    private static final int MAX_CABECERA = 64;
+    static final int MAX_ARGUMENTO = 64 * 1024;
+    private static final int MAX_CAMPO = 16 * 1024 * 1024;
+
+    private Trama() {
+    }
+
+    // --- Lectura ---
+
+    /**
+     * Lee una cabecera hasta el salto de línea.
+     *
+     * @return La cabecera, o null si la conexión se cerró antes de empezar un mensaje
+     */
+    static String leerCabecera(InputStream entrada) throws IOException {
+        StringBuilder cabecera = new StringBuilder();
+        int caracter;
+        while ((caracter = entrada.read()) != '\n') {
+            if (caracter < 0) {
+                if (cabecera.length() == 0) {
+                    return null;
+                }
+                throw new IOException("La conexión se cerró a mitad de un mensaje.");
+            }
+            if (cabecera.length() >= MAX_CABECERA || caracter < 0x20 || caracter > 0x7e) {
+                throw new IOException("Cabecera no válida.");
+            }
+            cabecera.append((char) caracter);
+        }
+        return cabecera.toString();
+    }
+
+    /**
+     * Número de una cabecera (cantidad de campos o longitud), entre 0 y el máximo indicado.
+     */
+    static int leerNumero(String texto, int maximo) throws IOException {
+        try {
+            int numero = Integer.parseInt(texto.trim());
+            if (numero >= 0 && numero <= maximo) {
+                return numero;
+            }
+        } catch (NumberFormatException e) {
+            // Se informa abajo
+        }
+        throw new IOException("Longitud no válida: '" + texto + "'.");
+    }
+
+    static byte[] leerBytes(InputStream entrada, int longitud) throws IOException {
+        byte[] datos = entrada.readNBytes(longitud);
+        if (datos.length != longitud) {
+            throw new IOException("La conexión se cerró a mitad de un mensaje.");
+        }
+        return datos;
+    }
+
+    /**
+     * Lee un campo "n\n" + n bytes.
+     */
+    static String leerCampo(InputStream entrada) throws IOException {
+        String cabecera = leerCabecera(entrada);
+        if (cabecera == null) {
+            throw new IOException("La conexión se cerró a mitad de un mensaje.");
+        }
+        return new String(leerBytes(entrada, leerNumero(cabecera, MAX_CAMPO)), StandardCharsets.UTF_8);
+    }
+
+    // --- Escritura ---
+
+    static void escribirPeticion(OutputStream salida, String comando, String argumento) throws IOException {
+        byte[] datos = argumento.getBytes(StandardCharsets.UTF_8);
+        salida.write((comando + " " + datos.length + "\n").getBytes(StandardCharsets.US_ASCII));
+        salida.write(datos);
+        salida.flush();
+    }
+
+    /**
+     * Respuesta "OK" con los campos indicados, en un solo búfer.
+     */
+    static ByteBuffer[] ok(List<String> campos) {
+        ByteArrayOutputStream respuesta = new ByteArrayOutputStream();
+        respuesta.writeBytes(("OK " + campos.size() + "\n").getBytes(StandardCharsets.US_ASCII));
+        for (String campo : campos) {
+            agregarCampo(respuesta, campo.getBytes(StandardCharsets.UTF_8));
+        }
+        return new ByteBuffer[]{ByteBuffer.wrap(respuesta.toByteArray())};
+    }
+
+    static ByteBuffer[] error(String mensaje) {
+        ByteArrayOutputStream respuesta = new ByteArrayOutputStream();
+        respuesta.writeBytes("ERROR 1\n".getBytes(StandardCharsets.US_ASCII));
+        agregarCampo(respuesta, mensaje.getBytes(StandardCharsets.UTF_8));
+        return new ByteBuffer[]{ByteBuffer.wrap(respuesta.toByteArray())};
+    }
+
+    /**
+     * Respuesta "OK" con un valor secreto. El valor se codifica directamente en su propio búfer
+     * (sin String ni copias intermedias), que escribir() borra después de enviarlo.
+     */
+    static ByteBuffer[] valor(char[] valor) {
+        CharsetEncoder codificador = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        // Con la capacidad máxima el codificador nunca tiene que agrandar (y copiar) el búfer
+        ByteBuffer bytes = ByteBuffer.allocate((int) Math.ceil(valor.length * (double) codificador.maxBytesPerChar()));
+        codificador.encode(CharBuffer.wrap(valor), bytes, true);
+        codificador.flush(bytes);
+        bytes.flip();
+        ByteBuffer cabecera = ByteBuffer.wrap(("OK 1\n" + bytes.remaining() + "\n").getBytes(StandardCharsets.US_ASCII));
+        return new ByteBuffer[]{cabecera, bytes};
+    }
+
+    /**
+     * Envía una respuesta y después llena sus búferes con ceros.
+     */
+    static void escribir(GatheringByteChannel canal, ByteBuffer[] partes) throws IOException {
+        try {
+            int primera = 0;
+            while (primera < partes.length) {
+                canal.write(partes, primera, partes.length - primera);
+                while (primera < partes.length && !partes[primera].hasRemaining()) {
+                    primera++;
+                }
+            }
+        } finally {
+            for (ByteBuffer parte : partes) {
+                Arrays.fill(parte.array(), (byte) 0);
+            }
+        }
+    }
+
+    private static void agregarCampo(ByteArrayOutputStream respuesta, byte[] datos) {
+        respuesta.writeBytes((datos.length + "\n").getBytes(StandardCharsets.US_ASCII));
+        respuesta.writeBytes(datos);
+    }
+}
@@ -2,27 +2,60 @@ package main;
 
 import modelos.Boveda;
 import modelos.AlmacenamientoBoveda;
+import modelos.AlmacenRespaldos;
+import modelos.AnalizadorSalud;
+import modelos.CorpusFiltraciones;
+import modelos.FusionadorBovedas;
+import modelos.GestorTareas;
 import modelos.RegistroBitacora;
 import modelos.UtilidadesCifrado;
+import modelos.VerificadorIntegridad;
 import modulos.ModuloBase;
 import modulos.ModuloArchivos;
 import modulos.ModuloBoveda;
+import modulos.ModuloTareas;
+import modulos.VigilanteCarpeta;
+import agente.AgenteBoveda;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.Console;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
 
 public class Main {
 
     // Console para TODA la entrada del usuario (evita problemas de buffer)
     private static final Console console = System.console();
-    // Almacenamiento de la bóveda para guardar/cargar la bóveda
-    private static final AlmacenamientoBoveda almacenamiento = new AlmacenamientoBoveda();
+    // Almacenamiento de la bóveda para guardar/cargar la bóveda (--boveda RUTA cambia el archivo)
+    private static AlmacenamientoBoveda almacenamiento = new AlmacenamientoBoveda();
     // Bóveda actual en memoria
     private static Boveda boveda;
     // Contraseña maestra actual
     private static String contrasenaActual;
+    // Minutos sin peticiones antes de que el agente se bloquee solo
+    private static final long MINUTOS_INACTIVIDAD_AGENTE = 15;
 
 
     // --- Metodo Principal ---
     public static void main(String[] args) {
+        args = aplicarOpcionBoveda(args);
+
+        // Comandos sin menú: no necesitan una terminal interactiva
+        if (args.length > 0 && !args[0].equals("agente")) {
+            ejecutarComando(args);
+            return;
+        }
+
         // Verificamos que Console esté disponible (solo funciona en terminal real)
         if (console == null) {
             RegistroBitacora.error("Programa ejecutado sin consola real.");
@@ -34,17 +67,29 @@ public class Main {
         System.out.println("--- SUITE DE SEGURIDAD (JAVA POO) ---");
 
         try {
+            // Modo agente: se desbloquea una vez y atiende consultas por socket
+            if (args.length > 0 && args[0].equals("agente")) {
+                iniciarAgente(args);
+                return;
+            }
+
             // Login (Existe bóveda o no)
             if (almacenamiento.existeBoveda()) {
+                // Lectura del disco e inicialización del cifrado mientras se escribe la contraseña
+                almacenamiento.precargar();
+                UtilidadesCifrado.precalentar();
                 iniciarSesion();
             } else {
                 crearNuevaBoveda();
             }
 
+            // Un solo gestor para las operaciones largas de todos los módulos
+            GestorTareas tareas = new GestorTareas();
             // POLIMORFISMO: Usamos la clase Padre (ModuloBase) para referirnos a los hijos
             // Nota: moduloBoveda es tipo concreto para acceder a getContrasena()
-            ModuloBoveda moduloBoveda = new ModuloBoveda(boveda, almacenamiento, contrasenaActual, console);
-            ModuloBase moduloArchivos = new ModuloArchivos(contrasenaActual, console);
+            ModuloBoveda moduloBoveda = new ModuloBoveda(boveda, almacenamiento, contrasenaActual, console, tareas);
+            ModuloBase moduloArchivos = new ModuloArchivos(contrasenaActual, console, tareas);
+            ModuloBase moduloTareas = new ModuloTareas(console, tareas);
 
             // Menú Principal
             boolean enEjecucion = true;
@@ -53,7 +98,8 @@ public class Main {
                 System.out.println("\n--- Menú Principal ---");
                 System.out.println("1. " + moduloBoveda.obtenerNombre());
                 System.out.println("2. " + moduloArchivos.obtenerNombre());
-                System.out.println("3. Salir");
+                System.out.println("3. " + moduloTareas.obtenerNombre());
+                System.out.println("4. Salir");
 
                 String opcion = console.readLine("> ").trim();
 
@@ -64,7 +110,7 @@ public class Main {
                         if (!contrasenaActual.equals(moduloBoveda.getContrasena())) {
                             contrasenaActual = moduloBoveda.getContrasena();
                             // Recrear ModuloArchivos con la nueva contraseña
-                            moduloArchivos = new ModuloArchivos(contrasenaActual, console);
+                            moduloArchivos = new ModuloArchivos(contrasenaActual, console, tareas);
                             System.out.println("(El Cifrador de Archivos ahora usa la nueva contraseña)");
                         }
                         break;
@@ -72,6 +118,17 @@ public class Main {
                         moduloArchivos.ejecutar();
                         break;
                     case "3":
+                        moduloTareas.ejecutar();
+                        break;
+                    case "4":
+                        // Cerrar antes dejaría archivos a medio cifrar o la bóveda sin guardar
+                        int pendientes = tareas.pendientes();
+                        if (pendientes > 0) {
+                            System.out.println("Esperando " + pendientes + " tarea(s) en segundo plano...");
+                        }
+                        tareas.cerrar();
+                        moduloBoveda.esperarGuardado();
+                        boveda.destruir();
                         RegistroBitacora.info("Aplicación cerrada por el usuario");
                         System.out.println("Cerrando programa... ¡Adiós!");
                         enEjecucion = false;
@@ -138,6 +195,665 @@ public class Main {
         System.out.println("¡Acceso concedido!");
     }
 
+    // --- Comandos sin menú ---
+
+    // Uso: java -cp out main.Main obtener NOMBRE | vigilar CARPETA [--pasadas-borrado N] | rango ARCHIVO DESDE [LONGITUD]
+    //      | verificar RUTA [--hilos N] | sincronizar ORIGEN DESTINO [--hilos N] [--contrasena-stdin]
+    //      | entrenar-cds | importar-filtraciones TEXTO SALIDA [--bits-filtro N] | revisar-filtraciones
+    //      | salud [--hilos N] | fusionar OTRA_BOVEDA [--conflictos reciente|preguntar] [--hilos N]
+    //      | respaldar REPOSITORIO [RUTA...] [--sin-boveda] | respaldos REPOSITORIO [--instantanea ID]
+    //      | restaurar REPOSITORIO DESTINO [--instantanea ID] [--archivo NOMBRE]
+    private static void ejecutarComando(String[] args) {
+        try {
+            switch (args[0]) {
+                case "obtener":
+                    obtenerSinInterfaz(args);
+                    break;
+                case "vigilar":
+                    vigilarSinInterfaz(args);
+                    break;
+                case "rango":
+                    rangoSinInterfaz(args);
+                    break;
+                case "verificar":
+                    verificarSinInterfaz(args);
+                    break;
+                case "sincronizar":
+                    sincronizarSinInterfaz(args);
+                    break;
+                case "entrenar-cds":
+                    entrenarCds();
+                    break;
+                case "importar-filtraciones":
+                    importarFiltracionesSinInterfaz(args);
+                    break;
+                case "revisar-filtraciones":
+                    revisarFiltracionesSinInterfaz(args);
+                    break;
+                case "salud":
+                    saludSinInterfaz(args);
+                    break;
+                case "fusionar":
+                    fusionarSinInterfaz(args);
+                    break;
+                case "respaldar":
+                    respaldarSinInterfaz(args);
+                    break;
+                case "respaldos":
+                    listarRespaldosSinInterfaz(args);
+                    break;
+                case "restaurar":
+                    restaurarSinInterfaz(args);
+                    break;
+                default:
+                    System.err.println("Comando desconocido: " + args[0]);
+                    System.err.println("Uso: main.Main [agente | obtener NOMBRE | vigilar CARPETA [--pasadas-borrado N] | rango ARCHIVO DESDE [LONGITUD]"
+                            + " | verificar RUTA | sincronizar ORIGEN DESTINO"
+                            + " | importar-filtraciones TEXTO SALIDA | revisar-filtraciones | salud"
+                            + " | fusionar OTRA_BOVEDA [--conflictos reciente|preguntar]"
+                            + " | respaldar REPOSITORIO [RUTA...] | respaldos REPOSITORIO"
+                            + " | restaurar REPOSITORIO DESTINO [--instantanea ID] [--archivo NOMBRE]] [--hilos N]"
+                            + " [--contrasena-stdin] [--boveda RUTA] [--corpus RUTA]");
+                    System.exit(2);
+            }
+        } catch (Exception e) {
+            RegistroBitacora.error("Error en comando '" + args[0] + "': " + e.getMessage());
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Imprime el valor de un secreto y termina (camino más corto al primer secreto).
+     * Con --contrasena-stdin la contraseña se lee de la primera línea de la entrada estándar.
+     */
+    private static void obtenerSinInterfaz(String[] args) throws Exception {
+        if (args.length < 2) {
+            throw new Exception("Falta el nombre del secreto.");
+        }
+        if (!almacenamiento.existeBoveda()) {
+            throw new Exception("No existe una bóveda.");
+        }
+
+        almacenamiento.precargar();
+        UtilidadesCifrado.precalentar();
+
+        String contrasena = leerContrasenaSinInterfaz(args);
+        Boveda bovedaCargada = almacenamiento.cargarBoveda(contrasena);
+        try {
+            if (!bovedaCargada.existeSecreto(args[1])) {
+                throw new Exception("Secreto no encontrado.");
+            }
+            char[] valor = bovedaCargada.obtenerValor(args[1]);
+            System.out.println(valor);
+            Arrays.fill(valor, '\0');
+        } finally {
+            bovedaCargada.destruir();
+        }
+    }
+
+    /**
+     * Valida la contraseña contra la bóveda. La bóveda cargada solo sirve para eso y se destruye
+     * enseguida: si no, sus secretos quedarían descifrados en memoria mientras dure el proceso.
+     */
+    private static void validarContrasenaSinInterfaz(String contrasena) throws Exception {
+        almacenamiento.cargarBoveda(contrasena).destruir();
+    }
+
+    /**
+     * Vigila una carpeta y cifra lo que llegue hasta que el proceso reciba Ctrl+C / SIGTERM.
+     * La contraseña se valida contra la bóveda antes de empezar, para no cifrar con una clave errónea.
+     */
+    private static void vigilarSinInterfaz(String[] args) throws Exception {
+        List<String> posicionales = argumentosPosicionales(args);
+        if (posicionales.size() < 2 || !Files.isDirectory(Path.of(posicionales.get(1)))) {
+            throw new Exception("Indique una carpeta existente a vigilar.");
+        }
+        int pasadasBorrado = leerPasadasBorrado(args);
+        if (!almacenamiento.existeBoveda()) {
+            throw new Exception("No existe una bóveda.");
+        }
+
+        String contrasena = leerContrasenaSinInterfaz(args);
+        validarContrasenaSinInterfaz(contrasena);
+
+        Path directorio = Path.of(posicionales.get(1)).toAbsolutePath().normalize();
+        ModuloArchivos archivos = new ModuloArchivos(contrasena, console);
+        archivos.setPasadasBorrado(pasadasBorrado);
+        VigilanteCarpeta vigilante = archivos.crearVigilante(directorio);
+        vigilante.iniciar();
+        System.out.println("✔ Vigilando " + directorio + " (Ctrl+C para detener)"
+                + (pasadasBorrado > 0 ? ", borrado seguro con " + pasadasBorrado + " pasada(s)" : ""));
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                vigilante.detener();
+                System.out.println("Resumen: " + vigilante.resumen());
+            } catch (Exception e) {
+                System.err.println("Error al detener: " + e.getMessage());
+            }
+        }));
+        Thread.currentThread().join();
+    }
+
+    /**
+     * Escribe en la salida estándar un rango de bytes de un archivo .locked, sin descifrarlo
+     * completo ni borrarlo. DESDE negativo cuenta desde el final; sin LONGITUD llega hasta el final.
+     * Ejemplo: "rango app.log.locked -4096" muestra los últimos 4 KiB.
+     */
+    private static void rangoSinInterfaz(String[] args) throws Exception {
+        List<String> posicionales = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                posicionales.add(arg);
+            }
+        }
+        if (posicionales.size() < 3 || !Files.isRegularFile(Path.of(posicionales.get(1)))) {
+            throw new Exception("Uso: rango ARCHIVO.locked DESDE [LONGITUD]");
+        }
+        Path archivo = Path.of(posicionales.get(1));
+        long desde = Long.parseLong(posicionales.get(2));
+        long longitud = posicionales.size() > 3 ? Long.parseLong(posicionales.get(3)) : Long.MAX_VALUE;
+
+        String contrasena = leerContrasenaSinInterfaz(args);
+        BufferedOutputStream salida = new BufferedOutputStream(System.out, 1 << 16);
+        new ModuloArchivos(contrasena, console).descifrarRango(archivo, desde, longitud, salida);
+        salida.flush();
+    }
+
+    /**
+     * Verifica un archivo cifrado o todos los de un directorio sin escribir texto en claro.
+     * Termina con código 1 si hay archivos dañados (útil para verificaciones programadas). La
+     * contraseña se valida contra la bóveda antes: con una errónea todo aparecería como dañado.
+     */
+    private static void verificarSinInterfaz(String[] args) throws Exception {
+        List<String> posicionales = argumentosPosicionales(args);
+        if (posicionales.size() < 2 || !Files.exists(Path.of(posicionales.get(1)))) {
+            throw new Exception("Uso: verificar ARCHIVO|DIRECTORIO [--hilos N]");
+        }
+        if (!almacenamiento.existeBoveda()) {
+            throw new Exception("No existe una bóveda.");
+        }
+        Path ruta = Path.of(posicionales.get(1)).toAbsolutePath().normalize();
+        int hilos = leerHilos(args);
+
+        String contrasena = leerContrasenaSinInterfaz(args);
+        validarContrasenaSinInterfaz(contrasena);
+        VerificadorIntegridad verificador = new ModuloArchivos(contrasena, console).crearVerificador();
+        List<VerificadorIntegridad.Resultado> resultados = Files.isDirectory(ruta)
+                ? verificador.verificarArbol(ruta, hilos)
+                : List.of(verificador.verificarArchivo(ruta));
+
+        long danados = 0;
+        for (VerificadorIntegridad.Resultado resultado : resultados) {
+            System.out.println(resultado);
+            if (!resultado.esIntegro()) {
+                danados++;
+            }
+        }
+        System.out.println(resultados.size() + " archivo(s) verificado(s), " + danados + " dañado(s).");
+        if (danados > 0) {
+            throw new Exception(danados + " archivo(s) dañado(s).");
+        }
+    }
+
+    /**
+     * Cifra hacia DESTINO solo los archivos nuevos o modificados de ORIGEN (pensado para
+     * ejecuciones nocturnas). La contraseña se valida contra la bóveda antes de empezar.
+     */
+    private static void sincronizarSinInterfaz(String[] args) throws Exception {
+        List<String> posicionales = argumentosPosicionales(args);
+        if (posicionales.size() < 3 || !Files.isDirectory(Path.of(posicionales.get(1)))) {
+            throw new Exception("Uso: sincronizar ORIGEN DESTINO [--hilos N]");
+        }
+        if (!almacenamiento.existeBoveda()) {
+            throw new Exception("No existe una bóveda.");
+        }
+        String contrasena = leerContrasenaSinInterfaz(args);
+        validarContrasenaSinInterfaz(contrasena);
+
+        Path origen = Path.of(posicionales.get(1)).toAbsolutePath().normalize();
+        Path destino = Path.of(posicionales.get(2)).toAbsolutePath().normalize();
+        System.out.println("Resumen: " + new ModuloArchivos(contrasena, console)
+                .sincronizarDirectorio(origen, destino, leerHilos(args)));
+    }
+
+    /**
+     * Convierte un volcado de hashes SHA-1 (formato "HASH:conteo" de Have I Been Pwned) al
+     * corpus binario que usan las comprobaciones sin conexión. "--bits-filtro N" construye
+     * además el filtro de Bloom (N bits por hash; 0 = sin filtro).
+     */
+    private static void importarFiltracionesSinInterfaz(String[] args) throws Exception {
+        if (args.length < 3 || !Files.isRegularFile(Path.of(args[1]))) {
+            throw new Exception("Uso: importar-filtraciones TEXTO SALIDA [--bits-filtro N]");
+        }
+        int posicion = List.of(args).indexOf("--bits-filtro");
+        int bitsFiltro = posicion >= 0 && posicion + 1 < args.length ? Integer.parseInt(args[posicion + 1]) : 0;
+        long cantidad = CorpusFiltraciones.convertir(Path.of(args[1]), Path.of(args[2]), bitsFiltro);
+        System.out.println("✔ Corpus generado: " + cantidad + " hashes en " + args[2]);
+        System.out.println("Para usarlo: --corpus " + args[2] + " o la variable " + CorpusFiltraciones.VARIABLE_RUTA + ".");
+    }
+
+    /**
+     * Revisa todos los secretos de la bóveda contra el corpus de contraseñas filtradas.
+     * Termina con código 1 si alguno aparece (útil para revisiones programadas).
+     */
+    private static void revisarFiltracionesSinInterfaz(String[] args) throws Exception {
+        if (CorpusFiltraciones.predeterminado() == null) {
+            throw new Exception("No hay corpus configurado: use --corpus RUTA o la variable "
+                    + CorpusFiltraciones.VARIABLE_RUTA + ".");
+        }
+        if (!almacenamiento.existeBoveda()) {
+            throw new Exception("No existe una bóveda.");
+        }
+
+        String contrasena = leerContrasenaSinInterfaz(args);
+        Boveda bovedaCargada = almacenamiento.cargarBoveda(contrasena);
+        int filtrados = 0;
+        try {
+            for (String nombre : bovedaCargada.listarNombresSecretos()) {
+                char[] valor = bovedaCargada.obtenerValor(nombre);
+                try {
+                    if (CorpusFiltraciones.estaFiltrada(valor)) {
+                        System.out.println("⚠ " + nombre);
+                        filtrados++;
+                    }
+                } finally {
+                    Arrays.fill(valor, '\0');
+                }
+            }
+        } finally {
+            bovedaCargada.destruir();
+        }
+        if (filtrados == 0) {
+            System.out.println("✔ Ningún secreto aparece en filtraciones conocidas.");
+            return;
+        }
+        System.out.println(filtrados + " secreto(s) aparecen en filtraciones conocidas; conviene rotarlos.");
+        RegistroBitacora.warn("Revisión de filtraciones: " + filtrados + " secreto(s) comprometidos.");
+        System.exit(1);
+    }
+
+    /**
+     * Revisión de salud de la bóveda: valores reutilizados, débiles o filtrados (si hay corpus).
+     * Solo muestra nombres; termina con código 1 si encuentra algo.
+     */
+    private static void saludSinInterfaz(String[] args) throws Exception {
+        if (!almacenamiento.existeBoveda()) {
+            throw new Exception("No existe una bóveda.");
+        }
+
+        String contrasena = leerContrasenaSinInterfaz(args);
+        Boveda bovedaCargada = almacenamiento.cargarBoveda(contrasena);
+        long inicio = System.nanoTime();
+        AnalizadorSalud.Informe informe;
+        try {
+            informe = AnalizadorSalud.analizar(bovedaCargada, leerHilos(args));
+        } finally {
+            bovedaCargada.destruir();
+        }
+        long milis = (System.nanoTime() - inicio) / 1_000_000;
+
+        System.out.println("Secretos revisados: " + informe.getRevisados() + " (" + milis + " ms)");
+        if (!informe.getReutilizados().isEmpty()) {
+            System.out.println("⚠ Valores reutilizados (" + informe.getReutilizados().size() + " grupo(s)):");
+            for (List<String> grupo : informe.getReutilizados()) {
+                System.out.println("   - " + String.join(", ", grupo));
+            }
+        }
+        if (!informe.getDebiles().isEmpty()) {
+            System.out.println("⚠ Débiles o fuera de la política (" + informe.getDebiles().size() + "):");
+            for (String nombre : informe.getDebiles()) {
+                System.out.println("   - " + nombre);
+            }
+        }
+        if (!informe.getFiltrados().isEmpty()) {
+            System.out.println("⚠ En filtraciones conocidas (" + informe.getFiltrados().size() + "):");
+            for (String nombre : informe.getFiltrados()) {
+                System.out.println("   - " + nombre);
+            }
+        }
+        if (!informe.isConCorpus()) {
+            System.out.println("(Sin corpus de filtraciones: use --corpus RUTA para incluir esa revisión.)");
+        }
+        if (informe.estaSana()) {
+            System.out.println("✔ No se encontraron problemas.");
+            return;
+        }
+        System.exit(1);
+    }
+
+    /**
+     * Sincroniza la bóveda con otra copia (archivo, o carpeta que contenga boveda.dat): compara
+     * árboles de Merkle y copia en cada sentido solo las entradas distintas. Los conflictos se
+     * resuelven por la modificación más reciente o, con "--conflictos preguntar", consultando.
+     * Si la otra bóveda no abre con la misma contraseña, se pide la suya.
+     */
+    private static void fusionarSinInterfaz(String[] args) throws Exception {
+        if (args.length < 2 || args[1].startsWith("--")) {
+            throw new Exception("Uso: fusionar OTRA_BOVEDA [--conflictos reciente|preguntar] [--hilos N]");
+        }
+        Path rutaOtra = Path.of(args[1]);
+        if (Files.isDirectory(rutaOtra)) {
+            rutaOtra = rutaOtra.resolve("boveda.dat");
+        }
+        AlmacenamientoBoveda almacenamientoOtro = new AlmacenamientoBoveda(rutaOtra.toString());
+        if (!almacenamiento.existeBoveda() || !almacenamientoOtro.existeBoveda()) {
+            throw new Exception("No existe una de las dos bóvedas.");
+        }
+        int posicion = List.of(args).indexOf("--conflictos");
+        boolean preguntar = posicion >= 0 && posicion + 1 < args.length && args[posicion + 1].equals("preguntar");
+
+        String contrasena = leerContrasenaSinInterfaz(args);
+        Boveda local = almacenamiento.cargarBoveda(contrasena);
+        String contrasenaOtra = contrasena;
+        Boveda remota;
+        try {
+            remota = almacenamientoOtro.cargarBoveda(contrasena);
+        } catch (Exception e) {
+            // Contraseña distinta (o archivo dañado): se pide la de la otra bóveda
+            contrasenaOtra = leerLineaSinInterfaz(args, "Contraseña de " + rutaOtra.getFileName() + ": ", true);
+            remota = almacenamientoOtro.cargarBoveda(contrasenaOtra);
+        }
+
+        FusionadorBovedas.ResolvedorConflictos resolvedor = FusionadorBovedas.MAS_RECIENTE;
+        if (preguntar) {
+            resolvedor = (nombre, datosLocal, datosRemoto) -> {
+                String respuesta;
+                try {
+                    respuesta = leerLineaSinInterfaz(args, "Conflicto en '" + nombre + "' (local: "
+                            + formatearFecha(datosLocal.getModificado()) + ", otra: "
+                            + formatearFecha(datosRemoto.getModificado()) + "). ¿Conservar [L]ocal u [O]tra? ", false);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e.getMessage(), e);
+                }
+                return respuesta.trim().equalsIgnoreCase("O") ? FusionadorBovedas.Lado.REMOTO
+                        : FusionadorBovedas.Lado.LOCAL;
+            };
+        }
+
+        FusionadorBovedas.Resultado resultado = FusionadorBovedas.fusionar(local, remota, resolvedor, leerHilos(args));
+        if (!resultado.getTraidos().isEmpty()) {
+            almacenamiento.guardarBoveda(local, contrasena);
+        }
+        if (!resultado.getEnviados().isEmpty()) {
+            almacenamientoOtro.guardarBoveda(remota, contrasenaOtra);
+        }
+        local.destruir();
+        remota.destruir();
+
+        if (!resultado.huboCambios()) {
+            System.out.println("✔ Las bóvedas ya estaban sincronizadas.");
+            return;
+        }
+        System.out.println("✔ Sincronizadas: " + resultado.getTraidos().size() + " traído(s), "
+                + resultado.getEnviados().size() + " enviado(s), " + resultado.getConflictos() + " conflicto(s).");
+        for (String nombre : resultado.getTraidos()) {
+            System.out.println("   ← " + nombre);
+        }
+        for (String nombre : resultado.getEnviados()) {
+            System.out.println("   → " + nombre);
+        }
+    }
+
+    /**
+     * Respaldo incremental y deduplicado: la bóveda (salvo --sin-boveda) y las rutas indicadas
+     * se guardan en REPOSITORIO como fragmentos cifrados; solo se escriben los que no estaban.
+     */
+    private static void respaldarSinInterfaz(String[] args) throws Exception {
+        List<String> posicionales = argumentosPosicionales(args);
+        if (posicionales.size() < 2) {
+            throw new Exception("Uso: respaldar REPOSITORIO [RUTA...] [--sin-boveda] [--hilos N]");
+        }
+        boolean conBoveda = !List.of(args).contains("--sin-boveda");
+        if (conBoveda && !almacenamiento.existeBoveda()) {
+            throw new Exception("No existe una bóveda (use --sin-boveda para respaldar solo archivos).");
+        }
+        List<Path> rutas = new ArrayList<>();
+        for (String ruta : posicionales.subList(2, posicionales.size())) {
+            rutas.add(Path.of(ruta));
+        }
+
+        String contrasena = leerContrasenaSinInterfaz(args);
+        byte[] bovedaSerializada = null;
+        if (almacenamiento.existeBoveda()) {
+            // Además de serializarla, valida la contraseña antes de escribir nada
+            Boveda bovedaCargada = almacenamiento.cargarBoveda(contrasena);
+            try {
+                if (conBoveda) {
+                    bovedaSerializada = bovedaCargada.convertirABytes();
+                }
+            } finally {
+                bovedaCargada.destruir();
+            }
+        }
+
+        AlmacenRespaldos repositorio = new AlmacenRespaldos(Path.of(posicionales.get(1)), contrasena);
+        AlmacenRespaldos.Instantanea instantanea;
+        try {
+            instantanea = repositorio.respaldar(rutas, bovedaSerializada, leerHilos(args));
+        } finally {
+            if (bovedaSerializada != null) {
+                Arrays.fill(bovedaSerializada, (byte) 0);
+            }
+        }
+        System.out.println("✔ Instantánea " + instantanea.getId() + ": " + instantanea.getEntradas().size()
+                + " archivo(s), " + instantanea.getTamanoTotal() + " bytes.");
+        System.out.println("   Fragmentos nuevos: " + instantanea.getFragmentosNuevos() + " ("
+                + instantanea.getBytesNuevos() + " bytes escritos); sin cambios: "
+                + instantanea.getArchivosSinCambios() + " archivo(s).");
+    }
+
+    private static void listarRespaldosSinInterfaz(String[] args) throws Exception {
+        List<String> posicionales = argumentosPosicionales(args);
+        if (posicionales.size() < 2) {
+            throw new Exception("Uso: respaldos REPOSITORIO [--instantanea ID]");
+        }
+        AlmacenRespaldos repositorio = new AlmacenRespaldos(Path.of(posicionales.get(1)), leerContrasenaSinInterfaz(args));
+        String id = valorOpcion(args, "--instantanea");
+        if (id == null) {
+            for (String existente : repositorio.listarInstantaneas()) {
+                System.out.println(existente);
+            }
+            return;
+        }
+        for (AlmacenRespaldos.Entrada entrada : repositorio.abrirInstantanea(id).getEntradas()) {
+            System.out.println(String.format("%12d  %s  %s", entrada.getTamano(),
+                    formatearFecha(entrada.getModificado()), entrada.getNombre()));
+        }
+    }
+
+    /**
+     * Restaura una instantánea (por defecto la última) en DESTINO, completa o solo un archivo.
+     * La bóveda se vuelve a cifrar con la misma contraseña como DESTINO/boveda.dat.
+     */
+    private static void restaurarSinInterfaz(String[] args) throws Exception {
+        List<String> posicionales = argumentosPosicionales(args);
+        if (posicionales.size() < 3) {
+            throw new Exception("Uso: restaurar REPOSITORIO DESTINO [--instantanea ID] [--archivo NOMBRE]");
+        }
+        Path destino = Path.of(posicionales.get(2));
+        String contrasena = leerContrasenaSinInterfaz(args);
+        AlmacenRespaldos repositorio = new AlmacenRespaldos(Path.of(posicionales.get(1)), contrasena);
+        String id = valorOpcion(args, "--instantanea");
+        AlmacenRespaldos.Instantanea instantanea = repositorio.abrirInstantanea(id != null ? id : "ultima");
+
+        String nombre = valorOpcion(args, "--archivo");
+        List<AlmacenRespaldos.Entrada> entradas = instantanea.getEntradas();
+        if (nombre != null) {
+            AlmacenRespaldos.Entrada entrada = instantanea.buscar(nombre);
+            if (entrada == null) {
+                throw new Exception("La instantánea no contiene '" + nombre + "'.");
+            }
+            entradas = List.of(entrada);
+        }
+        Files.createDirectories(destino);
+        for (AlmacenRespaldos.Entrada entrada : entradas) {
+            if (!entrada.esBoveda()) {
+                repositorio.restaurarArchivo(entrada, destino);
+                continue;
+            }
+            byte[] serializada = repositorio.restaurarEnMemoria(entrada);
+            try {
+                Boveda restaurada = Boveda.crearDesdeBytes(serializada);
+                new AlmacenamientoBoveda(destino.resolve(AlmacenRespaldos.NOMBRE_BOVEDA).toString())
+                        .guardarBoveda(restaurada, contrasena);
+                restaurada.destruir();
+            } finally {
+                Arrays.fill(serializada, (byte) 0);
+            }
+        }
+        System.out.println("✔ Restaurados " + entradas.size() + " archivo(s) de " + instantanea.getId() + " en " + destino);
+    }
+
+    // Argumentos que no son opciones (ni el valor de una opción que lo lleva)
+    private static List<String> argumentosPosicionales(String[] args) {
+        List<String> opcionesConValor = List.of("--hilos", "--instantanea", "--archivo", "--conflictos", "--bits-filtro",
+                "--pasadas-borrado");
+        List<String> posicionales = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (opcionesConValor.contains(args[i])) {
+                i++;
+            } else if (!args[i].startsWith("--")) {
+                posicionales.add(args[i]);
+            }
+        }
+        return posicionales;
+    }
+
+    private static String valorOpcion(String[] args, String opcion) {
+        int posicion = List.of(args).indexOf(opcion);
+        return posicion >= 0 && posicion + 1 < args.length ? args[posicion + 1] : null;
+    }
+
+    private static String formatearFecha(long milis) {
+        return milis == 0 ? "desconocida" : DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
+                .format(LocalDateTime.ofInstant(Instant.ofEpochMilli(milis), ZoneId.systemDefault()));
+    }
+
+    // "--hilos N" (por defecto, un hilo por núcleo)
+    private static int leerHilos(String[] args) {
+        int posicion = List.of(args).indexOf("--hilos");
+        if (posicion >= 0 && posicion + 1 < args.length) {
+            return Integer.parseInt(args[posicion + 1]);
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    // "--pasadas-borrado N" (por defecto 0: el original solo se elimina)
+    private static int leerPasadasBorrado(String[] args) throws Exception {
+        String valor = valorOpcion(args, "--pasadas-borrado");
+        if (valor == null) {
+            return 0;
+        }
+        try {
+            int pasadas = Integer.parseInt(valor);
+            if (pasadas >= 0 && pasadas <= ModuloArchivos.MAX_PASADAS_BORRADO) {
+                return pasadas;
+            }
+        } catch (NumberFormatException e) {
+            // Se informa abajo
+        }
+        throw new Exception("--pasadas-borrado debe ser un número entre 0 y " + ModuloArchivos.MAX_PASADAS_BORRADO + ".");
+    }
+
+    // Contraseña para comandos sin menú: terminal, o primera línea de stdin con --contrasena-stdin
+    private static String leerContrasenaSinInterfaz(String[] args) throws Exception {
+        return leerLineaSinInterfaz(args, "Contraseña maestra: ", true);
+    }
+
+    // Entrada estándar compartida: con --contrasena-stdin cada pregunta consume la línea siguiente
+    private static BufferedReader entradaEstandar;
+
+    private static String leerLineaSinInterfaz(String[] args, String mensaje, boolean oculta) throws Exception {
+        if (List.of(args).contains("--contrasena-stdin")) {
+            System.err.print(mensaje);
+            System.err.flush();
+            if (entradaEstandar == null) {
+                entradaEstandar = new BufferedReader(new InputStreamReader(System.in));
+            }
+            String linea = entradaEstandar.readLine();
+            if (linea == null) {
+                throw new Exception("Fin de la entrada estándar.");
+            }
+            return linea;
+        }
+        if (console != null) {
+            return oculta ? leerContrasena(mensaje) : console.readLine(mensaje);
+        }
+        throw new Exception("Sin terminal: use --contrasena-stdin.");
+    }
+
+    /**
+     * Recorre las rutas de arranque (crear, guardar, desbloquear, buscar, cifrar un archivo)
+     * sobre datos temporales. La compilación lo ejecuta con -XX:ArchiveClassesAtExit para
+     * generar el archivo de Class Data Sharing (ver app/pom.xml).
+     */
+    private static void entrenarCds() throws Exception {
+        final String contrasena = "Entrenamiento#Cds1";
+        Path temporal = Files.createTempDirectory("suite-cds");
+        Path archivoBoveda = temporal.resolve("boveda.dat");
+        Path archivo = temporal.resolve("archivo.txt");
+        try {
+            AlmacenamientoBoveda almacenamientoTemporal = new AlmacenamientoBoveda(archivoBoveda.toString());
+            Boveda nueva = new Boveda();
+            nueva.agregarSecreto("cds", contrasena);
+            almacenamientoTemporal.guardarBoveda(nueva, contrasena);
+
+            almacenamientoTemporal.precargar();
+            Boveda cargada = almacenamientoTemporal.cargarBoveda(contrasena);
+            cargada.obtenerSecreto("cds");
+            cargada.buscarSecretosInteligente("cdz", 10);
+
+            Files.writeString(archivo, "entrenamiento");
+            ModuloArchivos archivos = new ModuloArchivos(contrasena, null);
+            archivos.descifrarArchivo(archivos.cifrarArchivo(archivo));
+        } finally {
+            // Todo el directorio: además de la bóveda quedan su candado (.lock) y, si algo falló, temporales
+            try (Stream<Path> recorrido = Files.walk(temporal)) {
+                for (Path ruta : (Iterable<Path>) recorrido.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.deleteIfExists(ruta);
+                }
+            }
+        }
+    }
+
+    // Extrae "--boveda RUTA" y "--corpus RUTA" de los argumentos (válidos en todos los modos)
+    // y devuelve el resto
+    private static String[] aplicarOpcionBoveda(String[] args) {
+        List<String> resto = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--boveda") && i + 1 < args.length) {
+                almacenamiento = new AlmacenamientoBoveda(args[++i]);
+            } else if (args[i].equals("--corpus") && i + 1 < args.length) {
+                CorpusFiltraciones.configurarRuta(Path.of(args[++i]));
+            } else {
+                resto.add(args[i]);
+            }
+        }
+        return resto.toArray(new String[0]);
+    }
+
+    // --- Modo Agente ---
+
+    // Uso: java -cp out main.Main agente [--inactividad MINUTOS]
+    private static void iniciarAgente(String[] args) throws Exception {
+        if (!almacenamiento.existeBoveda()) {
+            throw new Exception("No existe una bóveda. Ejecute la aplicación normalmente para crearla.");
+        }
+
+        long minutos = MINUTOS_INACTIVIDAD_AGENTE;
+        if (args.length >= 3 && args[1].equals("--inactividad")) {
+            minutos = Long.parseLong(args[2]);
+        }
+
+        iniciarSesion();
+        AgenteBoveda agente = new AgenteBoveda(boveda, AgenteBoveda.rutaSocketPorDefecto(), minutos,
+                almacenamiento::cargarBoveda);
+        System.out.println("Bloqueo automático tras " + minutos + " minuto(s) de inactividad.");
+        agente.servir();
+    }
+
     // Lee contraseña ocultando la entrada
     private static String leerContrasena(String mensaje) {
         char[] passwordArray = console.readPassword(mensaje);
@@ -0,0 +1,608 @@
+package modelos;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static modelos.RegistroBitacora.*;
+
+/**
+ * Repositorio de respaldos cifrados con deduplicación.
+ *
+ * Cada archivo se corta en fragmentos de tamaño variable (content-defined chunking con un
+ * hash rodante "gear"): los cortes dependen del contenido y no de la posición, así que
+ * insertar bytes al principio de un archivo solo cambia los fragmentos cercanos. Cada
+ * fragmento se identifica con un HMAC de su contenido y se guarda una sola vez, comprimido si
+ * conviene y cifrado con AES-GCM, en fragmentos/xx/IDENTIFICADOR. Una instantánea es un
+ * manifiesto cifrado con la lista de fragmentos de cada archivo.
+ *
+ * Estructura del directorio:
+ *   fragmentos/ab/ab12...   [ "SDSR" | versión | códec | 2 B reservados | longitud original (4) | nonce 12 | cifrado ]
+ *   instantaneas/AAAAMMDD-HHMMSS-mmm.snap   [ "SDSI" | versión | cifrar(manifiesto) ]
+ *
+ * Los archivos se procesan en paralelo; los que no cambiaron de tamaño ni de fecha desde la
+ * instantánea anterior reutilizan su lista de fragmentos sin leerse. La bóveda se respalda
+ * como su serialización en claro (no como boveda.dat, que se vuelve a cifrar con otro IV en
+ * cada guardado y nunca repetiría fragmentos). Restaurar un archivo solo lee sus fragmentos.
+ */
+public class AlmacenRespaldos {
+
+    public static final String NOMBRE_BOVEDA = "boveda.dat";
+
+    private static final byte[] MAGIA_FRAGMENTO = {'S', 'D', 'S', 'R'};
+    private static final byte[] MAGIA_INSTANTANEA = {'S', 'D', 'S', 'I'};
+    private static final byte VERSION = 1;
+    private static final int TAMANO_CABECERA_FRAGMENTO = 12;
+    private static final int LONGITUD_NONCE = 12;
+    private static final String EXTENSION_INSTANTANEA = ".snap";
+
+    // Fragmentos de 2 KiB a 64 KiB, unos 8 KiB en promedio (13 bits del hash en cero)
+    private static final int FRAGMENTO_MINIMO = 2 * 1024;
+    private static final int FRAGMENTO_MAXIMO = 64 * 1024;
+    private static final int BITS_CORTE = 13;
+    // Tabla fija del hash gear: los cortes deben ser los mismos en todos los respaldos
+    private static final long[] ENGRANAJE = new long[256];
+
+    static {
+        SplittableRandom generador = new SplittableRandom(0x5D5B_AC0F_F1CEL);
+        for (int i = 0; i < ENGRANAJE.length; i++) {
+            ENGRANAJE[i] = generador.nextLong();
+        }
+    }
+
+    private static final byte ARCHIVO = 0;
+    private static final byte BOVEDA = 1;
+
+    /**
+     * Un archivo dentro de una instantánea.
+     */
+    public static class Entrada {
+        private final String nombre;
+        private final byte tipo;
+        private final long tamano;
+        private final long modificado;
+        private final List<byte[]> fragmentos;
+
+        Entrada(String nombre, byte tipo, long tamano, long modificado, List<byte[]> fragmentos) {
+            this.nombre = nombre;
+            this.tipo = tipo;
+            this.tamano = tamano;
+            this.modificado = modificado;
+            this.fragmentos = fragmentos;
+        }
+
+        public String getNombre() {
+            return nombre;
+        }
+
+        public boolean esBoveda() {
+            return tipo == BOVEDA;
+        }
+
+        public long getTamano() {
+            return tamano;
+        }
+
+        public long getModificado() {
+            return modificado;
+        }
+
+        public int getCantidadFragmentos() {
+            return fragmentos.size();
+        }
+    }
+
+    /**
+     * Una instantánea: sus entradas y, si se acaba de crear, cuánto escribió.
+     */
+    public static class Instantanea {
+        private final String id;
+        private final List<Entrada> entradas;
+        private long fragmentosNuevos;
+        private long bytesNuevos;
+        private int archivosSinCambios;
+
+        Instantanea(String id, List<Entrada> entradas) {
+            this.id = id;
+            this.entradas = entradas;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public List<Entrada> getEntradas() {
+            return entradas;
+        }
+
+        public long getTamanoTotal() {
+            long total = 0;
+            for (Entrada entrada : entradas) {
+                total += entrada.tamano;
+            }
+            return total;
+        }
+
+        /**
+         * Fragmentos que no existían en el repositorio y se escribieron en este respaldo.
+         */
+        public long getFragmentosNuevos() {
+            return fragmentosNuevos;
+        }
+
+        /**
+         * Bytes escritos en fragmentos nuevos (ya comprimidos y cifrados).
+         */
+        public long getBytesNuevos() {
+            return bytesNuevos;
+        }
+
+        /**
+         * Archivos que no se leyeron porque no cambiaron desde la instantánea anterior.
+         */
+        public int getArchivosSinCambios() {
+            return archivosSinCambios;
+        }
+
+        public Entrada buscar(String nombre) {
+            for (Entrada entrada : entradas) {
+                if (entrada.nombre.equals(nombre)) {
+                    return entrada;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final Path directorio;
+    private final Path directorioFragmentos;
+    private final Path directorioInstantaneas;
+    private final SecretKey claveCifrado;
+    private final SecretKeySpec claveIdentificadores;
+    // Identificadores (hex) de los fragmentos ya guardados; se carga al primer respaldo
+    private Set<String> conocidos;
+    // Fragmentos que algún hilo está escribiendo: el mismo contenido puede aparecer en dos archivos
+    private final Set<String> enEscritura = ConcurrentHashMap.newKeySet();
+
+    public AlmacenRespaldos(Path directorio, String contrasena) throws Exception {
+        this.directorio = directorio;
+        this.directorioFragmentos = directorio.resolve("fragmentos");
+        this.directorioInstantaneas = directorio.resolve("instantaneas");
+        // Dos claves independientes a partir de la de la contraseña: una cifra, la otra identifica
+        byte[] base = UtilidadesCifrado.obtenerClaveDesdeContrasena(contrasena).getEncoded();
+        byte[] cifrado = derivar(base, "respaldos-cifrado");
+        byte[] identificadores = derivar(base, "respaldos-identificadores");
+        this.claveCifrado = new SecretKeySpec(cifrado, "AES");
+        this.claveIdentificadores = new SecretKeySpec(identificadores, "HmacSHA256");
+        Arrays.fill(base, (byte) 0);
+        Arrays.fill(cifrado, (byte) 0);
+        Arrays.fill(identificadores, (byte) 0);
+    }
+
+    // --- Respaldo ---
+
+    /**
+     * Crea una instantánea con los archivos y directorios indicados y, si no es null, la
+     * bóveda serializada (Boveda.convertirABytes). Solo se escriben los fragmentos nuevos.
+     */
+    public Instantanea respaldar(List<Path> rutas, byte[] bovedaSerializada, int hilos) throws Exception {
+        Files.createDirectories(directorioFragmentos);
+        Files.createDirectories(directorioInstantaneas);
+        cargarConocidos();
+
+        Map<String, Entrada> anteriores = new HashMap<>();
+        List<String> existentes = listarInstantaneas();
+        if (!existentes.isEmpty()) {
+            for (Entrada entrada : abrirInstantanea(existentes.get(existentes.size() - 1)).entradas) {
+                anteriores.put(entrada.nombre, entrada);
+            }
+        }
+
+        // Nombre dentro de la instantánea -> archivo; un directorio aporta "directorio/ruta/relativa"
+        Map<String, Path> archivos = new TreeMap<>();
+        for (Path ruta : rutas) {
+            Path raiz = ruta.toAbsolutePath().normalize();
+            if (Files.isDirectory(raiz)) {
+                try (Stream<Path> recorrido = Files.walk(raiz)) {
+                    for (Path archivo : recorrido.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                        archivos.put(raiz.getFileName() + "/"
+                                + raiz.relativize(archivo).toString().replace(File.separatorChar, '/'), archivo);
+                    }
+                }
+            } else if (Files.isRegularFile(raiz)) {
+                archivos.put(raiz.getFileName().toString(), raiz);
+            } else {
+                throw new FileNotFoundException("No existe: " + ruta);
+            }
+        }
+
+        String id = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS"));
+        List<Entrada> entradas = new ArrayList<>(archivos.size() + 1);
+        Instantanea instantanea = new Instantanea(id, entradas);
+        AtomicLong fragmentosNuevos = new AtomicLong();
+        AtomicLong bytesNuevos = new AtomicLong();
+
+        ExecutorService pool = Executors.newFixedThreadPool(hilos, UtilidadesHilos.fabricaDaemon("respaldo"));
+        try {
+            List<Future<Entrada>> pendientes = new ArrayList<>(archivos.size());
+            for (Map.Entry<String, Path> archivo : archivos.entrySet()) {
+                BasicFileAttributes atributos = Files.readAttributes(archivo.getValue(), BasicFileAttributes.class);
+                Entrada anterior = anteriores.get(archivo.getKey());
+                if (anterior != null && anterior.tipo == ARCHIVO && anterior.tamano == atributos.size()
+                        && anterior.modificado == atributos.lastModifiedTime().toMillis()) {
+                    // Sin cambios desde la instantánea anterior: sus fragmentos ya están guardados
+                    pendientes.add(CompletableFuture.completedFuture(anterior));
+                    instantanea.archivosSinCambios++;
+                    continue;
+                }
+                pendientes.add(pool.submit(() -> {
+                    try (InputStream entrada = Files.newInputStream(archivo.getValue())) {
+                        List<byte[]> fragmentos = fragmentar(entrada, fragmentosNuevos, bytesNuevos);
+                        return new Entrada(archivo.getKey(), ARCHIVO, atributos.size(),
+                                atributos.lastModifiedTime().toMillis(), fragmentos);
+                    }
+                }));
+            }
+            if (bovedaSerializada != null) {
+                List<byte[]> fragmentos = fragmentar(new ByteArrayInputStream(bovedaSerializada), fragmentosNuevos,
+                        bytesNuevos);
+                entradas.add(new Entrada(NOMBRE_BOVEDA, BOVEDA, bovedaSerializada.length,
+                        System.currentTimeMillis(), fragmentos));
+            }
+            for (Future<Entrada> pendiente : pendientes) {
+                entradas.add(pendiente.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        instantanea.fragmentosNuevos = fragmentosNuevos.get();
+        instantanea.bytesNuevos = bytesNuevos.get();
+        escribirInstantanea(instantanea);
+        info("Respaldo '" + id + "' en '" + directorio.getFileName() + "': " + entradas.size() + " archivos, "
+                + instantanea.fragmentosNuevos + " fragmentos nuevos (" + instantanea.bytesNuevos + " bytes).");
+        return instantanea;
+    }
+
+    // Corta el flujo por contenido y guarda los fragmentos que falten
+    private List<byte[]> fragmentar(InputStream entrada, AtomicLong fragmentosNuevos, AtomicLong bytesNuevos)
+            throws Exception {
+        List<byte[]> identificadores = new ArrayList<>();
+        byte[] fragmento = new byte[FRAGMENTO_MAXIMO];
+        byte[] lectura = new byte[FRAGMENTO_MAXIMO];
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(claveIdentificadores);
+        int longitud = 0;
+        long hash = 0;
+        int leidos;
+        try {
+            while ((leidos = entrada.read(lectura)) > 0) {
+                for (int i = 0; i < leidos; i++) {
+                    int b = lectura[i] & 0xFF;
+                    fragmento[longitud++] = (byte) b;
+                    hash = (hash << 1) + ENGRANAJE[b];
+                    if (longitud == FRAGMENTO_MAXIMO
+                            || (longitud >= FRAGMENTO_MINIMO && (hash >>> (Long.SIZE - BITS_CORTE)) == 0)) {
+                        identificadores.add(guardarFragmento(mac, fragmento, longitud, fragmentosNuevos, bytesNuevos));
+                        longitud = 0;
+                        hash = 0;
+                    }
+                }
+            }
+            if (longitud > 0) {
+                identificadores.add(guardarFragmento(mac, fragmento, longitud, fragmentosNuevos, bytesNuevos));
+            }
+        } finally {
+            Arrays.fill(fragmento, (byte) 0);
+            Arrays.fill(lectura, (byte) 0);
+        }
+        return identificadores;
+    }
+
+    private byte[] guardarFragmento(Mac mac, byte[] datos, int longitud, AtomicLong fragmentosNuevos,
+                                    AtomicLong bytesNuevos) throws Exception {
+        mac.update(datos, 0, longitud);
+        byte[] id = mac.doFinal();
+        String nombre = hex(id);
+        // Si otro hilo lo está escribiendo basta con esperar al resultado del respaldo completo:
+        // si esa escritura falla, falla el respaldo y no se escribe la instantánea
+        if (conocidos.contains(nombre) || !enEscritura.add(nombre)) {
+            return id;
+        }
+        try {
+            escribirFragmento(nombre, id, datos, longitud, fragmentosNuevos, bytesNuevos);
+            // Recién ahora: si la escritura falla, un respaldo posterior con esta instancia lo reintenta
+            conocidos.add(nombre);
+        } finally {
+            enEscritura.remove(nombre);
+        }
+        return id;
+    }
+
+    private void escribirFragmento(String nombre, byte[] id, byte[] datos, int longitud, AtomicLong fragmentosNuevos,
+                                   AtomicLong bytesNuevos) throws Exception {
+
+        byte codec = Compresion.NINGUNA;
+        byte[] contenido = datos;
+        int longitudContenido = longitud;
+        if (Compresion.convieneComprimir(datos, longitud)) {
+            byte[] comprimido = new byte[longitud];
+            int escritos = Compresion.comprimir(datos, 0, longitud, comprimido, 0);
+            if (escritos > 0) {
+                codec = Compresion.DEFLATE;
+                contenido = comprimido;
+                longitudContenido = escritos;
+            }
+        }
+        byte[] nonce = UtilidadesCifrado.bytesAleatorios(LONGITUD_NONCE);
+        // El identificador va como AAD: un fragmento no puede hacerse pasar por otro
+        byte[] cifrado = UtilidadesCifrado.cifrarSegmento(contenido, 0, longitudContenido, claveCifrado, nonce, id);
+        if (contenido != datos) {
+            Arrays.fill(contenido, (byte) 0);
+        }
+
+        ByteBuffer archivo = ByteBuffer.allocate(TAMANO_CABECERA_FRAGMENTO + LONGITUD_NONCE + cifrado.length);
+        archivo.put(MAGIA_FRAGMENTO).put(VERSION).put(codec).putShort((short) 0).putInt(longitud)
+                .put(nonce).put(cifrado);
+        Path destino = rutaFragmento(nombre);
+        Files.createDirectories(destino.getParent());
+        Path temporal = destino.resolveSibling(nombre + ".tmp");
+        escribirEnDisco(temporal, archivo.array());
+        Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        fragmentosNuevos.incrementAndGet();
+        bytesNuevos.addAndGet(archivo.capacity());
+    }
+
+    // Escribe y fuerza a disco antes de que el archivo se renombre a su lugar: una instantánea no
+    // puede llegar al disco antes que los fragmentos que nombra
+    private static void escribirEnDisco(Path ruta, byte[]... partes) throws IOException {
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (byte[] parte : partes) {
+                ByteBuffer contenido = ByteBuffer.wrap(parte);
+                while (contenido.hasRemaining()) {
+                    canal.write(contenido);
+                }
+            }
+            canal.force(true);
+        }
+    }
+
+    private synchronized void cargarConocidos() throws IOException {
+        if (conocidos != null) {
+            return;
+        }
+        Set<String> encontrados = ConcurrentHashMap.newKeySet();
+        try (Stream<Path> recorrido = Files.walk(directorioFragmentos, 2)) {
+            recorrido.filter(Files::isRegularFile)
+                    .map(ruta -> ruta.getFileName().toString())
+                    .filter(nombre -> !nombre.endsWith(".tmp"))
+                    .forEach(encontrados::add);
+        }
+        conocidos = encontrados;
+    }
+
+    // --- Instantáneas ---
+
+    /**
+     * Identificadores de las instantáneas, de la más antigua a la más reciente.
+     */
+    public List<String> listarInstantaneas() throws IOException {
+        if (!Files.isDirectory(directorioInstantaneas)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> archivos = Files.list(directorioInstantaneas)) {
+            return archivos.map(ruta -> ruta.getFileName().toString())
+                    .filter(nombre -> nombre.endsWith(EXTENSION_INSTANTANEA))
+                    .map(nombre -> nombre.substring(0, nombre.length() - EXTENSION_INSTANTANEA.length()))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Descifra el manifiesto de una instantánea ("ultima" = la más reciente).
+     */
+    public Instantanea abrirInstantanea(String id) throws Exception {
+        if (id.equals("ultima")) {
+            List<String> existentes = listarInstantaneas();
+            if (existentes.isEmpty()) {
+                throw new FileNotFoundException("El repositorio no tiene instantáneas.");
+            }
+            id = existentes.get(existentes.size() - 1);
+        }
+        Path ruta = directorioInstantaneas.resolve(id + EXTENSION_INSTANTANEA);
+        if (!Files.isRegularFile(ruta)) {
+            throw new FileNotFoundException("No existe la instantánea '" + id + "'.");
+        }
+        byte[] archivo = Files.readAllBytes(ruta);
+        if (archivo.length < MAGIA_INSTANTANEA.length + 1
+                || !Arrays.equals(archivo, 0, MAGIA_INSTANTANEA.length, MAGIA_INSTANTANEA, 0, MAGIA_INSTANTANEA.length)
+                || archivo[MAGIA_INSTANTANEA.length] != VERSION) {
+            throw new IOException("La instantánea '" + id + "' no tiene un formato reconocido.");
+        }
+        byte[] manifiesto;
+        try {
+            manifiesto = UtilidadesCifrado.descifrar(
+                    Arrays.copyOfRange(archivo, MAGIA_INSTANTANEA.length + 1, archivo.length), claveCifrado);
+        } catch (javax.crypto.AEADBadTagException e) {
+            throw new Exception("Contraseña incorrecta o instantánea dañada.");
+        }
+
+        try (DataInputStream datos = new DataInputStream(new ByteArrayInputStream(manifiesto))) {
+            int cantidad = datos.readInt();
+            List<Entrada> entradas = new ArrayList<>(cantidad);
+            for (int i = 0; i < cantidad; i++) {
+                String nombre = datos.readUTF();
+                byte tipo = datos.readByte();
+                long tamano = datos.readLong();
+                long modificado = datos.readLong();
+                int cantidadFragmentos = datos.readInt();
+                List<byte[]> fragmentos = new ArrayList<>(cantidadFragmentos);
+                for (int k = 0; k < cantidadFragmentos; k++) {
+                    byte[] fragmento = new byte[32];
+                    datos.readFully(fragmento);
+                    fragmentos.add(fragmento);
+                }
+                entradas.add(new Entrada(nombre, tipo, tamano, modificado, fragmentos));
+            }
+            return new Instantanea(id, entradas);
+        }
+    }
+
+    private void escribirInstantanea(Instantanea instantanea) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream datos = new DataOutputStream(bytes)) {
+            datos.writeInt(instantanea.entradas.size());
+            for (Entrada entrada : instantanea.entradas) {
+                datos.writeUTF(entrada.nombre);
+                datos.writeByte(entrada.tipo);
+                datos.writeLong(entrada.tamano);
+                datos.writeLong(entrada.modificado);
+                datos.writeInt(entrada.fragmentos.size());
+                for (byte[] fragmento : entrada.fragmentos) {
+                    datos.write(fragmento);
+                }
+            }
+        }
+        byte[] cifrado = UtilidadesCifrado.cifrar(bytes.toByteArray(), claveCifrado);
+        Path destino = directorioInstantaneas.resolve(instantanea.id + EXTENSION_INSTANTANEA);
+        Path temporal = destino.resolveSibling(instantanea.id + ".tmp");
+        escribirEnDisco(temporal, MAGIA_INSTANTANEA, new byte[]{VERSION}, cifrado);
+        Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // --- Restauración ---
+
+    /**
+     * Escribe el contenido de una entrada leyendo solo sus fragmentos.
+     */
+    public void restaurar(Entrada entrada, OutputStream salida) throws Exception {
+        for (byte[] id : entrada.fragmentos) {
+            byte[] datos = leerFragmento(id);
+            salida.write(datos);
+            Arrays.fill(datos, (byte) 0);
+        }
+    }
+
+    /**
+     * Bytes de una entrada completa (pensado para la bóveda serializada). El llamador debe
+     * llenarlos con ceros al terminar.
+     */
+    public byte[] restaurarEnMemoria(Entrada entrada) throws Exception {
+        if (entrada.tamano > Integer.MAX_VALUE - 8) {
+            throw new IOException("La entrada '" + entrada.nombre + "' es demasiado grande para memoria.");
+        }
+        ByteArrayOutputStream salida = new ByteArrayOutputStream((int) entrada.tamano);
+        restaurar(entrada, salida);
+        return salida.toByteArray();
+    }
+
+    /**
+     * Restaura todas las entradas de archivo bajo destino (la bóveda se restaura aparte, porque
+     * hay que volver a cifrarla) y devuelve cuántas se escribieron.
+     */
+    public int restaurarArchivos(Instantanea instantanea, Path destino) throws Exception {
+        int restaurados = 0;
+        for (Entrada entrada : instantanea.entradas) {
+            if (entrada.esBoveda()) {
+                continue;
+            }
+            restaurarArchivo(entrada, destino);
+            restaurados++;
+        }
+        return restaurados;
+    }
+
+    /**
+     * Restaura una entrada de archivo en destino/nombre con su fecha de modificación original.
+     */
+    public Path restaurarArchivo(Entrada entrada, Path destino) throws Exception {
+        Path ruta = destino.resolve(entrada.nombre).normalize();
+        if (!ruta.startsWith(destino.normalize())) {
+            throw new IOException("Ruta inválida en la instantánea: " + entrada.nombre);
+        }
+        Files.createDirectories(ruta.getParent());
+        try (OutputStream salida = new BufferedOutputStream(Files.newOutputStream(ruta), 1 << 20)) {
+            restaurar(entrada, salida);
+        }
+        Files.setLastModifiedTime(ruta, FileTime.fromMillis(entrada.modificado));
+        return ruta;
+    }
+
+    private byte[] leerFragmento(byte[] id) throws Exception {
+        String nombre = hex(id);
+        Path ruta = rutaFragmento(nombre);
+        if (!Files.isRegularFile(ruta)) {
+            throw new FileNotFoundException("Falta el fragmento " + nombre + " en el repositorio.");
+        }
+        byte[] archivo = Files.readAllBytes(ruta);
+        ByteBuffer cabecera = ByteBuffer.wrap(archivo);
+        byte[] magia = new byte[MAGIA_FRAGMENTO.length];
+        cabecera.get(magia);
+        if (!Arrays.equals(magia, MAGIA_FRAGMENTO) || cabecera.get() != VERSION) {
+            throw new IOException("Fragmento " + nombre + " con formato desconocido.");
+        }
+        byte codec = cabecera.get();
+        cabecera.getShort();
+        int longitud = cabecera.getInt();
+        byte[] nonce = new byte[LONGITUD_NONCE];
+        cabecera.get(nonce);
+        byte[] contenido = UtilidadesCifrado.descifrarSegmento(archivo, cabecera.position(),
+                archivo.length - cabecera.position(), claveCifrado, nonce, id);
+        if (codec == Compresion.NINGUNA) {
+            return contenido;
+        }
+        byte[] datos = new byte[longitud];
+        Compresion.descomprimir(contenido, 0, contenido.length, datos, longitud);
+        Arrays.fill(contenido, (byte) 0);
+        return datos;
+    }
+
+    private Path rutaFragmento(String nombre) {
+        return directorioFragmentos.resolve(nombre.substring(0, 2)).resolve(nombre);
+    }
+
+    private static byte[] derivar(byte[] base, String etiqueta) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(base, "HmacSHA256"));
+        return mac.doFinal(etiqueta.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder texto = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            texto.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return texto.toString();
+    }
+}
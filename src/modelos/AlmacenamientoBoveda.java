@@ -2,61 +2,286 @@ package modelos;
 
 import java.io.*;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.DataFormatException;
 import javax.crypto.SecretKey;
 
 import static modelos.RegistroBitacora.*;
 
 public class AlmacenamientoBoveda {
 
-    private static final String NOMBRE_ARCHIVO;
+    /*
+     * Formato de boveda.dat:
+     *   [cabecera 24 B: "SDSB" | versión | códec | 2 B reservados | tamaño sin comprimir 8 B | generación 8 B]
+     *   [IV 12 B][bóveda serializada (comprimida si conviene) cifrada + tag]
+     * La cabecera se autentica como AAD. La versión 1 tiene cabecera de 16 B (sin generación) y
+     * los archivos sin cabecera (IV + datos cifrados) son del formato anterior; ambos se siguen
+     * leyendo y se reescriben al guardar.
+     *
+     * Varios procesos pueden usar la misma bóveda. Las lecturas toman un candado compartido y
+     * los guardados uno exclusivo sobre boveda.dat.lock, así que las lecturas no se bloquean
+     * entre sí. Cada guardado incrementa la generación; si al guardar la del disco ya no es la
+     * que se cargó, otro proceso guardó antes: se descifra su versión y se hace una fusión de
+     * tres vías contra lo cargado (ver FusionadorBovedas.incorporarCambios) en lugar de pisarla.
+     * El archivo nuevo se escribe aparte y se renombra encima, así nadie lee uno a medias.
+     * El .lock nunca se borra: si un proceso lo borrara mientras otro lo tiene abierto, un tercero
+     * crearía uno nuevo y los candados de ambos ya no se excluirían.
+     */
+    private static final byte[] MAGIA = {'S', 'D', 'S', 'B'};
+    private static final byte VERSION = 2;
+    private static final byte VERSION_SIN_GENERACION = 1;
+    private static final int TAMANO_CABECERA = 24;
+    private static final int TAMANO_CABECERA_SIN_GENERACION = 16;
+    private static final int LONGITUD_IV = 12;
+    private static final String EXTENSION_CANDADO = ".lock";
 
-    static {
-        String rutaCalculada;
-        try {
-            // Obtener la ubicación base del classpath (carpeta out/)
-            File ubicacionClase = new File(
-                AlmacenamientoBoveda.class.getProtectionDomain()
-                    .getCodeSource()
-                    .getLocation()
-                    .toURI()
-            );
-            
-            // getCodeSource() devuelve la raíz del classpath (out/), subir 1 nivel para llegar a la raíz del proyecto
-            File raizProyecto = ubicacionClase.getParentFile();
-            
-            rutaCalculada = new File(raizProyecto, "boveda.dat").getAbsolutePath();
-            
-            System.out.println("[INFO] Ruta de boveda.dat: " + rutaCalculada);
-            
-        } catch (URISyntaxException | NullPointerException e) {
-            // Fallback a ruta relativa si falla la detección
-            rutaCalculada = "boveda.dat";
-            System.out.println("[ADVERTENCIA] No se pudo calcular la ruta absoluta, usando ruta relativa: " + rutaCalculada);
-        }
-        NOMBRE_ARCHIVO = rutaCalculada;
+    /**
+     * Candado de un archivo de bóveda. Dentro del proceso se usa un ReentrantReadWriteLock (la
+     * JVM no permite dos FileLock solapados sobre el mismo archivo); entre procesos, un único
+     * FileLock compartido para todos los lectores de este proceso, o uno exclusivo al guardar.
+     */
+    private static final class Candado {
+        private static final Map<String, Candado> POR_RUTA = new ConcurrentHashMap<>();
+
+        final ReentrantReadWriteLock local = new ReentrantReadWriteLock();
+        private final Path ruta;
+        private FileChannel canalCompartido;
+        private FileLock compartido;
+        private int lectores;
+
+        private Candado(Path ruta) {
+            this.ruta = ruta;
+        }
+
+        static Candado de(String archivo) {
+            Path ruta = Paths.get(archivo + EXTENSION_CANDADO).toAbsolutePath().normalize();
+            return POR_RUTA.computeIfAbsent(ruta.toString(), r -> new Candado(ruta));
+        }
+
+        void tomarCompartido() throws IOException {
+            local.readLock().lock();
+            try {
+                synchronized (this) {
+                    if (lectores == 0) {
+                        canalCompartido = abrirCanal();
+                        compartido = canalCompartido.lock(0, Long.MAX_VALUE, true);
+                    }
+                    lectores++;
+                }
+            } catch (IOException | RuntimeException e) {
+                cerrar(canalCompartido);
+                canalCompartido = null;
+                local.readLock().unlock();
+                throw e;
+            }
+        }
+
+        void soltarCompartido() throws IOException {
+            try {
+                synchronized (this) {
+                    if (--lectores == 0) {
+                        compartido.release();
+                        cerrar(canalCompartido);
+                        compartido = null;
+                        canalCompartido = null;
+                    }
+                }
+            } finally {
+                local.readLock().unlock();
+            }
+        }
+
+        /**
+         * Toma el candado exclusivo; se suelta cerrando el canal devuelto.
+         */
+        FileChannel tomarExclusivo() throws IOException {
+            local.writeLock().lock();
+            FileChannel canal = null;
+            try {
+                canal = abrirCanal();
+                canal.lock(0, Long.MAX_VALUE, false);
+                return canal;
+            } catch (IOException | RuntimeException e) {
+                cerrar(canal);
+                local.writeLock().unlock();
+                throw e;
+            }
+        }
+
+        void soltarExclusivo(FileChannel canal) throws IOException {
+            try {
+                canal.close();
+            } finally {
+                local.writeLock().unlock();
+            }
+        }
+
+        private FileChannel abrirCanal() throws IOException {
+            if (ruta.getParent() != null) {
+                Files.createDirectories(ruta.getParent());
+            }
+            return FileChannel.open(ruta, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        private static void cerrar(FileChannel canal) {
+            if (canal != null) {
+                try {
+                    canal.close();
+                } catch (IOException ignorada) {
+                    // Al cerrar el canal se libera el candado; no hay nada más que hacer
+                }
+            }
+        }
+    }
+
+    /**
+     * Ruta por defecto de boveda.dat, calculada solo si se usa (holder idiom):
+     * cargar la clase no resuelve rutas ni imprime nada.
+     */
+    private static final class RutaPorDefecto {
+        static final String VALOR = calcular();
+
+        private static String calcular() {
+            try {
+                // Obtener la ubicación base del classpath (carpeta out/)
+                File ubicacionClase = new File(
+                    AlmacenamientoBoveda.class.getProtectionDomain()
+                        .getCodeSource()
+                        .getLocation()
+                        .toURI()
+                );
+
+                // getCodeSource() devuelve la raíz del classpath (out/), subir 1 nivel para llegar a la raíz del proyecto
+                File raizProyecto = ubicacionClase.getParentFile();
+
+                String rutaCalculada = new File(raizProyecto, "boveda.dat").getAbsolutePath();
+                info("Ruta de boveda.dat: " + rutaCalculada);
+                return rutaCalculada;
+
+            } catch (URISyntaxException | NullPointerException e) {
+                // Fallback a ruta relativa si falla la detección
+                System.out.println("[ADVERTENCIA] No se pudo calcular la ruta absoluta, usando ruta relativa: boveda.dat");
+                return "boveda.dat";
+            }
+        }
+    }
+
+    // Archivo de la bóveda que maneja esta instancia (null = ruta por defecto, resuelta al usarla)
+    private final String nombreArchivo;
+
+    // Lectura de boveda.dat lanzada antes de conocer la contraseña (ver precargar())
+    private volatile CompletableFuture<byte[]> lecturaAnticipada;
+
+    // Lo último que esta instancia cargó o guardó (base de la fusión al guardar): el archivo
+    // cifrado tal cual, su clave y su generación. Sin base (-1), guardar reemplaza el archivo.
+    private byte[] archivoBase;
+    private SecretKey claveBase;
+    private long generacionBase = -1;
+
+    /**
+     * Usa la bóveda por defecto (boveda.dat en la raíz del proyecto).
+     */
+    public AlmacenamientoBoveda() {
+        this(null);
+    }
+
+    /**
+     * Usa un archivo de bóveda específico (por ejemplo, bóvedas sintéticas de pruebas de carga).
+     *
+     * @param nombreArchivo Ruta del archivo de la bóveda
+     */
+    public AlmacenamientoBoveda(String nombreArchivo) {
+        this.nombreArchivo = nombreArchivo;
     }
 
+    private String archivo() {
+        return nombreArchivo != null ? nombreArchivo : RutaPorDefecto.VALOR;
+    }
+
+    /**
+     * Empieza a leer boveda.dat en segundo plano mientras el usuario escribe la contraseña.
+     * La siguiente llamada a cargarBoveda() reutiliza esos bytes en lugar de volver a leer el disco.
+     */
+    public void precargar() {
+        if (lecturaAnticipada == null && existeBoveda()) {
+            lecturaAnticipada = leerEnSegundoPlano();
+        }
+    }
+
+    private CompletableFuture<byte[]> leerEnSegundoPlano() {
+        String ruta = archivo();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return leerConCandado(ruta);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    // Lee el archivo completo con el candado compartido (otros lectores no esperan)
+    private static byte[] leerConCandado(String ruta) throws IOException {
+        Candado candado = Candado.de(ruta);
+        candado.tomarCompartido();
+        try {
+            return Files.readAllBytes(Paths.get(ruta));
+        } finally {
+            candado.soltarCompartido();
+        }
+    }
 
     public boolean existeBoveda() {
-        return new File(NOMBRE_ARCHIVO).exists();
+        return new File(archivo()).exists();
     }
 
     // Cargar archivo del disco -> Descifrar -> Convertir en Objeto
     public Boveda cargarBoveda(String contrasena) throws Exception {
-        // Usamos obtenerArchivo()
-        try (FileInputStream archivoEntrada = new FileInputStream(NOMBRE_ARCHIVO)) {
-
-            // 1. Leemos los bytes cifrados del disco
-            byte[] datosCifrados = archivoEntrada.readAllBytes();
+        // 1. Leemos los bytes cifrados del disco (o tomamos la lectura anticipada) en segundo plano...
+        CompletableFuture<byte[]> lectura = lecturaAnticipada;
+        lecturaAnticipada = null; // Se usa una sola vez: después el archivo puede cambiar
+        if (lectura == null) {
+            lectura = leerEnSegundoPlano();
+        }
 
-            // 2. Preparamos la llave
+        try {
+            // 2. ...mientras preparamos la llave en este hilo
             SecretKey clave = UtilidadesCifrado.obtenerClaveDesdeContrasena(contrasena);
 
-            // 3. Desciframos
-            byte[] datosDescifrados = UtilidadesCifrado.descifrar(datosCifrados, clave);
+            byte[] datosCifrados;
+            try {
+                datosCifrados = lectura.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof UncheckedIOException
+                        ? ((UncheckedIOException) e.getCause()).getCause()
+                        : e;
+            }
+
+            // 3. Desciframos (y descomprimimos)
+            byte[] datosDescifrados = abrir(datosCifrados, clave);
 
             // 4. Convertimos bytes a Objeto Boveda
-            Boveda bovedaCargada = Boveda.crearDesdeBytes(datosDescifrados);
+            Boveda bovedaCargada;
+            try {
+                bovedaCargada = Boveda.crearDesdeBytes(datosDescifrados);
+            } finally {
+                // Los valores ya están en la arena de la bóveda; la copia en claro se borra
+                Arrays.fill(datosDescifrados, (byte) 0);
+            }
+            recordarBase(datosCifrados, clave);
             info("Bóveda cargada correctamente.");
             return bovedaCargada;
 
@@ -66,18 +291,178 @@ public class AlmacenamientoBoveda {
         }
     }
 
+    /**
+     * Comprueba el tag de autenticación del archivo sin reconstruir la bóveda.
+     *
+     * @throws Exception si la clave no corresponde o el archivo está dañado
+     */
+    public void verificar(SecretKey clave) throws Exception {
+        byte[] datosCifrados = leerConCandado(archivo());
+        try {
+            // Solo interesa el tag: la bóveda en claro se descarta sin recordarla como base de fusión
+            Arrays.fill(abrir(datosCifrados, clave), (byte) 0);
+        } catch (javax.crypto.BadPaddingException e) {
+            throw new Exception("Contraseña incorrecta o archivo dañado.");
+        }
+    }
+
     // Objeto Boveda -> Convertir a Bytes -> Cifrar -> Guardar en disco
+    // Si otro proceso guardó desde que se cargó, sus cambios se incorporan a la bóveda recibida
     public void guardarBoveda(Boveda boveda, String contrasena) throws Exception {
 
         SecretKey clave = UtilidadesCifrado.obtenerClaveDesdeContrasena(contrasena);
+        Path ruta = Paths.get(archivo());
+        lecturaAnticipada = null;
 
-        byte[] datosOriginales = boveda.convertirABytes();
-        byte[] datosCifrados = UtilidadesCifrado.cifrar(datosOriginales, clave);
+        Candado candado = Candado.de(archivo());
+        FileChannel exclusivo = candado.tomarExclusivo();
+        try {
+            long generacion = 0;
+            if (Files.exists(ruta)) {
+                byte[] enDisco = Files.readAllBytes(ruta);
+                generacion = generacion(enDisco);
+                if (generacionBase >= 0 && generacion != generacionBase) {
+                    incorporarCambiosDeDisco(boveda, enDisco, clave);
+                }
+            }
 
-        // Usamos obtenerArchivo()
-        try (FileOutputStream archivoSalida = new FileOutputStream(NOMBRE_ARCHIVO)) {
-            archivoSalida.write(datosCifrados);
+            byte[] datosOriginales = boveda.convertirABytes();
+            byte[] datosCifrados;
+            try {
+                datosCifrados = sellar(datosOriginales, clave, generacion + 1);
+            } finally {
+                Arrays.fill(datosOriginales, (byte) 0);
+            }
+
+            Path temporal = ruta.resolveSibling(ruta.getFileName() + ".tmp");
+            // Se fuerza a disco antes del renombrado: si no, una caída podría dejar boveda.dat vacío o truncado
+            try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer contenido = ByteBuffer.wrap(datosCifrados);
+                while (contenido.hasRemaining()) {
+                    canal.write(contenido);
+                }
+                canal.force(true);
+            }
+            try {
+                Files.move(temporal, ruta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporal, ruta, StandardCopyOption.REPLACE_EXISTING);
+            }
+            recordarBase(datosCifrados, clave);
+        } finally {
+            candado.soltarExclusivo(exclusivo);
         }
         info("Bóveda guardada correctamente.");
     }
+
+    /**
+     * Generación guardada en el disco (0 si la bóveda es de un formato sin generación).
+     */
+    public long generacionEnDisco() throws IOException {
+        return generacion(leerConCandado(archivo()));
+    }
+
+    // Fusión de tres vías: base = lo que se cargó, disco = lo que guardó otro proceso
+    private void incorporarCambiosDeDisco(Boveda boveda, byte[] enDisco, SecretKey clave) throws Exception {
+        byte[] datosDisco;
+        try {
+            datosDisco = abrir(enDisco, clave);
+        } catch (javax.crypto.BadPaddingException e) {
+            // Si esta sesión cambió la contraseña, el otro proceso todavía usaba la anterior
+            try {
+                datosDisco = abrir(enDisco, claveBase);
+            } catch (javax.crypto.BadPaddingException otra) {
+                throw new Exception("Otro proceso guardó la bóveda con otra contraseña; no se guardaron los cambios.");
+            }
+        }
+        byte[] datosBase = abrir(archivoBase, claveBase);
+        Boveda disco = null;
+        Boveda base = null;
+        try {
+            disco = Boveda.crearDesdeBytes(datosDisco);
+            base = Boveda.crearDesdeBytes(datosBase);
+        } finally {
+            Arrays.fill(datosDisco, (byte) 0);
+            Arrays.fill(datosBase, (byte) 0);
+        }
+        try {
+            FusionadorBovedas.Resultado resultado = FusionadorBovedas.incorporarCambios(boveda, base, disco);
+            if (!resultado.getTraidos().isEmpty()) {
+                System.out.println("⚠ La bóveda cambió en otro proceso: se incorporaron "
+                        + resultado.getTraidos().size() + " cambio(s) antes de guardar.");
+            }
+        } finally {
+            disco.destruir();
+            base.destruir();
+        }
+    }
+
+    private void recordarBase(byte[] archivo, SecretKey clave) {
+        this.archivoBase = archivo;
+        this.claveBase = clave;
+        this.generacionBase = generacion(archivo);
+    }
+
+    private static long generacion(byte[] archivo) {
+        if (archivo.length >= TAMANO_CABECERA && Arrays.equals(Arrays.copyOfRange(archivo, 0, 4), MAGIA)
+                && archivo[4] == VERSION) {
+            return ByteBuffer.wrap(archivo, 16, 8).getLong();
+        }
+        return 0;
+    }
+
+    // Bóveda serializada -> [cabecera][IV][cifrado]; comprime si la muestra lo justifica
+    private static byte[] sellar(byte[] datos, SecretKey clave, long generacion) throws Exception {
+        byte[] comprimidos = Compresion.convieneComprimir(datos, Math.min(datos.length, 64 * 1024))
+                ? Compresion.comprimir(datos)
+                : null;
+        byte codec = comprimidos != null ? Compresion.DEFLATE : Compresion.NINGUNA;
+        byte[] contenido = comprimidos != null ? comprimidos : datos;
+
+        byte[] cabecera = ByteBuffer.allocate(TAMANO_CABECERA)
+                .put(MAGIA).put(VERSION).put(codec).putShort((short) 0).putLong(datos.length).putLong(generacion)
+                .array();
+        byte[] iv = UtilidadesCifrado.bytesAleatorios(LONGITUD_IV);
+        byte[] cifrado = UtilidadesCifrado.cifrarSegmento(contenido, 0, contenido.length, clave, iv, cabecera);
+
+        if (comprimidos != null) {
+            Arrays.fill(comprimidos, (byte) 0);
+        }
+        return ByteBuffer.allocate(TAMANO_CABECERA + LONGITUD_IV + cifrado.length)
+                .put(cabecera).put(iv).put(cifrado)
+                .array();
+    }
+
+    // Inverso de sellar(); acepta también la versión sin generación y el formato sin cabecera
+    private static byte[] abrir(byte[] archivo, SecretKey clave) throws Exception {
+        int tamanoCabecera = archivo.length < 5 || !Arrays.equals(Arrays.copyOfRange(archivo, 0, 4), MAGIA) ? 0
+                : archivo[4] == VERSION ? TAMANO_CABECERA
+                : archivo[4] == VERSION_SIN_GENERACION ? TAMANO_CABECERA_SIN_GENERACION : 0;
+        if (tamanoCabecera == 0 || archivo.length < tamanoCabecera + LONGITUD_IV + UtilidadesCifrado.TAMANO_TAG) {
+            return UtilidadesCifrado.descifrar(archivo, clave);
+        }
+        byte[] cabecera = Arrays.copyOfRange(archivo, 0, tamanoCabecera);
+        byte[] iv = Arrays.copyOfRange(archivo, tamanoCabecera, tamanoCabecera + LONGITUD_IV);
+        int inicio = tamanoCabecera + LONGITUD_IV;
+        byte[] contenido = UtilidadesCifrado.descifrarSegmento(archivo, inicio, archivo.length - inicio, clave,
+                iv, cabecera);
+
+        long tamano = ByteBuffer.wrap(cabecera, 8, 8).getLong();
+        if (cabecera[5] == Compresion.NINGUNA) {
+            return contenido;
+        }
+        if (cabecera[5] != Compresion.DEFLATE || tamano < 0 || tamano > Integer.MAX_VALUE - 8) {
+            throw new IOException("Códec de bóveda desconocido.");
+        }
+        byte[] datos = new byte[(int) tamano];
+        try {
+            Compresion.descomprimir(contenido, 0, contenido.length, datos, datos.length);
+        } catch (DataFormatException e) {
+            throw new IOException("Bóveda comprimida inválida: " + e.getMessage());
+        } finally {
+            Arrays.fill(contenido, (byte) 0);
+        }
+        return datos;
+    }
 }
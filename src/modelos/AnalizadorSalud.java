@@ -0,0 +1,256 @@
+package modelos;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static modelos.RegistroBitacora.*;
+
+/**
+ * Revisión de salud de la bóveda: secretos repetidos, débiles o presentes en filtraciones.
+ *
+ * Los valores se leen en paralelo directamente de la arena (Boveda.recorrerValores), sin crear
+ * Strings ni otra copia en claro. Para encontrar repetidos no se comparan los valores: de cada
+ * uno se guarda un HMAC-SHA256 con una clave aleatoria de esta revisión (que no sirve para nada
+ * una vez terminada), y se agrupan las huellas iguales. La fortaleza se estima recorriendo los
+ * caracteres del UTF-8 en el lugar.
+ */
+public class AnalizadorSalud {
+
+    // Por debajo de esta entropía estimada un valor se considera débil aunque cumpla la política
+    public static final int BITS_MINIMOS = 50;
+
+    private static final byte DEBIL = 1;
+    private static final byte FILTRADO = 2;
+
+    /**
+     * Resultado de una revisión: solo los nombres afectados.
+     */
+    public static class Informe {
+        private final int revisados;
+        private final List<List<String>> reutilizados;
+        private final List<String> debiles;
+        private final List<String> filtrados;
+        private final boolean conCorpus;
+
+        Informe(int revisados, List<List<String>> reutilizados, List<String> debiles, List<String> filtrados,
+                boolean conCorpus) {
+            this.revisados = revisados;
+            this.reutilizados = reutilizados;
+            this.debiles = debiles;
+            this.filtrados = filtrados;
+            this.conCorpus = conCorpus;
+        }
+
+        public int getRevisados() {
+            return revisados;
+        }
+
+        /**
+         * Grupos de secretos con el mismo valor (cada grupo tiene dos nombres o más).
+         */
+        public List<List<String>> getReutilizados() {
+            return reutilizados;
+        }
+
+        /**
+         * Secretos que no cumplen la política de contraseñas o tienen poca entropía.
+         */
+        public List<String> getDebiles() {
+            return debiles;
+        }
+
+        /**
+         * Secretos presentes en el corpus de filtraciones (vacío si no hay corpus).
+         */
+        public List<String> getFiltrados() {
+            return filtrados;
+        }
+
+        public boolean isConCorpus() {
+            return conCorpus;
+        }
+
+        public boolean estaSana() {
+            return reutilizados.isEmpty() && debiles.isEmpty() && filtrados.isEmpty();
+        }
+    }
+
+    /**
+     * Revisa todos los secretos usando la cantidad de hilos indicada.
+     */
+    public static Informe analizar(Boveda boveda, int hilos) throws Exception {
+        int cantidad = boveda.cantidadSecretos();
+        String[] nombres = new String[cantidad];
+        long[] huellasAltas = new long[cantidad];
+        long[] huellasBajas = new long[cantidad];
+        byte[] estados = new byte[cantidad];
+
+        byte[] clave = new byte[32];
+        new SecureRandom().nextBytes(clave);
+        SecretKeySpec claveHmac = new SecretKeySpec(clave, "HmacSHA256");
+        Arrays.fill(clave, (byte) 0);
+        CorpusFiltraciones corpus = CorpusFiltraciones.predeterminado();
+
+        // Un Mac y un MessageDigest por hilo del recorrido
+        ThreadLocal<Mac> macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(claveHmac);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        ThreadLocal<MessageDigest> digestos = ThreadLocal.withInitial(() -> {
+            try {
+                return MessageDigest.getInstance("SHA-1");
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        boveda.recorrerValores(hilos, (indice, nombre, utf8) -> {
+            nombres[indice] = nombre;
+            byte estado = esDebil(utf8) ? DEBIL : 0;
+
+            Mac mac = macs.get();
+            mac.update(utf8.duplicate());
+            ByteBuffer huella = ByteBuffer.wrap(mac.doFinal());
+            huellasAltas[indice] = huella.getLong();
+            huellasBajas[indice] = huella.getLong();
+
+            if (corpus != null) {
+                MessageDigest sha1 = digestos.get();
+                sha1.update(utf8.duplicate());
+                if (corpus.contiene(sha1.digest())) {
+                    estado |= FILTRADO;
+                }
+            }
+            estados[indice] = estado;
+        });
+
+        List<String> debiles = new ArrayList<>();
+        List<String> filtrados = new ArrayList<>();
+        for (int i = 0; i < cantidad; i++) {
+            if ((estados[i] & DEBIL) != 0) {
+                debiles.add(nombres[i]);
+            }
+            if ((estados[i] & FILTRADO) != 0) {
+                filtrados.add(nombres[i]);
+            }
+        }
+        List<List<String>> reutilizados = agruparRepetidos(nombres, huellasAltas, huellasBajas);
+
+        info("Revisión de salud: " + cantidad + " secretos, " + reutilizados.size() + " grupo(s) reutilizados, "
+                + debiles.size() + " débiles, " + filtrados.size() + " filtrados.");
+        return new Informe(cantidad, reutilizados, debiles, filtrados, corpus != null);
+    }
+
+    // Ordena una copia de las huellas para encontrar las que se repiten; solo esas (normalmente
+    // pocas) pasan por un mapa para armar los grupos
+    private static List<List<String>> agruparRepetidos(String[] nombres, long[] altas, long[] bajas) {
+        long[] ordenadas = altas.clone();
+        Arrays.parallelSort(ordenadas);
+        Set<Long> repetidas = new HashSet<>();
+        for (int i = 1; i < ordenadas.length; i++) {
+            if (ordenadas[i] == ordenadas[i - 1]) {
+                repetidas.add(ordenadas[i]);
+            }
+        }
+        if (repetidas.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Huella, List<String>> grupos = new HashMap<>();
+        for (int i = 0; i < nombres.length; i++) {
+            if (repetidas.contains(altas[i])) {
+                grupos.computeIfAbsent(new Huella(altas[i], bajas[i]), h -> new ArrayList<>()).add(nombres[i]);
+            }
+        }
+        List<List<String>> reutilizados = new ArrayList<>();
+        for (List<String> grupo : grupos.values()) {
+            if (grupo.size() > 1) {
+                reutilizados.add(grupo);
+            }
+        }
+        // Los nombres ya vienen en orden alfabético; los grupos se ordenan por su primer nombre
+        reutilizados.sort((a, b) -> a.get(0).compareTo(b.get(0)));
+        return reutilizados;
+    }
+
+    private static final class Huella {
+        private final long alta;
+        private final long baja;
+
+        Huella(long alta, long baja) {
+            this.alta = alta;
+            this.baja = baja;
+        }
+
+        @Override
+        public boolean equals(Object otro) {
+            return otro instanceof Huella && ((Huella) otro).alta == alta && ((Huella) otro).baja == baja;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(alta, baja);
+        }
+    }
+
+    /**
+     * Mismos criterios que UtilidadesCifrado.validarPoliticaContrasena, más una entropía mínima,
+     * evaluados sobre los bytes UTF-8 sin decodificarlos a un String.
+     */
+    static boolean esDebil(ByteBuffer utf8) {
+        int longitud = 0;
+        boolean minuscula = false;
+        boolean mayuscula = false;
+        boolean numero = false;
+        boolean especial = false;
+        boolean otro = false;
+        int limite = utf8.limit();
+        int i = utf8.position();
+        while (i < limite) {
+            int b = utf8.get(i) & 0xFF;
+            int bytes = b < 0x80 ? 1 : b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : 2;
+            int punto = bytes == 1 ? b : b & (0xFF >> (bytes + 1));
+            for (int k = 1; k < bytes && i + k < limite; k++) {
+                punto = (punto << 6) | (utf8.get(i + k) & 0x3F);
+            }
+            i += bytes;
+            longitud += Character.charCount(punto);
+
+            if (Character.isUpperCase(punto)) {
+                mayuscula = true;
+            } else if (Character.isDigit(punto)) {
+                numero = true;
+            } else if (punto < 0x80 && UtilidadesCifrado.CARACTERES_ESPECIALES.indexOf(punto) != -1) {
+                especial = true;
+            } else if (Character.isLowerCase(punto)) {
+                minuscula = true;
+            } else {
+                otro = true;
+            }
+        }
+        if (longitud < UtilidadesCifrado.LONGITUD_MINIMA_CONTRASENA || !mayuscula || !numero || !especial) {
+            return true;
+        }
+        // Estimación simple: longitud por log2 del tamaño del alfabeto usado
+        int alfabeto = (minuscula ? 26 : 0) + 26 + 10 + UtilidadesCifrado.CARACTERES_ESPECIALES.length()
+                + (otro ? 100 : 0);
+        return longitud * (Math.log(alfabeto) / Math.log(2)) < BITS_MINIMOS;
+    }
+}
@@ -0,0 +1,226 @@
+package modelos;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Árbol de Merkle sobre las entradas de una bóveda, para compararla con otra sin recorrer
+ * ambas completas.
+ *
+ * Cada entrada se resume con un HMAC-SHA256 (clave compartida por los dos árboles que se
+ * comparan) de su nombre, su valor y su vencimiento. Las entradas se reparten en 2^profundidad
+ * hojas según un hash del nombre, que no depende del contenido de la bóveda: el mismo nombre
+ * cae en la misma hoja en los dos árboles. Cada nodo resume a sus dos hijos, así que al comparar
+ * se desciende solo por los nodos distintos: O(diferencias · log n).
+ */
+final class ArbolMerkle {
+
+    // Entradas esperadas por hoja; con esto se elige la profundidad
+    private static final int ENTRADAS_POR_HOJA = 8;
+    private static final int PROFUNDIDAD_MAXIMA = 20;
+
+    private final int profundidad;
+    // Nombres en orden alfabético y el resumen (16 bytes) de cada entrada
+    private final String[] nombres;
+    private final long[] entradasAltas;
+    private final long[] entradasBajas;
+    // Entradas de la hoja h: orden[inicioHoja[h]] .. orden[inicioHoja[h + 1] - 1], en orden alfabético
+    private final int[] inicioHoja;
+    private final int[] orden;
+    // Nodo 1 = raíz; los hijos de i son 2i y 2i+1; las hojas van de 2^profundidad a 2^(profundidad+1) - 1
+    private final long[] nodosAltos;
+    private final long[] nodosBajos;
+
+    private ArbolMerkle(int profundidad, String[] nombres, long[] entradasAltas, long[] entradasBajas) {
+        this.profundidad = profundidad;
+        this.nombres = nombres;
+        this.entradasAltas = entradasAltas;
+        this.entradasBajas = entradasBajas;
+        int hojas = 1 << profundidad;
+        this.inicioHoja = new int[hojas + 1];
+        this.orden = new int[nombres.length];
+        this.nodosAltos = new long[2 * hojas];
+        this.nodosBajos = new long[2 * hojas];
+    }
+
+    /**
+     * Profundidad para que las hojas tengan unas pocas entradas. Los dos árboles que se
+     * comparan deben construirse con la misma.
+     */
+    static int profundidadPara(int cantidad) {
+        int profundidad = 0;
+        while (profundidad < PROFUNDIDAD_MAXIMA && ((long) ENTRADAS_POR_HOJA << profundidad) < cantidad) {
+            profundidad++;
+        }
+        return profundidad;
+    }
+
+    static ArbolMerkle construir(Boveda boveda, SecretKeySpec clave, int profundidad, int hilos)
+            throws InterruptedException {
+        int cantidad = boveda.cantidadSecretos();
+        String[] nombres = new String[cantidad];
+        long[] altas = new long[cantidad];
+        long[] bajas = new long[cantidad];
+        ThreadLocal<Mac> macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(clave);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        boveda.recorrerValores(hilos, (indice, nombre, utf8) -> {
+            nombres[indice] = nombre;
+            Mac mac = macs.get();
+            mac.update(nombre.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            mac.update(utf8);
+            mac.update(ByteBuffer.allocate(Long.BYTES).putLong(0, boveda.obtenerMetadatos(nombre).getVence()));
+            ByteBuffer resumen = ByteBuffer.wrap(mac.doFinal());
+            altas[indice] = resumen.getLong();
+            bajas[indice] = resumen.getLong();
+        });
+
+        ArbolMerkle arbol = new ArbolMerkle(profundidad, nombres, altas, bajas);
+        arbol.repartirEnHojas();
+        arbol.calcularNodos();
+        return arbol;
+    }
+
+    // Ordenamiento por conteo: las entradas ya vienen en orden alfabético y lo conservan en cada hoja
+    private void repartirEnHojas() {
+        int[] hojaDe = new int[nombres.length];
+        for (int i = 0; i < nombres.length; i++) {
+            hojaDe[i] = hoja(nombres[i]);
+            inicioHoja[hojaDe[i] + 1]++;
+        }
+        for (int h = 0; h + 1 < inicioHoja.length; h++) {
+            inicioHoja[h + 1] += inicioHoja[h];
+        }
+        int[] siguiente = inicioHoja.clone();
+        for (int i = 0; i < nombres.length; i++) {
+            orden[siguiente[hojaDe[i]]++] = i;
+        }
+    }
+
+    private void calcularNodos() {
+        MessageDigest sha256 = sha256();
+        int hojas = 1 << profundidad;
+        ByteBuffer entrada = ByteBuffer.allocate(2 * Long.BYTES);
+        for (int h = 0; h < hojas; h++) {
+            if (inicioHoja[h] == inicioHoja[h + 1]) {
+                // Hoja vacía: resumen 0
+                continue;
+            }
+            for (int k = inicioHoja[h]; k < inicioHoja[h + 1]; k++) {
+                entrada.clear();
+                entrada.putLong(entradasAltas[orden[k]]).putLong(entradasBajas[orden[k]]);
+                sha256.update(entrada.array());
+            }
+            guardarResumen(hojas + h, sha256.digest());
+        }
+        for (int nodo = hojas - 1; nodo >= 1; nodo--) {
+            int izquierdo = 2 * nodo;
+            int derecho = izquierdo + 1;
+            if ((nodosAltos[izquierdo] | nodosBajos[izquierdo] | nodosAltos[derecho] | nodosBajos[derecho]) == 0) {
+                continue;
+            }
+            ByteBuffer hijos = ByteBuffer.allocate(4 * Long.BYTES)
+                    .putLong(nodosAltos[izquierdo]).putLong(nodosBajos[izquierdo])
+                    .putLong(nodosAltos[derecho]).putLong(nodosBajos[derecho]);
+            guardarResumen(nodo, sha256.digest(hijos.array()));
+        }
+    }
+
+    private void guardarResumen(int nodo, byte[] digesto) {
+        ByteBuffer resumen = ByteBuffer.wrap(digesto);
+        nodosAltos[nodo] = resumen.getLong();
+        nodosBajos[nodo] = resumen.getLong();
+    }
+
+    private int hoja(String nombre) {
+        if (profundidad == 0) {
+            return 0;
+        }
+        // Mezcla final de MurmurHash3 sobre String.hashCode (definido por la especificación de Java)
+        int h = nombre.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h >>> (32 - profundidad);
+    }
+
+    /**
+     * Diferencias entre dos árboles de la misma profundidad y clave.
+     */
+    static final class Diferencias {
+        final List<String> soloLocal = new ArrayList<>();
+        final List<String> soloRemoto = new ArrayList<>();
+        final List<String> distintos = new ArrayList<>();
+        // Nodos visitados, para comprobar que la comparación no recorrió todo
+        int nodosVisitados;
+    }
+
+    static Diferencias comparar(ArbolMerkle local, ArbolMerkle remoto) {
+        if (local.profundidad != remoto.profundidad) {
+            throw new IllegalArgumentException("Los árboles de Merkle deben tener la misma profundidad.");
+        }
+        Diferencias diferencias = new Diferencias();
+        local.descender(remoto, 1, diferencias);
+        return diferencias;
+    }
+
+    private void descender(ArbolMerkle remoto, int nodo, Diferencias diferencias) {
+        diferencias.nodosVisitados++;
+        if (nodosAltos[nodo] == remoto.nodosAltos[nodo] && nodosBajos[nodo] == remoto.nodosBajos[nodo]) {
+            return;
+        }
+        int hojas = 1 << profundidad;
+        if (nodo < hojas) {
+            descender(remoto, 2 * nodo, diferencias);
+            descender(remoto, 2 * nodo + 1, diferencias);
+            return;
+        }
+        compararHoja(remoto, nodo - hojas, diferencias);
+    }
+
+    // Mezcla de las dos listas de la hoja (ambas en orden alfabético)
+    private void compararHoja(ArbolMerkle remoto, int hoja, Diferencias diferencias) {
+        int i = inicioHoja[hoja];
+        int finLocal = inicioHoja[hoja + 1];
+        int j = remoto.inicioHoja[hoja];
+        int finRemoto = remoto.inicioHoja[hoja + 1];
+        while (i < finLocal || j < finRemoto) {
+            int comparacion = i == finLocal ? 1 : j == finRemoto ? -1
+                    : nombres[orden[i]].compareTo(remoto.nombres[remoto.orden[j]]);
+            if (comparacion < 0) {
+                diferencias.soloLocal.add(nombres[orden[i++]]);
+            } else if (comparacion > 0) {
+                diferencias.soloRemoto.add(remoto.nombres[remoto.orden[j++]]);
+            } else {
+                int a = orden[i++];
+                int b = remoto.orden[j++];
+                if (entradasAltas[a] != remoto.entradasAltas[b] || entradasBajas[a] != remoto.entradasBajas[b]) {
+                    diferencias.distintos.add(nombres[a]);
+                }
+            }
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
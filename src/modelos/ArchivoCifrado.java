@@ -0,0 +1,619 @@
+package modelos;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.SecretKey;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+
+/**
+ * Formato segmentado de los archivos .locked (versión 2), con acceso aleatorio.
+ *
+ * Estructura:
+ *   [cabecera 24 B: "SDSF" | versión | tamaño de segmento (log2) | códec | 1 B reservado |
+ *                   prefijo de nonce 8 B | tamaño original 8 B]
+ *   [segmento 0][segmento 1]...  cada uno: datos cifrados (hasta 64 KiB) + tag GCM de 16 B
+ *
+ * El nonce de cada segmento es prefijo + número de segmento, y la cabecera completa se
+ * autentica como AAD en todos ellos: no se pueden reordenar, truncar ni cambiar el tamaño
+ * declarado sin que falle el tag. Como todos los segmentos miden lo mismo, la posición del
+ * segmento que contiene cualquier byte se calcula sin leer nada más.
+ *
+ * Con compresión (códec DEFLATE) cada segmento se comprime por separado antes de cifrarse
+ * (un byte inicial indica si quedó comprimido o tal cual) y los segmentos pasan a medir
+ * distinto, así que al final se agregan:
+ *   [índice cifrado: posición de cada segmento + fin de datos, 8 B c/u][posición del índice 8 B]
+ * El acceso aleatorio sigue funcionando: se lee el índice y luego solo los segmentos del rango.
+ *
+ * Los archivos del formato anterior (IV + archivo completo cifrado) se siguen descifrando.
+ */
+public class ArchivoCifrado {
+
+    private static final byte[] MAGIA = {'S', 'D', 'S', 'F'};
+    private static final byte VERSION = 2;
+    private static final int LOG2_SEGMENTO = 16; // 64 KiB
+    static final int TAMANO_SEGMENTO = 1 << LOG2_SEGMENTO;
+    static final int TAMANO_CABECERA = 24;
+    static final int TAMANO_SEGMENTO_CIFRADO = TAMANO_SEGMENTO + UtilidadesCifrado.TAMANO_TAG;
+    // Segmentos por lectura al verificar (~1 MiB por llamada al sistema)
+    private static final int SEGMENTOS_POR_LECTURA = 16;
+    // Bytes que se muestrean al inicio del archivo para decidir si comprimir
+    private static final int TAMANO_MUESTRA = 4 * TAMANO_SEGMENTO;
+    private static final long CONTADOR_INDICE = 0xFFFFFFFFL;
+
+    /**
+     * Cabecera leída de un .locked segmentado.
+     */
+    static class Cabecera {
+        final byte[] bytes;
+        final byte[] prefijo;
+        final long tamanoOriginal;
+        final byte codec;
+        // Posiciones de los segmentos (solo con compresión; ver cargarIndice())
+        long[] posiciones;
+
+        Cabecera(byte[] bytes) {
+            this.bytes = bytes;
+            this.prefijo = Arrays.copyOfRange(bytes, 8, 16);
+            this.tamanoOriginal = ByteBuffer.wrap(bytes, 16, 8).getLong();
+            this.codec = bytes[6];
+        }
+
+        long segmentos() {
+            return numeroSegmentos(tamanoOriginal);
+        }
+
+        long tamanoCifrado() {
+            return TAMANO_CABECERA + tamanoOriginal + segmentos() * UtilidadesCifrado.TAMANO_TAG;
+        }
+
+        long posicion(long indice) {
+            return posiciones == null ? posicionSegmento(indice) : posiciones[(int) indice];
+        }
+
+        int longitudCifrada(long indice) {
+            return posiciones == null
+                    ? longitudSegmento(tamanoOriginal, indice) + UtilidadesCifrado.TAMANO_TAG
+                    : (int) (posiciones[(int) indice + 1] - posiciones[(int) indice]);
+        }
+    }
+
+    private ArchivoCifrado() {
+    }
+
+    /**
+     * Hilos de cifrado que usa la tubería por defecto (uno por núcleo).
+     */
+    public static int hilosPredeterminados() {
+        return TuberiaSegmentos.hilosPredeterminados();
+    }
+
+    // --- Cifrado ---
+
+    /**
+     * Cifra un archivo completo hacia el destino en formato segmentado, en flujo
+     * (memoria constante, sin importar el tamaño del archivo).
+     *
+     * @param comprimir Comprimir antes de cifrar si una muestra del inicio indica que vale la pena
+     */
+    public static void cifrar(Path origen, Path destino, SecretKey clave, boolean comprimir) throws Exception {
+        cifrar(origen, destino, clave, comprimir, null);
+    }
+
+    /**
+     * Igual que cifrar(), pero además acumula el contenido en claro en el resumen (hash)
+     * indicado, en la misma lectura.
+     */
+    public static void cifrar(Path origen, Path destino, SecretKey clave, boolean comprimir,
+                              MessageDigest resumen) throws Exception {
+        cifrar(origen, destino, clave, comprimir, resumen, Progreso.NINGUNO);
+    }
+
+    /**
+     * Igual que cifrar(), informando al progreso los bytes en claro de cada segmento escrito.
+     * Si el progreso cancela la operación, el destino queda a medias y debe descartarse.
+     *
+     * @param resumen Resumen (hash) del contenido en claro, o null
+     */
+    public static void cifrar(Path origen, Path destino, SecretKey clave, boolean comprimir,
+                              MessageDigest resumen, Progreso progreso) throws Exception {
+        cifrar(origen, destino, clave, comprimir, resumen, progreso, TuberiaSegmentos.hilosPredeterminados());
+    }
+
+    /**
+     * Igual que cifrar(), con los hilos de cifrado de la tubería indicados. Quien ya cifra varios
+     * archivos en paralelo pasa 1: así cada archivo se procesa en secuencia en el hilo que llama,
+     * sin crear hilos ni bloques por archivo.
+     */
+    public static void cifrar(Path origen, Path destino, SecretKey clave, boolean comprimir,
+                              MessageDigest resumen, Progreso progreso, int hilos) throws Exception {
+        long tamano = Files.size(origen);
+        boolean conCompresion = comprimir && muestraComprimible(origen);
+        try (InputStream entrada = resumen == null
+                ? Files.newInputStream(origen)
+                : new DigestInputStream(Files.newInputStream(origen), resumen)) {
+            cifrar(entrada, tamano, conCompresion, destino, clave, hilos, progreso);
+        }
+    }
+
+    /**
+     * Cifra datos que ya están en memoria (por ejemplo, un manifiesto) en formato segmentado.
+     */
+    public static void cifrarBytes(byte[] datos, Path destino, SecretKey clave, boolean comprimir) throws Exception {
+        boolean conCompresion = comprimir
+                && Compresion.convieneComprimir(datos, Math.min(datos.length, TAMANO_MUESTRA));
+        cifrar(new ByteArrayInputStream(datos), datos.length, conCompresion, destino, clave,
+                TuberiaSegmentos.hilosPredeterminados(), Progreso.NINGUNO);
+    }
+
+    /**
+     * Cifrado en tubería (ver TuberiaSegmentos): mientras se cifra un segmento se lee el
+     * siguiente y se escribe el anterior. Con un hilo o menos se procesa en secuencia.
+     */
+    static void cifrar(InputStream entrada, long tamano, boolean conCompresion, Path destino,
+                       SecretKey clave, int hilos, Progreso progreso) throws Exception {
+        conCompresion = conCompresion && numeroSegmentos(tamano) < Integer.MAX_VALUE;
+        Cabecera cabecera = crearCabecera(tamano, conCompresion ? Compresion.DEFLATE : Compresion.NINGUNA);
+        long segmentos = cabecera.segmentos();
+        boolean comprimir = conCompresion;
+        long[] posiciones = conCompresion ? new long[(int) segmentos + 1] : null;
+        // Bloque: segmento en claro, segmento cifrado y carga comprimida ([códec del segmento][datos])
+        int[] tamanos = {TAMANO_SEGMENTO, TAMANO_SEGMENTO_CIFRADO + 1, conCompresion ? TAMANO_SEGMENTO + 1 : 0};
+
+        try (FileChannel salida = FileChannel.open(destino, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            escribirCompleto(salida, ByteBuffer.wrap(cabecera.bytes));
+            long[] posicion = {TAMANO_CABECERA};
+
+            TuberiaSegmentos.ejecutar(segmentos, tamanos, hilos,
+                    (i, bloque) -> {
+                        int longitud = longitudSegmento(tamano, i);
+                        if (entrada.readNBytes(bloque, 0, longitud) != longitud) {
+                            throw new IOException("El archivo cambió de tamaño durante el cifrado.");
+                        }
+                        return longitud;
+                    },
+                    (i, bloque, longitud, cifrado, carga) -> comprimir
+                            ? cifrarSegmentoEn(cabecera, i, carga, empaquetarCarga(bloque, longitud, carga), clave, cifrado)
+                            : cifrarSegmentoEn(cabecera, i, bloque, longitud, clave, cifrado),
+                    (i, cifrado, longitud) -> {
+                        if (comprimir) {
+                            posiciones[(int) i] = posicion[0];
+                        }
+                        escribirCompleto(salida, ByteBuffer.wrap(cifrado, 0, longitud));
+                        posicion[0] += longitud;
+                        progreso.avanzar(longitudSegmento(tamano, i));
+                    });
+
+            if (conCompresion) {
+                posiciones[(int) segmentos] = posicion[0];
+                escribirIndice(salida, cabecera, posiciones, clave);
+            }
+            salida.force(true);
+        }
+    }
+
+    private static boolean muestraComprimible(Path origen) throws IOException {
+        try (FileChannel canal = FileChannel.open(origen, StandardOpenOption.READ)) {
+            ByteBuffer muestra = ByteBuffer.allocate((int) Math.min(canal.size(), TAMANO_MUESTRA));
+            leerCompleto(canal, muestra, 0);
+            return Compresion.convieneComprimir(muestra.array(), muestra.capacity());
+        }
+    }
+
+    // Comprime el bloque en carga[1..]; si no se reduce, lo copia tal cual. Devuelve la longitud de la carga.
+    private static int empaquetarCarga(byte[] bloque, int longitud, byte[] carga) {
+        int comprimidos = Compresion.comprimir(bloque, 0, longitud, carga, 1);
+        if (comprimidos < 0) {
+            carga[0] = Compresion.NINGUNA;
+            System.arraycopy(bloque, 0, carga, 1, longitud);
+            return longitud + 1;
+        }
+        carga[0] = Compresion.DEFLATE;
+        return comprimidos + 1;
+    }
+
+    private static void escribirIndice(FileChannel salida, Cabecera cabecera, long[] posiciones, SecretKey clave)
+            throws Exception {
+        ByteBuffer indice = ByteBuffer.allocate(posiciones.length * 8);
+        for (long posicion : posiciones) {
+            indice.putLong(posicion);
+        }
+        byte[] indiceCifrado = UtilidadesCifrado.cifrarSegmento(indice.array(), 0, indice.capacity(), clave,
+                UtilidadesCifrado.nonceSegmento(cabecera.prefijo, CONTADOR_INDICE), cabecera.bytes);
+        escribirCompleto(salida, ByteBuffer.wrap(indiceCifrado));
+        escribirCompleto(salida, ByteBuffer.allocate(8).putLong(0, posiciones[posiciones.length - 1]));
+    }
+
+    // --- Descifrado ---
+
+    /**
+     * Descifra un .locked completo hacia el destino. Acepta el formato segmentado y el anterior.
+     */
+    public static void descifrar(Path origen, Path destino, SecretKey clave) throws Exception {
+        descifrar(origen, destino, clave, Progreso.NINGUNO);
+    }
+
+    /**
+     * Igual que descifrar(), informando al progreso los bytes en claro de cada segmento escrito.
+     */
+    public static void descifrar(Path origen, Path destino, SecretKey clave, Progreso progreso) throws Exception {
+        descifrar(origen, destino, clave, TuberiaSegmentos.hilosPredeterminados(), progreso);
+    }
+
+    /**
+     * Descifrado en tubería (ver TuberiaSegmentos). Con un hilo o menos se procesa en secuencia
+     * (lo que conviene si quien llama ya descifra varios archivos en paralelo).
+     */
+    public static void descifrar(Path origen, Path destino, SecretKey clave, int hilos, Progreso progreso)
+            throws Exception {
+        try (FileChannel entrada = FileChannel.open(origen, StandardOpenOption.READ)) {
+            Cabecera cabecera = leerCabecera(entrada);
+            if (cabecera == null) {
+                byte[] datos = UtilidadesCifrado.descifrar(Files.readAllBytes(origen), clave);
+                Files.write(destino, datos, StandardOpenOption.CREATE_NEW);
+                progreso.avanzar(datos.length);
+                return;
+            }
+            cargarIndice(entrada, cabecera, clave);
+            // Bloque: segmento cifrado, segmento en claro y carga descifrada (solo con compresión)
+            int[] tamanos = {TAMANO_SEGMENTO_CIFRADO + 1, TAMANO_SEGMENTO + 1,
+                    cabecera.codec == Compresion.NINGUNA ? 0 : TAMANO_SEGMENTO + 1};
+
+            // Un archivo vacío igual tiene un segmento (vacío) que se autentica
+            try (FileChannel salida = FileChannel.open(destino, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                TuberiaSegmentos.ejecutar(cabecera.segmentos(), tamanos, hilos,
+                        (i, cifrado) -> {
+                            int longitud = cabecera.longitudCifrada(i);
+                            leerCompleto(entrada, ByteBuffer.wrap(cifrado, 0, longitud), cabecera.posicion(i));
+                            return longitud;
+                        },
+                        (i, cifrado, longitud, claro, carga) -> descifrarSegmentoEn(cabecera, i, cifrado, longitud,
+                                clave, claro, carga),
+                        (i, claro, longitud) -> {
+                            escribirCompleto(salida, ByteBuffer.wrap(claro, 0, longitud));
+                            progreso.avanzar(longitud);
+                        });
+            }
+        }
+    }
+
+    /**
+     * Descifra solo el rango [desde, desde + longitud) del archivo original y lo escribe en la salida.
+     * Lee y autentica únicamente los segmentos que cubren el rango; el .locked no se modifica.
+     * Un rango que pasa del final se recorta al tamaño original.
+     *
+     * @return Bytes escritos
+     */
+    public static long descifrarRango(Path origen, long desde, long longitud, SecretKey clave,
+                                      OutputStream salida) throws Exception {
+        try (FileChannel entrada = FileChannel.open(origen, StandardOpenOption.READ)) {
+            Cabecera cabecera = leerCabecera(entrada);
+            if (cabecera == null) {
+                throw new Exception("El archivo usa el formato anterior, que no permite leer por rangos. "
+                        + "Descífrelo y vuelva a cifrarlo para convertirlo.");
+            }
+            cargarIndice(entrada, cabecera, clave);
+            return descifrarRango(entrada, cabecera, desde, longitud, clave, salida);
+        }
+    }
+
+    /**
+     * Descifra un .locked segmentado completo a memoria (para archivos pequeños como manifiestos).
+     */
+    public static byte[] descifrarBytes(Path origen, SecretKey clave) throws Exception {
+        long tamano = tamanoOriginal(origen);
+        if (tamano < 0 || tamano > Integer.MAX_VALUE - 8) {
+            throw new IOException("El archivo no se puede descifrar a memoria.");
+        }
+        ByteArrayOutputStream salida = new ByteArrayOutputStream((int) tamano);
+        descifrarRango(origen, 0, tamano, clave, salida);
+        return salida.toByteArray();
+    }
+
+    /**
+     * Tamaño del archivo original, leído de la cabecera (sin descifrar nada).
+     *
+     * @return El tamaño, o -1 si el archivo usa el formato anterior
+     */
+    public static long tamanoOriginal(Path origen) throws IOException {
+        try (FileChannel entrada = FileChannel.open(origen, StandardOpenOption.READ)) {
+            Cabecera cabecera = leerCabecera(entrada);
+            return cabecera == null ? -1 : cabecera.tamanoOriginal;
+        }
+    }
+
+    /**
+     * Verifica todos los tags de un .locked segmentado sin escribir texto en claro:
+     * lee en bloques de varios segmentos y descifra sobre un buffer reutilizado.
+     *
+     * @return Posiciones (en el .locked) de los segmentos dañados; vacía si está íntegro
+     * @throws Exception si el archivo no es segmentado, está truncado o su índice está dañado
+     */
+    public static List<Long> verificar(Path origen, SecretKey clave) throws Exception {
+        try (FileChannel entrada = FileChannel.open(origen, StandardOpenOption.READ)) {
+            Cabecera cabecera = leerCabecera(entrada);
+            if (cabecera == null) {
+                throw new Exception(tieneMagia(entrada)
+                        ? "Tamaño inesperado: el archivo está truncado o tiene bytes de más."
+                        : "El archivo usa el formato anterior.");
+            }
+            cargarIndice(entrada, cabecera, clave);
+
+            List<Long> danados = new ArrayList<>();
+            ByteBuffer lectura = ByteBuffer.allocate(SEGMENTOS_POR_LECTURA * (TAMANO_SEGMENTO_CIFRADO + 1));
+            byte[] descartado = new byte[TAMANO_SEGMENTO + 1];
+            long segmentos = cabecera.segmentos();
+
+            for (long primero = 0; primero < segmentos; primero += SEGMENTOS_POR_LECTURA) {
+                long ultimo = Math.min(segmentos, primero + SEGMENTOS_POR_LECTURA);
+                long inicio = cabecera.posicion(primero);
+                long fin = cabecera.posicion(ultimo - 1) + cabecera.longitudCifrada(ultimo - 1);
+                lectura.clear().limit((int) (fin - inicio));
+                leerCompleto(entrada, lectura, inicio);
+
+                int desde = 0;
+                for (long i = primero; i < ultimo; i++) {
+                    int longitud = cabecera.longitudCifrada(i);
+                    try {
+                        UtilidadesCifrado.descifrarSegmentoEn(lectura.array(), desde, longitud, clave,
+                                UtilidadesCifrado.nonceSegmento(cabecera.prefijo, i), cabecera.bytes, descartado);
+                    } catch (AEADBadTagException e) {
+                        danados.add(cabecera.posicion(i));
+                    }
+                    desde += longitud;
+                }
+            }
+            return danados;
+        }
+    }
+
+    private static long descifrarRango(FileChannel entrada, Cabecera cabecera, long desde, long longitud,
+                                       SecretKey clave, OutputStream salida) throws Exception {
+        if (desde < 0 || longitud < 0) {
+            throw new IllegalArgumentException("Rango inválido.");
+        }
+        long hasta = longitud > cabecera.tamanoOriginal - desde ? cabecera.tamanoOriginal : desde + longitud;
+        if (desde >= hasta) {
+            return 0;
+        }
+
+        ByteBuffer bloque = ByteBuffer.allocate(TAMANO_SEGMENTO_CIFRADO + 1);
+        long escritos = 0;
+        for (long i = desde / TAMANO_SEGMENTO; i * TAMANO_SEGMENTO < hasta; i++) {
+            byte[] claro = leerSegmento(entrada, cabecera, i, clave, bloque);
+            long inicioSegmento = i * TAMANO_SEGMENTO;
+            int inicio = (int) (Math.max(desde, inicioSegmento) - inicioSegmento);
+            int fin = (int) (Math.min(hasta, inicioSegmento + claro.length) - inicioSegmento);
+            salida.write(claro, inicio, fin - inicio);
+            escritos += fin - inicio;
+        }
+        salida.flush();
+        return escritos;
+    }
+
+    // --- Segmentos ---
+
+    static Cabecera crearCabecera(long tamanoOriginal) {
+        return crearCabecera(tamanoOriginal, Compresion.NINGUNA);
+    }
+
+    static Cabecera crearCabecera(long tamanoOriginal, byte codec) {
+        ByteBuffer cabecera = ByteBuffer.allocate(TAMANO_CABECERA);
+        cabecera.put(MAGIA).put(VERSION).put((byte) LOG2_SEGMENTO).put(codec).put((byte) 0);
+        cabecera.put(UtilidadesCifrado.bytesAleatorios(UtilidadesCifrado.LONGITUD_PREFIJO_NONCE));
+        cabecera.putLong(tamanoOriginal);
+        return new Cabecera(cabecera.array());
+    }
+
+    /**
+     * Lee la cabecera segmentada.
+     *
+     * @return La cabecera, o null si el archivo usa el formato anterior
+     */
+    static Cabecera leerCabecera(FileChannel canal) throws IOException {
+        if (canal.size() < TAMANO_CABECERA) {
+            return null;
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(TAMANO_CABECERA);
+        leerCompleto(canal, bytes, 0);
+        byte[] cabecera = bytes.array();
+        if (!Arrays.equals(Arrays.copyOfRange(cabecera, 0, 4), MAGIA) || cabecera[4] != VERSION
+                || cabecera[5] != LOG2_SEGMENTO) {
+            return null;
+        }
+        Cabecera leida = new Cabecera(cabecera);
+        if (leida.tamanoOriginal < 0) {
+            return null;
+        }
+        // Un IV del formato anterior que empiece igual que la magia no tendrá el tamaño exacto
+        if (leida.codec == Compresion.NINGUNA) {
+            return leida.tamanoCifrado() == canal.size() ? leida : null;
+        }
+        if (leida.codec == Compresion.DEFLATE) {
+            return canal.size() >= TAMANO_CABECERA + 2L * UtilidadesCifrado.TAMANO_TAG + 8 ? leida : null;
+        }
+        return null;
+    }
+
+    /**
+     * Con compresión, lee y autentica el índice de posiciones de los segmentos.
+     * Sin compresión no hace nada (las posiciones se calculan).
+     */
+    static void cargarIndice(FileChannel canal, Cabecera cabecera, SecretKey clave) throws Exception {
+        if (cabecera.codec == Compresion.NINGUNA) {
+            return;
+        }
+        long tamanoArchivo = canal.size();
+        ByteBuffer cola = ByteBuffer.allocate(8);
+        leerCompleto(canal, cola, tamanoArchivo - 8);
+        long posicionIndice = cola.getLong(0);
+        long longitudIndice = tamanoArchivo - 8 - posicionIndice;
+        if (posicionIndice < TAMANO_CABECERA || longitudIndice != (cabecera.segmentos() + 1) * 8
+                + UtilidadesCifrado.TAMANO_TAG) {
+            throw new IOException("Índice de segmentos truncado o dañado.");
+        }
+
+        ByteBuffer indiceCifrado = ByteBuffer.allocate((int) longitudIndice);
+        leerCompleto(canal, indiceCifrado, posicionIndice);
+        byte[] indice;
+        try {
+            indice = UtilidadesCifrado.descifrarSegmento(indiceCifrado.array(), 0, indiceCifrado.capacity(), clave,
+                    UtilidadesCifrado.nonceSegmento(cabecera.prefijo, CONTADOR_INDICE), cabecera.bytes);
+        } catch (AEADBadTagException e) {
+            throw new Exception("Contraseña incorrecta o índice de segmentos dañado.");
+        }
+
+        long[] posiciones = new long[indice.length / 8];
+        ByteBuffer lectura = ByteBuffer.wrap(indice);
+        for (int i = 0; i < posiciones.length; i++) {
+            posiciones[i] = lectura.getLong();
+            long minimo = i == 0 ? TAMANO_CABECERA : posiciones[i - 1] + UtilidadesCifrado.TAMANO_TAG + 1;
+            if (posiciones[i] < minimo || posiciones[i] - minimo > TAMANO_SEGMENTO) {
+                throw new IOException("Índice de segmentos inconsistente.");
+            }
+        }
+        if (posiciones[0] != TAMANO_CABECERA || posiciones[posiciones.length - 1] != posicionIndice) {
+            throw new IOException("Índice de segmentos inconsistente.");
+        }
+        cabecera.posiciones = posiciones;
+    }
+
+    /**
+     * Indica si el archivo usa el formato anterior (IV + archivo completo en un solo bloque).
+     */
+    public static boolean esFormatoAnterior(Path archivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            return !tieneMagia(canal);
+        }
+    }
+
+    // Distingue un .locked segmentado truncado de uno del formato anterior
+    private static boolean tieneMagia(FileChannel canal) throws IOException {
+        if (canal.size() < MAGIA.length) {
+            return false;
+        }
+        ByteBuffer magia = ByteBuffer.allocate(MAGIA.length);
+        leerCompleto(canal, magia, 0);
+        return Arrays.equals(magia.array(), MAGIA);
+    }
+
+    static byte[] cifrarSegmento(Cabecera cabecera, long indice, byte[] datos, int longitud, SecretKey clave)
+            throws Exception {
+        return UtilidadesCifrado.cifrarSegmento(datos, 0, longitud, clave,
+                UtilidadesCifrado.nonceSegmento(cabecera.prefijo, indice), cabecera.bytes);
+    }
+
+    static int cifrarSegmentoEn(Cabecera cabecera, long indice, byte[] datos, int longitud, SecretKey clave,
+                                byte[] salida) throws Exception {
+        return UtilidadesCifrado.cifrarSegmentoEn(datos, 0, longitud, clave,
+                UtilidadesCifrado.nonceSegmento(cabecera.prefijo, indice), cabecera.bytes, salida);
+    }
+
+    // Descifra un segmento ya leído en claro (con compresión, pasando por carga); devuelve su longitud
+    private static int descifrarSegmentoEn(Cabecera cabecera, long indice, byte[] cifrado, int longitud,
+                                           SecretKey clave, byte[] claro, byte[] carga) throws Exception {
+        byte[] nonce = UtilidadesCifrado.nonceSegmento(cabecera.prefijo, indice);
+        try {
+            if (cabecera.codec == Compresion.NINGUNA) {
+                return UtilidadesCifrado.descifrarSegmentoEn(cifrado, 0, longitud, clave, nonce, cabecera.bytes, claro);
+            }
+            int longitudCarga = UtilidadesCifrado.descifrarSegmentoEn(cifrado, 0, longitud, clave, nonce,
+                    cabecera.bytes, carga);
+            return desempaquetarCarga(carga, longitudCarga, claro, longitudSegmento(cabecera.tamanoOriginal, indice));
+        } catch (AEADBadTagException e) {
+            throw new Exception("Contraseña incorrecta o segmento " + indice + " dañado.");
+        }
+    }
+
+    static byte[] leerSegmento(FileChannel canal, Cabecera cabecera, long indice, SecretKey clave,
+                               ByteBuffer bloque) throws Exception {
+        int longitud = cabecera.longitudCifrada(indice);
+        bloque.clear().limit(longitud);
+        leerCompleto(canal, bloque, cabecera.posicion(indice));
+        byte[] descifrado;
+        try {
+            descifrado = UtilidadesCifrado.descifrarSegmento(bloque.array(), 0, longitud, clave,
+                    UtilidadesCifrado.nonceSegmento(cabecera.prefijo, indice), cabecera.bytes);
+        } catch (AEADBadTagException e) {
+            throw new Exception("Contraseña incorrecta o segmento " + indice + " dañado.");
+        }
+        return cabecera.codec == Compresion.NINGUNA
+                ? descifrado
+                : desempaquetarCarga(descifrado, longitudSegmento(cabecera.tamanoOriginal, indice));
+    }
+
+    private static byte[] desempaquetarCarga(byte[] carga, int longitudOriginal) throws Exception {
+        byte[] datos = new byte[Math.max(longitudOriginal, carga.length - 1)];
+        int longitud = desempaquetarCarga(carga, carga.length, datos, longitudOriginal);
+        return longitud == datos.length ? datos : Arrays.copyOf(datos, longitud);
+    }
+
+    // Deja en datos el contenido de la carga [códec][datos] y devuelve su longitud
+    private static int desempaquetarCarga(byte[] carga, int longitudCarga, byte[] datos, int longitudOriginal)
+            throws Exception {
+        if (longitudCarga == 0) {
+            throw new IOException("Segmento sin códec.");
+        }
+        if (carga[0] == Compresion.NINGUNA) {
+            System.arraycopy(carga, 1, datos, 0, longitudCarga - 1);
+            return longitudCarga - 1;
+        }
+        if (carga[0] != Compresion.DEFLATE) {
+            throw new IOException("Códec de segmento desconocido: " + carga[0]);
+        }
+        try {
+            Compresion.descomprimir(carga, 1, longitudCarga - 1, datos, longitudOriginal);
+        } catch (DataFormatException e) {
+            throw new IOException("Segmento comprimido inválido: " + e.getMessage());
+        }
+        return longitudOriginal;
+    }
+
+    static long numeroSegmentos(long tamanoOriginal) {
+        return Math.max(1, (tamanoOriginal + TAMANO_SEGMENTO - 1) / TAMANO_SEGMENTO);
+    }
+
+    static int longitudSegmento(long tamanoOriginal, long indice) {
+        return (int) Math.max(0, Math.min(TAMANO_SEGMENTO, tamanoOriginal - indice * TAMANO_SEGMENTO));
+    }
+
+    static long posicionSegmento(long indice) {
+        return TAMANO_CABECERA + indice * TAMANO_SEGMENTO_CIFRADO;
+    }
+
+    static void leerCompleto(FileChannel canal, ByteBuffer buffer, long posicion) throws IOException {
+        long inicio = posicion - buffer.position();
+        while (buffer.hasRemaining()) {
+            if (canal.read(buffer, inicio + buffer.position()) < 0) {
+                throw new EOFException("Fin de archivo inesperado.");
+            }
+        }
+    }
+
+    static void escribirCompleto(FileChannel canal, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+    }
+
+    static void escribirCompleto(FileChannel canal, ByteBuffer buffer, long posicion) throws IOException {
+        long inicio = posicion - buffer.position();
+        while (buffer.hasRemaining()) {
+            canal.write(buffer, inicio + buffer.position());
+        }
+    }
+}
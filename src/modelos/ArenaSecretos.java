@@ -0,0 +1,286 @@
+package modelos;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Almacén fuera del heap para los valores de los secretos.
+ *
+ * Los valores se guardan uno detrás de otro como UTF-8 en un ByteBuffer directo; cada valor
+ * se identifica con un número de ranura que apunta a (desplazamiento, longitud). A diferencia
+ * de un String, estos bytes se pueden sobrescribir con ceros: al eliminar un valor, al moverlo
+ * durante la compactación y al destruir el almacén (bloqueo de la bóveda).
+ *
+ * Borrar deja huecos; cuando los huecos superan la mitad de lo usado se compacta el almacén
+ * (los valores vivos se mueven al inicio sin cambiar su número de ranura).
+ */
+public final class ArenaSecretos {
+
+    private static final int CAPACIDAD_INICIAL = 64 * 1024;
+    // Por debajo de esto no vale la pena compactar automáticamente
+    private static final int DESPERDICIO_MINIMO_COMPACTAR = 64 * 1024;
+
+    private ByteBuffer datos;
+    private int usados;
+    private int desperdicio;
+
+    // Ranura -> posición y longitud dentro de datos; longitud -1 = ranura libre
+    private int[] desplazamientos = new int[64];
+    private int[] longitudes = new int[64];
+    private int[] ranurasLibres = new int[16];
+    private int cantidadLibres;
+    private int siguienteRanura;
+
+    public ArenaSecretos() {
+        this(CAPACIDAD_INICIAL);
+    }
+
+    public ArenaSecretos(int capacidadInicial) {
+        datos = ByteBuffer.allocateDirect(Math.max(capacidadInicial, 16));
+    }
+
+    /**
+     * Guarda un valor y devuelve su ranura.
+     */
+    public synchronized int guardar(String valor) {
+        byte[] utf8 = valor.getBytes(StandardCharsets.UTF_8);
+        try {
+            return guardar(utf8, 0, utf8.length);
+        } finally {
+            Arrays.fill(utf8, (byte) 0);
+        }
+    }
+
+    /**
+     * Guarda un valor dado como caracteres (no se crea ningún String intermedio).
+     */
+    public synchronized int guardar(char[] valor) {
+        CharsetEncoder codificador = StandardCharsets.UTF_8.newEncoder();
+        ByteBuffer utf8 = ByteBuffer.allocate((int) Math.ceil(valor.length * (double) codificador.maxBytesPerChar()));
+        try {
+            CoderResult resultado = codificador.encode(CharBuffer.wrap(valor), utf8, true);
+            if (resultado.isError()) {
+                resultado.throwException();
+            }
+            codificador.flush(utf8);
+            return guardar(utf8.array(), 0, utf8.position());
+        } catch (CharacterCodingException e) {
+            throw new IllegalArgumentException("El valor contiene caracteres inválidos.", e);
+        } finally {
+            Arrays.fill(utf8.array(), (byte) 0);
+        }
+    }
+
+    /**
+     * Guarda bytes UTF-8 ya codificados.
+     */
+    public synchronized int guardar(byte[] utf8, int desde, int longitud) {
+        asegurarEspacio(longitud);
+        datos.put(usados, utf8, desde, longitud);
+        int ranura = nuevaRanura();
+        desplazamientos[ranura] = usados;
+        longitudes[ranura] = longitud;
+        usados += longitud;
+        return ranura;
+    }
+
+    /**
+     * Borra (con ceros) el valor de una ranura y la deja libre para reutilizarla.
+     */
+    public synchronized void liberar(int ranura) {
+        validar(ranura);
+        int desde = desplazamientos[ranura];
+        int longitud = longitudes[ranura];
+        llenarConCeros(desde, desde + longitud);
+        if (desde + longitud == usados) {
+            usados = desde;
+        } else {
+            desperdicio += longitud;
+        }
+        longitudes[ranura] = -1;
+        if (cantidadLibres == ranurasLibres.length) {
+            ranurasLibres = Arrays.copyOf(ranurasLibres, ranurasLibres.length * 2);
+        }
+        ranurasLibres[cantidadLibres++] = ranura;
+        if (desperdicio > DESPERDICIO_MINIMO_COMPACTAR && desperdicio > usados / 2) {
+            compactar();
+        }
+    }
+
+    /**
+     * Longitud en bytes UTF-8 del valor de una ranura.
+     */
+    public synchronized int longitud(int ranura) {
+        validar(ranura);
+        return longitudes[ranura];
+    }
+
+    /**
+     * Decodifica el valor como caracteres. El llamador puede (y debería) llenar el arreglo
+     * con ceros cuando termine de usarlo.
+     */
+    public synchronized char[] leerCaracteres(int ranura) {
+        validar(ranura);
+        return decodificar(vista(ranura));
+    }
+
+    /**
+     * Decodifica bytes UTF-8 a un arreglo de caracteres sin pasar por un String.
+     */
+    static char[] decodificar(byte[] utf8, int desde, int longitud) {
+        return decodificar(ByteBuffer.wrap(utf8, desde, longitud));
+    }
+
+    private static char[] decodificar(ByteBuffer vista) {
+        // Cada carácter UTF-16 ocupa al menos un byte en UTF-8
+        CharBuffer salida = CharBuffer.allocate(vista.remaining());
+        CharsetDecoder decodificador = StandardCharsets.UTF_8.newDecoder();
+        decodificador.decode(vista, salida, true);
+        decodificador.flush(salida);
+        char[] resultado = Arrays.copyOf(salida.array(), salida.position());
+        Arrays.fill(salida.array(), '\0');
+        return resultado;
+    }
+
+    /**
+     * Vista de solo lectura de los bytes UTF-8 del valor, sin copiarlos. Sirve solo mientras
+     * nadie modifique la arena: el llamador debe tener su monitor tomado (synchronized (arena))
+     * hasta terminar de usarla, aunque la lean otros hilos (ver Boveda.recorrerValores).
+     */
+    ByteBuffer vistaSoloLectura(int ranura) {
+        validar(ranura);
+        return vista(ranura).asReadOnlyBuffer();
+    }
+
+    /**
+     * Copia los bytes UTF-8 del valor en destino a partir de la posición indicada.
+     */
+    public synchronized void copiarBytes(int ranura, byte[] destino, int posicion) {
+        validar(ranura);
+        datos.get(desplazamientos[ranura], destino, posicion, longitudes[ranura]);
+    }
+
+    /**
+     * Mueve los valores vivos al inicio del almacén para recuperar los huecos que dejaron los
+     * eliminados; los números de ranura no cambian. Las zonas que quedan libres se borran.
+     */
+    public synchronized void compactar() {
+        if (desperdicio == 0) {
+            return;
+        }
+        // Ranuras vivas ordenadas por posición para mover siempre hacia atrás sin pisar datos
+        Integer[] vivas = new Integer[siguienteRanura - cantidadLibres];
+        int n = 0;
+        for (int r = 0; r < siguienteRanura; r++) {
+            if (longitudes[r] >= 0) {
+                vivas[n++] = r;
+            }
+        }
+        Arrays.sort(vivas, 0, n, (a, b) -> Integer.compare(desplazamientos[a], desplazamientos[b]));
+        int escritura = 0;
+        for (int k = 0; k < n; k++) {
+            int r = vivas[k];
+            int desde = desplazamientos[r];
+            int longitud = longitudes[r];
+            if (desde != escritura) {
+                ByteBuffer origen = datos.duplicate();
+                origen.position(desde).limit(desde + longitud);
+                ByteBuffer destino = datos.duplicate();
+                destino.position(escritura);
+                destino.put(origen);
+                desplazamientos[r] = escritura;
+            }
+            escritura += longitud;
+        }
+        llenarConCeros(escritura, usados);
+        usados = escritura;
+        desperdicio = 0;
+    }
+
+    /**
+     * Borra todos los valores con ceros y vacía el índice. El almacén queda utilizable (vacío).
+     */
+    public synchronized void destruir() {
+        llenarConCeros(0, usados);
+        usados = 0;
+        desperdicio = 0;
+        cantidadLibres = 0;
+        siguienteRanura = 0;
+    }
+
+    public synchronized int getBytesUsados() {
+        return usados - desperdicio;
+    }
+
+    public synchronized int getBytesDesperdiciados() {
+        return desperdicio;
+    }
+
+    public synchronized int getCapacidad() {
+        return datos.capacity();
+    }
+
+    private ByteBuffer vista(int ranura) {
+        ByteBuffer vista = datos.duplicate();
+        vista.position(desplazamientos[ranura]).limit(desplazamientos[ranura] + longitudes[ranura]);
+        return vista;
+    }
+
+    private int nuevaRanura() {
+        if (cantidadLibres > 0) {
+            return ranurasLibres[--cantidadLibres];
+        }
+        if (siguienteRanura == desplazamientos.length) {
+            desplazamientos = Arrays.copyOf(desplazamientos, siguienteRanura * 2);
+            longitudes = Arrays.copyOf(longitudes, siguienteRanura * 2);
+        }
+        return siguienteRanura++;
+    }
+
+    private void asegurarEspacio(int longitud) {
+        if (datos.capacity() - usados >= longitud) {
+            return;
+        }
+        // Antes de crecer se intenta recuperar huecos
+        if (desperdicio >= longitud) {
+            compactar();
+            if (datos.capacity() - usados >= longitud) {
+                return;
+            }
+        }
+        long necesaria = (long) usados + longitud;
+        long nuevaCapacidad = Math.max(necesaria, (long) datos.capacity() * 2);
+        if (necesaria > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("El almacén de secretos superó su capacidad máxima.");
+        }
+        ByteBuffer nuevo = ByteBuffer.allocateDirect((int) Math.min(nuevaCapacidad, Integer.MAX_VALUE - 8));
+        ByteBuffer origen = datos.duplicate();
+        origen.position(0).limit(usados);
+        nuevo.put(origen);
+        // El búfer anterior lo libera el GC; antes se borra su contenido
+        llenarConCeros(0, usados);
+        datos = nuevo;
+    }
+
+    private void llenarConCeros(int desde, int hasta) {
+        int i = desde;
+        for (; i + 8 <= hasta; i += 8) {
+            datos.putLong(i, 0L);
+        }
+        for (; i < hasta; i++) {
+            datos.put(i, (byte) 0);
+        }
+    }
+
+    private void validar(int ranura) {
+        if (ranura < 0 || ranura >= siguienteRanura || longitudes[ranura] < 0) {
+            throw new IllegalArgumentException("Ranura de secreto inválida: " + ranura);
+        }
+    }
+}
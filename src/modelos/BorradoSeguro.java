@@ -0,0 +1,321 @@
+package modelos;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static modelos.RegistroBitacora.*;
+
+/**
+ * Borra archivos en claro sobrescribiendo su contenido antes de eliminarlos, para que los
+ * bloques no queden legibles en el disco (Files.delete solo libera la entrada del directorio).
+ *
+ * Los archivos se agrupan en lotes que se procesan en segundo plano, así el borrado de un lote
+ * se solapa con el cifrado de los siguientes archivos. Dentro de un lote, cada pasada sobrescribe
+ * todos los archivos en paralelo con búferes directos de 1 MiB (reutilizados, uno por hilo) y
+ * recién al final de la pasada se fuerza todo a disco una sola vez; sin ese force, la caché del
+ * sistema juntaría las pasadas y al disco llegaría solo la última. Las pasadas intermedias usan
+ * datos aleatorios y la última, ceros.
+ *
+ * Una misma instancia puede recibir archivos de varios hilos (p. ej. el vigilante de carpetas,
+ * que la conserva mientras vigila); cada archivo puede llevar un aviso que se ejecuta cuando ya
+ * fue eliminado.
+ *
+ * En SSD y sistemas de archivos con copia en escritura (btrfs, ZFS) sobrescribir no garantiza
+ * que se borren los bloques originales; ahí conviene el cifrado del disco completo.
+ */
+public class BorradoSeguro implements AutoCloseable {
+
+    private static final int TAMANO_BUFFER = 1024 * 1024;
+    // Un lote se envía al llegar a cualquiera de estos límites
+    private static final int ARCHIVOS_POR_LOTE = 32;
+    private static final long BYTES_POR_LOTE = 256L * 1024 * 1024;
+
+    /**
+     * Totales de los archivos borrados.
+     */
+    public static class Resumen {
+        private int archivos;
+        private long bytes;
+        private long nanos;
+        private final int pasadas;
+
+        Resumen(int pasadas) {
+            this.pasadas = pasadas;
+        }
+
+        public int getArchivos() {
+            return archivos;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Bytes escritos por segundo, sumando todas las pasadas.
+         */
+        public double getBytesPorSegundo() {
+            return nanos == 0 ? 0 : bytes * (double) pasadas / (nanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d archivo(s), %.1f MB, %d pasada(s), %.1f MB/s", archivos,
+                    bytes / (1024.0 * 1024), pasadas, getBytesPorSegundo() / (1024.0 * 1024));
+        }
+    }
+
+    private final int pasadas;
+    private final ExecutorService coordinador;
+    private final ExecutorService trabajo;
+    private final BlockingQueue<ByteBuffer> buffers;
+    private final Resumen resumen;
+    // Avisos de los archivos que los tienen; se ejecutan en el hilo del lote tras eliminarlos
+    private final Map<Path, Runnable> avisos = new ConcurrentHashMap<>();
+    private List<Path> loteActual = new ArrayList<>();
+    private long bytesLoteActual;
+    private Future<?> lotePrevio;
+
+    /**
+     * @param pasadas Veces que se sobrescribe cada archivo (1 o más)
+     * @param hilos   Archivos que se sobrescriben a la vez dentro de un lote
+     */
+    public BorradoSeguro(int pasadas, int hilos) {
+        if (pasadas < 1) {
+            throw new IllegalArgumentException("Se necesita al menos una pasada.");
+        }
+        this.pasadas = pasadas;
+        this.resumen = new Resumen(pasadas);
+        int cantidad = Math.max(1, hilos);
+        this.coordinador = Executors.newSingleThreadExecutor(UtilidadesHilos.fabricaDaemon("borrado-lote"));
+        this.trabajo = Executors.newFixedThreadPool(cantidad, UtilidadesHilos.fabricaDaemon("borrado"));
+        this.buffers = new ArrayBlockingQueue<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            buffers.add(ByteBuffer.allocateDirect(TAMANO_BUFFER));
+        }
+    }
+
+    /**
+     * Borra un solo archivo de forma segura y espera a que termine.
+     */
+    public static Resumen borrar(Path archivo, int pasadas) throws Exception {
+        try (BorradoSeguro borrado = new BorradoSeguro(pasadas, 1)) {
+            borrado.agregar(archivo);
+            return borrado.terminar();
+        }
+    }
+
+    /**
+     * Agrega un archivo al lote en curso. Al llenarse, el lote se borra en segundo plano; si el
+     * anterior aún no terminó, primero se espera a ese (así nunca hay más de un lote pendiente).
+     *
+     * @throws Exception Si falló el borrado de un lote anterior (este archivo queda en el lote
+     *                   en curso y se borra con el siguiente envío)
+     */
+    public void agregar(Path archivo) throws Exception {
+        agregar(archivo, null);
+    }
+
+    /**
+     * Igual que agregar(), ejecutando el aviso cuando el archivo ya fue eliminado (no se ejecuta
+     * si no se pudo eliminar).
+     */
+    public synchronized void agregar(Path archivo, Runnable aviso) throws Exception {
+        if (aviso != null) {
+            avisos.put(archivo, aviso);
+        }
+        loteActual.add(archivo);
+        bytesLoteActual += Files.size(archivo);
+        if (loteActual.size() >= ARCHIVOS_POR_LOTE || bytesLoteActual >= BYTES_POR_LOTE) {
+            enviarLote();
+        }
+    }
+
+    /**
+     * Envía el lote en curso aunque no esté lleno, sin esperar a que termine (sí espera al
+     * anterior). Sirve a quien agrega archivos de a poco y no sabe cuándo llegará el siguiente.
+     */
+    public synchronized void vaciar() throws Exception {
+        enviarLote();
+    }
+
+    /**
+     * Borra lo que quede pendiente y espera a que termine.
+     */
+    public synchronized Resumen terminar() throws Exception {
+        enviarLote();
+        esperarLotePrevio();
+        return resumen;
+    }
+
+    private void enviarLote() throws Exception {
+        esperarLotePrevio();
+        if (loteActual.isEmpty()) {
+            return;
+        }
+        List<Path> lote = loteActual;
+        loteActual = new ArrayList<>();
+        bytesLoteActual = 0;
+        lotePrevio = coordinador.submit(() -> {
+            borrarLote(lote);
+            return null;
+        });
+    }
+
+    private void esperarLotePrevio() throws Exception {
+        if (lotePrevio == null) {
+            return;
+        }
+        try {
+            lotePrevio.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } finally {
+            lotePrevio = null;
+        }
+    }
+
+    private void borrarLote(List<Path> lote) throws Exception {
+        long inicio = System.nanoTime();
+        List<FileChannel> canales = new ArrayList<>();
+        long bytesLote = 0;
+        Exception primerError = null;
+        try {
+            for (Path archivo : lote) {
+                FileChannel canal = FileChannel.open(archivo, StandardOpenOption.WRITE);
+                canales.add(canal);
+                bytesLote += canal.size();
+            }
+            for (int pasada = 1; pasada <= pasadas; pasada++) {
+                boolean ceros = pasada == pasadas;
+                List<Callable<Void>> escrituras = new ArrayList<>();
+                for (FileChannel canal : canales) {
+                    escrituras.add(() -> {
+                        sobrescribir(canal, ceros);
+                        return null;
+                    });
+                }
+                ejecutarTodas(escrituras);
+
+                // Un solo force por pasada y lote, con todos los archivos a la vez
+                List<Callable<Void>> forzados = new ArrayList<>();
+                for (FileChannel canal : canales) {
+                    forzados.add(() -> {
+                        canal.force(false);
+                        return null;
+                    });
+                }
+                ejecutarTodas(forzados);
+            }
+        } catch (Exception e) {
+            primerError = e;
+        } finally {
+            for (FileChannel canal : canales) {
+                try (canal) {
+                    canal.truncate(0);
+                } catch (IOException e) {
+                    warn("No se pudo cerrar un archivo del borrado seguro: " + e.getMessage());
+                }
+            }
+            // Aunque la sobrescritura falle, el original no debe quedar junto a su copia cifrada
+            for (Path archivo : lote) {
+                Runnable aviso = avisos.remove(archivo);
+                try {
+                    Files.deleteIfExists(archivo);
+                } catch (IOException e) {
+                    if (primerError == null) {
+                        primerError = e;
+                    }
+                    continue;
+                }
+                if (aviso != null) {
+                    try {
+                        aviso.run();
+                    } catch (RuntimeException e) {
+                        warn("Falló el aviso de borrado de '" + archivo.getFileName() + "': " + e.getMessage());
+                    }
+                }
+            }
+        }
+        if (primerError != null) {
+            error("Error en el borrado seguro: " + primerError.getMessage());
+            throw new IOException("No se pudieron borrar de forma segura los originales: " + primerError.getMessage(),
+                    primerError);
+        }
+
+        synchronized (resumen) {
+            resumen.archivos += lote.size();
+            resumen.bytes += bytesLote;
+            resumen.nanos += System.nanoTime() - inicio;
+        }
+    }
+
+    private void ejecutarTodas(List<Callable<Void>> tareas) throws Exception {
+        for (Future<Void> resultado : trabajo.invokeAll(tareas)) {
+            try {
+                resultado.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+    }
+
+    private void sobrescribir(FileChannel canal, boolean ceros) throws Exception {
+        ByteBuffer buffer = buffers.take();
+        try {
+            long tamano = canal.size();
+            llenar(buffer, ceros, (int) Math.min(buffer.capacity(), tamano));
+            long posicion = 0;
+            while (posicion < tamano) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), tamano - posicion));
+                while (buffer.hasRemaining()) {
+                    posicion += canal.write(buffer, posicion);
+                }
+            }
+        } finally {
+            buffers.add(buffer);
+        }
+    }
+
+    // Ceros, o un bloque aleatorio nuevo que se repite a lo largo del archivo; solo se llena lo que se usará
+    private static void llenar(ByteBuffer buffer, boolean ceros, int longitud) {
+        buffer.clear();
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        while (buffer.position() < longitud) {
+            buffer.putLong(ceros ? 0L : aleatorio.nextLong());
+        }
+    }
+
+    /**
+     * Termina de borrar lo pendiente (también si el cifrado se interrumpió: los originales que
+     * ya tienen su copia cifrada no deben quedar) y libera los hilos.
+     */
+    @Override
+    public void close() {
+        try {
+            terminar();
+        } catch (Exception e) {
+            warn("Borrado seguro incompleto: " + e.getMessage());
+        } finally {
+            coordinador.shutdown();
+            trabajo.shutdown();
+        }
+    }
+}
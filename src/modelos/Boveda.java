@@ -1,58 +1,214 @@
 package modelos;
 
 import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static modelos.RegistroBitacora.*;
 
 /**
  * Representa la bóveda en memoria.
- * Guarda SOLAMENTE texto (String, String).
- * String: nombre del secreto, String: valor del secreto.
+ * Guarda SOLAMENTE texto: nombre del secreto y valor del secreto.
+ *
+ * Los nombres viven en un mapa normal; los valores se guardan fuera del heap, como UTF-8,
+ * en un ArenaSecretos (el mapa solo guarda el número de ranura). Así los valores no quedan
+ * como String inmutables que el GC copia y que nunca se pueden borrar: destruir() los
+ * sobrescribe con ceros al bloquear.
+ *
+ * Al reemplazar un valor, el anterior pasa al historial del secreto (ver HistorialVersiones),
+ * limitado por cantidad de versiones y, opcionalmente, por antigüedad.
+ *
+ * Cada secreto tiene además fechas de creación, modificación y vencimiento (MetadatosSecreto).
+ * Los vencimientos se programan en una RuedaTemporizadora: revisar qué venció o qué vence en
+ * los próximos días no recorre todos los secretos.
  */
 public class Boveda implements Serializable {
 
     @Serial
-    private static final long serialVersionUID = 20L;
+    private static final long serialVersionUID = 21L;
 
-    // Mapa simple de String a String
-    // Map se usa para almacenar pares clave-valor
-    private Map<String, String> secretos;
+    // Formato binario de convertirABytes(); el anterior era un HashMap serializado con Java
+    private static final byte[] MAGIA = {'S', 'D', 'S', 'V'};
+    private static final byte VERSION = 3;
+    // Versión 1: sin historial de versiones; versión 2: sin fechas
+    private static final byte VERSION_SIN_HISTORIAL = 1;
+    private static final byte VERSION_SIN_METADATOS = 2;
+
+    public static final int MAX_VERSIONES_POR_DEFECTO = 10;
+    private static final long MILIS_POR_DIA = 24L * 60 * 60 * 1000;
+
+    // Secretos por tarea en recorrerValores()
+    private static final int TAMANO_LOTE_RECORRIDO = 4096;
+
+    // Separador de los espacios de nombres: "prod/db/usuario" está en el espacio "prod/db/"
+    public static final String SEPARADOR = "/";
+
+    // Nombre del secreto -> ranura de su valor en la arena
+    private transient Map<String, Integer> secretos;
+    private transient ArenaSecretos arena;
+    // Los mismos nombres en orden, para listar por páginas y por rangos sin ordenar cada vez
+    private transient NavigableSet<String> nombres;
+    // Solo los secretos que ya fueron reemplazados alguna vez tienen historial
+    private transient Map<String, HistorialVersiones> historiales;
+    private transient Map<String, MetadatosSecreto> metadatos;
+    // Vencimientos pendientes; al dispararse, el nombre pasa a vencidos
+    private transient RuedaTemporizadora<String> vencimientos;
+    private transient NavigableSet<String> vencidos;
+
+    // Retención del historial: versiones anteriores por secreto y antigüedad máxima (0 = sin límite)
+    private transient int maxVersiones = MAX_VERSIONES_POR_DEFECTO;
+    private transient int diasRetencion;
+
+    // Cambia cada vez que se agrega, elimina o renombra un secreto (invalida las búsquedas guardadas)
+    private transient int versionNombres;
+    private transient SesionBusqueda.Recientes busquedasRecientes;
 
     public Boveda() {
         this.secretos = new HashMap<>();
+        this.arena = new ArenaSecretos();
+        this.nombres = new TreeSet<>();
+        this.historiales = new HashMap<>();
+        this.metadatos = new HashMap<>();
+        this.vencimientos = new RuedaTemporizadora<>(System.currentTimeMillis());
+        this.vencidos = new TreeSet<>();
+        this.busquedasRecientes = new SesionBusqueda.Recientes();
     }
 
     // --- Métodos de gestión ---
 
     public void agregarSecreto(String nombre, String value) {
-        secretos.put(nombre, value);
+        guardarValor(nombre, arena.guardar(value));
         info("Se agregó un secreto '" + nombre + "'.");
         System.out.println("Secreto '" + nombre + "' agregado.");
     }
 
+    /**
+     * Devuelve el valor como String. Prefiera obtenerValor() cuando el llamador pueda borrar
+     * el valor después de usarlo.
+     */
     public String obtenerSecreto(String nombre) {
-        if (secretos.containsKey(nombre)) {
-            info("Se consultó el secreto '" + nombre + "'.");
-            return secretos.get(nombre);
-        } else {
-            warn("Secreto '" + nombre + "' no encontrado.");
+        char[] valor = obtenerValor(nombre);
+        if (valor == null) {
             return "Error: Secreto no encontrado.";
         }
+        try {
+            return new String(valor);
+        } finally {
+            Arrays.fill(valor, '\0');
+        }
+    }
+
+    /**
+     * Devuelve una copia del valor que el llamador debe llenar con ceros al terminar
+     * (Arrays.fill(valor, '\0')).
+     *
+     * @return El valor, o null si el secreto no existe
+     */
+    public char[] obtenerValor(String nombre) {
+        Integer ranura = secretos.get(nombre);
+        if (ranura == null) {
+            warn("Secreto '" + nombre + "' no encontrado.");
+            return null;
+        }
+        info("Se consultó el secreto '" + nombre + "'.");
+        return arena.leerCaracteres(ranura);
+    }
+
+    /**
+     * Todos los nombres, en orden alfabético (vista de solo lectura).
+     */
+    public NavigableSet<String> listarNombresSecretos() {
+        return Collections.unmodifiableNavigableSet(nombres);
+    }
+
+    public int cantidadSecretos() {
+        return secretos.size();
+    }
+
+    /**
+     * Nombres en el rango [desde, hasta), en orden. Es una vista: se recorre sin copiar.
+     * Por ejemplo listarRango("aws/", "aws0") devuelve todo lo que está bajo "aws/".
+     *
+     * @param desde Límite inferior incluido (null = desde el principio)
+     * @param hasta Límite superior excluido (null = hasta el final)
+     */
+    public NavigableSet<String> listarRango(String desde, String hasta) {
+        if (desde != null && hasta != null && desde.compareTo(hasta) >= 0) {
+            return Collections.emptyNavigableSet();
+        }
+        NavigableSet<String> rango = nombres;
+        if (desde != null) {
+            rango = rango.tailSet(desde, true);
+        }
+        if (hasta != null) {
+            rango = rango.headSet(hasta, false);
+        }
+        return Collections.unmodifiableNavigableSet(rango);
+    }
+
+    /**
+     * Nombres que comienzan con el prefijo, en orden (vista de solo lectura).
+     */
+    public NavigableSet<String> listarPrefijo(String prefijo) {
+        if (prefijo == null || prefijo.isEmpty()) {
+            return listarNombresSecretos();
+        }
+        return listarRango(prefijo, limiteSuperiorPrefijo(prefijo));
+    }
+
+    /**
+     * Una página de nombres en orden, para listar bóvedas grandes por partes.
+     *
+     * @param prefijo   Solo nombres con este prefijo ("" o null = todos)
+     * @param despuesDe Cursor: último nombre de la página anterior (null = primera página)
+     * @param tamano    Máximo de nombres de la página
+     * @return La página; si tiene menos de tamano nombres, es la última
+     */
+    public List<String> listarPagina(String prefijo, String despuesDe, int tamano) {
+        NavigableSet<String> rango = listarPrefijo(prefijo);
+        if (despuesDe != null) {
+            rango = rango.tailSet(despuesDe, false);
+        }
+        List<String> pagina = new ArrayList<>(Math.min(tamano, 1024));
+        Iterator<String> it = rango.iterator();
+        while (pagina.size() < tamano && it.hasNext()) {
+            pagina.add(it.next());
+        }
+        return pagina;
     }
 
-    public Set<String> listarNombresSecretos() {
-        return secretos.keySet();
+    // Menor cadena mayor que todas las que empiezan con el prefijo (null si no existe)
+    private static String limiteSuperiorPrefijo(String prefijo) {
+        StringBuilder limite = new StringBuilder(prefijo);
+        while (limite.length() > 0) {
+            int ultimo = limite.length() - 1;
+            char c = limite.charAt(ultimo);
+            if (c != Character.MAX_VALUE) {
+                limite.setCharAt(ultimo, (char) (c + 1));
+                return limite.toString();
+            }
+            limite.setLength(ultimo);
+        }
+        return null;
     }
 
     public void eliminarSecreto(String nombre) {
-        if (secretos.remove(nombre) != null) {
+        if (quitarSecreto(nombre)) {
             info("Se eliminó el secreto '" + nombre + "'.");
             System.out.println("🗑️ Secreto '" + nombre + "' eliminado.");
         } else {
@@ -84,181 +240,715 @@ public class Boveda implements Serializable {
             System.out.println("Error: El secreto '" + nombre + "' no existe.");
             return false;
         }
-        secretos.put(nombre, nuevoValor);
+        guardarValor(nombre, arena.guardar(nuevoValor));
         info("Se actualizó el secreto '" + nombre + "'.");
         System.out.println("✔ Secreto '" + nombre + "' actualizado correctamente.");
         return true;
     }
 
-    // --- Métodos de Búsqueda Inteligente ---
+    /**
+     * Recupera el espacio que dejaron los secretos eliminados o reemplazados
+     * (también ocurre solo cuando los huecos superan la mitad de lo usado).
+     */
+    public void compactar() {
+        arena.compactar();
+    }
+
+    /**
+     * Recibe el valor de un secreto como bytes UTF-8 de solo lectura, sin copiarlo ni
+     * decodificarlo. La vista solo es válida durante la llamada.
+     */
+    @FunctionalInterface
+    public interface VisitanteValor {
+        void visitar(int indice, String nombre, ByteBuffer utf8);
+    }
+
+    /**
+     * Entrega todos los valores al visitante, repartidos en lotes entre varios hilos. Los índices
+     * siguen el orden alfabético (0 a cantidadSecretos() - 1). La arena queda bloqueada mientras
+     * dura el recorrido, así que el visitante no debe modificar la bóveda.
+     */
+    public void recorrerValores(int hilos, VisitanteValor visitante) throws InterruptedException {
+        String[] lista = nombres.toArray(new String[0]);
+        int[] ranuras = new int[lista.length];
+        for (int i = 0; i < lista.length; i++) {
+            ranuras[i] = secretos.get(lista[i]);
+        }
+        synchronized (arena) {
+            if (hilos <= 1 || lista.length < TAMANO_LOTE_RECORRIDO) {
+                for (int i = 0; i < lista.length; i++) {
+                    visitante.visitar(i, lista[i], arena.vistaSoloLectura(ranuras[i]));
+                }
+                return;
+            }
+            ExecutorService pool = Executors.newFixedThreadPool(hilos, UtilidadesHilos.fabricaDaemon("recorrido"));
+            try {
+                List<Future<?>> pendientes = new ArrayList<>();
+                for (int inicio = 0; inicio < lista.length; inicio += TAMANO_LOTE_RECORRIDO) {
+                    int desde = inicio;
+                    int hasta = Math.min(lista.length, inicio + TAMANO_LOTE_RECORRIDO);
+                    pendientes.add(pool.submit(() -> {
+                        for (int i = desde; i < hasta; i++) {
+                            visitante.visitar(i, lista[i], arena.vistaSoloLectura(ranuras[i]));
+                        }
+                    }));
+                }
+                for (Future<?> pendiente : pendientes) {
+                    pendiente.get();
+                }
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Error al recorrer los valores: " + e.getCause().getMessage(), e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Sobrescribe con ceros todos los valores y vacía la bóveda. Se llama al bloquear:
+     * a partir de aquí esta instancia ya no contiene secretos.
+     */
+    public void destruir() {
+        arena.destruir();
+        secretos.clear();
+        nombres.clear();
+        cambiaronNombres();
+        historiales.clear();
+        metadatos.clear();
+        synchronized (vencimientos) {
+            vencimientos.limpiar();
+            vencidos.clear();
+        }
+        info("Valores de la bóveda borrados de memoria.");
+    }
+
+    // Asocia el nombre con una ranura nueva; la anterior, si existía, pasa al historial y se libera
+    private void guardarValor(String nombre, int ranura) {
+        Integer anterior = secretos.put(nombre, ranura);
+        long ahora = System.currentTimeMillis();
+        if (anterior == null) {
+            nombres.add(nombre);
+            cambiaronNombres();
+            metadatos.put(nombre, new MetadatosSecreto(ahora, ahora, 0));
+            return;
+        }
+        metadatos.get(nombre).setModificado(ahora);
+        if (maxVersiones > 0) {
+            HistorialVersiones historial = historiales.computeIfAbsent(nombre, n -> new HistorialVersiones());
+            historial.registrar(arena, ranura, anterior, System.currentTimeMillis());
+            historial.recortar(arena, maxVersiones, fechaMinimaRetencion());
+        }
+        arena.liberar(anterior);
+    }
+
+    private void liberarHistorial(String nombre) {
+        HistorialVersiones historial = historiales.remove(nombre);
+        if (historial != null) {
+            historial.liberar(arena);
+        }
+    }
+
+    private void olvidarMetadatos(String nombre) {
+        metadatos.remove(nombre);
+        synchronized (vencimientos) {
+            vencimientos.cancelar(nombre);
+            vencidos.remove(nombre);
+        }
+    }
+
+    // --- Fechas y vencimientos ---
+
+    /**
+     * Fechas de creación, modificación y vencimiento del secreto (null si no existe).
+     */
+    public MetadatosSecreto obtenerMetadatos(String nombre) {
+        return metadatos.get(nombre);
+    }
+
+    /**
+     * Fija cuándo debe rotarse un secreto.
+     *
+     * @param vence Milisegundos desde la época; 0 quita el vencimiento
+     * @return false si el secreto no existe
+     */
+    public boolean establecerVencimiento(String nombre, long vence) {
+        MetadatosSecreto datos = metadatos.get(nombre);
+        if (datos == null) {
+            warn("Intento de fijar el vencimiento del secreto '" + nombre + "', que no existe.");
+            return false;
+        }
+        datos.setVence(vence);
+        // Cambiar el vencimiento también cuenta como modificación (decide los conflictos al fusionar)
+        datos.setModificado(System.currentTimeMillis());
+        synchronized (vencimientos) {
+            vencidos.remove(nombre);
+            if (vence == 0) {
+                vencimientos.cancelar(nombre);
+            } else {
+                vencimientos.programar(nombre, vence);
+            }
+        }
+        info(vence == 0
+                ? "Se quitó el vencimiento del secreto '" + nombre + "'."
+                : "Se fijó el vencimiento del secreto '" + nombre + "'.");
+        return true;
+    }
+
+    /**
+     * Avanza la rueda de vencimientos hasta ahora. Cada secreto que vence se registra una
+     * vez en la bitácora y pasa a listarVencidos().
+     *
+     * @return Los secretos que vencieron desde la revisión anterior
+     */
+    public List<String> revisarVencimientos() {
+        List<String> nuevos;
+        synchronized (vencimientos) {
+            nuevos = vencimientos.avanzar(System.currentTimeMillis());
+            vencidos.addAll(nuevos);
+        }
+        for (String nombre : nuevos) {
+            warn("El secreto '" + nombre + "' venció y debe rotarse.");
+        }
+        return nuevos;
+    }
+
+    /**
+     * Secretos aún no vencidos que vencen dentro de la ventana, del más próximo al más lejano.
+     */
+    public List<String> proximosAVencer(long ventanaMilis) {
+        synchronized (vencimientos) {
+            return vencimientos.vencenAntesDe(System.currentTimeMillis() + ventanaMilis);
+        }
+    }
+
+    /**
+     * Secretos cuyo vencimiento ya se disparó (en orden alfabético).
+     */
+    public List<String> listarVencidos() {
+        synchronized (vencimientos) {
+            return new ArrayList<>(vencidos);
+        }
+    }
+
+    // Vuelve a programar el vencimiento de un secreto recién cargado o renombrado
+    private void programarVencimiento(String nombre, MetadatosSecreto datos) {
+        metadatos.put(nombre, datos);
+        if (datos.tieneVencimiento()) {
+            synchronized (vencimientos) {
+                vencimientos.programar(nombre, datos.getVence());
+            }
+        }
+    }
+
+    // --- Historial de versiones ---
+
+    /**
+     * Fechas (milisegundos) en que cada versión anterior dejó de ser la actual, de la más
+     * reciente a la más antigua. La versión 1 es la primera de la lista.
+     */
+    public List<Long> listarVersiones(String nombre) {
+        HistorialVersiones historial = historiales.get(nombre);
+        List<Long> fechas = new ArrayList<>();
+        if (historial != null) {
+            for (int i = 0; i < historial.cantidad(); i++) {
+                fechas.add(historial.fecha(i));
+            }
+        }
+        return fechas;
+    }
+
+    /**
+     * Reconstruye una versión anterior (1 = la inmediatamente anterior a la actual). Solo se
+     * decodifica al pedirla; el llamador debe borrar el arreglo al terminar.
+     *
+     * @return El valor, o null si el secreto o la versión no existen
+     */
+    public char[] obtenerVersion(String nombre, int version) {
+        byte[] utf8 = reconstruirVersion(nombre, version);
+        if (utf8 == null) {
+            return null;
+        }
+        info("Se consultó la versión " + version + " del secreto '" + nombre + "'.");
+        try {
+            return ArenaSecretos.decodificar(utf8, 0, utf8.length);
+        } finally {
+            Arrays.fill(utf8, (byte) 0);
+        }
+    }
+
+    /**
+     * Vuelve a poner como actual una versión anterior. La actual pasa al historial, así que
+     * restaurar también se puede deshacer.
+     *
+     * @return true si se restauró, false si el secreto o la versión no existen
+     */
+    public boolean restaurarVersion(String nombre, int version) {
+        byte[] utf8 = reconstruirVersion(nombre, version);
+        if (utf8 == null) {
+            warn("Intento de restaurar la versión " + version + " del secreto '" + nombre + "', que no existe.");
+            return false;
+        }
+        try {
+            guardarValor(nombre, arena.guardar(utf8, 0, utf8.length));
+        } finally {
+            Arrays.fill(utf8, (byte) 0);
+        }
+        info("Se restauró la versión " + version + " del secreto '" + nombre + "'.");
+        return true;
+    }
+
+    /**
+     * Cambia la retención del historial y la aplica de inmediato a todos los secretos.
+     *
+     * @param maxVersiones  Versiones anteriores que se conservan por secreto (0 = sin historial)
+     * @param diasRetencion Días que se conserva una versión reemplazada (0 = sin límite)
+     */
+    public void configurarRetencion(int maxVersiones, int diasRetencion) {
+        this.maxVersiones = Math.max(0, maxVersiones);
+        this.diasRetencion = Math.max(0, diasRetencion);
+        long fechaMinima = fechaMinimaRetencion();
+        historiales.values().removeIf(historial -> {
+            historial.recortar(arena, this.maxVersiones, fechaMinima);
+            return historial.cantidad() == 0;
+        });
+        info("Retención del historial: " + this.maxVersiones + " versiones, "
+                + (this.diasRetencion == 0 ? "sin límite de días" : this.diasRetencion + " días") + ".");
+    }
+
+    public int getMaxVersiones() {
+        return maxVersiones;
+    }
+
+    public int getDiasRetencion() {
+        return diasRetencion;
+    }
+
+    private long fechaMinimaRetencion() {
+        return diasRetencion == 0 ? Long.MIN_VALUE : System.currentTimeMillis() - diasRetencion * MILIS_POR_DIA;
+    }
+
+    private byte[] reconstruirVersion(String nombre, int version) {
+        Integer actual = secretos.get(nombre);
+        HistorialVersiones historial = historiales.get(nombre);
+        if (actual == null || historial == null || version < 1 || version > historial.cantidad()) {
+            return null;
+        }
+        return historial.reconstruir(arena, actual, version - 1);
+    }
+
+    // --- Espacios de nombres (carpetas) ---
+
+    /**
+     * Convierte "prod/db", "/prod/db/" o "prod/db/" en el prefijo "prod/db/" ("" = raíz).
+     */
+    public static String normalizarEspacio(String espacio) {
+        String limpio = espacio == null ? "" : espacio.trim();
+        while (limpio.startsWith(SEPARADOR)) {
+            limpio = limpio.substring(1);
+        }
+        while (limpio.endsWith(SEPARADOR + SEPARADOR)) {
+            limpio = limpio.substring(0, limpio.length() - 1);
+        }
+        return limpio.isEmpty() || limpio.endsWith(SEPARADOR) ? limpio : limpio + SEPARADOR;
+    }
+
+    /**
+     * Contenido inmediato de un espacio, como en un listado de carpeta: los secretos que están
+     * directamente en él y sus subespacios (terminados en "/"), sin el prefijo del espacio.
+     * Cada subespacio se salta de un salto en el índice ordenado, así que el costo depende de
+     * cuántos hijos hay, no de cuántos secretos tiene el subárbol.
+     */
+    public List<String> listarHijos(String espacio) {
+        String prefijo = normalizarEspacio(espacio);
+        NavigableSet<String> subarbol = listarPrefijo(prefijo);
+        List<String> hijos = new ArrayList<>();
+        String actual = subarbol.isEmpty() ? null : subarbol.first();
+        while (actual != null) {
+            int barra = actual.indexOf(SEPARADOR, prefijo.length());
+            if (barra < 0) {
+                hijos.add(actual.substring(prefijo.length()));
+                actual = subarbol.higher(actual);
+            } else {
+                String carpeta = actual.substring(0, barra + 1);
+                hijos.add(carpeta.substring(prefijo.length()));
+                String siguiente = limiteSuperiorPrefijo(carpeta);
+                actual = siguiente == null ? null : subarbol.ceiling(siguiente);
+            }
+        }
+        return hijos;
+    }
 
     /**
-     * Calcula la distancia de Levenshtein entre dos cadenas.
-     * La distancia representa el número mínimo de operaciones (inserción, eliminación, sustitución)
-     * necesarias para transformar una cadena en otra.
+     * Cantidad de secretos en el espacio y sus subespacios.
+     */
+    public int contarEspacio(String espacio) {
+        return listarPrefijo(normalizarEspacio(espacio)).size();
+    }
+
+    /**
+     * Mueve (renombra) un espacio completo en una sola operación: o se mueven todos sus
+     * secretos o ninguno. Los valores no se copian; solo cambian los nombres.
      *
-     * @param a Primera cadena
-     * @param b Segunda cadena
-     * @return Distancia de edición entre las dos cadenas
-     */
-    private int calcularDistanciaLevenshtein(String a, String b) {
-        a = a.toLowerCase();
-        b = b.toLowerCase();
-        
-        int[][] dp = new int[a.length() + 1][b.length() + 1];
-        
-        // Inicializar primera columna y fila
-        for (int i = 0; i <= a.length(); i++) {
-            dp[i][0] = i;
-        }
-        for (int j = 0; j <= b.length(); j++) {
-            dp[0][j] = j;
-        }
-        
-        // Llenar la matriz
-        for (int i = 1; i <= a.length(); i++) {
-            for (int j = 1; j <= b.length(); j++) {
-                int costo = (a.charAt(i - 1) == b.charAt(j - 1)) ? 0 : 1;
-                dp[i][j] = Math.min(
-                    Math.min(
-                        dp[i - 1][j] + 1,      // Eliminación
-                        dp[i][j - 1] + 1       // Inserción
-                    ),
-                    dp[i - 1][j - 1] + costo   // Sustitución
-                );
+     * @return Secretos movidos
+     * @throws IllegalArgumentException si el destino está dentro del origen o algún nombre
+     *                                  de destino ya existe
+     */
+    public int moverEspacio(String origen, String destino) {
+        String desde = normalizarEspacio(origen);
+        String hacia = normalizarEspacio(destino);
+        if (desde.isEmpty() || hacia.startsWith(desde)) {
+            throw new IllegalArgumentException("No se puede mover '" + desde + "' dentro de sí mismo.");
+        }
+        List<String> origenes = new ArrayList<>(listarPrefijo(desde));
+        for (String nombre : origenes) {
+            String nuevo = hacia + nombre.substring(desde.length());
+            if (secretos.containsKey(nuevo)) {
+                throw new IllegalArgumentException("Ya existe el secreto '" + nuevo + "'.");
             }
         }
-        
-        return dp[a.length()][b.length()];
+        for (String nombre : origenes) {
+            Integer ranura = secretos.remove(nombre);
+            nombres.remove(nombre);
+            String nuevo = hacia + nombre.substring(desde.length());
+            secretos.put(nuevo, ranura);
+            nombres.add(nuevo);
+            HistorialVersiones historial = historiales.remove(nombre);
+            if (historial != null) {
+                historiales.put(nuevo, historial);
+            }
+            MetadatosSecreto datos = metadatos.get(nombre);
+            olvidarMetadatos(nombre);
+            programarVencimiento(nuevo, datos);
+        }
+        cambiaronNombres();
+        info("Se movió el espacio '" + desde + "' a '" + hacia + "' (" + origenes.size() + " secretos).");
+        return origenes.size();
     }
 
     /**
-     * Calcula una puntuación de similitud para ordenar resultados.
-     * Menor puntuación = mayor relevancia.
-     * Prioriza: coincidencia exacta > contiene > Levenshtein cercano
+     * Elimina un espacio con todo su subárbol (valores borrados con ceros).
+     * Se registra un solo evento en la bitácora.
      *
-     * @param nombreSecreto Nombre del secreto almacenado
-     * @param patron Patrón de búsqueda del usuario
-     * @return Puntuación de similitud (menor es mejor)
+     * @return Secretos eliminados
      */
-    private int calcularPuntuacionSimilitud(String nombreSecreto, String patron) {
-        String nombreLower = nombreSecreto.toLowerCase();
-        String patronLower = patron.toLowerCase();
-        
-        // Coincidencia exacta (máxima prioridad)
-        if (nombreLower.equals(patronLower)) {
-            return 0;
+    public int eliminarEspacio(String espacio) {
+        String prefijo = normalizarEspacio(espacio);
+        String limite = limiteSuperiorPrefijo(prefijo);
+        // Vista modificable del subárbol: se borra recorriéndolo, sin tocar el resto
+        NavigableSet<String> subarbol = prefijo.isEmpty() ? nombres
+                : limite == null ? nombres.tailSet(prefijo, true)
+                : nombres.subSet(prefijo, true, limite, false);
+        int eliminados = 0;
+        for (Iterator<String> it = subarbol.iterator(); it.hasNext(); ) {
+            String nombre = it.next();
+            arena.liberar(secretos.remove(nombre));
+            liberarHistorial(nombre);
+            olvidarMetadatos(nombre);
+            it.remove();
+            eliminados++;
         }
-        
-        // Comienza con el patrón
-        if (nombreLower.startsWith(patronLower)) {
-            return 1;
+        cambiaronNombres();
+        info("Se eliminó el espacio '" + prefijo + "' (" + eliminados + " secretos).");
+        return eliminados;
+    }
+
+    /**
+     * Copia un espacio (con sus subespacios) a una bóveda nueva, con los mismos nombres.
+     * Solo se exportan los valores actuales, no el historial.
+     */
+    public Boveda exportarEspacio(String espacio) {
+        String prefijo = normalizarEspacio(espacio);
+        Boveda exportada = new Boveda();
+        for (String nombre : listarPrefijo(prefijo)) {
+            exportada.copiarSecretoDe(this, nombre);
+        }
+        info("Se exportó el espacio '" + prefijo + "' (" + exportada.cantidadSecretos() + " secretos).");
+        return exportada;
+    }
+
+    /**
+     * Copia un secreto de otra bóveda con sus fechas (creación, modificación y vencimiento).
+     * Si ya existía aquí, conserva su fecha de creación y el valor anterior pasa al historial.
+     */
+    void copiarSecretoDe(Boveda origen, String nombre) {
+        int ranuraOrigen = origen.secretos.get(nombre);
+        byte[] valor = new byte[origen.arena.longitud(ranuraOrigen)];
+        origen.arena.copiarBytes(ranuraOrigen, valor, 0);
+        MetadatosSecreto previos = metadatos.get(nombre);
+        try {
+            guardarValor(nombre, arena.guardar(valor, 0, valor.length));
+        } finally {
+            Arrays.fill(valor, (byte) 0);
         }
-        
-        // Contiene el patrón
-        if (nombreLower.contains(patronLower)) {
-            return 2;
+        MetadatosSecreto datos = origen.metadatos.get(nombre);
+        synchronized (vencimientos) {
+            vencimientos.cancelar(nombre);
+            vencidos.remove(nombre);
         }
-        
-        // Distancia Levenshtein (ajustada para ordenamiento)
-        int distancia = calcularDistanciaLevenshtein(nombreSecreto, patron);
-        return 10 + distancia; // Base de 10 para que Levenshtein tenga menor prioridad que contains
+        programarVencimiento(nombre, new MetadatosSecreto(previos != null ? previos.getCreado() : datos.getCreado(),
+                datos.getModificado(), datos.getVence()));
     }
 
+    /**
+     * Elimina un secreto (con su historial) sin mensajes; devuelve false si no existía.
+     */
+    boolean quitarSecreto(String nombre) {
+        Integer ranura = secretos.remove(nombre);
+        if (ranura == null) {
+            return false;
+        }
+        nombres.remove(nombre);
+        cambiaronNombres();
+        arena.liberar(ranura);
+        liberarHistorial(nombre);
+        olvidarMetadatos(nombre);
+        return true;
+    }
+
+    /**
+     * Indica si un secreto tiene el mismo valor y vencimiento en las dos bóvedas (o no existe
+     * en ninguna de las dos).
+     */
+    static boolean mismaEntrada(Boveda a, Boveda b, String nombre) {
+        Integer ranuraA = a.secretos.get(nombre);
+        Integer ranuraB = b.secretos.get(nombre);
+        if (ranuraA == null || ranuraB == null) {
+            return ranuraA == null && ranuraB == null;
+        }
+        if (a.metadatos.get(nombre).getVence() != b.metadatos.get(nombre).getVence()) {
+            return false;
+        }
+        byte[] valorA = new byte[a.arena.longitud(ranuraA)];
+        byte[] valorB = new byte[b.arena.longitud(ranuraB)];
+        try {
+            if (valorA.length != valorB.length) {
+                return false;
+            }
+            a.arena.copiarBytes(ranuraA, valorA, 0);
+            b.arena.copiarBytes(ranuraB, valorB, 0);
+            return MessageDigest.isEqual(valorA, valorB);
+        } finally {
+            Arrays.fill(valorA, (byte) 0);
+            Arrays.fill(valorB, (byte) 0);
+        }
+    }
+
+    // --- Métodos de Búsqueda Inteligente ---
+
     /**
      * Busca secretos de forma inteligente usando múltiples estrategias:
      * 1. Coincidencia exacta (ignorando mayúsculas/minúsculas)
      * 2. Coincidencia parcial (contiene el patrón)
      * 3. Similitud por distancia Levenshtein (tolerancia a errores tipográficos)
+     * Las búsquedas repetidas se responden desde un LRU hasta que cambian los nombres.
+     * Para autocompletar (una consulta por tecla), use una SesionBusqueda.
      *
      * @param patron Patrón de búsqueda ingresado por el usuario
      * @param maxResultados Número máximo de resultados a retornar
      * @return Lista de nombres de secretos ordenados por relevancia
      */
     public List<String> buscarSecretosInteligente(String patron, int maxResultados) {
-        if (patron == null || patron.trim().isEmpty()) {
-            return new ArrayList<>();
-        }
-        
-        String patronLower = patron.toLowerCase().trim();
-        
-        // Umbral dinámico basado en la longitud del patrón:
-        // - Patrón de 1-2 caracteres: solo coincidencia exacta o contains (umbral 0)
-        // - Patrón de 3-4 caracteres: permitir 1 error tipográfico
-        // - Patrón de 5-7 caracteres: permitir 2 errores
-        // - Patrón de 8+ caracteres: permitir 3 errores
-        int umbralLevenshtein;
-        if (patronLower.length() <= 2) {
-            umbralLevenshtein = 0; // Solo exacto o contains para búsquedas muy cortas
-        } else if (patronLower.length() <= 4) {
-            umbralLevenshtein = 1;
-        } else if (patronLower.length() <= 7) {
-            umbralLevenshtein = 2;
-        } else {
-            umbralLevenshtein = 3;
-        }
-        
-        final int umbralFinal = umbralLevenshtein;
-        
-        // Filtrar secretos que coincidan por algún criterio
-        List<String> resultados = secretos.keySet().stream()
-            .filter(nombre -> nombre != null && !nombre.trim().isEmpty()) // Ignorar nombres vacíos
-            .filter(nombre -> {
-                String nombreLower = nombre.toLowerCase().trim();
-                // Incluir si: coincide exacto, contiene el patrón, o distancia Levenshtein <= umbral
-                boolean coincideExacto = nombreLower.equals(patronLower);
-                boolean contienePatron = nombreLower.contains(patronLower);
-                boolean cercanoLevenshtein = umbralFinal > 0 && 
-                    calcularDistanciaLevenshtein(nombreLower, patronLower) <= umbralFinal;
-                
-                return coincideExacto || contienePatron || cercanoLevenshtein;
-            })
-            .sorted(Comparator.comparingInt(nombre -> calcularPuntuacionSimilitud(nombre, patron)))
-            .limit(maxResultados)
-            .collect(Collectors.toList());
-        
-        return resultados;
+        return iniciarBusqueda().buscar(patron, maxResultados);
+    }
+
+    /**
+     * Crea una sesión de búsqueda incremental sobre esta bóveda (ver SesionBusqueda).
+     */
+    public SesionBusqueda iniciarBusqueda() {
+        return new SesionBusqueda(this);
+    }
+
+    int versionNombres() {
+        return versionNombres;
+    }
+
+    SesionBusqueda.Recientes busquedasRecientes() {
+        return busquedasRecientes;
+    }
+
+    private void cambiaronNombres() {
+        versionNombres++;
+        busquedasRecientes.limpiar();
     }
 
     // --- Métodos de Serialización (Conversión a bytes) ---
 
+    /**
+     * Formato: "SDSV" | versión | versiones máximas (int) | días de retención (int) |
+     * cantidad (int) | por secreto: longitud y UTF-8 del nombre, longitud y UTF-8 del valor,
+     * creado, modificado y vence (long), cantidad de versiones anteriores y, por cada una, fecha (long), longitud y bytes del delta.
+     * El arreglo se reserva del tamaño exacto para que el valor en claro no quede repartido en
+     * copias intermedias; quien lo use debe borrarlo después.
+     */
     public byte[] convertirABytes() throws IOException {
-        // Usamos try-with-resources para cerrar los streams automáticamente
-        try (ByteArrayOutputStream flujoBytes = new ByteArrayOutputStream();
-             ObjectOutputStream flujoObjetos = new ObjectOutputStream(flujoBytes)) {
+        List<byte[]> nombres = new ArrayList<>(secretos.size());
+        List<String> claves = new ArrayList<>(secretos.size());
+        long tamano = MAGIA.length + 1 + 4 + 4 + 4;
+        for (Map.Entry<String, Integer> entrada : secretos.entrySet()) {
+            byte[] nombre = entrada.getKey().getBytes(StandardCharsets.UTF_8);
+            nombres.add(nombre);
+            claves.add(entrada.getKey());
+            tamano += 12 + nombre.length + arena.longitud(entrada.getValue()) + 24;
+            HistorialVersiones historial = historiales.get(entrada.getKey());
+            for (int v = 0; historial != null && v < historial.cantidad(); v++) {
+                tamano += 12 + arena.longitud(historial.ranura(v));
+            }
+        }
+        if (tamano > Integer.MAX_VALUE - 8) {
+            throw new IOException("La bóveda es demasiado grande para serializarse.");
+        }
 
-            flujoObjetos.writeObject(this.secretos); // Guardamos el mapa
-            flujoObjetos.flush(); // Aseguramos que todos los datos se escriban
-            return flujoBytes.toByteArray();
+        byte[] resultado = new byte[(int) tamano];
+        ByteBuffer salida = ByteBuffer.wrap(resultado);
+        salida.put(MAGIA).put(VERSION).putInt(maxVersiones).putInt(diasRetencion).putInt(nombres.size());
+        for (int i = 0; i < nombres.size(); i++) {
+            salida.putInt(nombres.get(i).length).put(nombres.get(i));
+            escribirRanura(salida, secretos.get(claves.get(i)));
+            MetadatosSecreto datos = metadatos.get(claves.get(i));
+            salida.putLong(datos.getCreado()).putLong(datos.getModificado()).putLong(datos.getVence());
+            HistorialVersiones historial = historiales.get(claves.get(i));
+            int versiones = historial == null ? 0 : historial.cantidad();
+            salida.putInt(versiones);
+            for (int v = 0; v < versiones; v++) {
+                salida.putLong(historial.fecha(v));
+                escribirRanura(salida, historial.ranura(v));
+            }
         }
+        return resultado;
+    }
+
+    // Longitud y bytes de una ranura, copiados directamente de la arena al arreglo de salida
+    private void escribirRanura(ByteBuffer salida, int ranura) {
+        int longitud = arena.longitud(ranura);
+        salida.putInt(longitud);
+        arena.copiarBytes(ranura, salida.array(), salida.position());
+        salida.position(salida.position() + longitud);
     }
 
     // Archivo: `src/modelos/Vault.java`
     public static Boveda crearDesdeBytes(byte[] data) throws Exception {
+        if (data.length >= MAGIA.length && Arrays.equals(data, 0, MAGIA.length, MAGIA, 0, MAGIA.length)) {
+            return leerFormatoBinario(data);
+        }
 
+        // Formato anterior: HashMap<String, String> serializado
         try (ByteArrayInputStream byteIn = new ByteArrayInputStream(data);
              ObjectInputStream objIn = new ObjectInputStream(byteIn)) {
 
             Object obj = objIn.readObject();
 
             if (obj instanceof Map<?, ?> raw) {
-                Map<String, String> safe = new HashMap<>(raw.size());
+                Boveda nuevaBoveda = new Boveda();
 
                 for (Map.Entry<?, ?> entry : raw.entrySet()) {
                     Object k = entry.getKey();
                     Object v = entry.getValue();
                     if (!(k instanceof String) || !(v instanceof String)) {
+                        nuevaBoveda.destruir();
                         throw new IOException("El Map contiene claves/valores que no son String.");
                     }
-                    safe.put((String) k, (String) v);
+                    nuevaBoveda.guardarValor((String) k, nuevaBoveda.arena.guardar((String) v));
+                    nuevaBoveda.programarVencimiento((String) k, new MetadatosSecreto(0, 0, 0));
                 }
 
-                Boveda nuevaBoveda = new Boveda();
-                nuevaBoveda.secretos = safe;
                 return nuevaBoveda;
             } else {
                 throw new IOException("Los datos no contienen un Map válido.");
             }
         }
     }
+
+    private static Boveda leerFormatoBinario(byte[] data) throws IOException {
+        Boveda nuevaBoveda = new Boveda();
+        try {
+            ByteBuffer entrada = ByteBuffer.wrap(data);
+            entrada.position(MAGIA.length);
+            byte version = entrada.get();
+            if (version != VERSION && version != VERSION_SIN_METADATOS && version != VERSION_SIN_HISTORIAL) {
+                throw new IOException("Versión de bóveda desconocida.");
+            }
+            if (version != VERSION_SIN_HISTORIAL) {
+                nuevaBoveda.maxVersiones = entrada.getInt();
+                nuevaBoveda.diasRetencion = entrada.getInt();
+            }
+            int cantidad = entrada.getInt();
+            for (int i = 0; i < cantidad; i++) {
+                int longitudNombre = entrada.getInt();
+                if (longitudNombre < 0 || longitudNombre > entrada.remaining()) {
+                    throw new IOException("Bóveda dañada.");
+                }
+                String nombre = new String(data, entrada.position(), longitudNombre, StandardCharsets.UTF_8);
+                entrada.position(entrada.position() + longitudNombre);
+                nuevaBoveda.guardarValor(nombre, nuevaBoveda.leerRanura(entrada));
+                // Sin fechas guardadas, creado y modificado quedan como desconocidos
+                MetadatosSecreto datos = version == VERSION
+                        ? new MetadatosSecreto(entrada.getLong(), entrada.getLong(), entrada.getLong())
+                        : new MetadatosSecreto(0, 0, 0);
+                nuevaBoveda.programarVencimiento(nombre, datos);
+                if (version == VERSION_SIN_HISTORIAL) {
+                    continue;
+                }
+                int versiones = entrada.getInt();
+                if (versiones > 0) {
+                    HistorialVersiones historial = new HistorialVersiones();
+                    for (int v = 0; v < versiones; v++) {
+                        long fecha = entrada.getLong();
+                        historial.agregarAlFinal(fecha, nuevaBoveda.leerRanura(entrada));
+                    }
+                    nuevaBoveda.historiales.put(nombre, historial);
+                }
+            }
+            return nuevaBoveda;
+        } catch (BufferUnderflowException e) {
+            nuevaBoveda.destruir();
+            throw new IOException("Bóveda dañada.");
+        } catch (IOException e) {
+            nuevaBoveda.destruir();
+            throw e;
+        }
+    }
+
+    // Inverso de escribirRanura(): copia longitud + bytes a la arena
+    private int leerRanura(ByteBuffer entrada) throws IOException {
+        int longitud = entrada.getInt();
+        if (longitud < 0 || longitud > entrada.remaining()) {
+            throw new IOException("Bóveda dañada.");
+        }
+        int ranura = arena.guardar(entrada.array(), entrada.position(), longitud);
+        entrada.position(entrada.position() + longitud);
+        return ranura;
+    }
+
+    // La serialización de Java usa el mismo formato binario
+    @Serial
+    private void writeObject(ObjectOutputStream salida) throws IOException {
+        byte[] datos = convertirABytes();
+        try {
+            salida.writeInt(datos.length);
+            salida.write(datos);
+        } finally {
+            Arrays.fill(datos, (byte) 0);
+        }
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream entrada) throws IOException {
+        byte[] datos = new byte[entrada.readInt()];
+        entrada.readFully(datos);
+        try {
+            Boveda leida = leerFormatoBinario(datos);
+            this.secretos = leida.secretos;
+            this.arena = leida.arena;
+            this.nombres = leida.nombres;
+            this.historiales = leida.historiales;
+            this.metadatos = leida.metadatos;
+            this.vencimientos = leida.vencimientos;
+            this.vencidos = leida.vencidos;
+            this.maxVersiones = leida.maxVersiones;
+            this.diasRetencion = leida.diasRetencion;
+            this.busquedasRecientes = leida.busquedasRecientes;
+        } finally {
+            Arrays.fill(datos, (byte) 0);
+        }
+    }
 }
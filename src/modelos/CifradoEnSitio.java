@@ -0,0 +1,265 @@
+package modelos;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import static modelos.RegistroBitacora.*;
+
+/**
+ * Cifra un archivo dentro de sí mismo (formato .locked segmentado), sin crear una copia.
+ * El espacio extra es el de la cabecera y los tags (~0,03 % del archivo) más un diario
+ * de un segmento, en lugar del 100 % que necesita cifrar hacia un archivo nuevo.
+ *
+ * Cada segmento cifrado es más largo que el original, así que su destino queda a la
+ * derecha de su origen. Por eso se procesa de atrás hacia adelante: al escribir un
+ * segmento solo se pisan orígenes ya cifrados (y su propio origen).
+ *
+ * El diario ("archivo.cifrando") guarda la cabecera, hasta qué segmento se llegó y, cuando
+ * el segmento pisa su propio origen, una copia de su texto en claro. Si el proceso se
+ * interrumpe, cifrar() de nuevo sobre el mismo archivo continúa donde quedó. Al terminar,
+ * se escribe la cabecera y un rename atómico aplica la extensión .locked.
+ */
+public class CifradoEnSitio {
+
+    public static final String EXTENSION_DIARIO = ".cifrando";
+
+    private static final byte[] MAGIA_DIARIO = {'S', 'D', 'S', 'J'};
+    // Diario: [magia 4][cabecera 24][verificación de clave 16][progreso: pendiente 8 + crc 8]
+    //         [registro: índice 8 + longitud 4 + crc 8 + texto en claro]
+    private static final int POSICION_PROGRESO = 4 + ArchivoCifrado.TAMANO_CABECERA + UtilidadesCifrado.TAMANO_TAG;
+    private static final int POSICION_REGISTRO = POSICION_PROGRESO + 16;
+    private static final long CONTADOR_VERIFICACION = 0xFFFFFFFFL;
+    // Segmentos por lote cuando el destino no pisa orígenes pendientes (4 MiB en memoria)
+    private static final int MAX_SEGMENTOS_LOTE = 64;
+
+    private CifradoEnSitio() {
+    }
+
+    /**
+     * Ruta del diario asociado a un archivo.
+     */
+    public static Path rutaDiario(Path archivo) {
+        return Paths.get(archivo + EXTENSION_DIARIO);
+    }
+
+    /**
+     * Indica si el archivo tiene un cifrado en sitio interrumpido.
+     */
+    public static boolean tieneDiarioPendiente(Path archivo) {
+        return Files.exists(rutaDiario(archivo));
+    }
+
+    /**
+     * Cifra el archivo en sitio y lo renombra a destino. Si hay un diario pendiente, reanuda.
+     * Reanudar exige la misma clave con la que empezó el cifrado.
+     */
+    public static void cifrar(Path archivo, Path destino, SecretKey clave) throws Exception {
+        Path rutaDiario = rutaDiario(archivo);
+        if (!Files.exists(archivo)) {
+            if (Files.exists(destino) && Files.exists(rutaDiario)) {
+                // Caída entre el rename y el borrado del diario: ya estaba terminado
+                Files.delete(rutaDiario);
+                return;
+            }
+            throw new IOException("Archivo no encontrado: " + archivo.getFileName());
+        }
+
+        try (FileChannel datos = FileChannel.open(archivo, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             FileChannel diario = FileChannel.open(rutaDiario, StandardOpenOption.CREATE,
+                     StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+            ArchivoCifrado.Cabecera cabecera;
+            long pendiente;
+            if (diario.size() < POSICION_REGISTRO) {
+                cabecera = ArchivoCifrado.crearCabecera(datos.size());
+                pendiente = cabecera.segmentos();
+                iniciarDiario(diario, cabecera, clave, pendiente);
+            } else {
+                cabecera = leerDiario(diario, clave);
+                pendiente = leerProgreso(diario);
+                info("Reanudando cifrado en sitio de '" + archivo.getFileName() + "' (" + pendiente
+                        + " segmentos pendientes).");
+            }
+
+            // Reservar el espacio final antes de empezar (idempotente)
+            if (datos.size() < cabecera.tamanoCifrado()) {
+                ArchivoCifrado.escribirCompleto(datos, ByteBuffer.allocate(1), cabecera.tamanoCifrado() - 1);
+            }
+
+            while (pendiente > 0) {
+                long inicioLote = inicioLote(pendiente);
+                if (inicioLote < pendiente) {
+                    cifrarLote(datos, cabecera, clave, inicioLote, pendiente);
+                    pendiente = inicioLote;
+                } else {
+                    pendiente--;
+                    cifrarConDiario(datos, diario, cabecera, clave, pendiente);
+                }
+                escribirProgreso(diario, pendiente);
+            }
+
+            // La cabecera pisa el origen del segmento 0, que ya está cifrado
+            ArchivoCifrado.escribirCompleto(datos, ByteBuffer.wrap(cabecera.bytes), 0);
+            datos.force(true);
+        }
+
+        Files.move(archivo, destino, StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(rutaDiario);
+    }
+
+    /**
+     * Primer segmento del lote que termina en "pendiente" (exclusivo): el menor índice cuyo
+     * destino empieza después del final del origen del último segmento del lote. Si el
+     * resultado no es menor que pendiente, el segmento pisa su propio origen y va por diario.
+     */
+    private static long inicioLote(long pendiente) {
+        long finOrigen = pendiente * ArchivoCifrado.TAMANO_SEGMENTO;
+        long inicio = Math.floorDiv(finOrigen - ArchivoCifrado.TAMANO_CABECERA + ArchivoCifrado.TAMANO_SEGMENTO_CIFRADO - 1,
+                ArchivoCifrado.TAMANO_SEGMENTO_CIFRADO);
+        return Math.max(Math.max(inicio, 0), pendiente - MAX_SEGMENTOS_LOTE);
+    }
+
+    // Lote sin solapamiento: se leen todos los orígenes, luego se escriben todos los destinos
+    private static void cifrarLote(FileChannel datos, ArchivoCifrado.Cabecera cabecera, SecretKey clave,
+                                   long desde, long hasta) throws Exception {
+        byte[][] cifrados = new byte[(int) (hasta - desde)][];
+        byte[] bloque = new byte[ArchivoCifrado.TAMANO_SEGMENTO];
+        for (long i = desde; i < hasta; i++) {
+            int longitud = leerOrigen(datos, cabecera, i, bloque);
+            cifrados[(int) (i - desde)] = ArchivoCifrado.cifrarSegmento(cabecera, i, bloque, longitud, clave);
+        }
+        for (long i = desde; i < hasta; i++) {
+            ArchivoCifrado.escribirCompleto(datos, ByteBuffer.wrap(cifrados[(int) (i - desde)]),
+                    ArchivoCifrado.posicionSegmento(i));
+        }
+        datos.force(false);
+    }
+
+    // Segmento que pisa su propio origen: el texto en claro queda en el diario antes de escribir
+    private static void cifrarConDiario(FileChannel datos, FileChannel diario, ArchivoCifrado.Cabecera cabecera,
+                                        SecretKey clave, long indice) throws Exception {
+        byte[] bloque = leerRegistro(diario, indice);
+        int longitud;
+        if (bloque != null) {
+            longitud = bloque.length;
+        } else {
+            bloque = new byte[ArchivoCifrado.TAMANO_SEGMENTO];
+            longitud = leerOrigen(datos, cabecera, indice, bloque);
+            escribirRegistro(diario, indice, bloque, longitud);
+        }
+        ArchivoCifrado.escribirCompleto(datos,
+                ByteBuffer.wrap(ArchivoCifrado.cifrarSegmento(cabecera, indice, bloque, longitud, clave)),
+                ArchivoCifrado.posicionSegmento(indice));
+        datos.force(false);
+    }
+
+    private static int leerOrigen(FileChannel datos, ArchivoCifrado.Cabecera cabecera, long indice, byte[] bloque)
+            throws IOException {
+        int longitud = ArchivoCifrado.longitudSegmento(cabecera.tamanoOriginal, indice);
+        ArchivoCifrado.leerCompleto(datos, ByteBuffer.wrap(bloque, 0, longitud),
+                indice * ArchivoCifrado.TAMANO_SEGMENTO);
+        return longitud;
+    }
+
+    // --- Diario ---
+
+    private static void iniciarDiario(FileChannel diario, ArchivoCifrado.Cabecera cabecera, SecretKey clave,
+                                      long pendiente) throws Exception {
+        ByteBuffer inicio = ByteBuffer.allocate(POSICION_PROGRESO);
+        inicio.put(MAGIA_DIARIO).put(cabecera.bytes).put(verificacionClave(cabecera, clave)).flip();
+        ArchivoCifrado.escribirCompleto(diario, inicio, 0);
+        escribirProgreso(diario, pendiente);
+    }
+
+    private static ArchivoCifrado.Cabecera leerDiario(FileChannel diario, SecretKey clave) throws Exception {
+        ByteBuffer inicio = ByteBuffer.allocate(POSICION_PROGRESO);
+        ArchivoCifrado.leerCompleto(diario, inicio, 0);
+        byte[] bytes = inicio.array();
+        if (!Arrays.equals(Arrays.copyOfRange(bytes, 0, 4), MAGIA_DIARIO)) {
+            throw new IOException("Diario de cifrado inválido.");
+        }
+        ArchivoCifrado.Cabecera cabecera = new ArchivoCifrado.Cabecera(
+                Arrays.copyOfRange(bytes, 4, 4 + ArchivoCifrado.TAMANO_CABECERA));
+        byte[] verificacion = Arrays.copyOfRange(bytes, 4 + ArchivoCifrado.TAMANO_CABECERA, POSICION_PROGRESO);
+        try {
+            UtilidadesCifrado.descifrarSegmento(verificacion, 0, verificacion.length, clave,
+                    UtilidadesCifrado.nonceSegmento(cabecera.prefijo, CONTADOR_VERIFICACION), cabecera.bytes);
+        } catch (AEADBadTagException e) {
+            throw new Exception("El cifrado interrumpido se inició con otra contraseña.");
+        }
+        return cabecera;
+    }
+
+    // Tag de un segmento vacío: permite comprobar la clave al reanudar sin descifrar datos
+    private static byte[] verificacionClave(ArchivoCifrado.Cabecera cabecera, SecretKey clave) throws Exception {
+        return UtilidadesCifrado.cifrarSegmento(new byte[0], 0, 0, clave,
+                UtilidadesCifrado.nonceSegmento(cabecera.prefijo, CONTADOR_VERIFICACION), cabecera.bytes);
+    }
+
+    private static void escribirProgreso(FileChannel diario, long pendiente) throws IOException {
+        ByteBuffer progreso = ByteBuffer.allocate(16);
+        progreso.putLong(pendiente).putLong(crc(progreso.array(), 0, 8)).flip();
+        ArchivoCifrado.escribirCompleto(diario, progreso, POSICION_PROGRESO);
+        diario.force(false);
+    }
+
+    private static long leerProgreso(FileChannel diario) throws IOException {
+        ByteBuffer progreso = ByteBuffer.allocate(16);
+        ArchivoCifrado.leerCompleto(diario, progreso, POSICION_PROGRESO);
+        progreso.flip();
+        long pendiente = progreso.getLong();
+        if (progreso.getLong() != crc(progreso.array(), 0, 8)) {
+            throw new IOException("Diario de cifrado dañado.");
+        }
+        return pendiente;
+    }
+
+    private static void escribirRegistro(FileChannel diario, long indice, byte[] bloque, int longitud)
+            throws IOException {
+        ByteBuffer registro = ByteBuffer.allocate(20 + longitud);
+        registro.putLong(indice).putInt(longitud).putLong(0).put(bloque, 0, longitud);
+        registro.putLong(12, crc(registro.array(), 0, 12) ^ crc(registro.array(), 20, longitud)).flip();
+        ArchivoCifrado.escribirCompleto(diario, registro, POSICION_REGISTRO);
+        diario.force(false);
+    }
+
+    /**
+     * Texto en claro guardado para el segmento, o null si el registro es de otro segmento
+     * o quedó a medio escribir (en ese caso el origen aún no se había tocado).
+     */
+    private static byte[] leerRegistro(FileChannel diario, long indice) throws IOException {
+        if (diario.size() < POSICION_REGISTRO + 20) {
+            return null;
+        }
+        ByteBuffer encabezado = ByteBuffer.allocate(20);
+        ArchivoCifrado.leerCompleto(diario, encabezado, POSICION_REGISTRO);
+        encabezado.flip();
+        long indiceRegistro = encabezado.getLong();
+        int longitud = encabezado.getInt();
+        long crcRegistro = encabezado.getLong();
+        if (indiceRegistro != indice || longitud < 0 || longitud > ArchivoCifrado.TAMANO_SEGMENTO
+                || diario.size() < POSICION_REGISTRO + 20L + longitud) {
+            return null;
+        }
+        ByteBuffer bloque = ByteBuffer.allocate(longitud);
+        ArchivoCifrado.leerCompleto(diario, bloque, POSICION_REGISTRO + 20);
+        long esperado = crc(encabezado.array(), 0, 12) ^ crc(bloque.array(), 0, longitud);
+        return crcRegistro == esperado ? bloque.array() : null;
+    }
+
+    private static long crc(byte[] datos, int desde, int longitud) {
+        CRC32 crc = new CRC32();
+        crc.update(datos, desde, longitud);
+        return crc.getValue();
+    }
+}
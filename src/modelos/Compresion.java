@@ -0,0 +1,128 @@
+package modelos;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Etapa de compresión previa al cifrado (Deflate del JDK, nivel rápido).
+ *
+ * Comprimir después de cifrar no sirve (el texto cifrado parece aleatorio), así que se
+ * comprime antes. Para no gastar CPU en fotos, videos o archivos ya comprimidos se mide
+ * la entropía de una muestra: por encima de ~7,5 bits por byte no vale la pena.
+ */
+public final class Compresion {
+
+    /**
+     * Identificadores de códec guardados en las cabeceras.
+     */
+    public static final byte NINGUNA = 0;
+    public static final byte DEFLATE = 1;
+
+    // Bits por byte a partir de los cuales los datos se consideran ya comprimidos
+    private static final double ENTROPIA_MAXIMA = 7.5;
+
+    // Deflater/Inflater reservan memoria nativa: uno por hilo y se reinician en cada uso
+    private static final ThreadLocal<Deflater> COMPRESOR =
+            ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED, true));
+    private static final ThreadLocal<Inflater> DESCOMPRESOR =
+            ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private Compresion() {
+    }
+
+    /**
+     * Entropía de Shannon (bits por byte, entre 0 y 8) del histograma de bytes.
+     */
+    public static double entropia(byte[] datos, int desde, int longitud) {
+        if (longitud == 0) {
+            return 0;
+        }
+        int[] frecuencias = new int[256];
+        for (int i = desde; i < desde + longitud; i++) {
+            frecuencias[datos[i] & 0xFF]++;
+        }
+        double entropia = 0;
+        for (int frecuencia : frecuencias) {
+            if (frecuencia > 0) {
+                double p = (double) frecuencia / longitud;
+                entropia -= p * (Math.log(p) / Math.log(2));
+            }
+        }
+        return entropia;
+    }
+
+    /**
+     * Decide con una muestra (los primeros bloques) si vale la pena comprimir.
+     */
+    public static boolean convieneComprimir(byte[] muestra, int longitud) {
+        return longitud > 0 && entropia(muestra, 0, longitud) < ENTROPIA_MAXIMA;
+    }
+
+    /**
+     * Comprime datos[desde, desde + longitud) en salida a partir de posicionSalida.
+     *
+     * @return Bytes comprimidos, o -1 si el resultado no es menor que la entrada
+     *         (en ese caso conviene guardar los datos tal cual)
+     */
+    public static int comprimir(byte[] datos, int desde, int longitud, byte[] salida, int posicionSalida) {
+        Deflater compresor = COMPRESOR.get();
+        compresor.reset();
+        compresor.setInput(datos, desde, longitud);
+        compresor.finish();
+        int limite = Math.min(salida.length - posicionSalida, longitud - 1);
+        int escritos = 0;
+        while (!compresor.finished() && escritos < limite) {
+            escritos += compresor.deflate(salida, posicionSalida + escritos, limite - escritos);
+        }
+        return compresor.finished() ? escritos : -1;
+    }
+
+    /**
+     * Comprime un arreglo completo.
+     *
+     * @return Los datos comprimidos, o null si no quedan más pequeños
+     */
+    public static byte[] comprimir(byte[] datos) {
+        Deflater compresor = COMPRESOR.get();
+        compresor.reset();
+        compresor.setInput(datos);
+        compresor.finish();
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(datos.length / 2 + 64);
+        byte[] bloque = new byte[64 * 1024];
+        while (!compresor.finished()) {
+            int escritos = compresor.deflate(bloque);
+            salida.write(bloque, 0, escritos);
+            if (salida.size() >= datos.length) {
+                return null;
+            }
+        }
+        return salida.toByteArray();
+    }
+
+    /**
+     * Descomprime exactamente longitudOriginal bytes en salida.
+     */
+    public static void descomprimir(byte[] datos, int desde, int longitud, byte[] salida, int longitudOriginal)
+            throws DataFormatException {
+        Inflater descompresor = DESCOMPRESOR.get();
+        descompresor.reset();
+        descompresor.setInput(datos, desde, longitud);
+        int escritos = 0;
+        while (escritos < longitudOriginal && !descompresor.finished()) {
+            int n = descompresor.inflate(salida, escritos, longitudOriginal - escritos);
+            if (n == 0 && (descompresor.needsInput() || descompresor.needsDictionary())) {
+                break;
+            }
+            escritos += n;
+        }
+        if (escritos == longitudOriginal && !descompresor.finished()
+                && descompresor.inflate(new byte[1]) != 0) {
+            throw new DataFormatException("Datos comprimidos de longitud inesperada.");
+        }
+        if (escritos != longitudOriginal || !descompresor.finished()) {
+            throw new DataFormatException("Datos comprimidos de longitud inesperada.");
+        }
+    }
+}
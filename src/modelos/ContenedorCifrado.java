@@ -0,0 +1,454 @@
+package modelos;
+
+import javax.crypto.SecretKey;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static modelos.RegistroBitacora.*;
+
+/**
+ * Contenedor cifrado (.lockpak): empaqueta muchos archivos en un solo archivo.
+ *
+ * Estructura:
+ *   [cabecera 16 B: "SDSC" | versión | tamaño de segmento (log2) | 2 B reservados | prefijo de nonce 8 B]
+ *   [entradas: cada archivo en segmentos AES-GCM de hasta 1 MiB, nonce = prefijo + contador]
+ *   [índice cifrado: nombre, tamaño, fecha, posición y primer segmento de cada entrada]
+ *   [cola 16 B: posición del índice (8) | longitud del índice (4) | "SDSC"]
+ *
+ * Listar solo lee la cola y el índice; extraer una entrada solo lee sus segmentos.
+ * El empaquetado cifra en paralelo (un hilo por núcleo) y escribe en orden de llegada:
+ * el índice guarda dónde quedó cada archivo, así que el orden no importa.
+ */
+public class ContenedorCifrado {
+
+    public static final String EXTENSION = ".lockpak";
+
+    private static final byte[] MAGIA = {'S', 'D', 'S', 'C'};
+    private static final byte VERSION = 1;
+    private static final int LOG2_SEGMENTO = 20; // 1 MiB
+    private static final int TAMANO_SEGMENTO = 1 << LOG2_SEGMENTO;
+    private static final int TAMANO_CABECERA = 16;
+    private static final int TAMANO_COLA = 16;
+    private static final long CONTADOR_INDICE = 0xFFFFFFFFL;
+    // Archivos más grandes que esto se cifran en el hilo escritor, segmento a segmento
+    private static final long LIMITE_ARCHIVO_EN_MEMORIA = 8L * TAMANO_SEGMENTO;
+    private static final int TAMANO_BUFFER_ESCRITURA = 1 << 20;
+
+    /**
+     * Una entrada del índice del contenedor.
+     */
+    public static class Entrada {
+        private final String nombre;
+        private final long tamano;
+        private final long modificado;
+        private long desplazamiento;
+        private final long primerSegmento;
+
+        Entrada(String nombre, long tamano, long modificado, long desplazamiento, long primerSegmento) {
+            this.nombre = nombre;
+            this.tamano = tamano;
+            this.modificado = modificado;
+            this.desplazamiento = desplazamiento;
+            this.primerSegmento = primerSegmento;
+        }
+
+        public String getNombre() {
+            return nombre;
+        }
+
+        public long getTamano() {
+            return tamano;
+        }
+
+        public long getModificado() {
+            return modificado;
+        }
+
+        long segmentos() {
+            return Math.max(1, (tamano + TAMANO_SEGMENTO - 1) / TAMANO_SEGMENTO);
+        }
+
+        long longitudCifrada() {
+            return tamano + segmentos() * UtilidadesCifrado.TAMANO_TAG;
+        }
+    }
+
+    /**
+     * Resultado del cifrado en paralelo de un archivo pequeño.
+     */
+    private static class Cifrado {
+        final Entrada entrada;
+        final List<byte[]> segmentos;
+
+        Cifrado(Entrada entrada, List<byte[]> segmentos) {
+            this.entrada = entrada;
+            this.segmentos = segmentos;
+        }
+    }
+
+    private final Path archivo;
+    private final SecretKey clave;
+
+    public ContenedorCifrado(Path archivo, SecretKey clave) {
+        this.archivo = archivo;
+        this.clave = clave;
+    }
+
+    // --- Empaquetado ---
+
+    /**
+     * Empaqueta todos los archivos de un directorio (recursivamente) en el contenedor.
+     *
+     * @param directorio Directorio de origen
+     * @param hilos      Hilos de cifrado
+     * @return Entradas escritas
+     */
+    public List<Entrada> empaquetar(Path directorio, int hilos) throws Exception {
+        List<Path> archivos;
+        try (Stream<Path> recorrido = Files.walk(directorio)) {
+            archivos = recorrido.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+
+        List<Entrada> indice = new ArrayList<>(archivos.size());
+
+        // Se escribe en un temporal y se publica de una sola vez: un fallo a medias no deja un contenedor truncado
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+        Files.deleteIfExists(temporal);
+        try {
+            escribirContenedor(temporal, directorio, archivos, indice, hilos);
+            Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+
+        info("Contenedor '" + archivo.getFileName() + "' creado con " + indice.size() + " archivos.");
+        return indice;
+    }
+
+    // Cabecera, entradas (cifradas en paralelo), índice y cola
+    private void escribirContenedor(Path destino, Path directorio, List<Path> archivos, List<Entrada> indice, int hilos)
+            throws Exception {
+        byte[] prefijo = UtilidadesCifrado.bytesAleatorios(UtilidadesCifrado.LONGITUD_PREFIJO_NONCE);
+        byte[] cabecera = crearCabecera(prefijo);
+
+        ExecutorService pool = Executors.newFixedThreadPool(hilos, UtilidadesHilos.fabricaDaemon("contenedor"));
+        CompletionService<Cifrado> terminados = new ExecutorCompletionService<>(pool);
+        // Máximo de archivos cifrados esperando al escritor: acota la memoria
+        final int maxEnVuelo = hilos * 4;
+        int enVuelo = 0;
+
+        try (OutputStream salida = new BufferedOutputStream(Files.newOutputStream(destino), TAMANO_BUFFER_ESCRITURA)) {
+            salida.write(cabecera);
+            long[] posicion = {TAMANO_CABECERA};
+            long contador = 0;
+
+            for (Path ruta : archivos) {
+                BasicFileAttributes atributos = Files.readAttributes(ruta, BasicFileAttributes.class);
+                String nombre = directorio.relativize(ruta).toString().replace(File.separatorChar, '/');
+                Entrada entrada = new Entrada(nombre, atributos.size(),
+                        atributos.lastModifiedTime().toMillis(), -1, contador);
+                contador += entrada.segmentos();
+                if (contador >= CONTADOR_INDICE) {
+                    throw new IOException("Demasiados segmentos para un solo contenedor.");
+                }
+
+                if (entrada.tamano > LIMITE_ARCHIVO_EN_MEMORIA) {
+                    // Archivo grande: se transmite segmento a segmento sin cargarlo completo
+                    entrada.desplazamiento = posicion[0];
+                    posicion[0] += cifrarEnFlujo(ruta, entrada, prefijo, cabecera, salida);
+                    indice.add(entrada);
+                } else {
+                    while (enVuelo >= maxEnVuelo) {
+                        escribir(terminados.take().get(), salida, posicion, indice);
+                        enVuelo--;
+                    }
+                    terminados.submit(() -> cifrarEnMemoria(ruta, entrada, prefijo, cabecera));
+                    enVuelo++;
+                }
+
+                // Escribir lo que ya esté listo sin esperar
+                Future<Cifrado> listo;
+                while ((listo = terminados.poll()) != null) {
+                    escribir(listo.get(), salida, posicion, indice);
+                    enVuelo--;
+                }
+            }
+            while (enVuelo > 0) {
+                escribir(terminados.take().get(), salida, posicion, indice);
+                enVuelo--;
+            }
+
+            // Índice cifrado + cola
+            byte[] indicePlano = serializarIndice(indice);
+            byte[] indiceCifrado = UtilidadesCifrado.cifrarSegmento(indicePlano, 0, indicePlano.length, clave,
+                    UtilidadesCifrado.nonceSegmento(prefijo, CONTADOR_INDICE), cabecera);
+            salida.write(indiceCifrado);
+            ByteBuffer cola = ByteBuffer.allocate(TAMANO_COLA);
+            cola.putLong(posicion[0]).putInt(indiceCifrado.length).put(MAGIA);
+            salida.write(cola.array());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Cifrado cifrarEnMemoria(Path ruta, Entrada entrada, byte[] prefijo, byte[] cabecera) throws Exception {
+        byte[] datos = Files.readAllBytes(ruta);
+        if (datos.length != entrada.tamano) {
+            throw new IOException("El archivo '" + entrada.nombre + "' cambió durante el empaquetado.");
+        }
+        List<byte[]> segmentos = new ArrayList<>((int) entrada.segmentos());
+        for (long i = 0; i < entrada.segmentos(); i++) {
+            int desde = (int) (i * TAMANO_SEGMENTO);
+            int longitud = Math.min(TAMANO_SEGMENTO, datos.length - desde);
+            segmentos.add(UtilidadesCifrado.cifrarSegmento(datos, desde, longitud, clave,
+                    UtilidadesCifrado.nonceSegmento(prefijo, entrada.primerSegmento + i), cabecera));
+        }
+        return new Cifrado(entrada, segmentos);
+    }
+
+    private long cifrarEnFlujo(Path ruta, Entrada entrada, byte[] prefijo, byte[] cabecera, OutputStream salida)
+            throws Exception {
+        byte[] bloque = new byte[TAMANO_SEGMENTO];
+        long escritos = 0;
+        try (InputStream entradaArchivo = Files.newInputStream(ruta)) {
+            for (long i = 0; i < entrada.segmentos(); i++) {
+                int esperado = (int) Math.min(TAMANO_SEGMENTO, entrada.tamano - i * TAMANO_SEGMENTO);
+                if (entradaArchivo.readNBytes(bloque, 0, esperado) != esperado) {
+                    throw new IOException("El archivo '" + entrada.nombre + "' cambió durante el empaquetado.");
+                }
+                byte[] cifrado = UtilidadesCifrado.cifrarSegmento(bloque, 0, esperado, clave,
+                        UtilidadesCifrado.nonceSegmento(prefijo, entrada.primerSegmento + i), cabecera);
+                salida.write(cifrado);
+                escritos += cifrado.length;
+            }
+        }
+        return escritos;
+    }
+
+    private static void escribir(Cifrado cifrado, OutputStream salida, long[] posicion, List<Entrada> indice)
+            throws IOException {
+        cifrado.entrada.desplazamiento = posicion[0];
+        for (byte[] segmento : cifrado.segmentos) {
+            salida.write(segmento);
+            posicion[0] += segmento.length;
+        }
+        indice.add(cifrado.entrada);
+    }
+
+    // --- Lectura ---
+
+    /**
+     * Lista las entradas leyendo solo la cola y el índice.
+     */
+    public List<Entrada> listar() throws Exception {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            return leerIndice(canal, leerCabecera(canal));
+        }
+    }
+
+    /**
+     * Descifra una sola entrada hacia el flujo indicado, leyendo solo sus segmentos.
+     */
+    public void extraer(Entrada entrada, OutputStream salida) throws Exception {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            extraer(canal, leerCabecera(canal), entrada, salida);
+        }
+    }
+
+    /**
+     * Extrae todas las entradas bajo el directorio destino, conservando rutas y fechas.
+     *
+     * @return Número de archivos extraídos
+     */
+    public int extraerTodo(Path destino) throws Exception {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            byte[] cabecera = leerCabecera(canal);
+            List<Entrada> entradas = leerIndice(canal, cabecera);
+            for (Entrada entrada : entradas) {
+                Path ruta = resolverDentro(destino, entrada.nombre);
+                Files.createDirectories(ruta.getParent());
+                try (OutputStream salida = new BufferedOutputStream(Files.newOutputStream(ruta))) {
+                    extraer(canal, cabecera, entrada, salida);
+                }
+                Files.setLastModifiedTime(ruta, FileTime.fromMillis(entrada.modificado));
+            }
+            info("Contenedor '" + archivo.getFileName() + "' extraído: " + entradas.size() + " archivos.");
+            return entradas.size();
+        }
+    }
+
+    /**
+     * Verifica el índice y todos los segmentos sin escribir texto en claro.
+     *
+     * @return Posiciones de los segmentos dañados; vacía si el contenedor está íntegro
+     * @throws Exception si el índice no se puede autenticar
+     */
+    public List<Long> verificar() throws Exception {
+        List<Long> danados = new ArrayList<>();
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            byte[] cabecera = leerCabecera(canal);
+            byte[] prefijo = Arrays.copyOfRange(cabecera, 8, 16);
+            ByteBuffer bloque = ByteBuffer.allocate(TAMANO_SEGMENTO + UtilidadesCifrado.TAMANO_TAG);
+            byte[] descartado = new byte[TAMANO_SEGMENTO];
+
+            for (Entrada entrada : leerIndice(canal, cabecera)) {
+                long posicion = entrada.desplazamiento;
+                long restante = entrada.tamano;
+                for (long i = 0; i < entrada.segmentos(); i++) {
+                    int longitud = (int) Math.min(TAMANO_SEGMENTO, restante) + UtilidadesCifrado.TAMANO_TAG;
+                    leerCompleto(canal, bloque, posicion, longitud);
+                    try {
+                        UtilidadesCifrado.descifrarSegmentoEn(bloque.array(), 0, longitud, clave,
+                                UtilidadesCifrado.nonceSegmento(prefijo, entrada.primerSegmento + i), cabecera, descartado);
+                    } catch (javax.crypto.AEADBadTagException e) {
+                        danados.add(posicion);
+                    }
+                    posicion += longitud;
+                    restante -= longitud - UtilidadesCifrado.TAMANO_TAG;
+                }
+            }
+        }
+        return danados;
+    }
+
+    /**
+     * Busca una entrada por su ruta relativa exacta.
+     *
+     * @return La entrada, o null si no existe
+     */
+    public static Entrada buscar(List<Entrada> entradas, String nombre) {
+        for (Entrada entrada : entradas) {
+            if (entrada.nombre.equals(nombre)) {
+                return entrada;
+            }
+        }
+        return null;
+    }
+
+    private void extraer(FileChannel canal, byte[] cabecera, Entrada entrada, OutputStream salida) throws Exception {
+        byte[] prefijo = Arrays.copyOfRange(cabecera, 8, 16);
+        ByteBuffer bloque = ByteBuffer.allocate(TAMANO_SEGMENTO + UtilidadesCifrado.TAMANO_TAG);
+        long posicion = entrada.desplazamiento;
+        long restante = entrada.tamano;
+
+        for (long i = 0; i < entrada.segmentos(); i++) {
+            int longitud = (int) Math.min(TAMANO_SEGMENTO, restante) + UtilidadesCifrado.TAMANO_TAG;
+            leerCompleto(canal, bloque, posicion, longitud);
+            try {
+                salida.write(UtilidadesCifrado.descifrarSegmento(bloque.array(), 0, longitud, clave,
+                        UtilidadesCifrado.nonceSegmento(prefijo, entrada.primerSegmento + i), cabecera));
+            } catch (javax.crypto.AEADBadTagException e) {
+                warn("Segmento dañado en '" + entrada.nombre + "' del contenedor " + archivo.getFileName());
+                throw new Exception("Entrada '" + entrada.nombre + "' dañada en la posición " + posicion + ".");
+            }
+            posicion += longitud;
+            restante -= longitud - UtilidadesCifrado.TAMANO_TAG;
+        }
+    }
+
+    private byte[] leerCabecera(FileChannel canal) throws IOException {
+        ByteBuffer cabecera = ByteBuffer.allocate(TAMANO_CABECERA);
+        leerCompleto(canal, cabecera, 0, TAMANO_CABECERA);
+        byte[] bytes = cabecera.array();
+        if (!Arrays.equals(Arrays.copyOfRange(bytes, 0, 4), MAGIA) || bytes[4] != VERSION
+                || bytes[5] != LOG2_SEGMENTO) {
+            throw new IOException("El archivo no es un contenedor cifrado válido.");
+        }
+        return bytes;
+    }
+
+    private List<Entrada> leerIndice(FileChannel canal, byte[] cabecera) throws Exception {
+        long tamanoArchivo = canal.size();
+        ByteBuffer cola = ByteBuffer.allocate(TAMANO_COLA);
+        leerCompleto(canal, cola, tamanoArchivo - TAMANO_COLA, TAMANO_COLA);
+        cola.flip();
+        long posicionIndice = cola.getLong();
+        int longitudIndice = cola.getInt();
+        if (posicionIndice < TAMANO_CABECERA || posicionIndice + longitudIndice != tamanoArchivo - TAMANO_COLA) {
+            throw new IOException("Contenedor truncado o dañado.");
+        }
+
+        ByteBuffer indiceCifrado = ByteBuffer.allocate(longitudIndice);
+        leerCompleto(canal, indiceCifrado, posicionIndice, longitudIndice);
+        byte[] indice;
+        try {
+            indice = UtilidadesCifrado.descifrarSegmento(indiceCifrado.array(), 0, longitudIndice, clave,
+                    UtilidadesCifrado.nonceSegmento(Arrays.copyOfRange(cabecera, 8, 16), CONTADOR_INDICE), cabecera);
+        } catch (javax.crypto.AEADBadTagException e) {
+            warn("Intento fallido de abrir el contenedor " + archivo.getFileName());
+            throw new Exception("Contraseña incorrecta o contenedor dañado.");
+        }
+        return deserializarIndice(indice);
+    }
+
+    private static byte[] crearCabecera(byte[] prefijo) {
+        byte[] cabecera = new byte[TAMANO_CABECERA];
+        System.arraycopy(MAGIA, 0, cabecera, 0, 4);
+        cabecera[4] = VERSION;
+        cabecera[5] = LOG2_SEGMENTO;
+        System.arraycopy(prefijo, 0, cabecera, 8, 8);
+        return cabecera;
+    }
+
+    private static byte[] serializarIndice(List<Entrada> indice) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(indice.size() * 64 + 4);
+        try (DataOutputStream datos = new DataOutputStream(bytes)) {
+            datos.writeInt(indice.size());
+            for (Entrada entrada : indice) {
+                datos.writeUTF(entrada.nombre);
+                datos.writeLong(entrada.tamano);
+                datos.writeLong(entrada.modificado);
+                datos.writeLong(entrada.desplazamiento);
+                datos.writeLong(entrada.primerSegmento);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<Entrada> deserializarIndice(byte[] indice) throws IOException {
+        try (DataInputStream datos = new DataInputStream(new ByteArrayInputStream(indice))) {
+            int cantidad = datos.readInt();
+            List<Entrada> entradas = new ArrayList<>(cantidad);
+            for (int i = 0; i < cantidad; i++) {
+                entradas.add(new Entrada(datos.readUTF(), datos.readLong(), datos.readLong(),
+                        datos.readLong(), datos.readLong()));
+            }
+            return entradas;
+        }
+    }
+
+    // Evita que un nombre del índice ("../x") escriba fuera del destino
+    private static Path resolverDentro(Path destino, String nombre) throws IOException {
+        Path ruta = destino.resolve(nombre).normalize();
+        if (!ruta.startsWith(destino.normalize())) {
+            throw new IOException("Ruta inválida en el contenedor: " + nombre);
+        }
+        return ruta;
+    }
+
+    static void leerCompleto(FileChannel canal, ByteBuffer buffer, long posicion, int longitud) throws IOException {
+        buffer.clear().limit(longitud);
+        while (buffer.hasRemaining()) {
+            if (canal.read(buffer, posicion + buffer.position()) < 0) {
+                throw new EOFException("Fin de archivo inesperado.");
+            }
+        }
+    }
+}
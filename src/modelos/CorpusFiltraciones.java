@@ -0,0 +1,575 @@
+package modelos;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import static modelos.RegistroBitacora.*;
+
+/**
+ * Corpus local de contraseñas filtradas (por ejemplo, el volcado SHA-1 de Have I Been Pwned)
+ * para comprobar contraseñas sin conexión.
+ *
+ * El texto original ("HASH:conteo" por línea) se convierte una sola vez a un archivo binario
+ * con los SHA-1 de 20 bytes ordenados y sin repetir. Ese archivo se mapea en memoria por
+ * tramos (nunca se carga en el heap) y se consulta con búsqueda por interpolación: como los
+ * SHA-1 están distribuidos uniformemente, basta con unos pocos accesos incluso con cientos de
+ * millones de entradas. Opcionalmente se construye un filtro de Bloom (archivo .bloom aparte)
+ * que se carga en memoria y descarta casi todas las contraseñas que no están sin tocar el disco.
+ *
+ * La ruta del corpus se toma de la variable de entorno SUITE_CORPUS_FILTRACIONES o de
+ * configurarRuta(); si no hay corpus, las comprobaciones no hacen nada.
+ */
+public final class CorpusFiltraciones implements AutoCloseable {
+
+    public static final String VARIABLE_RUTA = "SUITE_CORPUS_FILTRACIONES";
+    public static final String EXTENSION_FILTRO = ".bloom";
+
+    private static final byte[] MAGIA = {'S', 'D', 'S', 'H'};
+    private static final byte[] MAGIA_FILTRO = {'S', 'D', 'S', 'L'};
+    private static final byte VERSION = 1;
+    private static final int TAMANO_CABECERA = 16;
+    private static final int TAMANO_REGISTRO = 20;
+    // Cada MappedByteBuffer cubre como máximo ~1 GiB de registros completos
+    private static final long REGISTROS_POR_TRAMO = (1L << 30) / TAMANO_REGISTRO;
+    // Registros por corrida al ordenar un texto desordenado (~80 MB en memoria)
+    private static final int REGISTROS_POR_CORRIDA = 4 * 1024 * 1024;
+    // Por debajo de este rango la interpolación ya no ayuda
+    private static final int RANGO_BUSQUEDA_BINARIA = 16;
+
+    private static volatile Path rutaConfigurada;
+    private static volatile CorpusFiltraciones predeterminado;
+    private static volatile boolean predeterminadoResuelto;
+
+    private final FileChannel canal;
+    private final MappedByteBuffer[] tramos;
+    private final long cantidad;
+    private final FiltroBloom filtro;
+
+    private CorpusFiltraciones(FileChannel canal, MappedByteBuffer[] tramos, long cantidad, FiltroBloom filtro) {
+        this.canal = canal;
+        this.tramos = tramos;
+        this.cantidad = cantidad;
+        this.filtro = filtro;
+    }
+
+    // --- Corpus predeterminado ---
+
+    /**
+     * Usa este corpus en lugar del indicado por la variable de entorno.
+     */
+    public static synchronized void configurarRuta(Path ruta) {
+        rutaConfigurada = ruta;
+        predeterminadoResuelto = false;
+        predeterminado = null;
+    }
+
+    /**
+     * Corpus configurado, abierto una sola vez (con su filtro de Bloom si existe).
+     *
+     * @return El corpus, o null si no hay ninguno configurado
+     */
+    public static CorpusFiltraciones predeterminado() {
+        if (!predeterminadoResuelto) {
+            synchronized (CorpusFiltraciones.class) {
+                if (!predeterminadoResuelto) {
+                    predeterminado = abrirPredeterminado();
+                    predeterminadoResuelto = true;
+                }
+            }
+        }
+        return predeterminado;
+    }
+
+    private static CorpusFiltraciones abrirPredeterminado() {
+        Path ruta = rutaConfigurada;
+        if (ruta == null) {
+            String variable = System.getenv(VARIABLE_RUTA);
+            if (variable == null || variable.isBlank()) {
+                return null;
+            }
+            ruta = Paths.get(variable);
+        }
+        try {
+            CorpusFiltraciones corpus = abrir(ruta, true);
+            info("Corpus de contraseñas filtradas cargado: " + corpus.cantidad() + " entradas.");
+            return corpus;
+        } catch (IOException e) {
+            warn("No se pudo abrir el corpus de contraseñas filtradas '" + ruta + "': " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Indica si la contraseña está en el corpus predeterminado (false si no hay corpus).
+     */
+    public static boolean estaFiltrada(String contrasena) {
+        CorpusFiltraciones corpus = predeterminado();
+        return corpus != null && contrasena != null && corpus.contiene(sha1(contrasena.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Igual que estaFiltrada(String), para valores que se manejan como char[].
+     */
+    public static boolean estaFiltrada(char[] valor) {
+        CorpusFiltraciones corpus = predeterminado();
+        if (corpus == null || valor == null) {
+            return false;
+        }
+        ByteBuffer utf8 = StandardCharsets.UTF_8.encode(java.nio.CharBuffer.wrap(valor));
+        byte[] bytes = new byte[utf8.remaining()];
+        utf8.get(bytes);
+        try {
+            return corpus.contiene(sha1(bytes));
+        } finally {
+            Arrays.fill(bytes, (byte) 0);
+            if (utf8.hasArray()) {
+                Arrays.fill(utf8.array(), (byte) 0);
+            }
+        }
+    }
+
+    // --- Consulta ---
+
+    /**
+     * Abre un corpus ya convertido.
+     *
+     * @param usarFiltro Si existe el archivo .bloom, cargarlo como prefiltro
+     */
+    public static CorpusFiltraciones abrir(Path ruta, boolean usarFiltro) throws IOException {
+        FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ);
+        try {
+            ByteBuffer cabecera = ByteBuffer.allocate(TAMANO_CABECERA);
+            ArchivoCifrado.leerCompleto(canal, cabecera, 0);
+            cabecera.flip();
+            byte[] magia = new byte[MAGIA.length];
+            cabecera.get(magia);
+            if (!Arrays.equals(magia, MAGIA) || cabecera.get() != VERSION) {
+                throw new IOException("No es un corpus de contraseñas filtradas.");
+            }
+            cabecera.position(8);
+            long cantidad = cabecera.getLong();
+            if (cantidad < 0 || TAMANO_CABECERA + cantidad * TAMANO_REGISTRO != canal.size()) {
+                throw new IOException("Corpus de contraseñas filtradas truncado.");
+            }
+
+            int numeroTramos = (int) ((cantidad + REGISTROS_POR_TRAMO - 1) / REGISTROS_POR_TRAMO);
+            MappedByteBuffer[] tramos = new MappedByteBuffer[numeroTramos];
+            for (int i = 0; i < numeroTramos; i++) {
+                long primero = i * REGISTROS_POR_TRAMO;
+                long registros = Math.min(REGISTROS_POR_TRAMO, cantidad - primero);
+                tramos[i] = canal.map(FileChannel.MapMode.READ_ONLY, TAMANO_CABECERA + primero * TAMANO_REGISTRO,
+                        registros * TAMANO_REGISTRO);
+            }
+
+            Path rutaFiltro = Paths.get(ruta + EXTENSION_FILTRO);
+            FiltroBloom filtro = usarFiltro && Files.exists(rutaFiltro) ? FiltroBloom.leer(rutaFiltro) : null;
+            return new CorpusFiltraciones(canal, tramos, cantidad, filtro);
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e;
+        }
+    }
+
+    public long cantidad() {
+        return cantidad;
+    }
+
+    public boolean tieneFiltro() {
+        return filtro != null;
+    }
+
+    /**
+     * Busca un SHA-1 de 20 bytes.
+     */
+    public boolean contiene(byte[] sha1) {
+        if (sha1.length != TAMANO_REGISTRO || cantidad == 0) {
+            return false;
+        }
+        if (filtro != null && !filtro.podriaContener(sha1)) {
+            return false;
+        }
+        long clave = ByteBuffer.wrap(sha1).getLong();
+        long desde = 0;
+        long hasta = cantidad - 1;
+        while (desde <= hasta) {
+            long claveDesde = prefijo(desde);
+            long claveHasta = prefijo(hasta);
+            if (Long.compareUnsigned(clave, claveDesde) < 0 || Long.compareUnsigned(clave, claveHasta) > 0) {
+                return false;
+            }
+            long medio;
+            if (hasta - desde < RANGO_BUSQUEDA_BINARIA || claveDesde == claveHasta) {
+                medio = (desde + hasta) >>> 1;
+            } else {
+                // Interpolación: dónde caería la clave si los hashes estuvieran repartidos en forma pareja
+                double fraccion = sinSigno(clave - claveDesde) / sinSigno(claveHasta - claveDesde);
+                medio = desde + (long) (fraccion * (hasta - desde));
+                medio = Math.max(desde, Math.min(hasta, medio));
+            }
+            int orden = comparar(medio, sha1);
+            if (orden == 0) {
+                return true;
+            }
+            if (orden < 0) {
+                desde = medio + 1;
+            } else {
+                hasta = medio - 1;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+
+    private long prefijo(long indice) {
+        return tramos[(int) (indice / REGISTROS_POR_TRAMO)].getLong((int) (indice % REGISTROS_POR_TRAMO) * TAMANO_REGISTRO);
+    }
+
+    private int comparar(long indice, byte[] sha1) {
+        MappedByteBuffer tramo = tramos[(int) (indice / REGISTROS_POR_TRAMO)];
+        int base = (int) (indice % REGISTROS_POR_TRAMO) * TAMANO_REGISTRO;
+        for (int i = 0; i < TAMANO_REGISTRO; i++) {
+            int orden = Integer.compare(tramo.get(base + i) & 0xFF, sha1[i] & 0xFF);
+            if (orden != 0) {
+                return orden;
+            }
+        }
+        return 0;
+    }
+
+    private static double sinSigno(long valor) {
+        return valor >= 0 ? valor : (double) (valor >>> 1) * 2.0;
+    }
+
+    public static byte[] sha1(byte[] datos) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(datos);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // --- Conversión ---
+
+    /**
+     * Convierte un volcado de texto (una línea "SHA1HEX" o "SHA1HEX:conteo" por contraseña) al
+     * formato binario ordenado. Si el texto ya viene ordenado por hash se convierte en una sola
+     * pasada; si no, se ordena por corridas en archivos temporales y luego se mezclan.
+     *
+     * @param bitsFiltro Bits por entrada del filtro de Bloom (0 = sin filtro; 8-10 es razonable)
+     * @return Cantidad de hashes distintos
+     */
+    public static long convertir(Path texto, Path destino, int bitsFiltro) throws IOException {
+        Path temporal = Paths.get(destino + ".tmp");
+        List<Path> corridas = new ArrayList<>();
+        long cantidad;
+        try {
+            try (BufferedReader lector = Files.newBufferedReader(texto, StandardCharsets.US_ASCII);
+                 OutputStream salida = new BufferedOutputStream(Files.newOutputStream(temporal), 1 << 20)) {
+                salida.write(new byte[TAMANO_CABECERA]);
+                cantidad = convertirOrdenado(lector, salida, corridas);
+            }
+            if (!corridas.isEmpty()) {
+                Path prefijo = Files.createTempFile("corpus", ".run");
+                Files.move(temporal, prefijo, StandardCopyOption.REPLACE_EXISTING);
+                corridas.add(0, prefijo);
+                try (OutputStream salida = new BufferedOutputStream(Files.newOutputStream(temporal), 1 << 20)) {
+                    salida.write(new byte[TAMANO_CABECERA]);
+                    cantidad = mezclarCorridas(corridas, salida);
+                }
+            }
+            try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.WRITE)) {
+                ByteBuffer cabecera = ByteBuffer.allocate(TAMANO_CABECERA)
+                        .put(MAGIA).put(VERSION).put(new byte[3]).putLong(cantidad);
+                cabecera.flip();
+                ArchivoCifrado.escribirCompleto(canal, cabecera, 0);
+            }
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporal);
+            for (Path corrida : corridas) {
+                Files.deleteIfExists(corrida);
+            }
+        }
+
+        Path rutaFiltro = Paths.get(destino + EXTENSION_FILTRO);
+        Files.deleteIfExists(rutaFiltro);
+        if (bitsFiltro > 0) {
+            try (CorpusFiltraciones corpus = abrir(destino, false)) {
+                corpus.construirFiltro(bitsFiltro).escribir(rutaFiltro);
+            }
+        }
+        info("Corpus de contraseñas filtradas convertido: " + cantidad + " hashes en '" + destino.getFileName() + "'.");
+        return cantidad;
+    }
+
+    // Escribe directamente mientras el texto venga ordenado; al primer desorden pasa a corridas
+    private static long convertirOrdenado(BufferedReader lector, OutputStream salida, List<Path> corridas)
+            throws IOException {
+        byte[] anterior = null;
+        byte[] actual = new byte[TAMANO_REGISTRO];
+        long escritos = 0;
+        byte[] corrida = null;
+        int enCorrida = 0;
+        String linea;
+        while ((linea = lector.readLine()) != null) {
+            if (!leerHash(linea, actual)) {
+                continue;
+            }
+            if (corrida == null && anterior != null && compararRegistros(actual, 0, anterior, 0) < 0) {
+                // Desordenado: lo escrito hasta aquí pasa a ser la primera corrida
+                corrida = new byte[REGISTROS_POR_CORRIDA * TAMANO_REGISTRO];
+            }
+            if (corrida == null) {
+                if (anterior == null || compararRegistros(actual, 0, anterior, 0) != 0) {
+                    salida.write(actual);
+                    escritos++;
+                    anterior = actual.clone();
+                }
+                continue;
+            }
+            System.arraycopy(actual, 0, corrida, enCorrida * TAMANO_REGISTRO, TAMANO_REGISTRO);
+            if (++enCorrida == REGISTROS_POR_CORRIDA) {
+                corridas.add(escribirCorrida(corrida, enCorrida));
+                enCorrida = 0;
+            }
+        }
+        if (corrida != null && enCorrida > 0) {
+            corridas.add(escribirCorrida(corrida, enCorrida));
+        }
+        return escritos;
+    }
+
+    // Las corridas dejan un hueco del tamaño de la cabecera para que el archivo de salida
+    // parcial (lo que venía ordenado) se pueda usar como una corrida más
+    private static Path escribirCorrida(byte[] corrida, int registros) throws IOException {
+        ordenar(corrida, 0, registros - 1);
+        Path archivo = Files.createTempFile("corpus", ".run");
+        try (OutputStream salida = new BufferedOutputStream(Files.newOutputStream(archivo), 1 << 20)) {
+            salida.write(new byte[TAMANO_CABECERA]);
+            salida.write(corrida, 0, registros * TAMANO_REGISTRO);
+        }
+        return archivo;
+    }
+
+    private static long mezclarCorridas(List<Path> corridas, OutputStream salida) throws IOException {
+        PriorityQueue<LectorCorrida> cola = new PriorityQueue<>(
+                (a, b) -> compararRegistros(a.actual, 0, b.actual, 0));
+        List<LectorCorrida> lectores = new ArrayList<>();
+        try {
+            for (Path corrida : corridas) {
+                LectorCorrida lector = new LectorCorrida(corrida);
+                lectores.add(lector);
+                if (lector.avanzar()) {
+                    cola.add(lector);
+                }
+            }
+            byte[] anterior = null;
+            long escritos = 0;
+            while (!cola.isEmpty()) {
+                LectorCorrida lector = cola.poll();
+                if (anterior == null || compararRegistros(lector.actual, 0, anterior, 0) != 0) {
+                    salida.write(lector.actual);
+                    anterior = lector.actual.clone();
+                    escritos++;
+                }
+                if (lector.avanzar()) {
+                    cola.add(lector);
+                }
+            }
+            return escritos;
+        } finally {
+            for (LectorCorrida lector : lectores) {
+                lector.entrada.close();
+            }
+        }
+    }
+
+    private static final class LectorCorrida {
+        final DataInputStream entrada;
+        final byte[] actual = new byte[TAMANO_REGISTRO];
+
+        LectorCorrida(Path archivo) throws IOException {
+            this.entrada = new DataInputStream(new BufferedInputStream(Files.newInputStream(archivo), 1 << 20));
+            entrada.readFully(new byte[TAMANO_CABECERA]);
+        }
+
+        boolean avanzar() throws IOException {
+            try {
+                entrada.readFully(actual);
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+    }
+
+    // "HEX40" o "HEX40:conteo"; ignora líneas vacías o mal formadas
+    private static boolean leerHash(String linea, byte[] destino) {
+        if (linea.length() < TAMANO_REGISTRO * 2) {
+            return false;
+        }
+        for (int i = 0; i < TAMANO_REGISTRO; i++) {
+            int alto = Character.digit(linea.charAt(2 * i), 16);
+            int bajo = Character.digit(linea.charAt(2 * i + 1), 16);
+            if (alto < 0 || bajo < 0) {
+                return false;
+            }
+            destino[i] = (byte) ((alto << 4) | bajo);
+        }
+        return linea.length() == TAMANO_REGISTRO * 2 || linea.charAt(TAMANO_REGISTRO * 2) == ':';
+    }
+
+    private static int compararRegistros(byte[] a, int desdeA, byte[] b, int desdeB) {
+        return Arrays.compareUnsigned(a, desdeA, desdeA + TAMANO_REGISTRO, b, desdeB, desdeB + TAMANO_REGISTRO);
+    }
+
+    // Quicksort de registros de 20 bytes dentro del mismo arreglo (los SHA-1 son aleatorios,
+    // así que el pivote del medio no degenera)
+    private static void ordenar(byte[] datos, int desde, int hasta) {
+        byte[] pivote = new byte[TAMANO_REGISTRO];
+        byte[] intercambio = new byte[TAMANO_REGISTRO];
+        while (desde < hasta) {
+            System.arraycopy(datos, ((desde + hasta) >>> 1) * TAMANO_REGISTRO, pivote, 0, TAMANO_REGISTRO);
+            int i = desde;
+            int j = hasta;
+            while (i <= j) {
+                while (compararRegistros(datos, i * TAMANO_REGISTRO, pivote, 0) < 0) {
+                    i++;
+                }
+                while (compararRegistros(datos, j * TAMANO_REGISTRO, pivote, 0) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    System.arraycopy(datos, i * TAMANO_REGISTRO, intercambio, 0, TAMANO_REGISTRO);
+                    System.arraycopy(datos, j * TAMANO_REGISTRO, datos, i * TAMANO_REGISTRO, TAMANO_REGISTRO);
+                    System.arraycopy(intercambio, 0, datos, j * TAMANO_REGISTRO, TAMANO_REGISTRO);
+                    i++;
+                    j--;
+                }
+            }
+            // Recursión sobre la parte menor para acotar la pila
+            if (j - desde < hasta - i) {
+                ordenar(datos, desde, j);
+                desde = i;
+            } else {
+                ordenar(datos, i, hasta);
+                hasta = j;
+            }
+        }
+    }
+
+    private FiltroBloom construirFiltro(int bitsPorEntrada) {
+        FiltroBloom nuevo = new FiltroBloom(Math.max(64, cantidad * bitsPorEntrada),
+                Math.max(1, Math.min(16, (int) Math.round(bitsPorEntrada * Math.log(2)))));
+        byte[] registro = new byte[TAMANO_REGISTRO];
+        for (long i = 0; i < cantidad; i++) {
+            MappedByteBuffer tramo = tramos[(int) (i / REGISTROS_POR_TRAMO)];
+            tramo.get((int) (i % REGISTROS_POR_TRAMO) * TAMANO_REGISTRO, registro);
+            nuevo.agregar(registro);
+        }
+        return nuevo;
+    }
+
+    /**
+     * Filtro de Bloom sobre los SHA-1. Como los hashes ya son uniformes, las posiciones salen
+     * directamente de sus bytes (doble hashing con los bytes 4-12 y 12-20).
+     */
+    private static final class FiltroBloom {
+        private final long[] bits;
+        private final long numeroBits;
+        private final int funciones;
+
+        FiltroBloom(long numeroBits, int funciones) {
+            this.bits = new long[(int) ((numeroBits + 63) / 64)];
+            this.numeroBits = (long) bits.length * 64;
+            this.funciones = funciones;
+        }
+
+        private FiltroBloom(long[] bits, int funciones) {
+            this.bits = bits;
+            this.numeroBits = (long) bits.length * 64;
+            this.funciones = funciones;
+        }
+
+        void agregar(byte[] sha1) {
+            ByteBuffer hash = ByteBuffer.wrap(sha1);
+            long h1 = hash.getLong(4);
+            long h2 = hash.getLong(12) | 1;
+            for (int i = 0; i < funciones; i++) {
+                long bit = Math.floorMod(h1 + i * h2, numeroBits);
+                bits[(int) (bit >>> 6)] |= 1L << bit;
+            }
+        }
+
+        boolean podriaContener(byte[] sha1) {
+            ByteBuffer hash = ByteBuffer.wrap(sha1);
+            long h1 = hash.getLong(4);
+            long h2 = hash.getLong(12) | 1;
+            for (int i = 0; i < funciones; i++) {
+                long bit = Math.floorMod(h1 + i * h2, numeroBits);
+                if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void escribir(Path ruta) throws IOException {
+            try (DataOutputStream salida = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(ruta), 1 << 20))) {
+                salida.write(MAGIA_FILTRO);
+                salida.writeByte(VERSION);
+                salida.writeByte(funciones);
+                salida.writeShort(0);
+                salida.writeInt(bits.length);
+                for (long palabra : bits) {
+                    salida.writeLong(palabra);
+                }
+            }
+        }
+
+        static FiltroBloom leer(Path ruta) throws IOException {
+            try (InputStream archivo = Files.newInputStream(ruta);
+                 DataInputStream entrada = new DataInputStream(new BufferedInputStream(archivo, 1 << 20))) {
+                byte[] magia = new byte[MAGIA_FILTRO.length];
+                entrada.readFully(magia);
+                if (!Arrays.equals(magia, MAGIA_FILTRO) || entrada.readByte() != VERSION) {
+                    throw new IOException("Filtro de Bloom con formato desconocido.");
+                }
+                int funciones = entrada.readUnsignedByte();
+                entrada.readShort();
+                long[] bits = new long[entrada.readInt()];
+                for (int i = 0; i < bits.length; i++) {
+                    bits[i] = entrada.readLong();
+                }
+                return new FiltroBloom(bits, funciones);
+            }
+        }
+    }
+}
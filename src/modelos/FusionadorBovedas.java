@@ -0,0 +1,180 @@
+package modelos;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+import static modelos.RegistroBitacora.*;
+
+/**
+ * Sincroniza dos bóvedas (por ejemplo, copias de boveda.dat de dos equipos) intercambiando
+ * solo las entradas que difieren.
+ *
+ * Se construye un ArbolMerkle de cada una con la misma clave aleatoria y la misma profundidad y
+ * se comparan descendiendo solo por los nodos distintos. Lo que está en una sola bóveda se copia
+ * a la otra; lo que está en las dos con distinto valor es un conflicto que decide el resolvedor
+ * (por defecto, gana la modificación más reciente). Al terminar ambas quedan iguales.
+ *
+ * No hay registro de eliminaciones: un secreto borrado en una copia vuelve desde la otra.
+ * Cuando sí se conoce el ancestro común (dos procesos que cargaron la misma generación de
+ * boveda.dat), incorporarCambios() hace una fusión de tres vías que respeta las eliminaciones.
+ */
+public class FusionadorBovedas {
+
+    public enum Lado { LOCAL, REMOTO }
+
+    /**
+     * Decide qué versión se queda cuando un secreto cambió en las dos bóvedas.
+     */
+    @FunctionalInterface
+    public interface ResolvedorConflictos {
+        Lado elegir(String nombre, MetadatosSecreto local, MetadatosSecreto remoto);
+    }
+
+    /**
+     * Gana la modificación más reciente; en un empate, la local.
+     */
+    public static final ResolvedorConflictos MAS_RECIENTE =
+            (nombre, local, remoto) -> remoto.getModificado() > local.getModificado() ? Lado.REMOTO : Lado.LOCAL;
+
+    /**
+     * Resultado de una fusión: nombres copiados en cada sentido.
+     */
+    public static class Resultado {
+        private final List<String> traidos;
+        private final List<String> enviados;
+        private final int conflictos;
+        private final int nodosVisitados;
+
+        Resultado(List<String> traidos, List<String> enviados, int conflictos, int nodosVisitados) {
+            this.traidos = traidos;
+            this.enviados = enviados;
+            this.conflictos = conflictos;
+            this.nodosVisitados = nodosVisitados;
+        }
+
+        /**
+         * Secretos copiados de la bóveda remota a la local.
+         */
+        public List<String> getTraidos() {
+            return traidos;
+        }
+
+        /**
+         * Secretos copiados de la bóveda local a la remota.
+         */
+        public List<String> getEnviados() {
+            return enviados;
+        }
+
+        public int getConflictos() {
+            return conflictos;
+        }
+
+        /**
+         * Nodos del árbol de Merkle que hubo que comparar.
+         */
+        public int getNodosVisitados() {
+            return nodosVisitados;
+        }
+
+        public boolean huboCambios() {
+            return !traidos.isEmpty() || !enviados.isEmpty();
+        }
+    }
+
+    /**
+     * Deja las dos bóvedas con el mismo contenido.
+     */
+    public static Resultado fusionar(Boveda local, Boveda remota, ResolvedorConflictos resolvedor, int hilos)
+            throws InterruptedException {
+        byte[] bytesClave = new byte[32];
+        new SecureRandom().nextBytes(bytesClave);
+        SecretKeySpec clave = new SecretKeySpec(bytesClave, "HmacSHA256");
+        Arrays.fill(bytesClave, (byte) 0);
+
+        int profundidad = ArbolMerkle.profundidadPara(Math.max(local.cantidadSecretos(), remota.cantidadSecretos()));
+        ArbolMerkle arbolLocal = ArbolMerkle.construir(local, clave, profundidad, hilos);
+        ArbolMerkle arbolRemoto = ArbolMerkle.construir(remota, clave, profundidad, hilos);
+        ArbolMerkle.Diferencias diferencias = ArbolMerkle.comparar(arbolLocal, arbolRemoto);
+
+        List<String> traidos = new ArrayList<>(diferencias.soloRemoto);
+        List<String> enviados = new ArrayList<>(diferencias.soloLocal);
+        for (String nombre : diferencias.distintos) {
+            Lado ganador = resolvedor.elegir(nombre, local.obtenerMetadatos(nombre), remota.obtenerMetadatos(nombre));
+            if (ganador == Lado.REMOTO) {
+                traidos.add(nombre);
+            } else {
+                enviados.add(nombre);
+            }
+        }
+
+        for (String nombre : traidos) {
+            local.copiarSecretoDe(remota, nombre);
+        }
+        for (String nombre : enviados) {
+            remota.copiarSecretoDe(local, nombre);
+        }
+
+        info("Fusión de bóvedas: " + traidos.size() + " traídos, " + enviados.size() + " enviados, "
+                + diferencias.distintos.size() + " conflictos (" + diferencias.nodosVisitados + " nodos comparados).");
+        return new Resultado(traidos, enviados, diferencias.distintos.size(), diferencias.nodosVisitados);
+    }
+
+    /**
+     * Fusión de tres vías al guardar: base es lo que se cargó, mia lo que se va a guardar y
+     * disco lo que otro proceso guardó mientras tanto. Deja el resultado en mia.
+     *
+     * Lo que cambió en un solo lado se toma de ese lado (incluidas las eliminaciones). Si cambió
+     * distinto en los dos, gana la modificación más reciente; una modificación gana a una
+     * eliminación.
+     */
+    static Resultado incorporarCambios(Boveda mia, Boveda base, Boveda disco) {
+        NavigableSet<String> nombres = new TreeSet<>(mia.listarNombresSecretos());
+        nombres.addAll(base.listarNombresSecretos());
+        nombres.addAll(disco.listarNombresSecretos());
+
+        List<String> traidos = new ArrayList<>();
+        List<String> conservados = new ArrayList<>();
+        int conflictos = 0;
+        for (String nombre : nombres) {
+            if (Boveda.mismaEntrada(mia, disco, nombre)) {
+                continue;
+            }
+            boolean tomarDisco;
+            if (Boveda.mismaEntrada(mia, base, nombre)) {
+                tomarDisco = true;
+            } else if (Boveda.mismaEntrada(disco, base, nombre)) {
+                tomarDisco = false;
+            } else {
+                conflictos++;
+                if (!mia.existeSecreto(nombre) || !disco.existeSecreto(nombre)) {
+                    tomarDisco = disco.existeSecreto(nombre);
+                } else {
+                    tomarDisco = MAS_RECIENTE.elegir(nombre, mia.obtenerMetadatos(nombre),
+                            disco.obtenerMetadatos(nombre)) == Lado.REMOTO;
+                }
+                warn("Conflicto al guardar '" + nombre + "': se conserva la versión "
+                        + (tomarDisco ? "del otro proceso." : "de este proceso."));
+            }
+            if (!tomarDisco) {
+                conservados.add(nombre);
+            } else {
+                traidos.add(nombre);
+                if (disco.existeSecreto(nombre)) {
+                    mia.copiarSecretoDe(disco, nombre);
+                } else {
+                    mia.quitarSecreto(nombre);
+                }
+            }
+        }
+
+        info("Cambios de otro proceso incorporados: " + traidos.size() + " traídos, " + conservados.size()
+                + " propios, " + conflictos + " conflictos.");
+        return new Resultado(traidos, conservados, conflictos, 0);
+    }
+}
@@ -0,0 +1,321 @@
+package modelos;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static modelos.RegistroBitacora.*;
+
+/**
+ * Tareas en segundo plano para las operaciones largas de los módulos (cifrar archivos o
+ * directorios grandes, guardar la bóveda), para que la consola siga respondiendo.
+ *
+ * Cada tarea corre en su propio hilo (virtual en Java 21+), pero solo unas pocas a la vez: cada
+ * una ya usa todos los núcleos para cifrar, así que el resto espera en cola. El avance se informa
+ * con Progreso (bytes procesados), del que salen el rendimiento y el tiempo restante; cancelar es
+ * cooperativo: la tarea se detiene la próxima vez que informa avance. Al salir, cerrar() espera
+ * a las tareas pendientes.
+ *
+ * Una tarea puede declarar las rutas que toca (archivos o directorios); no se acepta otra sobre
+ * la misma ruta, ni dentro ni por encima de ella, mientras la primera no termine: ambas
+ * escribirían los mismos temporales y se pisarían.
+ */
+public class GestorTareas {
+
+    // Tareas que corren al mismo tiempo
+    private static final int EN_PARALELO = 2;
+
+    public enum Estado {
+        EN_COLA("En cola"), EN_CURSO("En curso"), TERMINADA("Terminada"), CANCELADA("Cancelada"),
+        FALLIDA("Falló");
+
+        private final String texto;
+
+        Estado(String texto) {
+            this.texto = texto;
+        }
+
+        @Override
+        public String toString() {
+            return texto;
+        }
+
+        public boolean terminado() {
+            return this == TERMINADA || this == CANCELADA || this == FALLIDA;
+        }
+    }
+
+    /**
+     * Operación que se ejecuta como tarea; devuelve un mensaje para el usuario.
+     */
+    @FunctionalInterface
+    public interface Trabajo {
+        String ejecutar(Progreso progreso) throws Exception;
+    }
+
+    /**
+     * Una operación enviada al gestor, con su estado y su avance.
+     */
+    public static class Tarea implements Progreso {
+        private final int id;
+        private final String descripcion;
+        private final long total;
+        private final List<Path> rutas;
+        private final AtomicLong procesados = new AtomicLong();
+        private final CountDownLatch fin = new CountDownLatch(1);
+        private volatile Estado estado = Estado.EN_COLA;
+        private volatile boolean cancelacionPedida;
+        private volatile long inicioNanos;
+        private volatile long finNanos;
+        private volatile String mensaje;
+
+        Tarea(int id, String descripcion, long total, List<Path> rutas) {
+            this.id = id;
+            this.descripcion = descripcion;
+            this.total = total;
+            this.rutas = rutas;
+        }
+
+        @Override
+        public void avanzar(long bytes) {
+            if (cancelacionPedida) {
+                throw new CancellationException("Tarea cancelada.");
+            }
+            procesados.addAndGet(bytes);
+        }
+
+        /**
+         * Pide cancelar la tarea. Si aún está en cola no llega a empezar.
+         *
+         * @return false si ya había terminado
+         */
+        public boolean cancelar() {
+            if (estado.terminado()) {
+                return false;
+            }
+            cancelacionPedida = true;
+            return true;
+        }
+
+        /**
+         * Espera a que la tarea termine (de cualquier forma).
+         */
+        public void esperar() throws InterruptedException {
+            fin.await();
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getDescripcion() {
+            return descripcion;
+        }
+
+        public Estado getEstado() {
+            return estado;
+        }
+
+        public long getProcesados() {
+            return procesados.get();
+        }
+
+        /**
+         * Bytes a procesar, o -1 si no se conocen.
+         */
+        public long getTotal() {
+            return total;
+        }
+
+        /**
+         * Porcentaje de avance, o -1 si no se conoce el total.
+         */
+        public int getPorcentaje() {
+            if (estado == Estado.TERMINADA) {
+                return 100;
+            }
+            return total <= 0 ? -1 : (int) Math.min(100, procesados.get() * 100 / total);
+        }
+
+        public double getBytesPorSegundo() {
+            long inicio = inicioNanos;
+            if (inicio == 0) {
+                return 0;
+            }
+            long hasta = finNanos != 0 ? finNanos : System.nanoTime();
+            double segundos = (hasta - inicio) / 1e9;
+            return segundos <= 0 ? 0 : procesados.get() / segundos;
+        }
+
+        /**
+         * Segundos restantes al ritmo actual, o -1 si no se pueden estimar.
+         */
+        public long getSegundosRestantes() {
+            double ritmo = getBytesPorSegundo();
+            if (estado != Estado.EN_CURSO || total <= 0 || ritmo <= 0) {
+                return -1;
+            }
+            return (long) Math.ceil(Math.max(0, total - procesados.get()) / ritmo);
+        }
+
+        /**
+         * Resultado o error de la tarea (null mientras no termine).
+         */
+        public String getMensaje() {
+            return mensaje;
+        }
+
+        private void terminar(Estado estadoFinal, String mensajeFinal) {
+            finNanos = System.nanoTime();
+            mensaje = mensajeFinal;
+            estado = estadoFinal;
+            fin.countDown();
+        }
+    }
+
+    private final ExecutorService ejecutor = UtilidadesHilos.crearEjecutorPorTarea("tarea");
+    private final Semaphore turnos = new Semaphore(EN_PARALELO, true);
+    private final List<Tarea> tareas = new CopyOnWriteArrayList<>();
+    private final AtomicInteger siguienteId = new AtomicInteger();
+
+    /**
+     * Encola una operación.
+     *
+     * @param total Bytes que procesará (para el porcentaje y el tiempo restante), o -1
+     */
+    public Tarea enviar(String descripcion, long total, Trabajo trabajo) {
+        return enviar(descripcion, List.of(), total, trabajo);
+    }
+
+    /**
+     * Encola una operación que lee o escribe las rutas indicadas.
+     *
+     * @param rutas Archivos o directorios que toca la operación
+     * @param total Bytes que procesará (para el porcentaje y el tiempo restante), o -1
+     * @throws IllegalStateException Si una tarea en cola o en curso ya usa alguna de esas rutas
+     */
+    public synchronized Tarea enviar(String descripcion, Collection<Path> rutas, long total, Trabajo trabajo) {
+        List<Path> normalizadas = new ArrayList<>(rutas.size());
+        for (Path ruta : rutas) {
+            normalizadas.add(ruta.toAbsolutePath().normalize());
+        }
+        // El estado cambia sin este candado, pero solo hacia "terminado": a lo sumo se rechaza de más
+        for (Tarea otra : tareas) {
+            if (!otra.estado.terminado() && seSolapan(otra.rutas, normalizadas)) {
+                warn("Tarea rechazada (" + descripcion + "): la tarea #" + otra.id + " usa la misma ruta.");
+                throw new IllegalStateException("La tarea #" + otra.id + " (" + otra.descripcion
+                        + ") ya trabaja sobre esa ruta; espere a que termine.");
+            }
+        }
+        Tarea tarea = new Tarea(siguienteId.incrementAndGet(), descripcion, total, normalizadas);
+        tareas.add(tarea);
+        ejecutor.execute(() -> ejecutar(tarea, trabajo));
+        info("Tarea #" + tarea.id + " encolada: " + descripcion);
+        return tarea;
+    }
+
+    // Misma ruta, o una dentro de la otra (un directorio y un archivo suyo)
+    private static boolean seSolapan(List<Path> unas, List<Path> otras) {
+        for (Path una : unas) {
+            for (Path otra : otras) {
+                if (una.startsWith(otra) || otra.startsWith(una)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void ejecutar(Tarea tarea, Trabajo trabajo) {
+        try {
+            turnos.acquire();
+        } catch (InterruptedException e) {
+            tarea.terminar(Estado.CANCELADA, "Cancelada al cerrar.");
+            return;
+        }
+        try {
+            if (tarea.cancelacionPedida) {
+                tarea.terminar(Estado.CANCELADA, "Cancelada antes de empezar.");
+            } else {
+                tarea.inicioNanos = System.nanoTime();
+                tarea.estado = Estado.EN_CURSO;
+                tarea.terminar(Estado.TERMINADA, trabajo.ejecutar(tarea));
+            }
+        } catch (CancellationException e) {
+            tarea.terminar(Estado.CANCELADA, "Cancelada por el usuario.");
+        } catch (Throwable e) {
+            // También Error (p. ej. OutOfMemoryError): quien espera la tarea no debe quedar bloqueado
+            tarea.terminar(Estado.FALLIDA, e.getMessage() != null ? e.getMessage() : e.toString());
+        } finally {
+            turnos.release();
+        }
+
+        String aviso = "Tarea #" + tarea.id + " (" + tarea.descripcion + "): " + tarea.estado + ". "
+                + (tarea.mensaje != null ? tarea.mensaje : "");
+        if (tarea.estado == Estado.FALLIDA) {
+            error(aviso);
+            System.out.println("\n✖ " + aviso);
+        } else {
+            info(aviso);
+            System.out.println("\n" + (tarea.estado == Estado.TERMINADA ? "✔ " : "⚠ ") + aviso);
+        }
+    }
+
+    /**
+     * Todas las tareas enviadas, de la más antigua a la más nueva.
+     */
+    public List<Tarea> listar() {
+        return new ArrayList<>(tareas);
+    }
+
+    /**
+     * @return La tarea, o null si no existe
+     */
+    public Tarea buscar(int id) {
+        for (Tarea tarea : tareas) {
+            if (tarea.id == id) {
+                return tarea;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Quita del listado las tareas que ya terminaron.
+     */
+    public void limpiarTerminadas() {
+        tareas.removeIf(tarea -> tarea.estado.terminado());
+    }
+
+    /**
+     * Tareas en cola o en curso.
+     */
+    public int pendientes() {
+        int pendientes = 0;
+        for (Tarea tarea : tareas) {
+            if (!tarea.estado.terminado()) {
+                pendientes++;
+            }
+        }
+        return pendientes;
+    }
+
+    /**
+     * No acepta más tareas y espera a que terminen las pendientes.
+     */
+    public void cerrar() throws InterruptedException {
+        ejecutor.shutdown();
+        while (!ejecutor.awaitTermination(1, TimeUnit.SECONDS)) {
+            // Se sigue esperando: cerrar antes dejaría archivos a medio cifrar
+        }
+    }
+}
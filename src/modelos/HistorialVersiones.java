@@ -0,0 +1,194 @@
+package modelos;
+
+import java.util.Arrays;
+
+/**
+ * Versiones anteriores de un secreto, guardadas como deltas inversos en la ArenaSecretos.
+ *
+ * La versión actual se guarda completa (leerla sigue siendo O(1)); cada versión anterior se
+ * guarda como la diferencia respecto a la versión siguiente más nueva: prefijo común, sufijo
+ * común y los bytes distintos del medio. Un cambio pequeño en un valor grande ocupa solo lo que
+ * cambió, y un valor que se vuelve a guardar igual ocupa un par de bytes. Para reconstruir la
+ * versión k se parte de la actual y se aplican k deltas; nada se decodifica hasta que se pide.
+ */
+final class HistorialVersiones {
+
+    // Índice 0 = versión inmediatamente anterior a la actual
+    private long[] fechas = new long[2];
+    private int[] ranuras = new int[2];
+    private int cantidad;
+
+    int cantidad() {
+        return cantidad;
+    }
+
+    /**
+     * Momento en que la versión dejó de ser la actual.
+     */
+    long fecha(int indice) {
+        return fechas[indice];
+    }
+
+    int ranura(int indice) {
+        return ranuras[indice];
+    }
+
+    /**
+     * Registra que el valor de ranuraAnterior fue reemplazado por el de ranuraNueva.
+     * Debe llamarse antes de liberar ranuraAnterior.
+     */
+    void registrar(ArenaSecretos arena, int ranuraNueva, int ranuraAnterior, long fecha) {
+        byte[] nuevo = leer(arena, ranuraNueva);
+        byte[] anterior = leer(arena, ranuraAnterior);
+        byte[] delta = delta(nuevo, anterior);
+        try {
+            insertarAlInicio(fecha, arena.guardar(delta, 0, delta.length));
+        } finally {
+            Arrays.fill(nuevo, (byte) 0);
+            Arrays.fill(anterior, (byte) 0);
+            Arrays.fill(delta, (byte) 0);
+        }
+    }
+
+    /**
+     * Agrega una versión más antigua que todas las existentes (al cargar desde disco).
+     */
+    void agregarAlFinal(long fecha, int ranura) {
+        asegurarCapacidad();
+        fechas[cantidad] = fecha;
+        ranuras[cantidad] = ranura;
+        cantidad++;
+    }
+
+    /**
+     * Descarta las versiones que exceden la cantidad máxima o son anteriores a fechaMinima.
+     * Como cada delta depende del más nuevo, siempre se descarta desde la más antigua.
+     */
+    void recortar(ArenaSecretos arena, int maxVersiones, long fechaMinima) {
+        while (cantidad > 0 && (cantidad > maxVersiones || fechas[cantidad - 1] < fechaMinima)) {
+            arena.liberar(ranuras[--cantidad]);
+        }
+    }
+
+    /**
+     * Reconstruye la versión indicada (0 = la anterior a la actual) en UTF-8.
+     * El llamador debe llenar el resultado con ceros al terminar.
+     */
+    byte[] reconstruir(ArenaSecretos arena, int ranuraActual, int indice) {
+        byte[] valor = leer(arena, ranuraActual);
+        for (int i = 0; i <= indice; i++) {
+            byte[] delta = leer(arena, ranuras[i]);
+            byte[] anterior = aplicar(valor, delta);
+            Arrays.fill(valor, (byte) 0);
+            Arrays.fill(delta, (byte) 0);
+            valor = anterior;
+        }
+        return valor;
+    }
+
+    /**
+     * Libera (borra con ceros) todas las versiones.
+     */
+    void liberar(ArenaSecretos arena) {
+        for (int i = 0; i < cantidad; i++) {
+            arena.liberar(ranuras[i]);
+        }
+        cantidad = 0;
+    }
+
+    /**
+     * Delta para obtener anterior a partir de nuevo: varint prefijo común, varint sufijo común
+     * y los bytes del medio de anterior.
+     */
+    static byte[] delta(byte[] nuevo, byte[] anterior) {
+        int limite = Math.min(nuevo.length, anterior.length);
+        int prefijo = 0;
+        while (prefijo < limite && nuevo[prefijo] == anterior[prefijo]) {
+            prefijo++;
+        }
+        int sufijo = 0;
+        while (sufijo < limite - prefijo
+                && nuevo[nuevo.length - 1 - sufijo] == anterior[anterior.length - 1 - sufijo]) {
+            sufijo++;
+        }
+        int medio = anterior.length - prefijo - sufijo;
+        byte[] delta = new byte[tamanoVarint(prefijo) + tamanoVarint(sufijo) + medio];
+        int posicion = escribirVarint(delta, 0, prefijo);
+        posicion = escribirVarint(delta, posicion, sufijo);
+        System.arraycopy(anterior, prefijo, delta, posicion, medio);
+        return delta;
+    }
+
+    /**
+     * Inverso de delta(): reconstruye la versión anterior a partir de la más nueva.
+     */
+    static byte[] aplicar(byte[] nuevo, byte[] delta) {
+        int[] posicion = {0};
+        int prefijo = leerVarint(delta, posicion);
+        int sufijo = leerVarint(delta, posicion);
+        int medio = delta.length - posicion[0];
+        if (prefijo < 0 || sufijo < 0 || prefijo + sufijo > nuevo.length) {
+            throw new IllegalStateException("Historial de versiones dañado.");
+        }
+        byte[] anterior = new byte[prefijo + medio + sufijo];
+        System.arraycopy(nuevo, 0, anterior, 0, prefijo);
+        System.arraycopy(delta, posicion[0], anterior, prefijo, medio);
+        System.arraycopy(nuevo, nuevo.length - sufijo, anterior, prefijo + medio, sufijo);
+        return anterior;
+    }
+
+    private static byte[] leer(ArenaSecretos arena, int ranura) {
+        byte[] bytes = new byte[arena.longitud(ranura)];
+        arena.copiarBytes(ranura, bytes, 0);
+        return bytes;
+    }
+
+    private void insertarAlInicio(long fecha, int ranura) {
+        asegurarCapacidad();
+        System.arraycopy(fechas, 0, fechas, 1, cantidad);
+        System.arraycopy(ranuras, 0, ranuras, 1, cantidad);
+        fechas[0] = fecha;
+        ranuras[0] = ranura;
+        cantidad++;
+    }
+
+    private void asegurarCapacidad() {
+        if (cantidad == fechas.length) {
+            fechas = Arrays.copyOf(fechas, cantidad * 2);
+            ranuras = Arrays.copyOf(ranuras, cantidad * 2);
+        }
+    }
+
+    private static int tamanoVarint(int valor) {
+        int bytes = 1;
+        while ((valor & ~0x7F) != 0) {
+            valor >>>= 7;
+            bytes++;
+        }
+        return bytes;
+    }
+
+    private static int escribirVarint(byte[] destino, int posicion, int valor) {
+        while ((valor & ~0x7F) != 0) {
+            destino[posicion++] = (byte) ((valor & 0x7F) | 0x80);
+            valor >>>= 7;
+        }
+        destino[posicion++] = (byte) valor;
+        return posicion;
+    }
+
+    private static int leerVarint(byte[] origen, int[] posicion) {
+        int valor = 0;
+        for (int desplazamiento = 0; desplazamiento < 35; desplazamiento += 7) {
+            if (posicion[0] >= origen.length) {
+                break;
+            }
+            int b = origen[posicion[0]++];
+            valor |= (b & 0x7F) << desplazamiento;
+            if ((b & 0x80) == 0) {
+                return valor;
+            }
+        }
+        throw new IllegalStateException("Historial de versiones dañado.");
+    }
+}
@@ -0,0 +1,198 @@
+package modelos;
+
+import javax.crypto.SecretKey;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Manifiesto de una sincronización cifrada: por cada archivo de origen guarda ruta relativa,
+ * tamaño, fecha de modificación y SHA-256 del contenido.
+ *
+ * Se guarda cifrado (formato .locked segmentado, comprimido) y con las entradas ordenadas
+ * por ruta. Las rutas usan compresión de prefijos (cada una guarda cuántos bytes comparte
+ * con la anterior), así que un millón de entradas en carpetas profundas ocupan pocas decenas
+ * de MB antes de comprimir. Al estar ordenado, compararlo con el recorrido del directorio es
+ * una mezcla lineal, sin tablas hash.
+ */
+public class ManifiestoCambios {
+
+    public static final String NOMBRE_ARCHIVO = ".manifiesto.locked";
+
+    private static final byte[] MAGIA = {'S', 'D', 'S', 'M'};
+    private static final byte VERSION = 1;
+    public static final int LONGITUD_HASH = 32;
+
+    /**
+     * Estado de un archivo de origen en la última sincronización.
+     */
+    public static class Entrada {
+        private final String ruta;
+        private final long tamano;
+        private final long modificado;
+        private final byte[] hash;
+
+        public Entrada(String ruta, long tamano, long modificado, byte[] hash) {
+            this.ruta = ruta;
+            this.tamano = tamano;
+            this.modificado = modificado;
+            this.hash = hash;
+        }
+
+        public String getRuta() {
+            return ruta;
+        }
+
+        public long getTamano() {
+            return tamano;
+        }
+
+        public long getModificado() {
+            return modificado;
+        }
+
+        public byte[] getHash() {
+            return hash;
+        }
+
+        /**
+         * Mismo tamaño y fecha: se asume sin cambios sin leer el contenido.
+         */
+        public boolean mismosMetadatos(long tamano, long modificado) {
+            return this.tamano == tamano && this.modificado == modificado;
+        }
+
+        public boolean mismoContenido(byte[] hash) {
+            return Arrays.equals(this.hash, hash);
+        }
+    }
+
+    private ManifiestoCambios() {
+    }
+
+    /**
+     * Orden de las rutas en el manifiesto (y en el recorrido que se compara con él).
+     */
+    public static int comparar(String a, String b) {
+        return a.compareTo(b);
+    }
+
+    /**
+     * Carga el manifiesto de un directorio destino.
+     *
+     * @return Entradas ordenadas por ruta; vacía si aún no hay manifiesto
+     */
+    public static List<Entrada> cargar(Path destino, SecretKey clave) throws Exception {
+        Path archivo = destino.resolve(NOMBRE_ARCHIVO);
+        if (!Files.exists(archivo)) {
+            return new ArrayList<>();
+        }
+        return deserializar(ArchivoCifrado.descifrarBytes(archivo, clave));
+    }
+
+    /**
+     * Guarda el manifiesto (las entradas deben venir ordenadas por ruta) reemplazando el anterior
+     * con un renombrado atómico.
+     */
+    public static void guardar(Path destino, List<Entrada> entradas, SecretKey clave) throws Exception {
+        Path archivo = destino.resolve(NOMBRE_ARCHIVO);
+        Path temporal = Paths.get(archivo + ".tmp");
+        Files.deleteIfExists(temporal);
+        try {
+            ArchivoCifrado.cifrarBytes(serializar(entradas), temporal, clave, true);
+            Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    static byte[] serializar(List<Entrada> entradas) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(entradas.size() * 56 + 16);
+        try (DataOutputStream datos = new DataOutputStream(bytes)) {
+            datos.write(MAGIA);
+            datos.writeByte(VERSION);
+            datos.writeInt(entradas.size());
+            byte[] anterior = new byte[0];
+            for (Entrada entrada : entradas) {
+                byte[] ruta = entrada.ruta.getBytes(StandardCharsets.UTF_8);
+                int comun = prefijoComun(anterior, ruta);
+                escribirVarint(datos, comun);
+                escribirVarint(datos, ruta.length - comun);
+                datos.write(ruta, comun, ruta.length - comun);
+                escribirVarint(datos, entrada.tamano);
+                datos.writeLong(entrada.modificado);
+                datos.write(entrada.hash);
+                anterior = ruta;
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    static List<Entrada> deserializar(byte[] bytes) throws IOException {
+        try (DataInputStream datos = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            byte[] magia = new byte[4];
+            datos.readFully(magia);
+            if (!Arrays.equals(magia, MAGIA) || datos.readByte() != VERSION) {
+                throw new IOException("Manifiesto con formato desconocido.");
+            }
+            int cantidad = datos.readInt();
+            List<Entrada> entradas = new ArrayList<>(cantidad);
+            byte[] anterior = new byte[0];
+            for (int i = 0; i < cantidad; i++) {
+                int comun = (int) leerVarint(datos);
+                int resto = (int) leerVarint(datos);
+                if (comun > anterior.length) {
+                    throw new IOException("Manifiesto dañado.");
+                }
+                byte[] ruta = Arrays.copyOf(anterior, comun + resto);
+                datos.readFully(ruta, comun, resto);
+                long tamano = leerVarint(datos);
+                long modificado = datos.readLong();
+                byte[] hash = new byte[LONGITUD_HASH];
+                datos.readFully(hash);
+                entradas.add(new Entrada(new String(ruta, StandardCharsets.UTF_8), tamano, modificado, hash));
+                anterior = ruta;
+            }
+            return entradas;
+        }
+    }
+
+    private static int prefijoComun(byte[] a, byte[] b) {
+        int limite = Math.min(a.length, b.length);
+        int i = 0;
+        while (i < limite && a[i] == b[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    private static void escribirVarint(DataOutputStream datos, long valor) throws IOException {
+        while ((valor & ~0x7FL) != 0) {
+            datos.writeByte((int) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        datos.writeByte((int) valor);
+    }
+
+    private static long leerVarint(DataInputStream datos) throws IOException {
+        long valor = 0;
+        for (int desplazamiento = 0; desplazamiento < 64; desplazamiento += 7) {
+            int b = datos.readUnsignedByte();
+            valor |= (long) (b & 0x7F) << desplazamiento;
+            if ((b & 0x80) == 0) {
+                return valor;
+            }
+        }
+        throw new IOException("Manifiesto dañado.");
+    }
+}
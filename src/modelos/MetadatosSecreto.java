@@ -0,0 +1,52 @@
+package modelos;
+
+/**
+ * Fechas de un secreto, en milisegundos desde la época (0 = desconocida o sin vencimiento).
+ * Las bóvedas guardadas antes de existir estos datos cargan con creado y modificado en 0.
+ */
+public final class MetadatosSecreto {
+
+    private final long creado;
+    private long modificado;
+    private long vence;
+
+    MetadatosSecreto(long creado, long modificado, long vence) {
+        this.creado = creado;
+        this.modificado = modificado;
+        this.vence = vence;
+    }
+
+    public long getCreado() {
+        return creado;
+    }
+
+    /**
+     * Último cambio del valor o del vencimiento.
+     */
+    public long getModificado() {
+        return modificado;
+    }
+
+    /**
+     * Momento en que el secreto debe rotarse; 0 si no vence.
+     */
+    public long getVence() {
+        return vence;
+    }
+
+    public boolean tieneVencimiento() {
+        return vence != 0;
+    }
+
+    public boolean estaVencido(long ahora) {
+        return vence != 0 && vence <= ahora;
+    }
+
+    void setModificado(long modificado) {
+        this.modificado = modificado;
+    }
+
+    void setVence(long vence) {
+        this.vence = vence;
+    }
+}
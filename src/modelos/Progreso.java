@@ -0,0 +1,17 @@
+package modelos;
+
+/**
+ * Avance de una operación larga, en bytes procesados. Sirve también para cancelarla de forma
+ * cooperativa: avanzar() lanza CancellationException si se pidió cancelar, y la operación se
+ * interrumpe en ese punto (dejando limpio lo que tenga a medias).
+ */
+@FunctionalInterface
+public interface Progreso {
+
+    /**
+     * Para operaciones que nadie sigue.
+     */
+    Progreso NINGUNO = bytes -> { };
+
+    void avanzar(long bytes);
+}
@@ -4,12 +4,19 @@ package modelos;
 import java.io.*;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Sistema de registro de eventos (Bitacora) para auditoria.
@@ -19,6 +26,9 @@ import java.util.List;
  * Ejemplo: [2025-11-20 10:00:00] INFO: se agregó secreto 'Gmail'.
  *
  * Importante: solo se registran nombres de secretos, NUNCA valores sensibles.
+ *
+ * La escritura al archivo y la limpieza de retención ocurren en un hilo en segundo plano,
+ * para que registrar un evento nunca bloquee al usuario (ni al arranque).
  */
 public class RegistroBitacora {
     private static final String CARPETA_LOGS = "logs";
@@ -29,14 +39,50 @@ public class RegistroBitacora {
     private static final DateTimeFormatter FORMATO_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
-    //Flag para ejecutar limpieza solo una vez por sesión
-    private static boolean limpiezaEjecutada = false;
+    // Eventos pendientes de escribir por el hilo escritor
+    private static final BlockingQueue<Evento> PENDIENTES = new LinkedBlockingQueue<>();
+    private static final AtomicLong ENCOLADAS = new AtomicLong();
+    private static final AtomicLong ESCRITAS = new AtomicLong();
+    private static final long MILIS_ESPERA_AL_CERRAR = 2000;
+    // El escritor espera esto antes de su primer trabajo, para no competir con el arranque
+    private static final long MILIS_RETRASO_INICIAL = 500;
+    private static final CountDownLatch SOLICITUD_VACIADO = new CountDownLatch(1);
+
+    /**
+     * Evento capturado en el hilo que registra. Solo se guarda la hora en milisegundos:
+     * el formateo de fecha (costoso la primera vez) lo hace el hilo escritor.
+     */
+    private static final class Evento {
+        final long milis;
+        final String nivel;
+        final String mensaje;
+
+        Evento(long milis, String nivel, String mensaje) {
+            this.milis = milis;
+            this.nivel = nivel;
+            this.mensaje = mensaje;
+        }
 
-    // Ruta calculada del archivo de log
-    private static final String RUTA_ARCHIVO_LOG;
+        String comoLinea() {
+            // Formatear línea: [2025-11-28 10:00:00] INFO: mensaje
+            LocalDateTime fecha = LocalDateTime.ofInstant(Instant.ofEpochMilli(milis), ZoneId.systemDefault());
+            return "[" + fecha.format(FORMATO_TIMESTAMP) + "] " + nivel + ": " + mensaje;
+        }
+    }
+
+    // El hilo escritor se crea con el primer evento, no al cargar la clase
+    private static volatile boolean escritorIniciado = false;
+
+    /**
+     * Ruta del archivo de log, calculada la primera vez que se necesita (holder idiom).
+     * Así cargar la clase no resuelve rutas ni crea carpetas.
+     */
+    private static final class Ruta {
+        static final String ARCHIVO_LOG = calcularRutaArchivoLog();
+    }
 
-    static {
-        String rutaCalculada;
+    private static String calcularRutaArchivoLog() {
+        File carpetaLogs;
         // Obtener la ubicación base del classpath
         try {
             File ubicacionClase = new File(
@@ -47,24 +93,17 @@ public class RegistroBitacora {
             );
 
             // subir 1 nivel para llegar a la raíz del proyecto
-            File raizProyecto = ubicacionClase.getParentFile();
-
-            //Crear carpeta logs si no existe
-            File carpetaLogs = new File(raizProyecto, CARPETA_LOGS);
-            if(!carpetaLogs.exists()){
-                carpetaLogs.mkdirs();
-            }
-
-            rutaCalculada = new File(carpetaLogs,CARPETA_LOGS).getAbsolutePath();
-        }catch (URISyntaxException | NullPointerException e){
+            carpetaLogs = new File(ubicacionClase.getParentFile(), CARPETA_LOGS);
+        } catch (URISyntaxException | NullPointerException e) {
             // Fallback a ruta relativa si falla la detención
-            File carpetaLogs = new File(CARPETA_LOGS);
-            if (!carpetaLogs.exists()){
-                carpetaLogs.mkdirs();
-            }
-            rutaCalculada = new File(carpetaLogs,ARCHIVO_LOG).getAbsolutePath();
+            carpetaLogs = new File(CARPETA_LOGS);
         }
-        RUTA_ARCHIVO_LOG = rutaCalculada;
+
+        //Crear carpeta logs si no existe
+        if (!carpetaLogs.exists()) {
+            carpetaLogs.mkdirs();
+        }
+        return new File(carpetaLogs, ARCHIVO_LOG).getAbsolutePath();
     }
 
     /**
@@ -99,34 +138,95 @@ public class RegistroBitacora {
 
     /**
      * Método principal de registro.
-     * Formatea la línea y la escribe al archivo.
-     * Ejecuta limpieza de logs antiguos una vez por sesión.
+     * Captura la hora exacta del evento y lo encola; el hilo escritor lo formatea
+     * y lo agrega al archivo en segundo plano.
      *
      * @param nivel Nivel del evento (INFO, WARN, ERROR)
      * @param mensaje Descripción del evento
      */
 
-    private static synchronized void registrar(String nivel, String mensaje){
-        //Ejecutar limpieza una vez por sesión
-        if(!limpiezaEjecutada){
-            limpiarLogsAntiguos();
-            limpiezaEjecutada = true;
+    private static void registrar(String nivel, String mensaje){
+        ENCOLADAS.incrementAndGet();
+        PENDIENTES.add(new Evento(System.currentTimeMillis(), nivel, mensaje));
+        if (!escritorIniciado) {
+            iniciarEscritor();
         }
-        // Formatear línea: [2025-11-28 10:00:00] INFO: mensaje
-        String timestamp = LocalDateTime.now().format(FORMATO_TIMESTAMP);
-        String linea = String.format("[%s] %s: %s", timestamp, nivel, mensaje);
+    }
 
-        // Escribir al archivo (append mode)
-        try (FileWriter fw = new FileWriter(RUTA_ARCHIVO_LOG, true);
-             BufferedWriter bw = new BufferedWriter(fw);
-             PrintWriter pw = new PrintWriter(bw)) {
+    /**
+     * Espera (con límite de tiempo) a que todos los eventos registrados hasta ahora
+     * estén escritos en el archivo.
+     */
+    public static void vaciar() {
+        SOLICITUD_VACIADO.countDown();
+        long objetivo = ENCOLADAS.get();
+        long limite = System.currentTimeMillis() + MILIS_ESPERA_AL_CERRAR;
+        synchronized (ESCRITAS) {
+            while (ESCRITAS.get() < objetivo && System.currentTimeMillis() < limite) {
+                try {
+                    ESCRITAS.wait(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
 
-            pw.println(linea);
-            pw.flush(); // Flush inmediato para evitar pérdida de datos
+    private static synchronized void iniciarEscritor() {
+        if (escritorIniciado) {
+            return;
+        }
+        Thread escritor = new Thread(RegistroBitacora::escribirPendientes, "bitacora-escritor");
+        escritor.setDaemon(true);
+        escritor.start();
+        // Al cerrar la JVM se escriben los eventos que sigan en cola
+        Runtime.getRuntime().addShutdownHook(new Thread(RegistroBitacora::vaciar, "bitacora-cierre"));
+        escritorIniciado = true;
+    }
 
-        } catch (IOException e) {
-            // Silencioso: el logging no debe interrumpir la aplicación
-            System.err.println("[RegistroBitacora] Error al escribir log: " + e.getMessage());
+    /**
+     * Bucle del hilo escritor: espera un momento (o hasta que se pida vaciar), ejecuta la
+     * limpieza de retención una vez por sesión y luego escribe los eventos por lotes,
+     * abriendo el archivo una vez por lote.
+     */
+    private static void escribirPendientes() {
+        try {
+            SOLICITUD_VACIADO.await(MILIS_RETRASO_INICIAL, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            return;
+        }
+        limpiarLogsAntiguos();
+
+        List<Evento> lote = new ArrayList<>();
+        while (true) {
+            try {
+                lote.add(PENDIENTES.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            PENDIENTES.drainTo(lote);
+
+            // Escribir al archivo (append mode)
+            try (FileWriter fw = new FileWriter(Ruta.ARCHIVO_LOG, true);
+                 BufferedWriter bw = new BufferedWriter(fw);
+                 PrintWriter pw = new PrintWriter(bw)) {
+
+                for (Evento evento : lote) {
+                    pw.println(evento.comoLinea());
+                }
+                pw.flush(); // Flush inmediato para evitar pérdida de datos
+
+            } catch (IOException e) {
+                // Silencioso: el logging no debe interrumpir la aplicación
+                System.err.println("[RegistroBitacora] Error al escribir log: " + e.getMessage());
+            }
+
+            synchronized (ESCRITAS) {
+                ESCRITAS.addAndGet(lote.size());
+                ESCRITAS.notifyAll();
+            }
+            lote.clear();
         }
     }
 
@@ -136,7 +236,7 @@ public class RegistroBitacora {
      */
 
     private static void limpiarLogsAntiguos(){
-        File archivoLog = new File(RUTA_ARCHIVO_LOG);
+        File archivoLog = new File(Ruta.ARCHIVO_LOG);
 
         // Si el archivo no existe, no hay nada que limpiar
         if (!archivoLog.exists()) {
@@ -0,0 +1,266 @@
+package modelos;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rueda de tiempo jerárquica para programar vencimientos sin recorrer todos los elementos.
+ *
+ * Hay 4 niveles de 64 ranuras. El nivel 0 tiene una ranura por tic (un minuto), el nivel 1
+ * una por cada 64 tics, y así sucesivamente (unos 31 años en total); lo que queda más lejos
+ * espera en una lista de desbordados. Programar y cancelar son O(1). Al avanzar, cada tic
+ * dispara su ranura del nivel 0, y cada vez que un nivel da la vuelta se reparte la ranura
+ * siguiente del nivel superior en los inferiores, así que el costo amortizado por
+ * vencimiento es constante. Consultar lo que vence en una ventana solo visita las ranuras
+ * que cubren esa ventana.
+ *
+ * No es segura para varios hilos: el dueño (Boveda) la usa desde sus propios métodos.
+ */
+public final class RuedaTemporizadora<T> {
+
+    public static final long MILIS_POR_TIC = 60_000L;
+
+    private static final int BITS_POR_NIVEL = 6;
+    private static final int RANURAS = 1 << BITS_POR_NIVEL;
+    private static final int NIVELES = 4;
+    private static final long ALCANCE = 1L << (BITS_POR_NIVEL * NIVELES);
+
+    private static final class Nodo<T> {
+        final T clave;
+        final long vencimiento;
+        final long tic;
+        Nodo<T> anterior;
+        Nodo<T> siguiente;
+        // -1 = lista de desbordados
+        int nivel;
+        int ranura;
+
+        Nodo(T clave, long vencimiento) {
+            this.clave = clave;
+            this.vencimiento = vencimiento;
+            this.tic = Math.floorDiv(vencimiento, MILIS_POR_TIC);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final Nodo<T>[][] ranuras = new Nodo[NIVELES][RANURAS];
+    private Nodo<T> desbordados;
+    private final Map<T, Nodo<T>> nodos = new HashMap<>();
+    private long ticActual;
+
+    public RuedaTemporizadora(long ahora) {
+        this.ticActual = Math.floorDiv(ahora, MILIS_POR_TIC);
+    }
+
+    public int cantidad() {
+        return nodos.size();
+    }
+
+    /**
+     * Programa (o reprograma) el vencimiento de una clave.
+     */
+    public void programar(T clave, long vencimiento) {
+        cancelar(clave);
+        Nodo<T> nodo = new Nodo<>(clave, vencimiento);
+        nodos.put(clave, nodo);
+        insertar(nodo);
+    }
+
+    /**
+     * Quita la clave de la rueda, si estaba.
+     */
+    public void cancelar(T clave) {
+        Nodo<T> nodo = nodos.remove(clave);
+        if (nodo != null) {
+            desenlazar(nodo);
+        }
+    }
+
+    /**
+     * Avanza el reloj hasta ahora y devuelve las claves vencidas, que salen de la rueda.
+     */
+    public List<T> avanzar(long ahora) {
+        long objetivo = Math.floorDiv(ahora, MILIS_POR_TIC);
+        List<T> vencidas = new ArrayList<>();
+        // Lo ya vencido al programar espera en la ranura del tic actual
+        disparar(ranuraNivel0(ticActual), ticActual, vencidas);
+        while (ticActual < objetivo) {
+            if (nodos.isEmpty()) {
+                ticActual = objetivo;
+                break;
+            }
+            if (objetivo - ticActual >= ALCANCE) {
+                // Salto más largo que toda la rueda (la sesión estuvo cerrada mucho tiempo):
+                // se reubica todo respecto al nuevo tic en lugar de avanzar de a uno
+                reubicarTodo(objetivo);
+                break;
+            }
+            ticActual++;
+            repartir();
+            disparar(ranuraNivel0(ticActual), ticActual, vencidas);
+        }
+        if (ticActual == objetivo) {
+            disparar(ranuraNivel0(ticActual), ticActual, vencidas);
+        }
+        return vencidas;
+    }
+
+    /**
+     * Claves que vencen hasta el instante indicado (sin sacarlas de la rueda), ordenadas por
+     * vencimiento. Solo se visitan las ranuras que pueden contener vencimientos en la ventana.
+     */
+    public List<T> vencenAntesDe(long limite) {
+        long ticLimite = Math.floorDiv(limite, MILIS_POR_TIC);
+        List<Nodo<T>> encontrados = new ArrayList<>();
+        for (int r = 0; r < RANURAS; r++) {
+            recolectar(ranuras[0][r], limite, encontrados);
+        }
+        for (int nivel = 1; nivel < NIVELES; nivel++) {
+            int desplazamiento = BITS_POR_NIVEL * nivel;
+            long bloqueActual = ticActual >> desplazamiento;
+            for (int k = 1; k <= RANURAS; k++) {
+                if ((bloqueActual + k) << desplazamiento > ticLimite) {
+                    break;
+                }
+                recolectar(ranuras[nivel][(int) ((bloqueActual + k) & (RANURAS - 1))], limite, encontrados);
+            }
+        }
+        // Los desbordados bajan a la rueda recién en la siguiente vuelta completa: se revisan siempre
+        recolectar(desbordados, limite, encontrados);
+        encontrados.sort(Comparator.comparingLong(n -> n.vencimiento));
+        List<T> claves = new ArrayList<>(encontrados.size());
+        for (Nodo<T> nodo : encontrados) {
+            claves.add(nodo.clave);
+        }
+        return claves;
+    }
+
+    public void limpiar() {
+        for (Nodo<T>[] nivel : ranuras) {
+            Arrays.fill(nivel, null);
+        }
+        desbordados = null;
+        nodos.clear();
+    }
+
+    private void insertar(Nodo<T> nodo) {
+        long delta = nodo.tic - ticActual;
+        if (delta < 0) {
+            delta = 0;
+        }
+        if (delta >= ALCANCE) {
+            nodo.nivel = -1;
+            nodo.ranura = 0;
+            enlazarDesbordado(nodo);
+            return;
+        }
+        int nivel = 0;
+        while (delta >= (1L << (BITS_POR_NIVEL * (nivel + 1)))) {
+            nivel++;
+        }
+        long tic = Math.max(nodo.tic, ticActual);
+        nodo.nivel = nivel;
+        nodo.ranura = (int) ((tic >> (BITS_POR_NIVEL * nivel)) & (RANURAS - 1));
+        nodo.anterior = null;
+        nodo.siguiente = ranuras[nivel][nodo.ranura];
+        if (nodo.siguiente != null) {
+            nodo.siguiente.anterior = nodo;
+        }
+        ranuras[nivel][nodo.ranura] = nodo;
+    }
+
+    private void enlazarDesbordado(Nodo<T> nodo) {
+        nodo.anterior = null;
+        nodo.siguiente = desbordados;
+        if (desbordados != null) {
+            desbordados.anterior = nodo;
+        }
+        desbordados = nodo;
+    }
+
+    private void desenlazar(Nodo<T> nodo) {
+        if (nodo.anterior != null) {
+            nodo.anterior.siguiente = nodo.siguiente;
+        } else if (nodo.nivel < 0) {
+            desbordados = nodo.siguiente;
+        } else {
+            ranuras[nodo.nivel][nodo.ranura] = nodo.siguiente;
+        }
+        if (nodo.siguiente != null) {
+            nodo.siguiente.anterior = nodo.anterior;
+        }
+        nodo.anterior = null;
+        nodo.siguiente = null;
+    }
+
+    // Al completar una vuelta de un nivel, la ranura que corresponde del nivel superior se
+    // reparte en los niveles inferiores (de arriba hacia abajo)
+    private void repartir() {
+        for (int nivel = NIVELES - 1; nivel >= 1; nivel--) {
+            int desplazamiento = BITS_POR_NIVEL * nivel;
+            if ((ticActual & ((1L << desplazamiento) - 1)) != 0) {
+                continue;
+            }
+            if (nivel == NIVELES - 1) {
+                reinsertar(desbordados, -1, 0);
+            }
+            int ranura = (int) ((ticActual >> desplazamiento) & (RANURAS - 1));
+            reinsertar(ranuras[nivel][ranura], nivel, ranura);
+        }
+    }
+
+    private void reinsertar(Nodo<T> lista, int nivel, int ranura) {
+        if (nivel < 0) {
+            desbordados = null;
+        } else {
+            ranuras[nivel][ranura] = null;
+        }
+        Nodo<T> nodo = lista;
+        while (nodo != null) {
+            Nodo<T> siguiente = nodo.siguiente;
+            insertar(nodo);
+            nodo = siguiente;
+        }
+    }
+
+    private void reubicarTodo(long objetivo) {
+        List<Nodo<T>> todos = new ArrayList<>(nodos.values());
+        for (Nodo<T>[] nivel : ranuras) {
+            Arrays.fill(nivel, null);
+        }
+        desbordados = null;
+        ticActual = objetivo;
+        for (Nodo<T> nodo : todos) {
+            insertar(nodo);
+        }
+    }
+
+    private int ranuraNivel0(long tic) {
+        return (int) (tic & (RANURAS - 1));
+    }
+
+    private void disparar(int ranura, long tic, List<T> vencidas) {
+        Nodo<T> nodo = ranuras[0][ranura];
+        while (nodo != null) {
+            Nodo<T> siguiente = nodo.siguiente;
+            if (nodo.tic <= tic) {
+                desenlazar(nodo);
+                nodos.remove(nodo.clave);
+                vencidas.add(nodo.clave);
+            }
+            nodo = siguiente;
+        }
+    }
+
+    private static <T> void recolectar(Nodo<T> lista, long limite, List<Nodo<T>> destino) {
+        for (Nodo<T> nodo = lista; nodo != null; nodo = nodo.siguiente) {
+            if (nodo.vencimiento <= limite) {
+                destino.add(nodo);
+            }
+        }
+    }
+}
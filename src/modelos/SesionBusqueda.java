@@ -0,0 +1,244 @@
+package modelos;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Búsqueda incremental para autocompletar: conserva el estado entre una consulta y la siguiente.
+ *
+ * Para cada prefijo del patrón se guarda qué nombres siguen siendo candidatos y, por cada uno, la
+ * última fila de la matriz de Levenshtein (patrón contra nombre). Agregar un carácter calcula
+ * una sola fila más por candidato en vez de repetir la matriz completa, y descarta los nombres
+ * que ya no pueden coincidir: el mínimo de la fila nunca baja al agregar caracteres, así que si
+ * supera el umbral máximo y el nombre no contiene el patrón, tampoco coincidirá con ninguna
+ * extensión. Borrar caracteres vuelve al estado guardado del prefijo común.
+ *
+ * Los resultados se guardan además en un LRU de la bóveda (compartido por todas las sesiones)
+ * que se vacía cuando cambian los nombres; una sesión también se reinicia si eso ocurre.
+ * Una sesión no es segura entre hilos: cada usuario (o conexión) usa la suya.
+ */
+public class SesionBusqueda {
+
+    // Mayor umbral de Levenshtein (patrones de 8 caracteres o más)
+    private static final int UMBRAL_MAXIMO = 3;
+    // Las filas se guardan en bytes, saturadas aquí: solo importan distancias hasta el umbral
+    private static final int TOPE = UMBRAL_MAXIMO + 1;
+
+    /**
+     * Resultados recientes por patrón, del más viejo al más nuevo.
+     */
+    static final class Recientes {
+        private static final int CAPACIDAD = 64;
+
+        private final Map<String, List<String>> resultados = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest) {
+                return size() > CAPACIDAD;
+            }
+        };
+
+        synchronized List<String> obtener(String clave) {
+            return resultados.get(clave);
+        }
+
+        synchronized void guardar(String clave, List<String> lista) {
+            resultados.put(clave, lista);
+        }
+
+        synchronized void limpiar() {
+            resultados.clear();
+        }
+    }
+
+    /**
+     * Candidatos para un prefijo del patrón y sus filas de la matriz, una tras otra:
+     * la fila del candidato k es filas[inicioFila[k] .. inicioFila[k + 1]).
+     */
+    private static final class Estado {
+        final int[] candidatos;
+        final int[] inicioFila;
+        final byte[] filas;
+
+        Estado(int[] candidatos, int[] inicioFila, byte[] filas) {
+            this.candidatos = candidatos;
+            this.inicioFila = inicioFila;
+            this.filas = filas;
+        }
+    }
+
+    private final Boveda boveda;
+    private int version;
+    private String[] nombres;
+    private String[] minusculas;
+    // estados.get(k) corresponde a patron.substring(0, k); el 0 son todos los nombres
+    private final List<Estado> estados = new ArrayList<>();
+    private String patron = "";
+
+    // Los nombres se toman en la primera búsqueda, no al crear la sesión
+    SesionBusqueda(Boveda boveda) {
+        this.boveda = boveda;
+    }
+
+    // Toma los nombres actuales (en orden alfabético) y descarta los estados guardados
+    private void reiniciar() {
+        version = boveda.versionNombres();
+        List<String> validos = new ArrayList<>();
+        for (String nombre : boveda.listarNombresSecretos()) {
+            // Ignorar nombres vacíos
+            if (!nombre.trim().isEmpty()) {
+                validos.add(nombre);
+            }
+        }
+        nombres = validos.toArray(new String[0]);
+        minusculas = new String[nombres.length];
+        int[] todos = new int[nombres.length];
+        for (int i = 0; i < nombres.length; i++) {
+            minusculas[i] = nombres[i].toLowerCase().trim();
+            todos[i] = i;
+        }
+        estados.clear();
+        // Fila 0 implícita: la distancia entre "" y los primeros j caracteres es j
+        estados.add(new Estado(todos, null, null));
+        patron = "";
+    }
+
+    /**
+     * Busca con el patrón completo tal como está escrito ahora. Con los mismos criterios y
+     * el mismo orden que Boveda.buscarSecretosInteligente():
+     * 1. Coincidencia exacta (ignorando mayúsculas/minúsculas)
+     * 2. Comienza con el patrón
+     * 3. Contiene el patrón
+     * 4. Similitud por distancia Levenshtein (tolerancia a errores tipográficos)
+     *
+     * @return Nombres ordenados por relevancia (y alfabéticamente en un empate)
+     */
+    public List<String> buscar(String texto, int maxResultados) {
+        if (texto == null || texto.trim().isEmpty()) {
+            return new ArrayList<>();
+        }
+        String nuevo = texto.toLowerCase().trim();
+        String clave = maxResultados + "\n" + nuevo;
+        if (nombres == null || version != boveda.versionNombres()) {
+            reiniciar();
+        }
+        List<String> guardados = boveda.busquedasRecientes().obtener(clave);
+        if (guardados != null) {
+            return new ArrayList<>(guardados);
+        }
+
+        avanzarHasta(nuevo);
+        List<String> resultados = ordenar(maxResultados);
+        boveda.busquedasRecientes().guardar(clave, Collections.unmodifiableList(new ArrayList<>(resultados)));
+        return resultados;
+    }
+
+    // Vuelve al prefijo común con el patrón anterior y agrega una fila por cada carácter nuevo
+    private void avanzarHasta(String nuevo) {
+        int comun = 0;
+        int limite = Math.min(patron.length(), nuevo.length());
+        while (comun < limite && patron.charAt(comun) == nuevo.charAt(comun)) {
+            comun++;
+        }
+        while (estados.size() > comun + 1) {
+            estados.remove(estados.size() - 1);
+        }
+        for (int k = comun; k < nuevo.length(); k++) {
+            estados.add(agregarFila(estados.get(k), nuevo.substring(0, k + 1)));
+        }
+        patron = nuevo;
+    }
+
+    private Estado agregarFila(Estado previo, String prefijo) {
+        int filaNueva = prefijo.length();
+        char c = prefijo.charAt(filaNueva - 1);
+        int[] candidatos = new int[previo.candidatos.length];
+        int[] inicioFila = new int[previo.candidatos.length + 1];
+        int capacidad = 0;
+        for (int indice : previo.candidatos) {
+            capacidad += minusculas[indice].length() + 1;
+        }
+        byte[] filas = new byte[capacidad];
+
+        int quedan = 0;
+        int posicion = 0;
+        for (int k = 0; k < previo.candidatos.length; k++) {
+            String nombre = minusculas[previo.candidatos[k]];
+            int anterior = previo.filas == null ? -1 : previo.inicioFila[k];
+            int minimo = filas[posicion] = (byte) Math.min(filaNueva, TOPE);
+            for (int j = 1; j <= nombre.length(); j++) {
+                int arriba = anterior < 0 ? Math.min(j, TOPE) : previo.filas[anterior + j];
+                int diagonal = anterior < 0 ? Math.min(j - 1, TOPE) : previo.filas[anterior + j - 1];
+                int valor = Math.min(Math.min(arriba + 1, filas[posicion + j - 1] + 1),
+                        diagonal + (nombre.charAt(j - 1) == c ? 0 : 1));
+                filas[posicion + j] = (byte) Math.min(valor, TOPE);
+                minimo = Math.min(minimo, valor);
+            }
+            if (minimo > UMBRAL_MAXIMO && !nombre.contains(prefijo)) {
+                // Descartado: su fila se sobrescribe con la del siguiente
+                continue;
+            }
+            candidatos[quedan] = previo.candidatos[k];
+            inicioFila[quedan] = posicion;
+            posicion += nombre.length() + 1;
+            quedan++;
+        }
+        inicioFila[quedan] = posicion;
+        return new Estado(Arrays.copyOf(candidatos, quedan), Arrays.copyOf(inicioFila, quedan + 1),
+                Arrays.copyOf(filas, posicion));
+    }
+
+    private List<String> ordenar(int maxResultados) {
+        Estado estado = estados.get(estados.size() - 1);
+        int umbral = umbral(patron.length());
+        List<int[]> coincidencias = new ArrayList<>();
+        for (int k = 0; k < estado.candidatos.length; k++) {
+            String nombre = minusculas[estado.candidatos[k]];
+            int puntuacion;
+            if (nombre.equals(patron)) {
+                puntuacion = 0;
+            } else if (nombre.startsWith(patron)) {
+                puntuacion = 1;
+            } else if (nombre.contains(patron)) {
+                puntuacion = 2;
+            } else {
+                int distancia = estado.filas[estado.inicioFila[k] + nombre.length()];
+                if (umbral == 0 || distancia > umbral) {
+                    continue;
+                }
+                // Base de 10 para que Levenshtein tenga menor prioridad que contains
+                puntuacion = 10 + distancia;
+            }
+            coincidencias.add(new int[]{puntuacion, estado.candidatos[k]});
+        }
+        // Los candidatos ya están en orden alfabético y el ordenamiento es estable
+        coincidencias.sort((a, b) -> Integer.compare(a[0], b[0]));
+
+        List<String> resultados = new ArrayList<>();
+        for (int i = 0; i < coincidencias.size() && i < maxResultados; i++) {
+            resultados.add(nombres[coincidencias.get(i)[1]]);
+        }
+        return resultados;
+    }
+
+    /**
+     * Umbral dinámico basado en la longitud del patrón:
+     * - Patrón de 1-2 caracteres: solo coincidencia exacta o contains (umbral 0)
+     * - Patrón de 3-4 caracteres: permitir 1 error tipográfico
+     * - Patrón de 5-7 caracteres: permitir 2 errores
+     * - Patrón de 8+ caracteres: permitir 3 errores
+     */
+    private static int umbral(int longitud) {
+        if (longitud <= 2) {
+            return 0;
+        } else if (longitud <= 4) {
+            return 1;
+        } else if (longitud <= 7) {
+            return 2;
+        }
+        return UMBRAL_MAXIMO;
+    }
+}
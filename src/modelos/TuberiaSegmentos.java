@@ -0,0 +1,179 @@
+package modelos;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Procesa un archivo segmento por segmento en tres etapas que se solapan: un hilo lee, varios
+ * hilos cifran o descifran y el hilo que llama escribe, en orden.
+ *
+ * Los segmentos viajan en bloques de un pool fijo: la lectura toma un bloque libre (y espera si
+ * no hay, así no se adelanta más de lo que el resto puede absorber) y la escritura lo devuelve.
+ * Mientras el disco lee el segmento i+1 y escribe el i-1, la CPU trabaja en el i, de modo que el
+ * tiempo total se acerca al de la etapa más lenta y no a la suma de las tres. Al terminar, los
+ * bloques se llenan con ceros.
+ */
+final class TuberiaSegmentos {
+
+    // Bloques por hilo de cifrado: uno en proceso, uno leído esperando y uno escrito o por escribir
+    private static final int BLOQUES_POR_HILO = 2;
+    private static final int BLOQUES_EXTRA = 2;
+
+    /**
+     * Lee el segmento indicado en el destino y devuelve cuántos bytes leyó.
+     */
+    @FunctionalInterface
+    interface Lector {
+        int leer(long indice, byte[] destino) throws Exception;
+    }
+
+    /**
+     * Transforma (cifra o descifra) un segmento y devuelve la longitud del resultado. Se llama
+     * desde varios hilos a la vez; auxiliar es un búfer de trabajo del bloque (p. ej. para la
+     * carga comprimida).
+     */
+    @FunctionalInterface
+    interface Transformacion {
+        int aplicar(long indice, byte[] entrada, int longitud, byte[] salida, byte[] auxiliar) throws Exception;
+    }
+
+    /**
+     * Escribe un segmento ya transformado; se llama en orden de índice, siempre desde el mismo hilo.
+     */
+    @FunctionalInterface
+    interface Escritor {
+        void escribir(long indice, byte[] datos, int longitud) throws Exception;
+    }
+
+    private static final class Bloque {
+        final byte[] entrada;
+        final byte[] salida;
+        final byte[] auxiliar;
+        long indice;
+        int longitud;
+
+        Bloque(int[] tamanos) {
+            this.entrada = new byte[tamanos[0]];
+            this.salida = new byte[tamanos[1]];
+            this.auxiliar = new byte[tamanos[2]];
+        }
+    }
+
+    private TuberiaSegmentos() {
+    }
+
+    /**
+     * Hilos de cifrado por defecto: uno por núcleo.
+     */
+    static int hilosPredeterminados() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Procesa los segmentos 0..segmentos-1. Con un hilo o menos, o un solo segmento, todo ocurre
+     * en el hilo que llama, sin solapamiento: la tubería crea sus propios hilos y bloques, y
+     * cuando quien llama ya procesa varios archivos en paralelo eso solo multiplica hilos y memoria.
+     *
+     * @param tamanos Capacidad de los búferes de cada bloque: {entrada, salida, auxiliar}
+     */
+    static void ejecutar(long segmentos, int[] tamanos, int hilos, Lector lector, Transformacion transformacion,
+                         Escritor escritor) throws Exception {
+        if (hilos <= 1 || segmentos <= 1) {
+            Bloque bloque = new Bloque(tamanos);
+            try {
+                for (long i = 0; i < segmentos; i++) {
+                    int leidos = lector.leer(i, bloque.entrada);
+                    escritor.escribir(i, bloque.salida,
+                            transformacion.aplicar(i, bloque.entrada, leidos, bloque.salida, bloque.auxiliar));
+                }
+            } finally {
+                limpiar(bloque);
+            }
+            return;
+        }
+
+        int cantidadBloques = hilos * BLOQUES_POR_HILO + BLOQUES_EXTRA;
+        BlockingQueue<Bloque> libres = new ArrayBlockingQueue<>(cantidadBloques);
+        Bloque[] todos = new Bloque[cantidadBloques];
+        for (int b = 0; b < cantidadBloques; b++) {
+            todos[b] = new Bloque(tamanos);
+            libres.add(todos[b]);
+        }
+        // Resultados en orden de lectura; como mucho hay tantos como bloques
+        BlockingQueue<Future<Bloque>> pendientes = new LinkedBlockingQueue<>();
+
+        ExecutorService lectura = Executors.newSingleThreadExecutor(UtilidadesHilos.fabricaDaemon("tuberia-lectura"));
+        ExecutorService trabajo = Executors.newFixedThreadPool(hilos, UtilidadesHilos.fabricaDaemon("tuberia-cifrado"));
+        try {
+            lectura.execute(() -> {
+                try {
+                    for (long i = 0; i < segmentos; i++) {
+                        Bloque bloque = libres.take();
+                        bloque.indice = i;
+                        bloque.longitud = lector.leer(i, bloque.entrada);
+                        pendientes.put(trabajo.submit(() -> {
+                            bloque.longitud = transformacion.aplicar(bloque.indice, bloque.entrada, bloque.longitud,
+                                    bloque.salida, bloque.auxiliar);
+                            return bloque;
+                        }));
+                    }
+                } catch (InterruptedException e) {
+                    // La escritura falló y canceló la tubería
+                } catch (Exception e) {
+                    pendientes.add(CompletableFuture.failedFuture(e));
+                }
+            });
+
+            for (long i = 0; i < segmentos; i++) {
+                Bloque bloque;
+                try {
+                    bloque = pendientes.take().get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+                escritor.escribir(bloque.indice, bloque.salida, bloque.longitud);
+                libres.put(bloque);
+            }
+        } finally {
+            lectura.shutdownNow();
+            trabajo.shutdownNow();
+            // Tras un error o una cancelación, un hilo todavía podría estar escribiendo en un bloque
+            esperarTerminacion(lectura);
+            esperarTerminacion(trabajo);
+            for (Bloque bloque : todos) {
+                limpiar(bloque);
+            }
+        }
+    }
+
+    // Sin límite de tiempo: limpiar antes dejaría que un hilo escriba texto en claro en un bloque ya borrado
+    private static void esperarTerminacion(ExecutorService ejecutor) {
+        boolean interrumpido = false;
+        while (true) {
+            try {
+                if (ejecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrumpido = true;
+            }
+        }
+        if (interrumpido) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void limpiar(Bloque bloque) {
+        Arrays.fill(bloque.entrada, (byte) 0);
+        Arrays.fill(bloque.salida, (byte) 0);
+        Arrays.fill(bloque.auxiliar, (byte) 0);
+    }
+}
@@ -17,9 +17,33 @@ public class UtilidadesCifrado {
     private static final int GCM_IV_LENGTH = 12; // Longitud recomendada para IV en GCM
     private static final int GCM_TAG_LENGTH = 128; // Bits para el tag de autenticación
 
+    /**
+     * Bytes que el tag GCM agrega a cada bloque cifrado.
+     */
+    public static final int TAMANO_TAG = GCM_TAG_LENGTH / 8;
+
+    /**
+     * Longitud del prefijo aleatorio de los nonces por segmento (el resto es un contador de 4 bytes).
+     */
+    public static final int LONGITUD_PREFIJO_NONCE = GCM_IV_LENGTH - 4;
+
+    // Un Cipher por hilo: evita buscar el proveedor JCA en cada segmento
+    private static final ThreadLocal<Cipher> CIFRADOR_POR_HILO = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(ALGORITMO_CIFRADO);
+        } catch (Exception e) {
+            throw new IllegalStateException("AES-GCM no disponible.", e);
+        }
+    });
+
+    // Un generador por proceso (SecureRandom es seguro entre hilos)
+    private static final class Aleatorio {
+        static final SecureRandom GENERADOR = new SecureRandom();
+    }
+
     // Constantes para política de contraseñas
-    private static final int LONGITUD_MINIMA_CONTRASENA = 8;
-    private static final String CARACTERES_ESPECIALES = "!@#$%^&*()-_=+[]{}|;:',.<>?/~`";
+    static final int LONGITUD_MINIMA_CONTRASENA = 8;
+    static final String CARACTERES_ESPECIALES = "!@#$%^&*()-_=+[]{}|;:',.<>?/~`";
 
     /**
      * Mensaje con los requisitos de contraseña para mostrar al usuario.
@@ -29,10 +53,12 @@ public class UtilidadesCifrado {
                     "  • Mínimo 8 caracteres\n" +
                     "  • Al menos una letra mayúscula\n" +
                     "  • Al menos un número\n" +
-                    "  • Al menos un carácter especial (!@#$%^&* etc.)";
+                    "  • Al menos un carácter especial (!@#$%^&* etc.)\n" +
+                    "  • No aparecer en filtraciones conocidas (si hay un corpus configurado)";
 
     /**
-     * Valida que una contraseña cumpla con la política de seguridad.
+     * Valida que una contraseña cumpla con la política de seguridad. Si hay un corpus de
+     * contraseñas filtradas configurado (ver CorpusFiltraciones), también se rechaza si aparece en él.
      * @param contrasena La contraseña a validar
      * @return null si la contraseña es válida, o un String con el error específico
      */
@@ -64,10 +90,32 @@ public class UtilidadesCifrado {
         if (!tieneEspecial) {
             return "La contraseña debe contener al menos un carácter especial (!@#$%^&* etc.).";
         }
+        if (CorpusFiltraciones.estaFiltrada(contrasena)) {
+            return "La contraseña aparece en filtraciones de datos conocidas; elija otra.";
+        }
 
         return null; // Contraseña válida
     }
 
+    /**
+     * Inicializa en segundo plano los proveedores JCA (AES-GCM, SHA-256, SecureRandom).
+     * La primera llamada a Cipher.getInstance es la parte más lenta del arranque; así se
+     * solapa con el tiempo que el usuario tarda en escribir la contraseña.
+     */
+    public static void precalentar() {
+        Thread hilo = new Thread(() -> {
+            try {
+                Cipher.getInstance(ALGORITMO_CIFRADO);
+                MessageDigest.getInstance(ALGORITMO_HASH);
+                new SecureRandom().nextBytes(new byte[GCM_IV_LENGTH]);
+            } catch (Exception e) {
+                // Si falla aquí, fallará (y se informará) en el uso real
+            }
+        }, "precalentar-cifrado");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
     /**
      * Convierte texto (contraseña) en una Llave secreta válida para AES.
      */
@@ -83,6 +131,92 @@ public class UtilidadesCifrado {
         return new SecretKeySpec(bytesClave, "AES");
     }
 
+    /**
+     * Genera bytes aleatorios criptográficamente seguros (prefijos de nonce, sales, llaves).
+     */
+    public static byte[] bytesAleatorios(int cantidad) {
+        byte[] bytes = new byte[cantidad];
+        Aleatorio.GENERADOR.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Construye el nonce de un segmento: prefijo aleatorio (8 bytes) + contador big-endian (4 bytes).
+     * Mientras el prefijo sea único por archivo, cada segmento recibe un nonce distinto sin guardarlo.
+     */
+    public static byte[] nonceSegmento(byte[] prefijo, long contador) {
+        if (contador < 0 || contador > 0xFFFFFFFFL) {
+            throw new IllegalArgumentException("Contador de segmento fuera de rango: " + contador);
+        }
+        byte[] nonce = new byte[GCM_IV_LENGTH];
+        System.arraycopy(prefijo, 0, nonce, 0, LONGITUD_PREFIJO_NONCE);
+        nonce[8] = (byte) (contador >>> 24);
+        nonce[9] = (byte) (contador >>> 16);
+        nonce[10] = (byte) (contador >>> 8);
+        nonce[11] = (byte) contador;
+        return nonce;
+    }
+
+    /**
+     * Cifra un segmento con AES-GCM usando un nonce explícito y datos asociados (AAD).
+     * El resultado mide longitud + TAMANO_TAG bytes y no incluye el nonce.
+     */
+    public static byte[] cifrarSegmento(byte[] datos, int desde, int longitud, SecretKey clave,
+                                        byte[] nonce, byte[] aad) throws Exception {
+        Cipher cifrador = CIFRADOR_POR_HILO.get();
+        cifrador.init(Cipher.ENCRYPT_MODE, clave, new GCMParameterSpec(GCM_TAG_LENGTH, nonce));
+        if (aad != null) {
+            cifrador.updateAAD(aad);
+        }
+        return cifrador.doFinal(datos, desde, longitud);
+    }
+
+    /**
+     * Igual que cifrarSegmento(), pero escribe el resultado (longitud + TAMANO_TAG bytes) en un
+     * buffer del llamador, reutilizable entre segmentos.
+     *
+     * @return Bytes escritos en salida
+     */
+    public static int cifrarSegmentoEn(byte[] datos, int desde, int longitud, SecretKey clave,
+                                       byte[] nonce, byte[] aad, byte[] salida) throws Exception {
+        Cipher cifrador = CIFRADOR_POR_HILO.get();
+        cifrador.init(Cipher.ENCRYPT_MODE, clave, new GCMParameterSpec(GCM_TAG_LENGTH, nonce));
+        if (aad != null) {
+            cifrador.updateAAD(aad);
+        }
+        return cifrador.doFinal(datos, desde, longitud, salida, 0);
+    }
+
+    /**
+     * Descifra y autentica un segmento producido por cifrarSegmento().
+     * Lanza AEADBadTagException si el segmento, el nonce o el AAD no coinciden.
+     */
+    public static byte[] descifrarSegmento(byte[] datos, int desde, int longitud, SecretKey clave,
+                                           byte[] nonce, byte[] aad) throws Exception {
+        Cipher cifrador = CIFRADOR_POR_HILO.get();
+        cifrador.init(Cipher.DECRYPT_MODE, clave, new GCMParameterSpec(GCM_TAG_LENGTH, nonce));
+        if (aad != null) {
+            cifrador.updateAAD(aad);
+        }
+        return cifrador.doFinal(datos, desde, longitud);
+    }
+
+    /**
+     * Igual que descifrarSegmento(), pero deja el texto en claro en un buffer del llamador
+     * (reutilizable entre segmentos). Sirve para verificar tags sin asignar memoria por segmento.
+     *
+     * @return Bytes de texto en claro escritos en salida
+     */
+    public static int descifrarSegmentoEn(byte[] datos, int desde, int longitud, SecretKey clave,
+                                          byte[] nonce, byte[] aad, byte[] salida) throws Exception {
+        Cipher cifrador = CIFRADOR_POR_HILO.get();
+        cifrador.init(Cipher.DECRYPT_MODE, clave, new GCMParameterSpec(GCM_TAG_LENGTH, nonce));
+        if (aad != null) {
+            cifrador.updateAAD(aad);
+        }
+        return cifrador.doFinal(datos, desde, longitud, salida, 0);
+    }
+
     /**
      * Encripta (Cifra) datos usando AES-GCM con IV aleatorio.
      * El IV se prepende a los datos cifrados.
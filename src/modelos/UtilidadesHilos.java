@@ -0,0 +1,44 @@
+package modelos;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Utilidades para crear ejecutores de tareas.
+ *
+ * El proyecto compila para Java 17, pero si se ejecuta en Java 21+ aprovecha los hilos virtuales
+ * (un hilo barato por tarea). En Java 17 se usa un pool de hilos daemon que crece según la demanda.
+ */
+public class UtilidadesHilos {
+
+    /**
+     * Crea un ejecutor que lanza un hilo por tarea: virtual si la JVM lo soporta,
+     * o un pool en caché de hilos daemon en caso contrario.
+     *
+     * @param prefijo Prefijo para el nombre de los hilos (solo aplica a hilos de plataforma)
+     */
+    public static ExecutorService crearEjecutorPorTarea(String prefijo) {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // JVM anterior a Java 21: hilos de plataforma
+            return Executors.newCachedThreadPool(fabricaDaemon(prefijo));
+        }
+    }
+
+    /**
+     * Fábrica de hilos daemon con nombre "prefijo-N", para que no impidan cerrar la aplicación.
+     */
+    public static ThreadFactory fabricaDaemon(String prefijo) {
+        AtomicInteger contador = new AtomicInteger();
+        return tarea -> {
+            Thread hilo = new Thread(tarea, prefijo + "-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        };
+    }
+}
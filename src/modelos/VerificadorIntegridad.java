@@ -0,0 +1,167 @@
+package modelos;
+
+import javax.crypto.SecretKey;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static modelos.RegistroBitacora.*;
+
+/**
+ * Verifica la integridad de archivos cifrados sin escribir texto en claro ni tocar los originales.
+ * Reconoce .locked (segmentado y anterior), contenedores .lockpak y boveda.dat.
+ *
+ * En un árbol de directorios cada archivo se verifica en un pool de hilos; los .locked
+ * segmentados se recorren en flujo con un buffer reutilizado, así que el costo lo pone la
+ * lectura del disco y no la memoria.
+ */
+public class VerificadorIntegridad {
+
+    private static final String EXTENSION_CIFRADO = ".locked";
+    private static final String NOMBRE_BOVEDA = "boveda.dat";
+
+    /**
+     * Resultado de verificar un archivo.
+     */
+    public static class Resultado {
+        private final Path archivo;
+        private final boolean integro;
+        private final String detalle;
+        private final List<Long> posicionesDanadas;
+
+        Resultado(Path archivo, boolean integro, String detalle, List<Long> posicionesDanadas) {
+            this.archivo = archivo;
+            this.integro = integro;
+            this.detalle = detalle;
+            this.posicionesDanadas = posicionesDanadas;
+        }
+
+        public Path getArchivo() {
+            return archivo;
+        }
+
+        public boolean esIntegro() {
+            return integro;
+        }
+
+        public String getDetalle() {
+            return detalle;
+        }
+
+        /**
+         * Posiciones (en bytes, dentro del archivo cifrado) de los segmentos que no pasaron el tag.
+         */
+        public List<Long> getPosicionesDanadas() {
+            return posicionesDanadas;
+        }
+
+        @Override
+        public String toString() {
+            return (integro ? "OK    " : "DAÑADO") + " " + archivo + (detalle.isEmpty() ? "" : " — " + detalle);
+        }
+    }
+
+    private final SecretKey clave;
+
+    public VerificadorIntegridad(SecretKey clave) {
+        this.clave = clave;
+    }
+
+    /**
+     * Indica si el verificador reconoce el archivo por su nombre.
+     */
+    public static boolean esVerificable(Path archivo) {
+        String nombre = archivo.getFileName().toString();
+        return nombre.endsWith(EXTENSION_CIFRADO) || nombre.endsWith(ContenedorCifrado.EXTENSION)
+                || nombre.equals(NOMBRE_BOVEDA);
+    }
+
+    /**
+     * Verifica un archivo. Un archivo que no sea .locked ni .lockpak se trata como bóveda.
+     */
+    public Resultado verificarArchivo(Path archivo) {
+        String nombre = archivo.getFileName().toString();
+        try {
+            if (nombre.endsWith(ContenedorCifrado.EXTENSION)) {
+                return segunDanados(archivo, new ContenedorCifrado(archivo, clave).verificar());
+            }
+            if (nombre.endsWith(EXTENSION_CIFRADO)) {
+                if (ArchivoCifrado.esFormatoAnterior(archivo)) {
+                    // Un solo tag para todo el archivo: no hay posiciones que reportar
+                    UtilidadesCifrado.descifrar(Files.readAllBytes(archivo), clave);
+                    return new Resultado(archivo, true, "formato anterior", Collections.emptyList());
+                }
+                return segunDanados(archivo, ArchivoCifrado.verificar(archivo, clave));
+            }
+            new AlmacenamientoBoveda(archivo.toString()).verificar(clave);
+            return new Resultado(archivo, true, "bóveda", Collections.emptyList());
+        } catch (javax.crypto.AEADBadTagException e) {
+            return new Resultado(archivo, false, "tag inválido (contraseña incorrecta o archivo dañado)",
+                    Collections.emptyList());
+        } catch (Exception e) {
+            return new Resultado(archivo, false, e.getMessage(), Collections.emptyList());
+        }
+    }
+
+    /**
+     * Verifica todos los archivos reconocidos bajo un directorio, en paralelo.
+     *
+     * @return Resultados en el orden de recorrido
+     */
+    public List<Resultado> verificarArbol(Path raiz, int hilos) throws Exception {
+        List<Path> archivos;
+        try (Stream<Path> recorrido = Files.walk(raiz)) {
+            archivos = recorrido.filter(Files::isRegularFile)
+                    .filter(VerificadorIntegridad::esVerificable)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(hilos, UtilidadesHilos.fabricaDaemon("verificador"));
+        try {
+            List<Future<Resultado>> pendientes = new ArrayList<>(archivos.size());
+            for (Path archivo : archivos) {
+                pendientes.add(pool.submit(() -> verificarArchivo(archivo)));
+            }
+            List<Resultado> resultados = new ArrayList<>(archivos.size());
+            int danados = 0;
+            for (Future<Resultado> pendiente : pendientes) {
+                Resultado resultado = pendiente.get();
+                if (!resultado.esIntegro()) {
+                    danados++;
+                }
+                resultados.add(resultado);
+            }
+            if (danados > 0) {
+                warn("Verificación de '" + raiz.getFileName() + "': " + danados + " de " + resultados.size()
+                        + " archivos dañados.");
+            } else {
+                info("Verificación de '" + raiz.getFileName() + "': " + resultados.size() + " archivos íntegros.");
+            }
+            return resultados;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Resultado segunDanados(Path archivo, List<Long> danados) {
+        if (danados.isEmpty()) {
+            return new Resultado(archivo, true, "", danados);
+        }
+        StringBuilder detalle = new StringBuilder(danados.size() + " segmento(s) dañado(s) en la(s) posición(es) ");
+        for (int i = 0; i < danados.size() && i < 10; i++) {
+            detalle.append(i == 0 ? "" : ", ").append(danados.get(i));
+        }
+        if (danados.size() > 10) {
+            detalle.append(", ...");
+        }
+        return new Resultado(archivo, false, detalle.toString(), danados);
+    }
+}
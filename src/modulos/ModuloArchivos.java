@@ -1,20 +1,54 @@
 package modulos;
 
+import modelos.ArchivoCifrado;
+import modelos.BorradoSeguro;
+import modelos.CifradoEnSitio;
+import modelos.ContenedorCifrado;
+import modelos.GestorTareas;
+import modelos.Progreso;
 import modelos.RegistroBitacora;
 import modelos.UtilidadesCifrado;
+import modelos.VerificadorIntegridad;
 import javax.crypto.SecretKey;
 import java.io.Console;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class ModuloArchivos extends ModuloBase {
 
+    private static final String EXTENSION_CIFRADO = ".locked";
+    // Tiempo sin cambios para considerar terminado un archivo en la carpeta vigilada
+    private static final long MILIS_QUIETUD_VIGILANTE = 2000;
+
+    // Espacio libre que se deja además de la copia cifrada
+    private static final long MARGEN_ESPACIO_LIBRE = 64L * 1024 * 1024;
+
     private final String contrasena;
 
+    // Comprimir antes de cifrar (se omite solo si la muestra del archivo ya parece comprimida)
+    private boolean comprimir = true;
+
+    // Pasadas de sobrescritura del original tras cifrarlo (0: solo se elimina)
+    private volatile int pasadasBorrado = 0;
+    public static final int MAX_PASADAS_BORRADO = 7;
+
     public ModuloArchivos(String contrasena, Console console) {
-        super(console);
+        this(contrasena, console, null);
+    }
+
+    /**
+     * @param tareas Gestor donde cifrar y descifrar en segundo plano, o null para hacerlo en primer plano
+     */
+    public ModuloArchivos(String contrasena, Console console, GestorTareas tareas) {
+        super(console, tareas);
         this.contrasena = contrasena;
     }
 
@@ -30,7 +64,14 @@ public class ModuloArchivos extends ModuloBase {
             System.out.println("\n--- " + obtenerNombre() + " ---");
             System.out.println("1. Cifrar archivo");
             System.out.println("2. Descifrar archivo");
-            System.out.println("3. Regresar");
+            System.out.println("3. Cifrar directorio");
+            System.out.println("4. Vigilar carpeta (cifrado automático)");
+            System.out.println("5. Contenedor cifrado (empaquetar/listar/extraer)");
+            System.out.println("6. Verificar integridad (archivo o directorio)");
+            System.out.println("7. Sincronizar directorio cifrado (incremental)");
+            System.out.println("8. Borrado seguro de originales ("
+                    + (pasadasBorrado == 0 ? "desactivado" : pasadasBorrado + " pasada(s)") + ")");
+            System.out.println("9. Regresar");
             System.out.print("> ");
 
             int opcion = leerOpcion();
@@ -38,33 +79,230 @@ public class ModuloArchivos extends ModuloBase {
             switch (opcion) {
                 case 1: procesarArchivo(true); break;
                 case 2: procesarArchivo(false); break;
-                case 3: continuar = false; break;
+                case 3: procesarDirectorio(); break;
+                case 4: vigilarCarpeta(); break;
+                case 5: menuContenedor(); break;
+                case 6: verificarIntegridad(); break;
+                case 7: sincronizarDirectorio(); break;
+                case 8: configurarBorrado(); break;
+                case 9: continuar = false; break;
                 default: System.out.println("Opción inválida.");
             }
         }
     }
 
-    private void procesarArchivo(boolean esCifrado) {
-        System.out.print("Ruta del archivo (usa / en lugar de \\ y sin comillas): ");
-        String rutaTexto = console.readLine();
+    private void configurarBorrado() {
+        System.out.println("Al cifrar, el original se sobrescribe antes de eliminarlo para que no quede en el disco.");
+        System.out.println("No es efectivo en SSD ni en sistemas de archivos con copia en escritura.");
+        System.out.print("Pasadas de sobrescritura (0 = desactivado, máximo " + MAX_PASADAS_BORRADO + "): ");
+        int pasadas = leerOpcion();
+        if (pasadas < 0 || pasadas > MAX_PASADAS_BORRADO) {
+            System.out.println("Opción inválida.");
+            return;
+        }
+        setPasadasBorrado(pasadas);
+        System.out.println("✔ Borrado seguro " + (pasadas == 0 ? "desactivado." : "con " + pasadas + " pasada(s)."));
+    }
 
-        if (rutaTexto == null || rutaTexto.isEmpty()) {
-            System.out.println("Error: No se ingresó ninguna ruta.");
+    private void sincronizarDirectorio() {
+        Path origen = leerRuta("Directorio de origen: ");
+        if (origen == null) {
+            return;
+        }
+        if (!Files.isDirectory(origen)) {
+            System.out.println("Error: La ruta no corresponde a un directorio.");
+            return;
+        }
+        Path destino = leerRuta("Directorio destino (cifrado): ");
+        if (destino == null) {
             return;
         }
 
-        // Limpiar espacios al inicio y final
-        rutaTexto = rutaTexto.trim();
+        try {
+            SincronizadorDirectorio.Resumen resumen = sincronizarDirectorio(origen, destino);
+            System.out.println("✔ Sincronización terminada: " + resumen);
+            System.out.println("Los archivos de origen se conservan.");
+        } catch (Exception e) {
+            RegistroBitacora.error("Error al sincronizar directorio: " + e.getMessage());
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Cifra los archivos nuevos o modificados de origen hacia destino (ver SincronizadorDirectorio),
+     * con un hilo por núcleo.
+     */
+    public SincronizadorDirectorio.Resumen sincronizarDirectorio(Path origen, Path destino) throws Exception {
+        return sincronizarDirectorio(origen, destino, Runtime.getRuntime().availableProcessors());
+    }
+
+    public SincronizadorDirectorio.Resumen sincronizarDirectorio(Path origen, Path destino, int hilos)
+            throws Exception {
+        return new SincronizadorDirectorio(origen, destino, UtilidadesCifrado.obtenerClaveDesdeContrasena(contrasena),
+                comprimir, hilos).sincronizar();
+    }
+
+    private void verificarIntegridad() {
+        Path ruta = leerRuta("Archivo o directorio a verificar: ");
+        if (ruta == null) {
+            return;
+        }
+        if (!Files.exists(ruta)) {
+            System.out.println("Error: La ruta no existe.");
+            return;
+        }
+
+        try {
+            VerificadorIntegridad verificador = crearVerificador();
+            List<VerificadorIntegridad.Resultado> resultados = Files.isDirectory(ruta)
+                    ? verificador.verificarArbol(ruta, Runtime.getRuntime().availableProcessors())
+                    : List.of(verificador.verificarArchivo(ruta));
+
+            int danados = 0;
+            for (VerificadorIntegridad.Resultado resultado : resultados) {
+                if (!resultado.esIntegro()) {
+                    danados++;
+                    System.out.println("✖ " + resultado.getArchivo() + ": " + resultado.getDetalle());
+                }
+            }
+            if (danados == 0) {
+                System.out.println("✔ " + resultados.size() + " archivo(s) íntegro(s).");
+            } else {
+                System.out.println("⚠ " + danados + " de " + resultados.size() + " archivo(s) dañado(s).");
+            }
+        } catch (Exception e) {
+            RegistroBitacora.error("Error al verificar integridad: " + e.getMessage());
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Crea un verificador de integridad con la clave de este módulo.
+     */
+    public VerificadorIntegridad crearVerificador() throws Exception {
+        return new VerificadorIntegridad(UtilidadesCifrado.obtenerClaveDesdeContrasena(contrasena));
+    }
+
+    private void menuContenedor() {
+        System.out.println("\n--- Contenedor cifrado (" + ContenedorCifrado.EXTENSION + ") ---");
+        System.out.println("1. Empaquetar directorio");
+        System.out.println("2. Listar contenido");
+        System.out.println("3. Extraer un archivo");
+        System.out.println("4. Extraer todo");
+        System.out.println("5. Regresar");
+        System.out.print("> ");
+
+        int opcion = leerOpcion();
+        if (opcion < 1 || opcion > 4) {
+            if (opcion != 5) {
+                System.out.println("Opción inválida.");
+            }
+            return;
+        }
 
         try {
-            Path rutaArchivo = Paths.get(rutaTexto);
+            if (opcion == 1) {
+                empaquetarDirectorio();
+                return;
+            }
 
-            // Si la ruta no es absoluta, convertirla a absoluta
-            if (!rutaArchivo.isAbsolute()) {
-                rutaArchivo = rutaArchivo.toAbsolutePath();
+            Path rutaContenedor = leerRuta("Ruta del contenedor: ");
+            if (rutaContenedor == null) {
+                return;
+            }
+            if (!Files.isRegularFile(rutaContenedor)) {
+                System.out.println("Error: Contenedor no encontrado.");
+                return;
             }
-            rutaArchivo = rutaArchivo.normalize();
+            ContenedorCifrado contenedor = abrirContenedor(rutaContenedor);
+            List<ContenedorCifrado.Entrada> entradas = contenedor.listar();
+
+            switch (opcion) {
+                case 2:
+                    System.out.println("\n" + entradas.size() + " archivo(s):");
+                    for (ContenedorCifrado.Entrada entrada : entradas) {
+                        System.out.println("  " + entrada.getNombre() + " (" + entrada.getTamano() + " bytes)");
+                    }
+                    break;
+                case 3:
+                    System.out.print("Ruta dentro del contenedor: ");
+                    String nombre = console.readLine();
+                    ContenedorCifrado.Entrada entrada = ContenedorCifrado.buscar(entradas, nombre == null ? "" : nombre.trim());
+                    if (entrada == null) {
+                        System.out.println("Error: El contenedor no tiene ese archivo.");
+                        return;
+                    }
+                    Path destino = leerRuta("Archivo de destino: ");
+                    if (destino == null) {
+                        return;
+                    }
+                    if (Files.exists(destino)) {
+                        System.out.println("Error: El archivo de destino ya existe.");
+                        return;
+                    }
+                    try (FileOutputStream salida = new FileOutputStream(destino.toFile())) {
+                        contenedor.extraer(entrada, salida);
+                    }
+                    RegistroBitacora.info("Extraído '" + entrada.getNombre() + "' del contenedor " + rutaContenedor.getFileName());
+                    System.out.println("✔ Archivo extraído en " + destino);
+                    break;
+                case 4:
+                    Path directorio = leerRuta("Directorio de destino: ");
+                    if (directorio == null) {
+                        return;
+                    }
+                    int extraidos = contenedor.extraerTodo(directorio);
+                    System.out.println("✔ " + extraidos + " archivo(s) extraído(s) en " + directorio);
+                    break;
+            }
+        } catch (Exception e) {
+            RegistroBitacora.error("Error en el contenedor cifrado: " + e.getMessage());
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    private void empaquetarDirectorio() throws Exception {
+        Path directorio = leerRuta("Directorio a empaquetar: ");
+        if (directorio == null) {
+            return;
+        }
+        if (!Files.isDirectory(directorio)) {
+            System.out.println("Error: La ruta no corresponde a un directorio.");
+            return;
+        }
+
+        Path destino = Paths.get(directorio + ContenedorCifrado.EXTENSION);
+        if (Files.exists(destino)) {
+            System.out.println("Error: Ya existe " + destino);
+            return;
+        }
+        List<ContenedorCifrado.Entrada> entradas = empaquetarDirectorio(directorio, destino);
+        System.out.println("✔ " + entradas.size() + " archivo(s) empaquetado(s) en " + destino);
+        System.out.println("Los originales se conservan; bórrelos cuando haya comprobado el contenedor.");
+    }
 
+    /**
+     * Empaqueta un directorio en un contenedor cifrado con un hilo por núcleo.
+     * Los archivos originales no se modifican.
+     */
+    public List<ContenedorCifrado.Entrada> empaquetarDirectorio(Path directorio, Path destino) throws Exception {
+        return abrirContenedor(destino).empaquetar(directorio, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Abre un contenedor cifrado con la contraseña de este módulo.
+     */
+    public ContenedorCifrado abrirContenedor(Path rutaContenedor) throws Exception {
+        return new ContenedorCifrado(rutaContenedor, UtilidadesCifrado.obtenerClaveDesdeContrasena(contrasena));
+    }
+
+    private void procesarArchivo(boolean esCifrado) {
+        Path rutaArchivo = leerRuta("Ruta del archivo (usa / en lugar de \\ y sin comillas): ");
+        if (rutaArchivo == null) {
+            return;
+        }
+
+        try {
             if (!Files.exists(rutaArchivo)) {
                 RegistroBitacora.error("Archivo no encontrado: " + rutaArchivo.getFileName());
                 System.out.println("Error: Archivo no encontrado.");
@@ -78,7 +316,7 @@ public class ModuloArchivos extends ModuloBase {
             }
 
             // Validación simple de extensión
-            boolean tieneExtensionLocked = rutaArchivo.toString().endsWith(".locked");
+            boolean tieneExtensionLocked = rutaArchivo.toString().endsWith(EXTENSION_CIFRADO);
 
             if (esCifrado && tieneExtensionLocked) {
                 RegistroBitacora.warn("Archivo '" + rutaArchivo.getFileName() + "' ya tiene extensión .locked.");
@@ -91,47 +329,322 @@ public class ModuloArchivos extends ModuloBase {
                 return;
             }
 
-            // 1. Leer archivo
-            byte[] datosEntrada = Files.readAllBytes(rutaArchivo);
+            long tamanoOriginal = esCifrado ? -1 : ArchivoCifrado.tamanoOriginal(rutaArchivo);
+            long total = tamanoOriginal >= 0 ? tamanoOriginal : Files.size(rutaArchivo);
+            String descripcion = (esCifrado ? "Cifrar " : "Descifrar ") + rutaArchivo.getFileName();
+            // Entrada y salida: cifrar "a" y descifrar "a.locked" a la vez también chocarían
+            String rutaTexto = rutaArchivo.toString();
+            Path rutaSalida = esCifrado ? Paths.get(rutaTexto + EXTENSION_CIFRADO)
+                    : Paths.get(rutaTexto.substring(0, rutaTexto.length() - EXTENSION_CIFRADO.length()));
+            ejecutarEnSegundoPlano(descripcion, List.of(rutaArchivo, rutaSalida), total, progreso -> {
+                try (BorradoSeguro borrado = crearBorrado(esCifrado)) {
+                    Path salida = transformarArchivo(rutaArchivo, esCifrado, progreso, borrado);
+                    String operacion = esCifrado ? "cifrado" : "descifrado";
+                    RegistroBitacora.info("Archivo '" + rutaArchivo.getFileName() + "' " + operacion + " correctamente.");
+                    return "Archivo original eliminado" + describirBorrado(borrado) + ". Nuevo archivo: " + salida;
+                }
+            });
+
+        } catch (Exception e) {
+            String operacion = esCifrado ? "cifrar" : "descifrar";
+            RegistroBitacora.error("Error al " + operacion + " archivo: " + e.getMessage());
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    private void procesarDirectorio() {
+        Path directorio = leerRuta("Ruta del directorio (usa / en lugar de \\ y sin comillas): ");
+        if (directorio == null) {
+            return;
+        }
+
+        if (!Files.isDirectory(directorio)) {
+            RegistroBitacora.error("Directorio no encontrado: " + directorio.getFileName());
+            System.out.println("Error: La ruta no corresponde a un directorio.");
+            System.out.println("Ruta buscada: " + directorio);
+            return;
+        }
+
+        try {
+            List<Path> archivos = archivosPorCifrar(directorio);
+            long total = 0;
+            for (Path archivo : archivos) {
+                total += Files.size(archivo);
+            }
+            ejecutarEnSegundoPlano("Cifrar directorio " + directorio.getFileName(), List.of(directorio), total, progreso -> {
+                try (BorradoSeguro borrado = crearBorrado(true)) {
+                    int cifrados = cifrarArchivos(directorio, archivos, progreso, borrado);
+                    return cifrados + " archivo(s) cifrado(s). Originales eliminados" + describirBorrado(borrado) + ".";
+                }
+            });
+        } catch (Exception e) {
+            RegistroBitacora.error("Error al cifrar directorio: " + e.getMessage());
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    private void vigilarCarpeta() {
+        Path directorio = leerRuta("Carpeta a vigilar (usa / en lugar de \\ y sin comillas): ");
+        if (directorio == null) {
+            return;
+        }
+        if (!Files.isDirectory(directorio)) {
+            System.out.println("Error: La ruta no corresponde a un directorio.");
+            return;
+        }
+
+        try {
+            VigilanteCarpeta vigilante = crearVigilante(directorio);
+            vigilante.iniciar();
+            System.out.println("✔ Vigilando " + directorio);
+            System.out.println("Los archivos nuevos se cifrarán al terminar de escribirse. Presione Enter para detener.");
+            console.readLine();
+
+            System.out.println("Deteniendo (esperando cifrados en curso)...");
+            vigilante.detener();
+            System.out.println("Resumen: " + vigilante.resumen());
+        } catch (Exception e) {
+            RegistroBitacora.error("Error en la vigilancia de carpeta: " + e.getMessage());
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Crea un vigilante de carpeta que cifra con la contraseña de este módulo,
+     * con un hilo de cifrado por núcleo.
+     */
+    public VigilanteCarpeta crearVigilante(Path directorio) {
+        int hilos = Runtime.getRuntime().availableProcessors();
+        return new VigilanteCarpeta(directorio, this, hilos, hilos * 4, MILIS_QUIETUD_VIGILANTE);
+    }
+
+    /**
+     * Lee una ruta desde la consola y la convierte en absoluta y normalizada.
+     *
+     * @param mensaje Texto a mostrar al usuario
+     * @return La ruta, o null si no se ingresó nada
+     */
+    private Path leerRuta(String mensaje) {
+        System.out.print(mensaje);
+        String rutaTexto = console.readLine();
+
+        if (rutaTexto == null || rutaTexto.trim().isEmpty()) {
+            System.out.println("Error: No se ingresó ninguna ruta.");
+            return null;
+        }
+
+        // Limpiar espacios al inicio y final
+        Path ruta = Paths.get(rutaTexto.trim());
+
+        // Si la ruta no es absoluta, convertirla a absoluta
+        if (!ruta.isAbsolute()) {
+            ruta = ruta.toAbsolutePath();
+        }
+        return ruta.normalize();
+    }
+
+    /**
+     * Activa o desactiva la compresión previa al cifrado (activada por defecto).
+     * El cifrado en sitio nunca comprime.
+     */
+    public void setComprimir(boolean comprimir) {
+        this.comprimir = comprimir;
+    }
+
+    /**
+     * Sobrescribe los originales tantas veces antes de eliminarlos al cifrar (ver BorradoSeguro).
+     * Con 0 (por defecto) solo se eliminan.
+     */
+    public void setPasadasBorrado(int pasadas) {
+        this.pasadasBorrado = pasadas;
+    }
+
+    // Borrado por lotes para una operación (o para toda la vida de un vigilante), o null si el
+    // borrado seguro está desactivado
+    BorradoSeguro crearBorrado(boolean esCifrado) {
+        return esCifrado && pasadasBorrado > 0
+                ? new BorradoSeguro(pasadasBorrado, Runtime.getRuntime().availableProcessors())
+                : null;
+    }
+
+    private static String describirBorrado(BorradoSeguro borrado) throws Exception {
+        return borrado == null ? "" : " (borrado seguro: " + borrado.terminar() + ")";
+    }
+
+    /**
+     * Cifra un archivo y lo reemplaza por su versión .locked (el original se elimina).
+     *
+     * @param rutaArchivo Ruta absoluta del archivo en claro
+     * @return Ruta del nuevo archivo .locked
+     */
+    public Path cifrarArchivo(Path rutaArchivo) throws Exception {
+        return transformarArchivo(rutaArchivo, true, Progreso.NINGUNO, null);
+    }
+
+    /**
+     * Descifra un archivo .locked y lo reemplaza por el original (el .locked se elimina).
+     *
+     * @param rutaArchivo Ruta absoluta del archivo .locked
+     * @return Ruta del archivo descifrado
+     */
+    public Path descifrarArchivo(Path rutaArchivo) throws Exception {
+        return transformarArchivo(rutaArchivo, false, Progreso.NINGUNO, null);
+    }
+
+    /**
+     * Cifra todos los archivos de un directorio (recursivamente) que aún no tengan extensión .locked.
+     *
+     * @param directorio Directorio raíz a cifrar
+     * @return Número de archivos cifrados
+     */
+    public int cifrarDirectorio(Path directorio) throws Exception {
+        try (BorradoSeguro borrado = crearBorrado(true)) {
+            return cifrarArchivos(directorio, archivosPorCifrar(directorio), Progreso.NINGUNO, borrado);
+        }
+    }
+
+    private static List<Path> archivosPorCifrar(Path directorio) throws IOException {
+        try (Stream<Path> recorrido = Files.walk(directorio)) {
+            return recorrido
+                    .filter(Files::isRegularFile)
+                    .filter(ruta -> !ruta.toString().endsWith(EXTENSION_CIFRADO))
+                    .filter(ruta -> !ruta.toString().endsWith(CifradoEnSitio.EXTENSION_DIARIO))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    // Si se cancela a mitad, los archivos ya cifrados quedan cifrados y el resto queda intacto.
+    // Con borrado, los originales se sobrescriben por lotes mientras se cifran los siguientes.
+    private int cifrarArchivos(Path directorio, List<Path> archivos, Progreso progreso, BorradoSeguro borrado)
+            throws Exception {
+        for (Path archivo : archivos) {
+            transformarArchivo(archivo, true, progreso, borrado);
+        }
+        RegistroBitacora.info("Directorio '" + directorio.getFileName() + "' cifrado: " + archivos.size() + " archivos.");
+        return archivos.size();
+    }
+
+    /**
+     * @param progreso Recibe los bytes en claro procesados; si cancela, el original queda intacto
+     * @param borrado  Lotes de borrado seguro donde dejar el original, o null para borrarlo aquí mismo
+     */
+    private Path transformarArchivo(Path rutaArchivo, boolean esCifrado, Progreso progreso, BorradoSeguro borrado)
+            throws Exception {
+        Path rutaSalida = generarSalida(rutaArchivo, esCifrado, progreso, ArchivoCifrado.hilosPredeterminados());
+        // El cifrado en sitio no deja original: el mismo archivo pasó a ser el .locked
+        if (Files.exists(rutaArchivo)) {
+            borrarOriginal(rutaArchivo, esCifrado, borrado);
+        }
+        return rutaSalida;
+    }
+
+    /**
+     * Cifra un archivo sin borrar el original, para quien necesita anotar algo entre ambos pasos
+     * (ver VigilanteCarpeta). Tras un cifrado en sitio el original ya no existe. El vigilante ya
+     * cifra varios archivos en paralelo, así que cada uno se procesa en secuencia (sin tubería).
+     *
+     * @return Ruta del archivo .locked
+     */
+    Path cifrarConservandoOriginal(Path rutaArchivo) throws Exception {
+        return generarSalida(rutaArchivo, true, Progreso.NINGUNO, 1);
+    }
+
+    /**
+     * Elimina el original de un archivo ya cifrado (con borrado seguro si está activado).
+     */
+    void borrarOriginal(Path rutaArchivo) throws Exception {
+        borrarOriginal(rutaArchivo, true, null);
+    }
 
-            // 2. Crear llave
-            SecretKey clave = UtilidadesCifrado.obtenerClaveDesdeContrasena(contrasena);
+    // Pasos 1 a 3: genera el archivo de salida y lo publica; el original sigue en su lugar
+    // (hilos: hilos de cifrado de la tubería, ver ArchivoCifrado)
+    private Path generarSalida(Path rutaArchivo, boolean esCifrado, Progreso progreso, int hilos) throws Exception {
+        // 1. Crear llave
+        SecretKey clave = UtilidadesCifrado.obtenerClaveDesdeContrasena(contrasena);
 
-            byte[] datosSalida;
-            Path rutaSalida;
+        Path rutaSalida;
 
-            // Usar la ruta absoluta normalizada para la salida
-            String rutaAbsoluta = rutaArchivo.toString();
+        // Usar la ruta absoluta normalizada para la salida
+        String rutaAbsoluta = rutaArchivo.toString();
 
+        if (esCifrado) {
+            rutaSalida = Paths.get(rutaAbsoluta + EXTENSION_CIFRADO);
+        } else {
+            // Quitar extensión .locked
+            String nombreOriginal = rutaAbsoluta.substring(0, rutaAbsoluta.length() - EXTENSION_CIFRADO.length());
+            rutaSalida = Paths.get(nombreOriginal);
+        }
+
+        // Sin espacio para una copia (o con un cifrado en sitio interrumpido): cifrar dentro del mismo archivo
+        if (esCifrado && (CifradoEnSitio.tieneDiarioPendiente(rutaArchivo) || !hayEspacioParaCopia(rutaArchivo))) {
+            RegistroBitacora.info("Cifrando en sitio '" + rutaArchivo.getFileName() + "'.");
+            // El cifrado en sitio no se interrumpe a medias: solo se puede cancelar antes de empezar
+            progreso.avanzar(0);
+            CifradoEnSitio.cifrar(rutaArchivo, rutaSalida, clave);
+            return rutaSalida;
+        }
+
+        // 2. Procesar en flujo hacia un temporal (.tmp, ignorado por la carpeta vigilada)
+        Path temporal = Paths.get(rutaSalida + ".tmp");
+        Files.deleteIfExists(temporal);
+        try {
             if (esCifrado) {
-                // Cifrar
-                datosSalida = UtilidadesCifrado.cifrar(datosEntrada, clave);
-                rutaSalida = Paths.get(rutaAbsoluta + ".locked");
+                ArchivoCifrado.cifrar(rutaArchivo, temporal, clave, comprimir, null, progreso, hilos);
             } else {
-                // Descifrar
-                datosSalida = UtilidadesCifrado.descifrar(datosEntrada, clave);
-                // Quitar extensión .locked
-                String nombreOriginal = rutaAbsoluta.substring(0, rutaAbsoluta.length() - ".locked".length());
-                rutaSalida = Paths.get(nombreOriginal);
-            }
-
-            // 3. Guardar nuevo archivo
-            try (FileOutputStream salida = new FileOutputStream(rutaSalida.toFile())) {
-                salida.write(datosSalida);
+                ArchivoCifrado.descifrar(rutaArchivo, temporal, clave, hilos, progreso);
             }
+            // 3. Publicar el resultado de una sola vez
+            Files.move(temporal, rutaSalida, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+        return rutaSalida;
+    }
 
-            // 4. Borrar original (para seguridad)
+    // 4. Borrar original (para seguridad); con borrado seguro, sobrescribirlo antes
+    private void borrarOriginal(Path rutaArchivo, boolean esCifrado, BorradoSeguro borrado) throws Exception {
+        if (borrado != null) {
+            borrado.agregar(rutaArchivo);
+        } else if (esCifrado && pasadasBorrado > 0) {
+            BorradoSeguro.borrar(rutaArchivo, pasadasBorrado);
+        } else {
             Files.delete(rutaArchivo);
+        }
+    }
 
-            String operacion = esCifrado ? "cifrado" : "descifrado";
-            RegistroBitacora.info("Archivo '" + rutaArchivo.getFileName() + "' " + operacion + " correctamente.");
-            System.out.println("Éxito. Archivo original eliminado.");
-            System.out.println("Nuevo archivo: " + rutaSalida);
+    /**
+     * Cifra un archivo dentro de sí mismo, sin crear una copia (ver CifradoEnSitio).
+     * Si una ejecución anterior se interrumpió, la reanuda.
+     *
+     * @param rutaArchivo Ruta absoluta del archivo en claro
+     * @return Ruta del archivo .locked
+     */
+    public Path cifrarArchivoEnSitio(Path rutaArchivo) throws Exception {
+        Path rutaSalida = Paths.get(rutaArchivo + EXTENSION_CIFRADO);
+        CifradoEnSitio.cifrar(rutaArchivo, rutaSalida, UtilidadesCifrado.obtenerClaveDesdeContrasena(contrasena));
+        RegistroBitacora.info("Archivo '" + rutaArchivo.getFileName() + "' cifrado en sitio.");
+        return rutaSalida;
+    }
 
-        } catch (Exception e) {
-            String operacion = esCifrado ? "cifrar" : "descifrar";
-            RegistroBitacora.error("Error al " + operacion + " archivo: " + e.getMessage());
-            System.out.println("Error: " + e.getMessage());
+    // La copia cifrada ocupa el tamaño del archivo más un margen para cabecera, tags y metadatos
+    private static boolean hayEspacioParaCopia(Path rutaArchivo) throws IOException {
+        long tamano = Files.size(rutaArchivo);
+        long margen = tamano / 512 + MARGEN_ESPACIO_LIBRE;
+        return Files.getFileStore(rutaArchivo).getUsableSpace() >= tamano + margen;
+    }
+
+    /**
+     * Descifra solo un rango de bytes de un archivo .locked hacia la salida, sin modificarlo.
+     * Un desde negativo se cuenta desde el final (como "tail -c").
+     *
+     * @return Bytes escritos
+     */
+    public long descifrarRango(Path rutaArchivo, long desde, long longitud, OutputStream salida) throws Exception {
+        SecretKey clave = UtilidadesCifrado.obtenerClaveDesdeContrasena(contrasena);
+        if (desde < 0) {
+            long tamano = ArchivoCifrado.tamanoOriginal(rutaArchivo);
+            desde = Math.max(0, tamano + desde);
         }
+        return ArchivoCifrado.descifrarRango(rutaArchivo, desde, longitud, clave, salida);
     }
-}
+}
\ No newline at end of file
@@ -1,15 +1,28 @@
 package modulos;
 
+import modelos.GestorTareas;
+import modelos.Progreso;
+import modelos.RegistroBitacora;
 import java.io.Console;
+import java.nio.file.Path;
+import java.util.List;
 
 public abstract class ModuloBase {
 
     // Usamos Console en lugar de Scanner para evitar problemas de buffer
     protected Console console;
 
+    // Tareas en segundo plano compartidas por los módulos (null: todo se ejecuta en primer plano)
+    protected final GestorTareas tareas;
+
     // Constructor: Recibe el Console del Main y lo guarda
     public ModuloBase(Console console) {
+        this(console, null);
+    }
+
+    public ModuloBase(Console console, GestorTareas tareas) {
         this.console = console;
+        this.tareas = tareas;
     }
 
     // Metodo utilitario para leer números
@@ -27,6 +40,47 @@ public abstract class ModuloBase {
         return console.readLine().trim();
     }
 
+    /**
+     * Envía una operación larga al gestor de tareas y vuelve al menú de inmediato; el resultado
+     * se avisa al terminar. Sin gestor, la ejecuta aquí mismo y muestra el resultado.
+     *
+     * @param total Bytes que procesará la operación, o -1 si no se conocen
+     * @return La tarea enviada, o null si se ejecutó en primer plano
+     */
+    protected GestorTareas.Tarea ejecutarEnSegundoPlano(String descripcion, long total, GestorTareas.Trabajo trabajo) {
+        return ejecutarEnSegundoPlano(descripcion, List.of(), total, trabajo);
+    }
+
+    /**
+     * Igual que el anterior, para una operación sobre archivos: si otra tarea pendiente usa
+     * alguna de las rutas, no se envía y se avisa.
+     *
+     * @param rutas Archivos o directorios que lee o escribe la operación
+     * @return La tarea enviada, o null si se ejecutó en primer plano o no se pudo enviar
+     */
+    protected GestorTareas.Tarea ejecutarEnSegundoPlano(String descripcion, List<Path> rutas, long total,
+                                                        GestorTareas.Trabajo trabajo) {
+        if (tareas != null) {
+            GestorTareas.Tarea tarea;
+            try {
+                tarea = tareas.enviar(descripcion, rutas, total, trabajo);
+            } catch (IllegalStateException e) {
+                System.out.println("⚠ " + e.getMessage());
+                return null;
+            }
+            System.out.println("⏳ Tarea #" + tarea.getId() + " en segundo plano: " + descripcion
+                    + " (vea el avance en 'Tareas en segundo plano').");
+            return tarea;
+        }
+        try {
+            System.out.println("✔ " + trabajo.ejecutar(Progreso.NINGUNO));
+        } catch (Exception e) {
+            RegistroBitacora.error("Error en '" + descripcion + "': " + e.getMessage());
+            System.out.println("Error: " + e.getMessage());
+        }
+        return null;
+    }
+
     // --- METODOS ABSTRACTOS (Polimorfismo) ---
 
     public abstract void ejecutar() throws Exception;
@@ -1,24 +1,51 @@
 package modulos;
 
 import modelos.Boveda;
+import modelos.MetadatosSecreto;
+import modelos.CorpusFiltraciones;
 import modelos.AlmacenamientoBoveda;
+import modelos.GestorTareas;
+import modelos.SesionBusqueda;
 import modelos.UtilidadesCifrado;
 import java.io.Console;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.List;
 import modelos.RegistroBitacora;
 
 public class ModuloBoveda extends ModuloBase {
 
     private static final int MAX_INTENTOS_CONTRASENA = 3;
+    private static final int TAMANO_PAGINA = 50;
+    // Secretos que vencen dentro de estos días se marcan como próximos a vencer
+    private static final int DIAS_AVISO_VENCIMIENTO = 7;
+    private static final long MILIS_POR_DIA = 24L * 60 * 60 * 1000;
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     private final Boveda boveda;
     private final AlmacenamientoBoveda almacenamiento;
+    // Una sola sesión para todas las búsquedas del menú: conserva los candidatos entre consultas
+    private final SesionBusqueda busqueda;
     private String contrasena; // No es final para permitir cambio de contraseña
+    // Guardado en segundo plano de "Guardar y Regresar"; al volver al menú se espera a que termine
+    private GestorTareas.Tarea guardadoPendiente;
 
     public ModuloBoveda(Boveda boveda, AlmacenamientoBoveda almacenamiento, String contrasena, Console console) {
-        super(console);
+        this(boveda, almacenamiento, contrasena, console, null);
+    }
+
+    /**
+     * @param tareas Gestor donde guardar en segundo plano al regresar, o null para guardar en primer plano
+     */
+    public ModuloBoveda(Boveda boveda, AlmacenamientoBoveda almacenamiento, String contrasena, Console console,
+                        GestorTareas tareas) {
+        super(console, tareas);
         this.boveda = boveda;
         this.almacenamiento = almacenamiento;
+        this.busqueda = boveda.iniciarBusqueda();
         this.contrasena = contrasena;
     }
 
@@ -27,6 +54,25 @@ public class ModuloBoveda extends ModuloBase {
         return "Gestor de Contraseñas";
     }
 
+    /**
+     * Espera a que termine el último guardado en segundo plano, si lo hay.
+     */
+    public void esperarGuardado() throws InterruptedException {
+        GestorTareas.Tarea pendiente = guardadoPendiente;
+        if (pendiente == null) {
+            return;
+        }
+        if (!pendiente.getEstado().terminado()) {
+            System.out.println("Esperando a que termine el guardado de la bóveda...");
+            pendiente.esperar();
+        }
+        if (pendiente.getEstado() != GestorTareas.Estado.TERMINADA) {
+            System.out.println("⚠ El último guardado no se completó (" + pendiente.getMensaje()
+                    + "). Los cambios siguen solo en memoria.");
+        }
+        guardadoPendiente = null;
+    }
+
     /**
      * Obtiene la contraseña actual (puede haber cambiado durante la sesión).
      */
@@ -36,8 +82,11 @@ public class ModuloBoveda extends ModuloBase {
 
     @Override
     public void ejecutar() throws Exception {
+        esperarGuardado();
         boolean continuar = true;
+        mostrarResumenVencimientos();
         while (continuar) {
+            avisarNuevosVencimientos();
             System.out.println("\n--- " + obtenerNombre() + " ---");
 
             boolean estaVacia = boveda.listarNombresSecretos().isEmpty();
@@ -53,7 +102,10 @@ public class ModuloBoveda extends ModuloBase {
                 System.out.println("4. Eliminar secreto");
                 System.out.println("5. Actualizar secreto");        
                 System.out.println("6. Cambiar contraseña maestra");       
-                System.out.println("7. Guardar y Regresar");      
+                System.out.println("7. Espacios (carpetas)");
+                System.out.println("8. Historial de versiones");
+                System.out.println("9. Vencimientos y rotación");
+                System.out.println("10. Guardar y Regresar");      
             }
             System.out.print("> ");
 
@@ -63,7 +115,7 @@ public class ModuloBoveda extends ModuloBase {
             if (estaVacia) {
                 // Menú vacío: 1=Agregar, 2=Cambiar contraseña, 3=Guardar
                 if (opcion == 2) opcion = 6; // Cambiar contraseña      
-                else if (opcion == 3) opcion = 7; // Guardar y regresar    
+                else if (opcion == 3) opcion = 10; // Guardar y regresar    
                 else if (opcion != 1) opcion = -1;
             }
 
@@ -74,6 +126,9 @@ public class ModuloBoveda extends ModuloBase {
                     System.out.print("Valor del secreto: ");
                     String valor = leerLinea();
                     boveda.agregarSecreto(nombre, valor);
+                    advertirSiFiltrado(valor);
+                    System.out.print("Días hasta que deba rotarse (Enter = sin vencimiento): ");
+                    fijarVencimiento(nombre, leerLinea());
                     break;
                 case 2:
                     System.out.print("Buscar secreto: ");
@@ -81,8 +136,7 @@ public class ModuloBoveda extends ModuloBase {
                     buscarYMostrarSecreto(buscar);
                     break;
                 case 3:
-                    System.out.println("--- Lista de Secretos ---");
-                    boveda.listarNombresSecretos().forEach(System.out::println);
+                    listarSecretos();
                     break;
                 case 4:
                     System.out.print("Nombre a eliminar: ");
@@ -95,10 +149,28 @@ public class ModuloBoveda extends ModuloBase {
                 case 6:     
                     cambiarContrasenaMaestra();
                     break;
-                case 7:     
-                    System.out.println("Guardando...");
-                    almacenamiento.guardarBoveda(boveda, contrasena);
-                    System.out.println("¡Guardado! Regresando...");
+                case 7:
+                    menuEspacios();
+                    break;
+                case 8:
+                    menuHistorial();
+                    break;
+                case 9:
+                    menuVencimientos();
+                    break;
+                case 10:     
+                    if (tareas == null) {
+                        System.out.println("Guardando...");
+                        almacenamiento.guardarBoveda(boveda, contrasena);
+                        System.out.println("¡Guardado! Regresando...");
+                    } else {
+                        // Nadie modifica la bóveda hasta volver a este menú, que espera al guardado
+                        String contrasenaGuardado = contrasena;
+                        guardadoPendiente = ejecutarEnSegundoPlano("Guardar bóveda", -1, progreso -> {
+                            almacenamiento.guardarBoveda(boveda, contrasenaGuardado);
+                            return "Bóveda guardada.";
+                        });
+                    }
                     continuar = false;
                     break;
                 default:
@@ -125,8 +197,9 @@ public class ModuloBoveda extends ModuloBase {
             String contrasenaIngresada = leerContrasenaOculta("Ingrese su contraseña actual: ");
 
             try {
-                // Intentamos cargar la bóveda para verificar la contraseña
-                almacenamiento.cargarBoveda(contrasenaIngresada);
+                // Se comprueba contra el archivo sin cargarlo: recargar movería la base de la fusión y
+                // el próximo guardado pisaría lo que otro proceso guardó desde que se abrió la bóveda
+                almacenamiento.verificar(UtilidadesCifrado.obtenerClaveDesdeContrasena(contrasenaIngresada));
                 contrasenaVerificada = true;
             } catch (Exception e) {
                 intentos++;
@@ -220,7 +293,7 @@ public class ModuloBoveda extends ModuloBase {
      * @param patron Patrón de búsqueda ingresado por el usuario
      */
     private void buscarYMostrarSecreto(String patron) {
-        List<String> resultados = boveda.buscarSecretosInteligente(patron, 10);
+        List<String> resultados = busqueda.buscar(patron, 10);
 
         if (resultados.isEmpty()) {
             System.out.println("\n⚠ No se encontraron secretos que coincidan con '" + patron + "'.");
@@ -232,7 +305,7 @@ public class ModuloBoveda extends ModuloBase {
         if (resultados.size() == 1) {
             String nombreSecreto = resultados.get(0);
             System.out.println("\n✔ Secreto encontrado: " + nombreSecreto);
-            System.out.println("Valor: " + boveda.obtenerSecreto(nombreSecreto));
+            mostrarValor(nombreSecreto);
             return;
         }
 
@@ -260,24 +333,349 @@ public class ModuloBoveda extends ModuloBase {
 
         String nombreSeleccionado = resultados.get(seleccion - 1);
         System.out.println("\n✔ Secreto: " + nombreSeleccionado);
-        System.out.println("Valor: " + boveda.obtenerSecreto(nombreSeleccionado));
+        mostrarValor(nombreSeleccionado);
     }
 
-    /**     
-     * Permite actualizar el valor de un secreto existente.
-     * Utiliza búsqueda inteligente para encontrar el secreto y solicita confirmación
-     * antes de realizar la actualización.
+    /**
+     * Operaciones sobre espacios de nombres (prefijos separados por "/", como "prod/db/").
+     * Mover y eliminar son una sola operación sobre todo el subárbol y se guardan de inmediato
+     * con un único guardado.
      */
-    private void actualizarSecreto() {
-        System.out.print("Buscar secreto a actualizar: ");
+    private void menuEspacios() throws Exception {
+        System.out.println("\n--- Espacios (carpetas) ---");
+        System.out.println("1. Ver contenido de un espacio");
+        System.out.println("2. Contar secretos de un espacio");
+        System.out.println("3. Mover / renombrar espacio");
+        System.out.println("4. Eliminar espacio completo");
+        System.out.println("5. Exportar espacio a una bóveda aparte");
+        System.out.println("6. Regresar");
+        System.out.print("> ");
+        int opcion = leerOpcion();
+        if (opcion < 1 || opcion > 5) {
+            return;
+        }
+
+        System.out.print(opcion == 3 ? "Espacio de origen: " : "Espacio (Enter = raíz): ");
+        String espacio = Boveda.normalizarEspacio(leerLinea());
+        String mostrado = espacio.isEmpty() ? "/" : espacio;
+
+        switch (opcion) {
+            case 1: {
+                List<String> hijos = boveda.listarHijos(espacio);
+                if (hijos.isEmpty()) {
+                    System.out.println("⚠ El espacio '" + mostrado + "' está vacío.");
+                    return;
+                }
+                StringBuilder salida = new StringBuilder("--- " + mostrado + " ---\n");
+                for (String hijo : hijos) {
+                    salida.append(hijo.endsWith(Boveda.SEPARADOR) ? "📁 " : "   ").append(hijo).append('\n');
+                }
+                System.out.print(salida);
+                break;
+            }
+            case 2:
+                System.out.println("✔ '" + mostrado + "' contiene " + boveda.contarEspacio(espacio) + " secretos.");
+                break;
+            case 3: {
+                System.out.print("Espacio de destino: ");
+                String destino = leerLinea();
+                try {
+                    int movidos = boveda.moverEspacio(espacio, destino);
+                    almacenamiento.guardarBoveda(boveda, contrasena);
+                    System.out.println("✔ " + movidos + " secretos movidos a '" + Boveda.normalizarEspacio(destino) + "'.");
+                } catch (IllegalArgumentException e) {
+                    System.out.println("✖ " + e.getMessage());
+                }
+                break;
+            }
+            case 4: {
+                int cantidad = boveda.contarEspacio(espacio);
+                if (cantidad == 0) {
+                    System.out.println("⚠ El espacio '" + mostrado + "' está vacío.");
+                    return;
+                }
+                System.out.print("¿Eliminar " + cantidad + " secretos de '" + mostrado + "'? (S/N): ");
+                if (!leerLinea().trim().equalsIgnoreCase("S")) {
+                    System.out.println("Eliminación cancelada.");
+                    return;
+                }
+                int eliminados = boveda.eliminarEspacio(espacio);
+                almacenamiento.guardarBoveda(boveda, contrasena);
+                System.out.println("🗑️ " + eliminados + " secretos eliminados.");
+                break;
+            }
+            case 5: {
+                System.out.print("Archivo de destino (se cifra con la contraseña maestra): ");
+                String archivo = leerLinea().trim();
+                if (archivo.isEmpty()) {
+                    System.out.println("Exportación cancelada.");
+                    return;
+                }
+                Boveda exportada = boveda.exportarEspacio(espacio);
+                try {
+                    new AlmacenamientoBoveda(archivo).guardarBoveda(exportada, contrasena);
+                    System.out.println("✔ " + exportada.cantidadSecretos() + " secretos exportados a '" + archivo
+                            + "' (se abre con --boveda).");
+                } finally {
+                    exportada.destruir();
+                }
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Muestra las versiones anteriores de un secreto y permite ver o restaurar una.
+     * También permite cambiar la retención del historial.
+     */
+    private void menuHistorial() {
+        System.out.println("\n--- Historial de versiones ---");
+        System.out.println("Retención actual: " + boveda.getMaxVersiones() + " versiones por secreto, "
+                + (boveda.getDiasRetencion() == 0 ? "sin límite de días" : boveda.getDiasRetencion() + " días"));
+        System.out.println("1. Ver versiones de un secreto");
+        System.out.println("2. Configurar retención");
+        System.out.println("3. Regresar");
+        System.out.print("> ");
+        int opcion = leerOpcion();
+
+        if (opcion == 2) {
+            System.out.print("Versiones anteriores a conservar por secreto (0 = sin historial): ");
+            int versiones = leerOpcion();
+            System.out.print("Días a conservar una versión (0 = sin límite): ");
+            int dias = leerOpcion();
+            if (versiones < 0 || dias < 0) {
+                System.out.println("⚠ Valores inválidos.");
+                return;
+            }
+            boveda.configurarRetencion(versiones, dias);
+            System.out.println("✔ Retención actualizada.");
+            return;
+        }
+        if (opcion != 1) {
+            return;
+        }
+
+        String nombreSecreto = seleccionarSecreto("Buscar secreto: ", "Consulta cancelada.");
+        if (nombreSecreto == null) {
+            return;
+        }
+        List<Long> versiones = boveda.listarVersiones(nombreSecreto);
+        if (versiones.isEmpty()) {
+            System.out.println("⚠ '" + nombreSecreto + "' no tiene versiones anteriores.");
+            return;
+        }
+
+        System.out.println("───────────────────────────────");
+        for (int i = 0; i < versiones.size(); i++) {
+            System.out.println((i + 1) + ". Reemplazada el " + formatearFecha(versiones.get(i)));
+        }
+        System.out.println("0. Cancelar");
+        System.out.println("───────────────────────────────");
+        System.out.print("Seleccione una versión: ");
+        int version = leerOpcion();
+        if (version < 1 || version > versiones.size()) {
+            return;
+        }
+
+        char[] valor = boveda.obtenerVersion(nombreSecreto, version);
+        System.out.print("Valor de la versión " + version + ": ");
+        System.out.println(valor);
+        Arrays.fill(valor, '\0');
+
+        System.out.print("¿Restaurar esta versión como actual? (S/N): ");
+        if (leerLinea().trim().equalsIgnoreCase("S")) {
+            boveda.restaurarVersion(nombreSecreto, version);
+            System.out.println("✔ Versión restaurada (la anterior quedó en el historial).");
+        }
+    }
+
+    /**
+     * Secretos vencidos y próximos a vencer; permite fijar o quitar el vencimiento de uno.
+     */
+    private void menuVencimientos() {
+        boveda.revisarVencimientos();
+        System.out.println("\n--- Vencimientos y rotación ---");
+        System.out.println("1. Ver vencidos y próximos a vencer");
+        System.out.println("2. Fijar o quitar vencimiento de un secreto");
+        System.out.println("3. Regresar");
+        System.out.print("> ");
+        int opcion = leerOpcion();
+
+        if (opcion == 1) {
+            System.out.print("Ventana en días (Enter = " + DIAS_AVISO_VENCIMIENTO + "): ");
+            String entrada = leerLinea();
+            int dias = entrada.isEmpty() ? DIAS_AVISO_VENCIMIENTO : parsearDias(entrada);
+            if (dias < 0) {
+                System.out.println("⚠ Cantidad de días inválida.");
+                return;
+            }
+            List<String> vencidos = boveda.listarVencidos();
+            List<String> proximos = boveda.proximosAVencer(dias * MILIS_POR_DIA);
+            StringBuilder salida = new StringBuilder();
+            salida.append("✖ Vencidos (").append(vencidos.size()).append("):\n");
+            for (String nombre : vencidos) {
+                salida.append("   ").append(nombre).append(" — venció el ")
+                        .append(formatearFecha(boveda.obtenerMetadatos(nombre).getVence())).append('\n');
+            }
+            salida.append("⚠ Vencen en los próximos ").append(dias).append(" días (").append(proximos.size())
+                    .append("):\n");
+            for (String nombre : proximos) {
+                salida.append("   ").append(nombre).append(" — vence el ")
+                        .append(formatearFecha(boveda.obtenerMetadatos(nombre).getVence())).append('\n');
+            }
+            System.out.print(salida);
+        } else if (opcion == 2) {
+            String nombreSecreto = seleccionarSecreto("Buscar secreto: ", "Operación cancelada.");
+            if (nombreSecreto == null) {
+                return;
+            }
+            System.out.print("Días hasta que deba rotarse (0 = sin vencimiento): ");
+            fijarVencimiento(nombreSecreto, leerLinea());
+        }
+    }
+
+    // Al entrar: cuántos secretos están vencidos o vencen pronto
+    private void mostrarResumenVencimientos() {
+        boveda.revisarVencimientos();
+        int vencidos = boveda.listarVencidos().size();
+        int proximos = boveda.proximosAVencer(DIAS_AVISO_VENCIMIENTO * MILIS_POR_DIA).size();
+        if (vencidos > 0 || proximos > 0) {
+            System.out.println("\n⚠ " + vencidos + " secretos vencidos y " + proximos + " que vencen en los próximos "
+                    + DIAS_AVISO_VENCIMIENTO + " días (opción 'Vencimientos y rotación').");
+        }
+    }
+
+    // Durante la sesión: los que vencieron desde la última revisión
+    private void avisarNuevosVencimientos() {
+        for (String nombre : boveda.revisarVencimientos()) {
+            System.out.println("⚠ El secreto '" + nombre + "' acaba de vencer y debe rotarse.");
+        }
+    }
+
+    private void fijarVencimiento(String nombre, String textoDias) {
+        if (textoDias.isEmpty()) {
+            return;
+        }
+        int dias = parsearDias(textoDias);
+        if (dias < 0) {
+            System.out.println("⚠ Cantidad de días inválida; no se cambió el vencimiento.");
+            return;
+        }
+        boveda.establecerVencimiento(nombre, dias == 0 ? 0 : System.currentTimeMillis() + dias * MILIS_POR_DIA);
+        System.out.println(dias == 0 ? "✔ Sin vencimiento." : "✔ Vence en " + dias + " días.");
+    }
+
+    private static int parsearDias(String texto) {
+        try {
+            return Integer.parseInt(texto.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private String marcaVencimiento(String nombre) {
+        MetadatosSecreto datos = boveda.obtenerMetadatos(nombre);
+        if (datos == null || !datos.tieneVencimiento()) {
+            return "";
+        }
+        long restante = datos.getVence() - System.currentTimeMillis();
+        if (restante <= 0) {
+            return "  ✖ VENCIDO";
+        }
+        return restante <= DIAS_AVISO_VENCIMIENTO * MILIS_POR_DIA
+                ? "  ⚠ vence en " + Math.max(1, restante / MILIS_POR_DIA) + " días"
+                : "";
+    }
+
+    private static String formatearFecha(long milis) {
+        if (milis == 0) {
+            return "desconocida";
+        }
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(milis), ZoneId.systemDefault()).format(FORMATO_FECHA);
+    }
+
+    /**
+     * Lista los nombres en orden alfabético, una página a la vez y opcionalmente solo los
+     * que empiezan con un prefijo (por ejemplo "aws/"). Cada página se imprime de una vez.
+     */
+    private void listarSecretos() {
+        System.out.print("Filtrar por prefijo (Enter = todos): ");
+        String prefijo = leerLinea();
+
+        System.out.println("--- Lista de Secretos (" + boveda.cantidadSecretos() + " en total) ---");
+        String cursor = null;
+        int mostrados = 0;
+        while (true) {
+            // Se pide un nombre de más para saber si hay otra página
+            List<String> pagina = boveda.listarPagina(prefijo, cursor, TAMANO_PAGINA + 1);
+            boolean hayMas = pagina.size() > TAMANO_PAGINA;
+            if (hayMas) {
+                pagina = pagina.subList(0, TAMANO_PAGINA);
+            }
+            if (pagina.isEmpty()) {
+                if (mostrados == 0) {
+                    System.out.println("⚠ No hay secretos que empiecen con '" + prefijo + "'.");
+                }
+                return;
+            }
+
+            StringBuilder salida = new StringBuilder(pagina.size() * 24);
+            for (String nombre : pagina) {
+                salida.append(nombre).append(marcaVencimiento(nombre)).append('\n');
+            }
+            System.out.print(salida);
+            mostrados += pagina.size();
+            cursor = pagina.get(pagina.size() - 1);
+
+            if (!hayMas) {
+                System.out.println("--- " + mostrados + " mostrados ---");
+                return;
+            }
+            System.out.print("--- " + mostrados + " mostrados. Enter: siguiente página, Q: terminar --- ");
+            if (leerLinea().trim().equalsIgnoreCase("Q")) {
+                return;
+            }
+        }
+    }
+
+    private void mostrarValor(String nombreSecreto) {
+        System.out.print("Valor: ");
+        imprimirValor(nombreSecreto);
+        MetadatosSecreto datos = boveda.obtenerMetadatos(nombreSecreto);
+        if (datos != null) {
+            System.out.println("Modificado: " + formatearFecha(datos.getModificado())
+                    + (datos.tieneVencimiento() ? " | Vence: " + formatearFecha(datos.getVence()) : ""));
+        }
+    }
+
+    // Imprime el valor sin convertirlo en String y lo borra de memoria al terminar
+    private void imprimirValor(String nombreSecreto) {
+        char[] valor = boveda.obtenerValor(nombreSecreto);
+        if (valor == null) {
+            System.out.println("Error: Secreto no encontrado.");
+            return;
+        }
+        System.out.println(valor);
+        Arrays.fill(valor, '\0');
+    }
+
+    /**
+     * Busca un secreto con la búsqueda inteligente y, si hay varias coincidencias, pide elegir.
+     *
+     * @return El nombre elegido, o null si no hubo coincidencias o se canceló
+     */
+    private String seleccionarSecreto(String mensaje, String mensajeCancelado) {
+        System.out.print(mensaje);
         String patron = leerLinea();
 
-        List<String> resultados = boveda.buscarSecretosInteligente(patron, 10);
+        List<String> resultados = busqueda.buscar(patron, 10);
 
         if (resultados.isEmpty()) {
             System.out.println("\n⚠ No se encontraron secretos que coincidan con '" + patron + "'.");
             System.out.println("Sugerencia: Use la opción 'Listar secretos' para ver todos los disponibles.");
-            return;
+            return null;
         }
 
         String nombreSecreto;
@@ -300,21 +698,34 @@ public class ModuloBoveda extends ModuloBase {
             int seleccion = leerOpcion();
 
             if (seleccion == 0) {
-                System.out.println("Actualización cancelada.");
-                return;
+                System.out.println(mensajeCancelado);
+                return null;
             }
 
             if (seleccion < 1 || seleccion > resultados.size()) {
                 System.out.println("⚠ Selección inválida.");
-                return;
+                return null;
             }
 
             nombreSecreto = resultados.get(seleccion - 1);
         }
+        return nombreSecreto;
+    }
+
+    /**     
+     * Permite actualizar el valor de un secreto existente.
+     * Utiliza búsqueda inteligente para encontrar el secreto y solicita confirmación
+     * antes de realizar la actualización.
+     */
+    private void actualizarSecreto() {
+        String nombreSecreto = seleccionarSecreto("Buscar secreto a actualizar: ", "Actualización cancelada.");
+        if (nombreSecreto == null) {
+            return;
+        }
 
         // Mostrar valor actual
-        String valorActual = boveda.obtenerSecreto(nombreSecreto);
-        System.out.println("Valor actual: " + valorActual);
+        System.out.print("Valor actual: ");
+        imprimirValor(nombreSecreto);
 
         // Solicitar confirmación
         System.out.print("\n¿Desea modificar este secreto? (S/N): ");
@@ -331,5 +742,21 @@ public class ModuloBoveda extends ModuloBase {
 
         // Actualizar el secreto
         boveda.actualizarSecreto(nombreSecreto, nuevoValor);
-    }   
+        advertirSiFiltrado(nuevoValor);
+
+        System.out.print("Días hasta la próxima rotación (Enter = sin cambios, 0 = sin vencimiento): ");
+        String dias = leerLinea();
+        if (!dias.isEmpty()) {
+            fijarVencimiento(nombreSecreto, dias);
+        }
+    }
+
+    /**
+     * Avisa (sin impedirlo) si el valor aparece en el corpus de contraseñas filtradas.
+     */
+    private void advertirSiFiltrado(String valor) {
+        if (CorpusFiltraciones.estaFiltrada(valor)) {
+            System.out.println("⚠ Este valor aparece en filtraciones de datos conocidas; conviene cambiarlo.");
+        }
+    }
 }
@@ -0,0 +1,93 @@
+package modulos;
+
+import modelos.GestorTareas;
+import java.io.Console;
+import java.util.List;
+
+public class ModuloTareas extends ModuloBase {
+
+    private static final double BYTES_POR_MB = 1024.0 * 1024;
+
+    public ModuloTareas(Console console, GestorTareas tareas) {
+        super(console, tareas);
+    }
+
+    @Override
+    public String obtenerNombre() {
+        return "Tareas en segundo plano";
+    }
+
+    @Override
+    public void ejecutar() throws Exception {
+        boolean continuar = true;
+        while (continuar) {
+            System.out.println("\n--- " + obtenerNombre() + " ---");
+            listarTareas();
+            System.out.println("\n1. Actualizar");
+            System.out.println("2. Cancelar tarea");
+            System.out.println("3. Quitar tareas terminadas");
+            System.out.println("4. Regresar");
+            System.out.print("> ");
+
+            int opcion = leerOpcion();
+
+            switch (opcion) {
+                case 1: break;
+                case 2: cancelarTarea(); break;
+                case 3: tareas.limpiarTerminadas(); break;
+                case 4: continuar = false; break;
+                default: System.out.println("Opción inválida.");
+            }
+        }
+    }
+
+    private void listarTareas() {
+        List<GestorTareas.Tarea> lista = tareas.listar();
+        if (lista.isEmpty()) {
+            System.out.println("(No hay tareas)");
+            return;
+        }
+        for (GestorTareas.Tarea tarea : lista) {
+            StringBuilder linea = new StringBuilder();
+            linea.append("#").append(tarea.getId()).append(" ").append(tarea.getDescripcion())
+                    .append(" - ").append(tarea.getEstado());
+            if (tarea.getEstado() == GestorTareas.Estado.EN_CURSO) {
+                int porcentaje = tarea.getPorcentaje();
+                if (porcentaje >= 0) {
+                    linea.append(" ").append(porcentaje).append("%");
+                }
+                linea.append(String.format(" | %.1f MB/s", tarea.getBytesPorSegundo() / BYTES_POR_MB));
+                long restantes = tarea.getSegundosRestantes();
+                if (restantes >= 0) {
+                    linea.append(" | faltan ").append(formatearDuracion(restantes));
+                }
+            } else if (tarea.getEstado().terminado() && tarea.getMensaje() != null) {
+                linea.append(": ").append(tarea.getMensaje());
+            }
+            System.out.println(linea);
+        }
+    }
+
+    private void cancelarTarea() {
+        System.out.print("Número de tarea: ");
+        int id = leerOpcion();
+        GestorTareas.Tarea tarea = tareas.buscar(id);
+        if (tarea == null) {
+            System.out.println("Error: No existe esa tarea.");
+        } else if (tarea.cancelar()) {
+            System.out.println("✔ Cancelación pedida; la tarea se detendrá en el próximo segmento.");
+        } else {
+            System.out.println("La tarea ya terminó.");
+        }
+    }
+
+    private static String formatearDuracion(long segundos) {
+        if (segundos < 60) {
+            return segundos + " s";
+        }
+        if (segundos < 3600) {
+            return (segundos / 60) + " min " + (segundos % 60) + " s";
+        }
+        return (segundos / 3600) + " h " + (segundos % 3600 / 60) + " min";
+    }
+}
@@ -0,0 +1,334 @@
+package modulos;
+
+import modelos.ArchivoCifrado;
+import modelos.ManifiestoCambios;
+import modelos.Progreso;
+import modelos.RegistroBitacora;
+import modelos.UtilidadesHilos;
+
+import javax.crypto.SecretKey;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Cifra un directorio de origen hacia un directorio destino (origen/a/b.txt -> destino/a/b.txt.locked)
+ * sin tocar los originales, y en las siguientes ejecuciones solo procesa lo que cambió.
+ *
+ * El manifiesto cifrado del destino (ver ManifiestoCambios) guarda tamaño, fecha y SHA-256 de
+ * cada archivo ya cifrado:
+ * - mismo tamaño y fecha: se salta sin leer el archivo;
+ * - distinta fecha pero mismo hash (solo se tocó): se actualiza el manifiesto sin volver a cifrar;
+ * - nuevo o modificado: se cifra (el hash se calcula en la misma lectura);
+ * - borrado del origen: se borra su .locked del destino. Si una ruta no se pudo leer en el
+ *   recorrido, lo que había debajo se conserva tal cual (no se sabe si sigue en el origen).
+ * El recorrido sigue siendo completo (un stat por archivo), pero las lecturas y el cifrado
+ * son proporcionales al conjunto de cambios. Hash y cifrado corren en un pool de hilos.
+ */
+public class SincronizadorDirectorio {
+
+    private static final String EXTENSION_CIFRADO = ".locked";
+    // Ruta de origen cuya salida sería el propio manifiesto (".manifiesto" -> ".manifiesto.locked")
+    private static final String RUTA_MANIFIESTO = ManifiestoCambios.NOMBRE_ARCHIVO
+            .substring(0, ManifiestoCambios.NOMBRE_ARCHIVO.length() - EXTENSION_CIFRADO.length());
+    private static final String ALGORITMO_HASH = "SHA-256";
+
+    /**
+     * Conteos de una ejecución.
+     */
+    public static class Resumen {
+        private int nuevos;
+        private int modificados;
+        private int sinCambios;
+        private int eliminados;
+        private int errores;
+
+        public int getNuevos() {
+            return nuevos;
+        }
+
+        public int getModificados() {
+            return modificados;
+        }
+
+        public int getSinCambios() {
+            return sinCambios;
+        }
+
+        public int getEliminados() {
+            return eliminados;
+        }
+
+        public int getErrores() {
+            return errores;
+        }
+
+        @Override
+        public String toString() {
+            return "nuevos=" + nuevos + ", modificados=" + modificados + ", sin cambios=" + sinCambios
+                    + ", eliminados=" + eliminados + ", errores=" + errores;
+        }
+    }
+
+    // Archivo del origen visto en el recorrido
+    private static class Fuente {
+        final String ruta;
+        final long tamano;
+        final long modificado;
+
+        Fuente(String ruta, long tamano, long modificado) {
+            this.ruta = ruta;
+            this.tamano = tamano;
+            this.modificado = modificado;
+        }
+    }
+
+    // Resultado de procesar un candidato en el pool
+    private static class Procesado {
+        final ManifiestoCambios.Entrada entrada;
+        final boolean cifrado;
+
+        Procesado(ManifiestoCambios.Entrada entrada, boolean cifrado) {
+            this.entrada = entrada;
+            this.cifrado = cifrado;
+        }
+    }
+
+    private final Path origen;
+    private final Path destino;
+    private final SecretKey clave;
+    private final boolean comprimir;
+    private final int hilos;
+
+    public SincronizadorDirectorio(Path origen, Path destino, SecretKey clave, boolean comprimir, int hilos) {
+        this.origen = origen;
+        this.destino = destino;
+        this.clave = clave;
+        this.comprimir = comprimir;
+        this.hilos = hilos;
+    }
+
+    /**
+     * Ejecuta una pasada de sincronización.
+     */
+    public Resumen sincronizar() throws Exception {
+        Files.createDirectories(destino);
+        List<ManifiestoCambios.Entrada> anteriores = ManifiestoCambios.cargar(destino, clave);
+        List<String> ilegibles = new ArrayList<>();
+        List<Fuente> fuentes = recorrerOrigen(ilegibles);
+
+        Resumen resumen = new Resumen();
+        resumen.errores += ilegibles.size();
+        List<ManifiestoCambios.Entrada> vigentes = new ArrayList<>(fuentes.size());
+        List<Fuente> candidatos = new ArrayList<>();
+        List<ManifiestoCambios.Entrada> previosDeCandidatos = new ArrayList<>();
+
+        // Mezcla de dos listas ordenadas por ruta: recorrido actual vs. manifiesto anterior
+        int i = 0;
+        int j = 0;
+        while (i < fuentes.size() || j < anteriores.size()) {
+            int orden = i == fuentes.size() ? 1
+                    : j == anteriores.size() ? -1
+                    : ManifiestoCambios.comparar(fuentes.get(i).ruta, anteriores.get(j).getRuta());
+            if (orden < 0) {
+                candidatos.add(fuentes.get(i++));
+                previosDeCandidatos.add(null);
+            } else if (orden > 0) {
+                ManifiestoCambios.Entrada anterior = anteriores.get(j++);
+                if (dentroDe(anterior.getRuta(), ilegibles)) {
+                    // Falta en el recorrido porque no se pudo leer, no porque se haya borrado
+                    vigentes.add(anterior);
+                } else {
+                    eliminarSalida(anterior, resumen);
+                }
+            } else {
+                Fuente fuente = fuentes.get(i++);
+                ManifiestoCambios.Entrada anterior = anteriores.get(j++);
+                if (anterior.mismosMetadatos(fuente.tamano, fuente.modificado) && Files.exists(salida(fuente.ruta))) {
+                    vigentes.add(anterior);
+                    resumen.sinCambios++;
+                } else {
+                    candidatos.add(fuente);
+                    previosDeCandidatos.add(anterior);
+                }
+            }
+        }
+
+        procesarCandidatos(candidatos, previosDeCandidatos, vigentes, resumen);
+
+        vigentes.sort(Comparator.comparing(ManifiestoCambios.Entrada::getRuta, ManifiestoCambios::comparar));
+        ManifiestoCambios.guardar(destino, vigentes, clave);
+        RegistroBitacora.info("Sincronización '" + origen.getFileName() + "' -> '" + destino.getFileName() + "': "
+                + resumen);
+        return resumen;
+    }
+
+    private void procesarCandidatos(List<Fuente> candidatos, List<ManifiestoCambios.Entrada> previos,
+                                    List<ManifiestoCambios.Entrada> vigentes, Resumen resumen) throws Exception {
+        if (candidatos.isEmpty()) {
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(hilos, UtilidadesHilos.fabricaDaemon("sincronizador"));
+        try {
+            List<Future<Procesado>> pendientes = new ArrayList<>(candidatos.size());
+            for (int k = 0; k < candidatos.size(); k++) {
+                Fuente fuente = candidatos.get(k);
+                ManifiestoCambios.Entrada anterior = previos.get(k);
+                pendientes.add(pool.submit(() -> procesar(fuente, anterior)));
+            }
+            for (int k = 0; k < pendientes.size(); k++) {
+                try {
+                    Procesado procesado = pendientes.get(k).get();
+                    vigentes.add(procesado.entrada);
+                    if (!procesado.cifrado) {
+                        resumen.sinCambios++;
+                    } else if (previos.get(k) == null) {
+                        resumen.nuevos++;
+                    } else {
+                        resumen.modificados++;
+                    }
+                } catch (Exception e) {
+                    Throwable causa = e.getCause() != null ? e.getCause() : e;
+                    RegistroBitacora.error("Error al sincronizar '" + candidatos.get(k).ruta + "': " + causa.getMessage());
+                    resumen.errores++;
+                    // Se conserva la entrada anterior: la próxima pasada lo vuelve a intentar
+                    if (previos.get(k) != null) {
+                        vigentes.add(previos.get(k));
+                    }
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Procesado procesar(Fuente fuente, ManifiestoCambios.Entrada anterior) throws Exception {
+        Path archivo = origen.resolve(fuente.ruta);
+        Path salida = salida(fuente.ruta);
+
+        // Si ya estaba cifrado, el hash decide si el contenido cambió o solo la fecha
+        if (anterior != null && Files.exists(salida)) {
+            byte[] hash = calcularHash(archivo);
+            if (anterior.mismoContenido(hash)) {
+                return new Procesado(new ManifiestoCambios.Entrada(fuente.ruta, fuente.tamano, fuente.modificado, hash),
+                        false);
+            }
+        }
+
+        Files.createDirectories(salida.getParent());
+        Path temporal = Paths.get(salida + ".tmp");
+        Files.deleteIfExists(temporal);
+        MessageDigest resumen = MessageDigest.getInstance(ALGORITMO_HASH);
+        try {
+            // Con varios archivos en paralelo, cada uno va en secuencia: una tubería por archivo
+            // multiplicaría los hilos y los bloques en memoria por los del pool
+            ArchivoCifrado.cifrar(archivo, temporal, clave, comprimir, resumen, Progreso.NINGUNO,
+                    hilos > 1 ? 1 : ArchivoCifrado.hilosPredeterminados());
+            Files.move(temporal, salida, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+        return new Procesado(new ManifiestoCambios.Entrada(fuente.ruta, fuente.tamano, fuente.modificado,
+                resumen.digest()), true);
+    }
+
+    private void eliminarSalida(ManifiestoCambios.Entrada entrada, Resumen resumen) throws IOException {
+        Files.deleteIfExists(salida(entrada.getRuta()));
+        resumen.eliminados++;
+    }
+
+    private Path salida(String ruta) {
+        return destino.resolve(ruta + EXTENSION_CIFRADO);
+    }
+
+    // Si la ruta es una de las rutas indicadas o está debajo de alguna
+    private static boolean dentroDe(String ruta, List<String> rutas) {
+        for (String base : rutas) {
+            if (base.isEmpty() || ruta.equals(base) || ruta.startsWith(base + "/")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param ilegibles Recibe las rutas relativas (archivos o directorios) que no se pudieron leer
+     */
+    private List<Fuente> recorrerOrigen(List<String> ilegibles) throws IOException {
+        List<Fuente> fuentes = new ArrayList<>();
+        Path destinoNormalizado = destino.toAbsolutePath().normalize();
+        Files.walkFileTree(origen, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directorio, BasicFileAttributes atributos) {
+                // Si el destino está dentro del origen, no cifrar lo ya cifrado
+                return directorio.toAbsolutePath().normalize().equals(destinoNormalizado)
+                        ? FileVisitResult.SKIP_SUBTREE
+                        : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path archivo, BasicFileAttributes atributos) {
+                if (atributos.isRegularFile()) {
+                    String ruta = relativa(archivo);
+                    if (ruta.equals(RUTA_MANIFIESTO)) {
+                        RegistroBitacora.warn("Se omite '" + archivo + "': su copia cifrada pisaría el manifiesto"
+                                + " de la sincronización.");
+                        return FileVisitResult.CONTINUE;
+                    }
+                    fuentes.add(new Fuente(ruta, atributos.size(), atributos.lastModifiedTime().toMillis()));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path archivo, IOException e) {
+                return ilegible(archivo, e);
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path directorio, IOException e) {
+                // Error a mitad de la lectura del directorio: parte de su contenido puede faltar
+                return e == null ? FileVisitResult.CONTINUE : ilegible(directorio, e);
+            }
+
+            private FileVisitResult ilegible(Path ruta, IOException e) {
+                RegistroBitacora.warn("No se pudo leer '" + ruta + "' durante la sincronización: " + e.getMessage());
+                ilegibles.add(relativa(ruta));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        fuentes.sort((a, b) -> ManifiestoCambios.comparar(a.ruta, b.ruta));
+        return fuentes;
+    }
+
+    // Ruta relativa al origen con "/" como separador (el del manifiesto)
+    private String relativa(Path ruta) {
+        return origen.relativize(ruta).toString().replace(File.separatorChar, '/');
+    }
+
+    private static byte[] calcularHash(Path archivo) throws Exception {
+        MessageDigest resumen = MessageDigest.getInstance(ALGORITMO_HASH);
+        byte[] bloque = new byte[64 * 1024];
+        try (InputStream entrada = Files.newInputStream(archivo)) {
+            int leidos;
+            while ((leidos = entrada.read(bloque)) > 0) {
+                resumen.update(bloque, 0, leidos);
+            }
+        }
+        return resumen.digest();
+    }
+}
@@ -0,0 +1,449 @@
+package modulos;
+
+import modelos.BorradoSeguro;
+import modelos.RegistroBitacora;
+import modelos.UtilidadesHilos;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Modo "carpeta vigilada": cifra automáticamente los archivos que llegan a un directorio.
+ *
+ * - Usa WatchService y espera a que cada archivo deje de cambiar (debounce) antes de cifrarlo,
+ *   para no tomar archivos a medio escribir.
+ * - El cifrado lo hace un pool fijo de hilos con un número limitado de tareas en vuelo:
+ *   si llega una ráfaga, el despachador se detiene (backpressure) en lugar de acumular memoria.
+ * - El checkpoint anota cada archivo en dos pasos: "C" cuando su .locked ya está publicado y
+ *   antes de borrar el original, y "B" cuando el original ya se borró. Si el proceso cae entre
+ *   ambos, al reiniciar el original pendiente solo se elimina (si su .locked existe) en lugar
+ *   de volver a cifrarse encima del .locked.
+ *
+ * Reutiliza las convenciones de ModuloArchivos: se genera "archivo.locked" y se borra el original.
+ */
+public class VigilanteCarpeta implements AutoCloseable {
+
+    static final String NOMBRE_CHECKPOINT = ".vigilante-checkpoint";
+    // Marcas del checkpoint: .locked publicado (falta borrar el original) y original borrado
+    private static final String CIFRADO = "C|";
+    private static final String BORRADO = "B|";
+
+    private static final String EXTENSION_CIFRADO = ".locked";
+    // Sufijos habituales de descargas/copias en curso
+    private static final String[] SUFIJOS_TEMPORALES = {".part", ".tmp", ".crdownload", ".partial", "~", ".cifrando"};
+    private static final long MILIS_SONDEO = 250;
+    private static final int MAX_PENDIENTES = 100_000;
+
+    /**
+     * Último estado observado de un archivo que aún no se considera completo.
+     */
+    private static final class Observacion {
+        long tamano;
+        long ultimoCambio;
+
+        Observacion(long tamano, long ultimoCambio) {
+            this.tamano = tamano;
+            this.ultimoCambio = ultimoCambio;
+        }
+    }
+
+    private final Path directorio;
+    private final ModuloArchivos cifrador;
+    private final long milisQuietud;
+    private final ExecutorService pool;
+    private final Semaphore enVuelo;
+    private final int capacidad;
+    private final Path rutaCheckpoint;
+
+    private final Map<Path, Observacion> pendientes = new HashMap<>();
+    // Cifrados cuyo original falta borrar según el checkpoint: "ruta relativa del .locked|tamaño|mtime"
+    private final Set<String> sinBorrar = new HashSet<>();
+    private final AtomicLong cifrados = new AtomicLong();
+    private final AtomicLong fallidos = new AtomicLong();
+    private final AtomicLong bytesCifrados = new AtomicLong();
+
+    private WatchService servicio;
+    private Thread despachador;
+    private BufferedWriter checkpoint;
+    // Borrado seguro de los originales para toda la vigilancia (null si está desactivado)
+    private BorradoSeguro borrado;
+    // Originales ya cifrados que esperan su lote de borrado: sobrescribirlos genera eventos que
+    // no deben volver a cifrarlos
+    private final Set<Path> enBorrado = ConcurrentHashMap.newKeySet();
+    private volatile boolean activo;
+    private boolean requiereReescaneo;
+    private long inicioMilis;
+
+    /**
+     * @param directorio   Carpeta a vigilar (incluye subcarpetas)
+     * @param cifrador     Módulo que realiza el cifrado de cada archivo
+     * @param hilos        Hilos de cifrado
+     * @param maxEnVuelo   Máximo de archivos encolados o cifrándose a la vez
+     * @param milisQuietud Tiempo sin cambios para considerar que un archivo terminó de escribirse
+     */
+    public VigilanteCarpeta(Path directorio, ModuloArchivos cifrador, int hilos, int maxEnVuelo, long milisQuietud) {
+        this.directorio = directorio;
+        this.cifrador = cifrador;
+        this.milisQuietud = milisQuietud;
+        this.pool = Executors.newFixedThreadPool(hilos, UtilidadesHilos.fabricaDaemon("vigilante-cifrado"));
+        this.capacidad = Math.max(hilos, maxEnVuelo);
+        this.enVuelo = new Semaphore(capacidad);
+        this.rutaCheckpoint = directorio.resolve(NOMBRE_CHECKPOINT);
+    }
+
+    /**
+     * Empieza a vigilar. Procesa primero lo que llegó mientras el vigilante estaba detenido.
+     */
+    public void iniciar() throws IOException {
+        cargarCheckpoint();
+        checkpoint = Files.newBufferedWriter(rutaCheckpoint, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        // Uno solo para toda la vigilancia: crearlo por archivo crearía hilos y búferes cada vez
+        borrado = cifrador.crearBorrado(true);
+
+        servicio = FileSystems.getDefault().newWatchService();
+        inicioMilis = System.currentTimeMillis();
+        activo = true;
+        registrarArbol(directorio);
+
+        despachador = new Thread(this::despachar, "vigilante-despachador");
+        despachador.setDaemon(true);
+        despachador.start();
+        RegistroBitacora.info("Vigilando carpeta '" + directorio + "'.");
+    }
+
+    /**
+     * Deja de vigilar, espera a que terminen los cifrados en curso y compacta el checkpoint.
+     */
+    public void detener() throws IOException, InterruptedException {
+        if (!activo) {
+            return;
+        }
+        activo = false;
+        servicio.close();
+        despachador.join();
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.HOURS);
+        // Antes de cerrar el checkpoint: al terminar cada lote se anotan sus borrados
+        if (borrado != null) {
+            borrado.close();
+        }
+
+        synchronized (this) {
+            checkpoint.close();
+        }
+        compactarCheckpoint();
+        RegistroBitacora.info("Vigilancia de '" + directorio + "' detenida: " + cifrados.get()
+                + " cifrados, " + fallidos.get() + " con error.");
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            detener();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getCifrados() {
+        return cifrados.get();
+    }
+
+    public long getFallidos() {
+        return fallidos.get();
+    }
+
+    /**
+     * Resumen de la sesión de vigilancia (archivos, MB y archivos por minuto).
+     */
+    public String resumen() {
+        double minutos = Math.max(1, System.currentTimeMillis() - inicioMilis) / 60000.0;
+        return String.format("%d cifrado(s), %d con error, %.1f MB, %.0f archivos/min",
+                cifrados.get(), fallidos.get(), bytesCifrados.get() / 1e6, cifrados.get() / minutos);
+    }
+
+    // --- Despachador: eventos → debounce → pool ---
+
+    private void despachar() {
+        try {
+            while (activo) {
+                WatchKey clave = servicio.poll(MILIS_SONDEO, TimeUnit.MILLISECONDS);
+                if (clave != null) {
+                    procesarEventos(clave);
+                }
+                if (requiereReescaneo && pendientes.size() < MAX_PENDIENTES / 2) {
+                    requiereReescaneo = false;
+                    registrarArbol(directorio);
+                }
+                enviarArchivosCompletos();
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Detención solicitada
+        } catch (IOException e) {
+            RegistroBitacora.error("Vigilante detenido por error: " + e.getMessage());
+        }
+    }
+
+    private void procesarEventos(WatchKey clave) throws IOException {
+        Path carpeta = (Path) clave.watchable();
+        for (WatchEvent<?> evento : clave.pollEvents()) {
+            if (evento.kind() == OVERFLOW) {
+                // El sistema perdió eventos: se revisa el árbol completo
+                requiereReescaneo = true;
+                continue;
+            }
+            Path ruta = carpeta.resolve((Path) evento.context());
+            if (evento.kind() == ENTRY_CREATE && Files.isDirectory(ruta)) {
+                registrarArbol(ruta);
+            } else if (evento.kind() != ENTRY_DELETE) {
+                observar(ruta);
+            }
+        }
+        clave.reset();
+    }
+
+    private void registrarArbol(Path raiz) throws IOException {
+        Files.walkFileTree(raiz, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path carpeta, BasicFileAttributes atributos) throws IOException {
+                carpeta.register(servicio, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path archivo, BasicFileAttributes atributos) {
+                observar(archivo);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path archivo, IOException e) {
+                // El archivo desapareció durante el recorrido (p. ej. ya se cifró)
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void observar(Path ruta) {
+        if (!esCandidato(ruta) || enBorrado.contains(ruta)) {
+            return;
+        }
+        if (pendientes.size() >= MAX_PENDIENTES && !pendientes.containsKey(ruta)) {
+            requiereReescaneo = true; // Se retomará cuando baje la cola
+            return;
+        }
+        long tamano = tamano(ruta);
+        Observacion observacion = pendientes.get(ruta);
+        if (observacion == null) {
+            pendientes.put(ruta, new Observacion(tamano, System.currentTimeMillis()));
+        } else {
+            observacion.tamano = tamano;
+            observacion.ultimoCambio = System.currentTimeMillis();
+        }
+    }
+
+    private void enviarArchivosCompletos() throws InterruptedException {
+        long ahora = System.currentTimeMillis();
+        List<Path> listos = new ArrayList<>();
+        for (Map.Entry<Path, Observacion> entrada : pendientes.entrySet()) {
+            Observacion observacion = entrada.getValue();
+            if (ahora - observacion.ultimoCambio < milisQuietud) {
+                continue;
+            }
+            long tamanoActual = tamano(entrada.getKey());
+            if (tamanoActual != observacion.tamano) {
+                // Sigue creciendo aunque no hubo evento: reiniciar la espera
+                observacion.tamano = tamanoActual;
+                observacion.ultimoCambio = ahora;
+                continue;
+            }
+            listos.add(entrada.getKey());
+        }
+
+        for (Path ruta : listos) {
+            pendientes.remove(ruta);
+            if (!Files.isRegularFile(ruta) || enBorrado.contains(ruta)) {
+                continue;
+            }
+            enVuelo.acquire(); // Backpressure: espera si el pool ya tiene suficiente trabajo
+            pool.execute(() -> {
+                try {
+                    cifrar(ruta);
+                } finally {
+                    enVuelo.release();
+                    // Sin más archivos en vuelo, el lote de borrado no espera a llenarse
+                    if (enVuelo.availablePermits() == capacidad) {
+                        vaciarBorrado();
+                    }
+                }
+            });
+        }
+    }
+
+    // --- Trabajo de cifrado ---
+
+    private void cifrar(Path ruta) {
+        try {
+            BasicFileAttributes atributos = Files.readAttributes(ruta, BasicFileAttributes.class);
+            String entrada = entradaCheckpoint(ruta, atributos);
+
+            boolean pendiente;
+            synchronized (this) {
+                pendiente = sinBorrar.contains(entrada);
+            }
+            if (pendiente && Files.exists(Path.of(ruta + EXTENSION_CIFRADO))) {
+                // Caída entre publicar el .locked y borrar el original: solo falta borrar
+                borrarOriginal(ruta, entrada);
+                return;
+            }
+
+            cifrador.cifrarConservandoOriginal(ruta);
+            // Tras un cifrado en sitio el original ya no existe
+            if (Files.exists(ruta)) {
+                anotar(CIFRADO, entrada);
+                borrarOriginal(ruta, entrada);
+            } else {
+                anotar(BORRADO, entrada);
+            }
+            cifrados.incrementAndGet();
+            bytesCifrados.addAndGet(atributos.size());
+        } catch (Exception e) {
+            fallidos.incrementAndGet();
+            RegistroBitacora.error("Vigilante: no se pudo cifrar '" + ruta.getFileName() + "': " + e.getMessage());
+        }
+    }
+
+    // "B" se anota cuando el original ya no está: con borrado seguro, al terminar su lote
+    private void borrarOriginal(Path ruta, String entrada) throws Exception {
+        if (borrado == null) {
+            cifrador.borrarOriginal(ruta);
+            anotar(BORRADO, entrada);
+            return;
+        }
+        try {
+            enBorrado.add(ruta);
+            borrado.agregar(ruta, () -> {
+                enBorrado.remove(ruta);
+                anotarBorrado(entrada);
+            });
+        } catch (Exception e) {
+            // Falló un lote anterior; este archivo quedó en el lote en curso
+            RegistroBitacora.warn("Vigilante: " + e.getMessage());
+        }
+    }
+
+    private void anotarBorrado(String entrada) {
+        try {
+            anotar(BORRADO, entrada);
+        } catch (IOException e) {
+            // Queda como pendiente: al reiniciar se ve que el original ya no está
+            RegistroBitacora.warn("Vigilante: no se pudo anotar un borrado en el checkpoint: " + e.getMessage());
+        }
+    }
+
+    private void vaciarBorrado() {
+        if (borrado == null) {
+            return;
+        }
+        try {
+            borrado.vaciar();
+        } catch (Exception e) {
+            RegistroBitacora.warn("Vigilante: " + e.getMessage());
+        }
+    }
+
+    // Se escribe a disco antes de seguir: "C" tiene que estar anotado antes de borrar el original
+    private synchronized void anotar(String marca, String entrada) throws IOException {
+        if (marca.equals(CIFRADO)) {
+            sinBorrar.add(entrada);
+        } else {
+            sinBorrar.remove(entrada);
+        }
+        checkpoint.write(marca + entrada);
+        checkpoint.newLine();
+        checkpoint.flush();
+    }
+
+    // Clave del .locked (sobrevive al borrado del original) con el tamaño y la fecha del original
+    private String entradaCheckpoint(Path ruta, BasicFileAttributes atributos) {
+        return directorio.relativize(ruta) + EXTENSION_CIFRADO + "|" + atributos.size() + "|"
+                + atributos.lastModifiedTime().toMillis();
+    }
+
+    private void cargarCheckpoint() throws IOException {
+        if (!Files.exists(rutaCheckpoint)) {
+            return;
+        }
+        // Las líneas sin marca (versiones anteriores) se anotaban ya borrado el original: no aportan nada
+        for (String linea : Files.readAllLines(rutaCheckpoint, StandardCharsets.UTF_8)) {
+            if (linea.startsWith(CIFRADO)) {
+                sinBorrar.add(linea.substring(CIFRADO.length()));
+            } else if (linea.startsWith(BORRADO)) {
+                sinBorrar.remove(linea.substring(BORRADO.length()));
+            }
+        }
+    }
+
+    /**
+     * Conserva solo los cifrados cuyo original sigue sin borrar; los terminados ya no aportan nada.
+     */
+    private void compactarCheckpoint() throws IOException {
+        List<String> vigentes = new ArrayList<>();
+        for (String entrada : sinBorrar) {
+            String locked = entrada.substring(0, entrada.indexOf('|'));
+            String original = locked.substring(0, locked.length() - EXTENSION_CIFRADO.length());
+            if (Files.exists(directorio.resolve(original))) {
+                vigentes.add(CIFRADO + entrada);
+            }
+        }
+        Files.write(rutaCheckpoint, vigentes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean esCandidato(Path ruta) {
+        String nombre = ruta.getFileName().toString();
+        if (nombre.endsWith(EXTENSION_CIFRADO) || nombre.equals(NOMBRE_CHECKPOINT) || nombre.startsWith(".")) {
+            return false;
+        }
+        for (String sufijo : SUFIJOS_TEMPORALES) {
+            if (nombre.endsWith(sufijo)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long tamano(Path ruta) {
+        try {
+            return Files.size(ruta);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}